@@ -0,0 +1,204 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.location.Location;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.ProviderTestCase2;
+
+import com.ultramegasoft.flavordex2.provider.DatabaseHelper;
+import com.ultramegasoft.flavordex2.provider.FlavordexProvider;
+import com.ultramegasoft.flavordex2.provider.Tables;
+import com.ultramegasoft.flavordex2.util.BenchmarkUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+/**
+ * Benchmark for finding the nearest of 100,000 locations with the bounding box search used by
+ * {@link FlavordexApp.LocatorTask}, compared with scanning every location. The provider runs on
+ * an isolated copy of the database.
+ *
+ * @author Steve Guidetti
+ */
+@RunWith(AndroidJUnit4.class)
+public class LocatorBenchmark extends ProviderTestCase2<FlavordexProvider> {
+    /**
+     * The number of locations to generate
+     */
+    private static final int LOCATIONS = 100000;
+
+    /**
+     * The number of cities to cluster the locations around
+     */
+    private static final int CITIES = 50;
+
+    /**
+     * The number of timed lookups
+     */
+    private static final int RUNS = 200;
+
+    /**
+     * The positions to look up
+     */
+    private Location[] mPositions;
+
+    public LocatorBenchmark() {
+        super(FlavordexProvider.class, FlavordexApp.AUTHORITY);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        BenchmarkUtils.assumeEnabled();
+        setContext(InstrumentationRegistry.getTargetContext());
+        super.setUp();
+
+        final Cursor cursor = getMockContentResolver()
+                .query(Tables.Locations.CONTENT_URI, null, null, null, null);
+        assertNotNull(cursor);
+        cursor.close();
+
+        final Random random = new Random(LOCATIONS);
+        final double[][] cities = new double[CITIES][];
+        for(int i = 0; i < CITIES; i++) {
+            cities[i] = new double[] {random.nextDouble() * 120 - 60,
+                    random.nextDouble() * 340 - 170};
+        }
+
+        final SQLiteDatabase db = SQLiteDatabase.openDatabase(
+                getMockContext().getDatabasePath(DatabaseHelper.DATABASE_NAME).getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+        try {
+            db.beginTransaction();
+            try {
+                final SQLiteStatement insert = db.compileStatement(
+                        "INSERT INTO locations (lat, lon, name) VALUES (?, ?, ?)");
+                double[] city;
+                for(int i = 0; i < LOCATIONS; i++) {
+                    city = cities[random.nextInt(CITIES)];
+                    insert.bindDouble(1, city[0] + random.nextGaussian() * 0.5);
+                    insert.bindDouble(2, city[1] + random.nextGaussian() * 0.5);
+                    insert.bindString(3, "Location " + i);
+                    insert.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            db.close();
+        }
+
+        mPositions = new Location[RUNS + BenchmarkUtils.WARMUP_RUNS];
+        for(int i = 0; i < mPositions.length; i++) {
+            mPositions[i] = new Location("benchmark");
+            if(i % 10 == 0) {
+                mPositions[i].setLatitude(random.nextDouble() * 120 - 60);
+                mPositions[i].setLongitude(random.nextDouble() * 340 - 170);
+            } else {
+                final double[] city = cities[random.nextInt(CITIES)];
+                mPositions[i].setLatitude(city[0] + random.nextGaussian() * 0.5);
+                mPositions[i].setLongitude(city[1] + random.nextGaussian() * 0.5);
+            }
+        }
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void findNearest() throws Exception {
+        final FlavordexApp app = (FlavordexApp)InstrumentationRegistry.getTargetContext()
+                .getApplicationContext();
+        final ContentResolver cr = getMockContentResolver();
+
+        for(Location position : mPositions) {
+            assertEquals(scan(cr, position),
+                    new FlavordexApp.LocatorTask(app, position).findLocationName(cr));
+        }
+
+        BenchmarkUtils.measure("Nearest location, bounding boxes", RUNS,
+                new BenchmarkUtils.Operation() {
+                    @Override
+                    public void run(int run) {
+                        new FlavordexApp.LocatorTask(app, mPositions[run]).findLocationName(cr);
+                    }
+                });
+
+        BenchmarkUtils.measure("Nearest location, full scan", RUNS,
+                new BenchmarkUtils.Operation() {
+                    @Override
+                    public void run(int run) {
+                        scan(cr, mPositions[run]);
+                    }
+                });
+    }
+
+    /**
+     * Find the nearest location by measuring the distance to every location, as LocatorTask did
+     * before it searched bounding boxes.
+     *
+     * @param cr       The ContentResolver
+     * @param position The position to search around
+     * @return The name of the nearest location
+     */
+    @Nullable
+    private static String scan(@NonNull ContentResolver cr, @NonNull Location position) {
+        final Cursor cursor = cr.query(Tables.Locations.CONTENT_URI, null, null, null, null);
+        assertNotNull(cursor);
+        try {
+            final int latIndex = cursor.getColumnIndex(Tables.Locations.LATITUDE);
+            final int lonIndex = cursor.getColumnIndex(Tables.Locations.LONGITUDE);
+            final int nameIndex = cursor.getColumnIndex(Tables.Locations.NAME);
+            String closestName = null;
+            float closestDistance = Float.MAX_VALUE;
+            final float[] distance = new float[1];
+            while(cursor.moveToNext()) {
+                Location.distanceBetween(position.getLatitude(), position.getLongitude(),
+                        cursor.getDouble(latIndex), cursor.getDouble(lonIndex), distance);
+                if(distance[0] < closestDistance) {
+                    closestDistance = distance[0];
+                    closestName = cursor.getString(nameIndex);
+                }
+            }
+            return closestName;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.provider;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.ProviderTestCase2;
+
+import com.ultramegasoft.flavordex2.FlavordexApp;
+import com.ultramegasoft.flavordex2.util.BenchmarkUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Benchmark for the latency of listing, searching and deleting entries through the
+ * ContentProvider on a journal of 30,000 entries, with and without the secondary indexes. The
+ * provider runs on an isolated copy of the database.
+ *
+ * @author Steve Guidetti
+ */
+@RunWith(AndroidJUnit4.class)
+public class IndexBenchmark extends ProviderTestCase2<FlavordexProvider> {
+    /**
+     * The number of entries to generate
+     */
+    private static final int ENTRIES = 30000;
+
+    /**
+     * The number of makers to spread the entries over
+     */
+    private static final int MAKERS = 1000;
+
+    /**
+     * The number of timed runs of each operation
+     */
+    private static final int RUNS = 100;
+
+    /**
+     * The number of rows to load per page of the entry list
+     */
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * Words to build the titles and notes from
+     */
+    private static final String[] WORDS = new String[] {
+            "oak", "citrus", "smoky", "bright", "dark", "roasted", "malty", "crisp", "dry",
+            "sweet", "hoppy", "earthy", "floral", "spicy", "vanilla", "caramel", "bitter"
+    };
+
+    /**
+     * A separate connection to the provider's database, used to generate data and drop indexes
+     */
+    private SQLiteDatabase mDb;
+
+    /**
+     * The IDs of the categories
+     */
+    private long[] mCats;
+
+    /**
+     * The IDs of the generated entries that have not been deleted
+     */
+    private List<Long> mEntries;
+
+    public IndexBenchmark() {
+        super(FlavordexProvider.class, FlavordexApp.AUTHORITY);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        BenchmarkUtils.assumeEnabled();
+        setContext(InstrumentationRegistry.getTargetContext());
+        super.setUp();
+
+        final Cursor cursor = getMockContentResolver().query(Tables.Cats.CONTENT_URI,
+                new String[] {Tables.Cats._ID}, null, null, null);
+        assertNotNull(cursor);
+        try {
+            mCats = new long[cursor.getCount()];
+            for(int i = 0; cursor.moveToNext(); i++) {
+                mCats[i] = cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        mDb = SQLiteDatabase.openDatabase(
+                getMockContext().getDatabasePath(DatabaseHelper.DATABASE_NAME).getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+        generateEntries();
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        if(mDb != null) {
+            mDb.close();
+        }
+        super.tearDown();
+    }
+
+    @Test
+    public void listSearchDelete() throws Exception {
+        measureAll("with indexes");
+
+        final Cursor cursor = mDb.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index'"
+                + " AND name LIKE 'idx_%'", null);
+        try {
+            while(cursor.moveToNext()) {
+                mDb.execSQL("DROP INDEX " + cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        measureAll("without indexes");
+    }
+
+    /**
+     * Measure each operation.
+     *
+     * @param label The label to add to the results
+     */
+    private void measureAll(@NonNull String label) throws Exception {
+        final ContentResolver cr = getMockContentResolver();
+
+        BenchmarkUtils.measure("List by date, " + label, RUNS, new BenchmarkUtils.Operation() {
+            @Override
+            public void run(int run) {
+                final Uri uri = ContentUris.withAppendedId(Tables.Entries.CONTENT_CAT_URI_BASE,
+                        mCats[run % mCats.length]).buildUpon()
+                        .appendQueryParameter(Tables.PARAM_LIMIT, String.valueOf(PAGE_SIZE))
+                        .build();
+                consume(cr.query(uri, null, null, null,
+                        Tables.Entries.DATE + " DESC, " + Tables.Entries._ID + " DESC"));
+            }
+        });
+
+        BenchmarkUtils.measure("Search, " + label, RUNS, new BenchmarkUtils.Operation() {
+            @Override
+            public void run(int run) {
+                final Uri uri = Uri.withAppendedPath(Tables.Entries.CONTENT_SEARCH_URI_BASE,
+                        WORDS[run % WORDS.length]).buildUpon()
+                        .appendQueryParameter(Tables.PARAM_LIMIT, String.valueOf(PAGE_SIZE))
+                        .build();
+                consume(cr.query(uri, null, null, null,
+                        Tables.Entries.TITLE + " ASC, " + Tables.Entries._ID + " ASC"));
+            }
+        });
+
+        BenchmarkUtils.measure("Filter by maker, " + label, RUNS,
+                new BenchmarkUtils.Operation() {
+                    @Override
+                    public void run(int run) {
+                        consume(cr.query(Tables.Entries.CONTENT_URI, null,
+                                Tables.Entries.MAKER + " = ?",
+                                new String[] {"Maker " + (run % MAKERS)},
+                                Tables.Entries.TITLE + " ASC"));
+                    }
+                });
+
+        final Random random = new Random(0);
+        BenchmarkUtils.measure("Delete, " + label, RUNS, new BenchmarkUtils.Operation() {
+            @Override
+            public void run(int run) {
+                final long id = mEntries.remove(random.nextInt(mEntries.size()));
+                assertEquals(1, cr.delete(
+                        ContentUris.withAppendedId(Tables.Entries.CONTENT_ID_URI_BASE, id),
+                        null, null));
+            }
+        });
+    }
+
+    /**
+     * Read every row from a Cursor and close it.
+     *
+     * @param cursor The Cursor
+     */
+    private static void consume(Cursor cursor) {
+        assertNotNull(cursor);
+        try {
+            while(cursor.moveToNext()) {
+                cursor.getString(0);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Generate the entries with their makers, extras, flavors and photos.
+     */
+    private void generateEntries() {
+        final Random random = new Random(ENTRIES);
+        final List<long[]> extras = queryPairs("SELECT _id, cat FROM extras");
+        final List<long[]> flavors = queryPairs("SELECT _id, cat FROM flavors");
+        mEntries = new ArrayList<>(ENTRIES);
+
+        mDb.beginTransaction();
+        try {
+            final SQLiteStatement maker =
+                    mDb.compileStatement("INSERT INTO makers (name, location) VALUES (?, ?)");
+            final long[] makers = new long[MAKERS];
+            for(int i = 0; i < MAKERS; i++) {
+                maker.bindString(1, "Maker " + i);
+                maker.bindString(2, "Origin " + (i % 53));
+                makers[i] = maker.executeInsert();
+            }
+
+            final SQLiteStatement entry = mDb.compileStatement("INSERT INTO entries (uuid, cat,"
+                    + " title, maker, price, location, date, rating, notes)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            final SQLiteStatement extra = mDb.compileStatement(
+                    "INSERT INTO entries_extras (entry, extra, value) VALUES (?, ?, ?)");
+            final SQLiteStatement flavor = mDb.compileStatement(
+                    "INSERT INTO entries_flavors (entry, flavor, value, pos) VALUES (?, ?, ?, ?)");
+            final SQLiteStatement photo = mDb.compileStatement(
+                    "INSERT INTO photos (entry, hash, path, pos) VALUES (?, ?, ?, 0)");
+
+            for(int i = 0; i < ENTRIES; i++) {
+                final long cat = mCats[i % mCats.length];
+                entry.bindString(1, UUID.randomUUID().toString());
+                entry.bindLong(2, cat);
+                entry.bindString(3, getWords(random, 3) + " " + i);
+                entry.bindLong(4, makers[random.nextInt(MAKERS)]);
+                entry.bindString(5, "$" + random.nextInt(60));
+                entry.bindString(6, "Location " + random.nextInt(200));
+                entry.bindLong(7, 1300000000000L + random.nextInt(Integer.MAX_VALUE) * 100L);
+                entry.bindDouble(8, random.nextInt(11) / 2.0);
+                entry.bindString(9, getWords(random, 20));
+                final long id = entry.executeInsert();
+                mEntries.add(id);
+
+                for(long[] pair : extras) {
+                    if(pair[1] == cat) {
+                        extra.bindLong(1, id);
+                        extra.bindLong(2, pair[0]);
+                        extra.bindString(3, getWords(random, 1));
+                        extra.executeInsert();
+                    }
+                }
+
+                int pos = 0;
+                for(long[] pair : flavors) {
+                    if(pair[1] == cat) {
+                        flavor.bindLong(1, id);
+                        flavor.bindString(2, "Flavor " + pair[0]);
+                        flavor.bindLong(3, random.nextInt(6));
+                        flavor.bindLong(4, pos++);
+                        flavor.executeInsert();
+                    }
+                }
+
+                if(i % 4 == 0) {
+                    photo.bindLong(1, id);
+                    photo.bindString(2, Long.toHexString(random.nextLong()));
+                    photo.bindString(3, "IMG_" + i + ".jpg");
+                    photo.executeInsert();
+                }
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    /**
+     * Read the first two columns of a query as pairs of longs.
+     *
+     * @param sql The query
+     * @return The list of pairs
+     */
+    @NonNull
+    private List<long[]> queryPairs(@NonNull String sql) {
+        final List<long[]> pairs = new ArrayList<>();
+        final Cursor cursor = mDb.rawQuery(sql, null);
+        try {
+            while(cursor.moveToNext()) {
+                pairs.add(new long[] {cursor.getLong(0), cursor.getLong(1)});
+            }
+        } finally {
+            cursor.close();
+        }
+        return pairs;
+    }
+
+    /**
+     * Build a string of random words.
+     *
+     * @param random The source of randomness
+     * @param count  The number of words
+     * @return The words separated by spaces
+     */
+    @NonNull
+    private static String getWords(@NonNull Random random, int count) {
+        final StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < count; i++) {
+            if(i > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util;
+
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+import android.util.Log;
+
+import org.junit.Assume;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Helpers for the instrumented benchmarks. Benchmarks are skipped unless the build is run with
+ * <code>-Pbenchmark</code>, and report their results to the log under the Benchmark tag.
+ *
+ * @author Steve Guidetti
+ */
+public class BenchmarkUtils {
+    private static final String TAG = "Benchmark";
+
+    /**
+     * The instrumentation argument that enables the benchmarks
+     */
+    private static final String ARGUMENT = "benchmark";
+
+    /**
+     * The number of untimed runs before measuring
+     */
+    public static final int WARMUP_RUNS = 5;
+
+    /**
+     * A single operation to be timed.
+     */
+    public interface Operation {
+        /**
+         * Run the operation once.
+         *
+         * @param run The index of the run, which is different for every warm-up and timed run
+         */
+        void run(int run) throws Exception;
+    }
+
+    /**
+     * Skip the calling test unless benchmarks are enabled.
+     */
+    public static void assumeEnabled() {
+        Assume.assumeTrue("Benchmarks are disabled, run with -Pbenchmark",
+                Boolean.parseBoolean(InstrumentationRegistry.getArguments().getString(ARGUMENT)));
+    }
+
+    /**
+     * Time an operation several times and report the median and 90th percentile latencies.
+     *
+     * @param name      The name to report the results under
+     * @param runs      The number of timed runs
+     * @param operation The operation to time
+     */
+    public static void measure(@NonNull String name, int runs, @NonNull Operation operation)
+            throws Exception {
+        for(int i = 0; i < WARMUP_RUNS; i++) {
+            operation.run(runs + i);
+        }
+
+        final long[] times = new long[runs];
+        long start;
+        for(int i = 0; i < runs; i++) {
+            start = System.nanoTime();
+            operation.run(i);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+
+        Log.i(TAG, String.format(Locale.US, "%s: median %.3f ms, p90 %.3f ms", name,
+                times[runs / 2] / 1e6, times[runs * 9 / 10] / 1e6));
+    }
+}
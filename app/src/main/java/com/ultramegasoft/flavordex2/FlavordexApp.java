@@ -38,6 +38,8 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.ultramegasoft.flavordex2.provider.Tables;
+import com.ultramegasoft.flavordex2.util.BitmapCache;
+import com.ultramegasoft.flavordex2.util.PhotoUtils;
 
 import java.lang.ref.WeakReference;
 import java.util.HashMap;
@@ -133,6 +135,8 @@ public class FlavordexApp extends Application
                     .build());
         }
 
+        BitmapCache.init(this);
+
         final SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
         prefs.registerOnSharedPreferenceChangeListener(this);
 
@@ -141,6 +145,19 @@ public class FlavordexApp extends Application
         }
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        BitmapCache.getInstance().trimMemory(level);
+        PhotoUtils.getBitmapPool().trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
         switch(key) {
@@ -234,7 +251,17 @@ public class FlavordexApp extends Application
     /**
      * Task for finding the nearest location from the database in the background.
      */
-    private static class LocatorTask extends AsyncTask<Void, Void, Void> {
+    static class LocatorTask extends AsyncTask<Void, Void, Void> {
+        /**
+         * The distances in meters to search around the Location before searching every location
+         */
+        private static final double[] SEARCH_RADII = {1000, 10000, 100000};
+
+        /**
+         * The minimum length of a degree of latitude in meters
+         */
+        private static final double METERS_PER_DEGREE = 110000;
+
         /**
          * The Application reference
          */
@@ -247,6 +274,17 @@ public class FlavordexApp extends Application
         @NonNull
         private final Location mLocation;
 
+        /**
+         * The name of the closest location found by the last search
+         */
+        @Nullable
+        private String mClosestName;
+
+        /**
+         * The distance in meters to the closest location found by the last search
+         */
+        private float mClosestDistance;
+
         /**
          * @param app      The Application reference
          * @param location The Location to process
@@ -263,43 +301,121 @@ public class FlavordexApp extends Application
                 return null;
             }
 
-            final ContentResolver cr = app.getContentResolver();
-            final Cursor cursor = cr.query(Tables.Locations.CONTENT_URI, null, null, null, null);
-            if(cursor == null) {
+            final String name = findLocationName(app.getContentResolver());
+            if(name != null) {
+                app.mLocationName = name;
+            }
+
+            return null;
+        }
+
+        /**
+         * Find the name of the location closest to the Location.
+         *
+         * @param cr The ContentResolver
+         * @return The name of the closest location, or null if none was found or the task was
+         * cancelled
+         */
+        @Nullable
+        String findLocationName(@NonNull ContentResolver cr) {
+            for(double radius : SEARCH_RADII) {
+                final String[] bounds = getBounds(radius);
+                if(bounds == null) {
+                    break;
+                }
+
+                final String where = Tables.Locations.LATITUDE + " BETWEEN ? AND ? AND "
+                        + Tables.Locations.LONGITUDE + " BETWEEN ? AND ?";
+                if(findClosest(cr.query(Tables.Locations.CONTENT_URI, null, where, bounds, null))
+                        && mClosestDistance <= radius) {
+                    return mClosestName;
+                }
+                if(isCancelled()) {
+                    return null;
+                }
+            }
+
+            if(findClosest(cr.query(Tables.Locations.CONTENT_URI, null, null, null, null))) {
+                return mClosestName;
+            }
+
+            return null;
+        }
+
+        /**
+         * Get the bounding box containing every point within a distance of the Location. The box
+         * is slightly larger than necessary to allow for the shape of the Earth.
+         *
+         * @param radius The distance in meters
+         * @return The query arguments for the minimum and maximum latitude and longitude, or null
+         * if the box would cross a pole or the antimeridian
+         */
+        @Nullable
+        private String[] getBounds(double radius) {
+            final double lat = mLocation.getLatitude();
+            final double lon = mLocation.getLongitude();
+            final double latDelta = radius / METERS_PER_DEGREE;
+            final double maxAbsLat = Math.abs(lat) + latDelta;
+            if(maxAbsLat >= 90) {
+                return null;
+            }
+
+            final double lonDelta =
+                    radius / (METERS_PER_DEGREE * Math.cos(Math.toRadians(maxAbsLat)));
+            if(lon - lonDelta < -180 || lon + lonDelta > 180) {
                 return null;
             }
 
+            return new String[] {
+                    String.valueOf(lat - latDelta),
+                    String.valueOf(lat + latDelta),
+                    String.valueOf(lon - lonDelta),
+                    String.valueOf(lon + lonDelta)
+            };
+        }
+
+        /**
+         * Find the location closest to the Location from the rows of a Cursor. The result is
+         * stored in {@link #mClosestName} and {@link #mClosestDistance}.
+         *
+         * @param cursor The Cursor for the locations, which is closed
+         * @return Whether any location was found
+         */
+        private boolean findClosest(@Nullable Cursor cursor) {
+            if(cursor == null) {
+                return false;
+            }
+
             final double lat = mLocation.getLatitude();
             final double lon = mLocation.getLongitude();
 
             try {
+                final int latIndex = cursor.getColumnIndex(Tables.Locations.LATITUDE);
+                final int lonIndex = cursor.getColumnIndex(Tables.Locations.LONGITUDE);
+                final int nameIndex = cursor.getColumnIndex(Tables.Locations.NAME);
                 String closestName = null;
                 float closestDistance = Float.MAX_VALUE;
                 final float[] distance = new float[1];
                 while(cursor.moveToNext()) {
                     if(isCancelled()) {
-                        return null;
+                        return false;
                     }
 
-                    Location.distanceBetween(
-                            lat, lon,
-                            cursor.getDouble(cursor.getColumnIndex(Tables.Locations.LATITUDE)),
-                            cursor.getDouble(cursor.getColumnIndex(Tables.Locations.LONGITUDE)),
-                            distance);
+                    Location.distanceBetween(lat, lon, cursor.getDouble(latIndex),
+                            cursor.getDouble(lonIndex), distance);
 
                     if(distance[0] < closestDistance) {
                         closestDistance = distance[0];
-                        closestName =
-                                cursor.getString(cursor.getColumnIndex(Tables.Locations.NAME));
+                        closestName = cursor.getString(nameIndex);
                     }
                 }
 
-                app.mLocationName = closestName;
+                mClosestName = closestName;
+                mClosestDistance = closestDistance;
+                return closestName != null;
             } finally {
                 cursor.close();
             }
-
-            return null;
         }
     }
 }
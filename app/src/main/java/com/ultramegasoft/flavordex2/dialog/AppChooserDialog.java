@@ -29,7 +29,6 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteException;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
@@ -37,7 +36,6 @@ import android.support.annotation.NonNull;
 import android.support.v4.app.DialogFragment;
 import android.support.v4.app.FragmentManager;
 import android.support.v7.app.AlertDialog;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -53,6 +51,8 @@ import android.widget.Toast;
 import com.ultramegasoft.flavordex2.R;
 import com.ultramegasoft.flavordex2.util.AppImportUtils;
 import com.ultramegasoft.flavordex2.util.EntryUtils;
+import com.ultramegasoft.flavordex2.util.TitleResolver;
+import com.ultramegasoft.flavordex2.util.UuidSet;
 import com.ultramegasoft.flavordex2.widget.EntryHolder;
 
 import java.lang.ref.WeakReference;
@@ -433,6 +433,8 @@ public class AppChooserDialog extends DialogFragment {
                 }
 
                 final ContentResolver cr = context.getContentResolver();
+                final UuidSet uuids = UuidSet.load(cr);
+                final TitleResolver titles = new TitleResolver(cr);
 
                 int appId;
                 for(int i = 0; i < mApps.length; i++) {
@@ -441,28 +443,28 @@ public class AppChooserDialog extends DialogFragment {
                     final Uri uri = AppImportUtils.getEntriesUri(appId);
                     final String[] projection = {AppImportUtils.EntriesColumns._ID};
                     final Cursor cursor = cr.query(uri, projection, null, null, null);
-                    int count;
-
                     if(cursor == null) {
                         continue;
                     }
 
+                    final long[] ids;
                     try {
-                        EntryHolder entry;
-                        count = cursor.getCount();
-                        int j = 0;
-                        while(cursor.moveToNext()) {
-                            entry = AppImportUtils.importEntry(context, appId, cursor.getLong(0));
-                            try {
-                                EntryUtils.insertEntry(context, entry);
-                            } catch(SQLiteException e) {
-                                Log.e(TAG, "Failed to insert entry: " + entry.title, e);
-                            }
-                            publishProgress(i, ++j, count);
+                        ids = new long[cursor.getCount()];
+                        for(int j = 0; cursor.moveToNext(); j++) {
+                            ids[j] = cursor.getLong(0);
                         }
                     } finally {
                         cursor.close();
                     }
+
+                    final AppImportUtils.EntryLoader loader =
+                            new AppImportUtils.EntryLoader(context, appId, ids);
+                    final int count = loader.getCount();
+                    ArrayList<EntryHolder> entries;
+                    while((entries = loader.next()) != null) {
+                        EntryUtils.insertEntries(context, entries, uuids, titles);
+                        publishProgress(i, loader.getPosition(), count);
+                    }
                     publishProgress(i, count, count);
                 }
                 return null;
@@ -24,9 +24,9 @@ package com.ultramegasoft.flavordex2.dialog;
 
 import android.app.Dialog;
 import android.app.ProgressDialog;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteException;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
@@ -36,7 +36,6 @@ import android.support.v4.app.FragmentManager;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
-import android.util.Log;
 import android.widget.CursorAdapter;
 import android.widget.ListView;
 import android.widget.Toast;
@@ -44,10 +43,13 @@ import android.widget.Toast;
 import com.ultramegasoft.flavordex2.R;
 import com.ultramegasoft.flavordex2.util.AppImportUtils;
 import com.ultramegasoft.flavordex2.util.EntryUtils;
+import com.ultramegasoft.flavordex2.util.TitleResolver;
+import com.ultramegasoft.flavordex2.util.UuidSet;
 import com.ultramegasoft.flavordex2.widget.EntryHolder;
 import com.ultramegasoft.flavordex2.widget.EntryListAdapter;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 
 /**
  * Dialog for importing journal entries from the original Flavordex apps.
@@ -283,16 +285,15 @@ public class AppImportDialog extends ImportDialog implements LoaderManager.Loade
                     return null;
                 }
 
-                EntryHolder entry;
-                int i = 0;
-                for(long id : mEntryIds) {
-                    entry = AppImportUtils.importEntry(context, mApp, id);
-                    try {
-                        EntryUtils.insertEntry(context, entry);
-                    } catch(SQLiteException e) {
-                        Log.e(TAG, "Failed to insert entry: " + entry.title, e);
-                    }
-                    publishProgress(++i);
+                final ContentResolver cr = context.getContentResolver();
+                final UuidSet uuids = UuidSet.load(cr);
+                final TitleResolver titles = new TitleResolver(cr);
+                final AppImportUtils.EntryLoader loader =
+                        new AppImportUtils.EntryLoader(context, mApp, mEntryIds);
+                ArrayList<EntryHolder> entries;
+                while((entries = loader.next()) != null) {
+                    EntryUtils.insertEntries(context, entries, uuids, titles);
+                    publishProgress(loader.getPosition());
                 }
                 return null;
             }
@@ -311,6 +311,7 @@ public class CatDeleteDialog extends DialogFragment
             uri = ContentUris.withAppendedId(Tables.Cats.CONTENT_ID_URI_BASE, mCatId);
             cr.delete(uri, null, null);
             cr.notifyChange(Tables.Entries.CONTENT_URI, null);
+            PhotoUtils.collectGarbage(context);
             return null;
         }
     }
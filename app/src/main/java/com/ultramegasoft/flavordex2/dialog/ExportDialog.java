@@ -26,10 +26,8 @@ import android.annotation.SuppressLint;
 import android.app.Dialog;
 import android.app.ProgressDialog;
 import android.content.ContentResolver;
-import android.content.ContentUris;
 import android.content.Context;
 import android.content.DialogInterface;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Build;
@@ -55,19 +53,18 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.ultramegasoft.flavordex2.R;
-import com.ultramegasoft.flavordex2.provider.Tables;
 import com.ultramegasoft.flavordex2.util.CSVUtils;
+import com.ultramegasoft.flavordex2.util.EntryStream;
 import com.ultramegasoft.flavordex2.util.FileUtils;
-import com.ultramegasoft.flavordex2.util.PhotoUtils;
 import com.ultramegasoft.flavordex2.util.csv.CSVWriter;
 import com.ultramegasoft.flavordex2.widget.EntryHolder;
+import com.ultramegasoft.flavordex2.widget.PhotoHolder;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.text.SimpleDateFormat;
@@ -426,12 +423,6 @@ public class ExportDialog extends DialogFragment {
             @NonNull
             private final String mFileName;
 
-            /**
-             * The Uri for the current entry
-             */
-            @Nullable
-            private Uri mEntryUri;
-
             /**
              * The OutputStream for writing to a Zip file
              */
@@ -458,7 +449,7 @@ public class ExportDialog extends DialogFragment {
                 mEntryIds = entryIds;
                 mFileName = fileName;
                 mResolver = context.getContentResolver();
-                mWriter = new CSVWriter(new FileWriter(fileName + FileUtils.EXT_CSV));
+                mWriter = CSVWriter.open(new File(fileName + FileUtils.EXT_CSV), false);
 
                 if(includeImages) {
                     mZipOutputStream = new ZipOutputStream(new BufferedOutputStream(
@@ -468,30 +459,25 @@ public class ExportDialog extends DialogFragment {
 
             @Override
             protected Boolean doInBackground(Void... params) {
+                final EntryStream entries = new EntryStream(mResolver, mEntryIds);
                 try {
                     CSVUtils.writeCSVHeader(mWriter);
 
-                    Cursor cursor;
+                    EntryHolder entry;
                     int i = 0;
-                    for(long id : mEntryIds) {
-                        mEntryUri =
-                                ContentUris.withAppendedId(Tables.Entries.CONTENT_ID_URI_BASE, id);
-                        cursor = mResolver.query(mEntryUri, null, null, null, null);
-                        if(cursor != null) {
-                            try {
-                                if(cursor.moveToFirst()) {
-                                    CSVUtils.writeEntry(mWriter, readEntry(cursor));
-                                }
-                            } finally {
-                                cursor.close();
-                            }
+                    while((entry = entries.next()) != null) {
+                        if(mZipOutputStream != null) {
+                            addPhotos(mZipOutputStream, entry);
                         }
+                        CSVUtils.writeEntry(mWriter, entry);
                         publishProgress(++i);
                     }
+                    mWriter.close();
                 } catch(IOException e) {
                     Log.e(TAG, "Failed to write to file", e);
                     return false;
                 } finally {
+                    entries.close();
                     try {
                         mWriter.close();
                     } catch(IOException ignored) {
@@ -517,124 +503,19 @@ public class ExportDialog extends DialogFragment {
             }
 
             /**
-             * Read the entry from the database.
-             *
-             * @param cursor The Cursor for the entry row
-             * @return The entry
-             */
-            private EntryHolder readEntry(@NonNull Cursor cursor) throws IOException {
-                final EntryHolder entry = new EntryHolder();
-                entry.uuid = cursor.getString(cursor.getColumnIndex(Tables.Entries.UUID));
-                entry.title = cursor.getString(cursor.getColumnIndex(Tables.Entries.TITLE));
-                entry.catName = cursor.getString(cursor.getColumnIndex(Tables.Entries.CAT));
-                entry.maker = cursor.getString(cursor.getColumnIndex(Tables.Entries.MAKER));
-                entry.origin = cursor.getString(cursor.getColumnIndex(Tables.Entries.ORIGIN));
-                entry.price = cursor.getString(cursor.getColumnIndex(Tables.Entries.PRICE));
-                entry.location = cursor.getString(cursor.getColumnIndex(Tables.Entries.LOCATION));
-                entry.date = cursor.getLong(cursor.getColumnIndex(Tables.Entries.DATE));
-                entry.rating = cursor.getFloat(cursor.getColumnIndex(Tables.Entries.RATING));
-                entry.notes = cursor.getString(cursor.getColumnIndex(Tables.Entries.NOTES));
-
-                loadExtras(entry);
-                loadFlavors(entry);
-                loadPhotos(entry);
-
-                return entry;
-            }
-
-            /**
-             * Load the extra fields for the entry.
-             *
-             * @param entry The entry
-             */
-            private void loadExtras(@NonNull EntryHolder entry) {
-                final Uri uri = Uri.withAppendedPath(mEntryUri, "extras");
-                final Cursor cursor = mResolver.query(uri, null, null, null, null);
-                if(cursor != null) {
-                    try {
-                        String name;
-                        String value;
-                        boolean preset;
-                        while(cursor.moveToNext()) {
-                            name = cursor.getString(cursor.getColumnIndex(Tables.Extras.NAME));
-                            value = cursor.getString(
-                                    cursor.getColumnIndex(Tables.EntriesExtras.VALUE));
-                            preset = cursor.getInt(
-                                    cursor.getColumnIndex(Tables.Extras.PRESET)) == 1;
-                            entry.addExtra(0, name, preset, value);
-                        }
-                    } finally {
-                        cursor.close();
-                    }
-                }
-            }
-
-            /**
-             * Load the flavors for the entry.
+             * Add the photos for an entry to the Zip file, replacing the photo Uris with the
+             * names of the files in the Zip file.
              *
-             * @param entry The entry
-             */
-            private void loadFlavors(@NonNull EntryHolder entry) {
-                final Uri uri = Uri.withAppendedPath(mEntryUri, "flavor");
-                final Cursor cursor = mResolver.query(uri, null, null, null, null);
-                if(cursor != null) {
-                    try {
-                        String name;
-                        int value;
-                        while(cursor.moveToNext()) {
-                            name = cursor.getString(cursor.getColumnIndex(
-                                    Tables.EntriesFlavors.FLAVOR));
-                            value = cursor.getInt(
-                                    cursor.getColumnIndex(Tables.EntriesFlavors.VALUE));
-                            entry.addFlavor(name, value);
-                        }
-                    } finally {
-                        cursor.close();
-                    }
-                }
-            }
-
-            /**
-             * Load the photos for the entry.
-             *
-             * @param entry The entry
-             */
-            private void loadPhotos(@NonNull EntryHolder entry) throws IOException {
-                final Uri uri = Uri.withAppendedPath(mEntryUri, "photos");
-                final Cursor cursor = mResolver.query(uri, null, null, null, Tables.Photos.POS);
-                if(cursor != null) {
-                    try {
-                        while(cursor.moveToNext()) {
-                            addPhoto(entry,
-                                    cursor.getString(cursor.getColumnIndex(Tables.Photos.PATH)),
-                                    cursor.getInt(cursor.getColumnIndex(Tables.Photos.POS)));
-                        }
-                    } finally {
-                        cursor.close();
-                    }
-                }
-            }
-
-            /**
-             * Add a photo to an entry export.
-             *
-             * @param entry The entry
-             * @param path  The path to the source photo file
-             * @param sort  The sort position of this photo
+             * @param zipOutputStream The open ZipOutputStream
+             * @param entry           The entry
              */
-            private void addPhoto(@NonNull EntryHolder entry, @NonNull String path, int sort)
-                    throws IOException {
-                Uri photoUri = PhotoUtils.parsePath(path);
-                if(photoUri != null) {
-                    if(mZipOutputStream == null) {
-                        entry.addPhoto(0, null, photoUri);
-                    } else {
-                        final String outName = String.format(Locale.US, "%s/%d_%s", entry.uuid,
-                                sort, photoUri.getLastPathSegment());
-                        addToZipFile(mZipOutputStream, photoUri.getPath(), outName);
-                        entry.addPhoto(0, null,
-                                Uri.parse(outName.substring(outName.lastIndexOf('/') + 1)));
-                    }
+            private void addPhotos(@NonNull ZipOutputStream zipOutputStream,
+                                   @NonNull EntryHolder entry) throws IOException {
+                for(PhotoHolder photo : entry.getPhotos()) {
+                    final String outName = String.format(Locale.US, "%s/%d_%s", entry.uuid,
+                            photo.pos, photo.uri.getLastPathSegment());
+                    addToZipFile(zipOutputStream, photo.uri.getPath(), outName);
+                    photo.uri = Uri.parse(outName.substring(outName.lastIndexOf('/') + 1));
                 }
             }
 
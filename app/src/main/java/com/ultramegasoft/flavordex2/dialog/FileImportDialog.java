@@ -29,8 +29,6 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.res.Resources;
-import android.database.sqlite.SQLiteException;
-import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
@@ -42,7 +40,6 @@ import android.support.v4.app.FragmentManager;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.AsyncTaskLoader;
 import android.support.v4.content.Loader;
-import android.text.TextUtils;
 import android.util.Log;
 import android.view.View;
 import android.widget.ListView;
@@ -53,17 +50,26 @@ import com.ultramegasoft.flavordex2.util.CSVUtils;
 import com.ultramegasoft.flavordex2.util.EntryUtils;
 import com.ultramegasoft.flavordex2.util.FileUtils;
 import com.ultramegasoft.flavordex2.util.PhotoUtils;
+import com.ultramegasoft.flavordex2.util.TitleResolver;
+import com.ultramegasoft.flavordex2.util.UuidSet;
 import com.ultramegasoft.flavordex2.widget.CSVListAdapter;
 import com.ultramegasoft.flavordex2.widget.EntryHolder;
 import com.ultramegasoft.flavordex2.widget.PhotoHolder;
 
-import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -91,6 +97,7 @@ public class FileImportDialog extends ImportDialog
      * Keys for the saved state
      */
     private static final String STATE_DATA = "data";
+    private static final String STATE_SKIP_DUPLICATES = "skip_duplicates";
 
     /**
      * The data loaded from the CSV file
@@ -108,6 +115,11 @@ public class FileImportDialog extends ImportDialog
      */
     private boolean mIsZipFile;
 
+    /**
+     * Whether to skip duplicate entries that are not part of the preview
+     */
+    private boolean mSkipDuplicates;
+
     /**
      * Show the dialog.
      *
@@ -131,16 +143,18 @@ public class FileImportDialog extends ImportDialog
         final Bundle args = getArguments();
         if(args != null) {
             mFilePath = args.getString(ARG_FILE_PATH);
-            mIsZipFile = mFilePath != null && mFilePath.endsWith(FileUtils.EXT_ZIP);
+            mIsZipFile = mFilePath != null && isZipFile(mFilePath);
         }
         if(savedInstanceState != null) {
             mData = savedInstanceState.getParcelable(STATE_DATA);
+            mSkipDuplicates = savedInstanceState.getBoolean(STATE_SKIP_DUPLICATES);
         }
 
-        if(mData != null) {
+        if(mData != null && mData.isPreviewLoaded()) {
             final Context context = getContext();
             if(context != null) {
                 setListAdapter(new CSVListAdapter(context, mData));
+                showNumHidden(mData.getNumHidden());
             }
         } else if(mFilePath != null) {
             getLoaderManager().initLoader(0, null, this).forceLoad();
@@ -155,6 +169,7 @@ public class FileImportDialog extends ImportDialog
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
         outState.putParcelable(STATE_DATA, mData);
+        outState.putBoolean(STATE_SKIP_DUPLICATES, mSkipDuplicates);
     }
 
     @Override
@@ -176,6 +191,7 @@ public class FileImportDialog extends ImportDialog
                     for(EntryHolder entry : mData.entries) {
                         entry.catId = catId;
                     }
+                    mData.catId = catId;
                     mData.hasCategory = true;
                     validateData();
                 } else {
@@ -196,8 +212,10 @@ public class FileImportDialog extends ImportDialog
         for(int i = 0; i < mData.entries.size(); i++) {
             listView.setItemChecked(i, !mData.duplicates.contains(mData.entries.get(i)));
         }
+        mSkipDuplicates = true;
+        invalidateButtons();
 
-        final int numDuplicates = mData.duplicates.size();
+        final int numDuplicates = mData.numDuplicates;
         if(numDuplicates > 0) {
             final String duplicates =
                     getResources().getQuantityString(R.plurals.duplicates, numDuplicates);
@@ -211,21 +229,23 @@ public class FileImportDialog extends ImportDialog
     @Override
     protected void insertSelected() {
         final FragmentManager fm = getFragmentManager();
-        final CSVListAdapter adapter = (CSVListAdapter)getListAdapter();
-        if(fm != null && adapter != null) {
-            final ArrayList<EntryHolder> entries = new ArrayList<>();
-            for(long i : getListView().getCheckedItemIds()) {
-                entries.add(adapter.getItem((int)i));
+        if(fm != null && mData != null) {
+            final ListView listView = getListView();
+            final boolean[] selected = new boolean[mData.getPreviewSize()];
+            for(int i = 0; i < selected.length; i++) {
+                selected[i] = listView.isItemChecked(i);
             }
 
-            if(mIsZipFile && mIncludeImages.isChecked()) {
-                DataSaverFragment.init(fm, entries, mFilePath);
-            } else {
-                DataSaverFragment.init(fm, entries);
-            }
+            DataSaverFragment.init(fm, mFilePath, mIsZipFile && mIncludeImages.isChecked(),
+                    mData, selected, mSkipDuplicates);
         }
     }
 
+    @Override
+    boolean hasSelection() {
+        return super.hasSelection() || (mData != null && mData.getNumHidden() > 0);
+    }
+
     @SuppressWarnings("ConstantConditions")
     @NonNull
     @Override
@@ -236,7 +256,7 @@ public class FileImportDialog extends ImportDialog
         }
 
         setListShown(false);
-        return new CsvLoader(context, mFilePath);
+        return new CsvLoader(context, mFilePath, mData);
     }
 
     /**
@@ -252,8 +272,8 @@ public class FileImportDialog extends ImportDialog
 
         if(!mData.hasCategory) {
             CatListDialog.showDialog(fm, this, REQUEST_SET_CATEGORY);
-        } else if(!mData.duplicates.isEmpty()) {
-            DuplicatesDialog.showDialog(fm, this, REQUEST_DUPLICATES, mData.duplicates.size());
+        } else if(mData.numDuplicates > 0) {
+            DuplicatesDialog.showDialog(fm, this, REQUEST_DUPLICATES, mData.numDuplicates);
         }
     }
 
@@ -264,19 +284,24 @@ public class FileImportDialog extends ImportDialog
         if(context != null && data != null) {
             setListShown(true);
             setListAdapter(new CSVListAdapter(context, data));
+            showNumHidden(data.getNumHidden());
 
-            final ListView listView = getListView();
-            for(int i = 0; i < data.entries.size(); i++) {
-                listView.setItemChecked(i, true);
-            }
-
-            mData = data;
-            new Handler().post(new Runnable() {
-                @Override
-                public void run() {
-                    validateData();
+            if(data == mData) {
+                invalidateButtons();
+            } else {
+                final ListView listView = getListView();
+                for(int i = 0; i < data.entries.size(); i++) {
+                    listView.setItemChecked(i, true);
                 }
-            });
+
+                mData = data;
+                new Handler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        validateData();
+                    }
+                });
+            }
         } else {
             new Handler().post(new Runnable() {
                 @Override
@@ -298,6 +323,51 @@ public class FileImportDialog extends ImportDialog
     public void onLoaderReset(@NonNull Loader<CSVUtils.CSVHolder> loader) {
     }
 
+    /**
+     * Check whether a file is a Zip file based on its extension.
+     *
+     * @param filePath The path to the file
+     * @return Whether the file is a Zip file
+     */
+    private static boolean isZipFile(@NonNull String filePath) {
+        final int index = filePath.lastIndexOf('.');
+        return index >= 0 && filePath.substring(index).toLowerCase().equals(FileUtils.EXT_ZIP);
+    }
+
+    /**
+     * Open the CSV file for reading. The CSV file inside a Zip file is read directly from the
+     * archive.
+     *
+     * @param filePath The path to the CSV or Zip file
+     * @return A Reader for the CSV file, or null if the Zip file does not contain one
+     */
+    @Nullable
+    private static Reader openCsv(@NonNull String filePath) throws IOException {
+        if(!isZipFile(filePath)) {
+            return new FileReader(filePath);
+        }
+
+        final ZipFile zipFile = new ZipFile(filePath);
+        final String entryName = filePath.substring(0, filePath.lastIndexOf('.'))
+                .substring(filePath.lastIndexOf('/') + 1) + FileUtils.EXT_CSV;
+        final ZipEntry zipEntry = zipFile.getEntry(entryName);
+        if(zipEntry == null) {
+            zipFile.close();
+            return null;
+        }
+
+        return new InputStreamReader(zipFile.getInputStream(zipEntry)) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    zipFile.close();
+                }
+            }
+        };
+    }
+
     /**
      * Asynchronously loads CSV files.
      */
@@ -308,60 +378,38 @@ public class FileImportDialog extends ImportDialog
         @NonNull
         private final String mFilePath;
 
+        /**
+         * The data restored from the saved state, if any
+         */
+        @Nullable
+        private final CSVUtils.CSVHolder mData;
+
         /**
          * @param context  The Context
          * @param filePath The path to the selected file
+         * @param data     The data restored from the saved state, if any
          */
-        CsvLoader(@NonNull Context context, @NonNull String filePath) {
+        CsvLoader(@NonNull Context context, @NonNull String filePath,
+                  @Nullable CSVUtils.CSVHolder data) {
             super(context);
             mFilePath = filePath;
+            mData = data;
         }
 
         @Override
         public CSVUtils.CSVHolder loadInBackground() {
-            if(mFilePath.substring(mFilePath.lastIndexOf('.')).toLowerCase()
-                    .equals(FileUtils.EXT_ZIP)) {
-                final File file = getCsvFromZip();
-                if(file == null) {
+            try {
+                final Reader reader = openCsv(mFilePath);
+                if(reader == null) {
                     return null;
                 }
-                final CSVUtils.CSVHolder holder = CSVUtils.importCSV(getContext(), file);
-                //noinspection ResultOfMethodCallIgnored
-                file.delete();
-                return holder;
-            } else {
-                return CSVUtils.importCSV(getContext(), new File(mFilePath));
-            }
-        }
 
-        /**
-         * Extract the CSV file from the Zip archive to a temp file.
-         *
-         * @return The CSV file
-         */
-        @Nullable
-        private File getCsvFromZip() {
-            ZipFile zipFile = null;
-            try {
-                zipFile = new ZipFile(mFilePath);
-                final String entryName = mFilePath.substring(0, mFilePath.lastIndexOf('.'))
-                        .substring(mFilePath.lastIndexOf('/') + 1) + FileUtils.EXT_CSV;
-                final ZipEntry zipEntry = zipFile.getEntry(entryName);
-                if(zipEntry != null) {
-                    final File file = File.createTempFile("import_", entryName);
-                    FileUtils.dumpStream(zipFile.getInputStream(zipEntry), file);
-
-                    return file;
+                if(mData != null) {
+                    return CSVUtils.loadPreview(getContext(), reader, mData) ? mData : null;
                 }
+                return CSVUtils.importCSV(getContext(), reader);
             } catch(IOException e) {
-                Log.e(TAG, "Unable to extract file", e);
-            } finally {
-                if(zipFile != null) {
-                    try {
-                        zipFile.close();
-                    } catch(IOException ignored) {
-                    }
-                }
+                Log.e(TAG, "Failed to open file", e);
             }
 
             return null;
@@ -437,7 +485,8 @@ public class FileImportDialog extends ImportDialog
     }
 
     /**
-     * Fragment for saving the selected entries in the background.
+     * Fragment for saving the selected entries in the background. The entries are read from the
+     * file again while saving, so they never need to be held in memory all at once.
      */
     public static class DataSaverFragment extends BackgroundProgressDialog {
         private static final String TAG = "DataSaverFragment";
@@ -445,44 +494,66 @@ public class FileImportDialog extends ImportDialog
         /**
          * Keys for the Fragment arguments
          */
-        private static final String ARG_ENTRIES = "entries";
-        private static final String ARG_ZIP_FILE = "zip_file";
+        private static final String ARG_FILE_PATH = "file_path";
+        private static final String ARG_INCLUDE_IMAGES = "include_images";
+        private static final String ARG_CAT_ID = "cat_id";
+        private static final String ARG_NUM_ENTRIES = "num_entries";
+        private static final String ARG_SELECTED = "selected";
+        private static final String ARG_SKIP_DUPLICATES = "skip_duplicates";
+
+        /**
+         * The path to the selected file
+         */
+        private String mFilePath;
 
         /**
-         * The list of entries
+         * Whether to import images from the Zip file
          */
-        private ArrayList<EntryHolder> mEntries;
+        private boolean mIncludeImages;
 
         /**
-         * The path to the Zip file containing images
+         * The category ID to assign to all entries, or 0 to use the category from the file
          */
-        @Nullable
-        private String mImageZip;
+        private long mCatId;
 
         /**
-         * Start a new instance of this Fragment.
-         *
-         * @param fm      The FragmentManager to use
-         * @param entries The list of entries
+         * The total number of entries in the file
          */
-        static void init(@NonNull FragmentManager fm, @NonNull ArrayList<EntryHolder> entries) {
-            init(fm, entries, null);
-        }
+        private int mNumEntries;
+
+        /**
+         * Whether each of the preview entries is selected
+         */
+        private boolean[] mSelected;
+
+        /**
+         * Whether to skip duplicate entries that are not part of the preview
+         */
+        private boolean mSkipDuplicates;
 
         /**
          * Start a new instance of this Fragment.
          *
-         * @param fm       The FragmentManager to use
-         * @param entries  The list of entries
-         * @param imageZip The path to the Zip file containing images
+         * @param fm             The FragmentManager to use
+         * @param filePath       The path to the selected file
+         * @param includeImages  Whether to import images from the Zip file
+         * @param data           The data loaded from the CSV file
+         * @param selected       Whether each of the preview entries is selected
+         * @param skipDuplicates Whether to skip duplicate entries that are not part of the
+         *                       preview
          */
-        static void init(@NonNull FragmentManager fm, @NonNull ArrayList<EntryHolder> entries,
-                         @Nullable String imageZip) {
+        static void init(@NonNull FragmentManager fm, @NonNull String filePath,
+                         boolean includeImages, @NonNull CSVUtils.CSVHolder data,
+                         @NonNull boolean[] selected, boolean skipDuplicates) {
             final DialogFragment fragment = new DataSaverFragment();
 
             final Bundle args = new Bundle();
-            args.putParcelableArrayList(ARG_ENTRIES, entries);
-            args.putString(ARG_ZIP_FILE, imageZip);
+            args.putString(ARG_FILE_PATH, filePath);
+            args.putBoolean(ARG_INCLUDE_IMAGES, includeImages);
+            args.putLong(ARG_CAT_ID, data.catId);
+            args.putInt(ARG_NUM_ENTRIES, data.numEntries);
+            args.putBooleanArray(ARG_SELECTED, selected);
+            args.putBoolean(ARG_SKIP_DUPLICATES, skipDuplicates);
             fragment.setArguments(args);
 
             fragment.show(fm, TAG);
@@ -494,8 +565,12 @@ public class FileImportDialog extends ImportDialog
 
             final Bundle args = getArguments();
             if(args != null) {
-                mEntries = args.getParcelableArrayList(ARG_ENTRIES);
-                mImageZip = args.getString(ARG_ZIP_FILE);
+                mFilePath = args.getString(ARG_FILE_PATH);
+                mIncludeImages = args.getBoolean(ARG_INCLUDE_IMAGES);
+                mCatId = args.getLong(ARG_CAT_ID);
+                mNumEntries = args.getInt(ARG_NUM_ENTRIES);
+                mSelected = args.getBooleanArray(ARG_SELECTED);
+                mSkipDuplicates = args.getBoolean(ARG_SKIP_DUPLICATES);
             }
         }
 
@@ -509,7 +584,7 @@ public class FileImportDialog extends ImportDialog
             dialog.setTitle(R.string.title_importing);
             dialog.setIndeterminate(false);
             dialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
-            dialog.setMax(mEntries.size());
+            dialog.setMax(mNumEntries);
 
             return dialog;
         }
@@ -517,8 +592,9 @@ public class FileImportDialog extends ImportDialog
         @Override
         protected void startTask() {
             final Context context = getContext();
-            if(context != null) {
-                new SaveTask(context, this, mEntries, mImageZip).execute();
+            if(context != null && mFilePath != null) {
+                new SaveTask(context, this, mFilePath, mIncludeImages, mCatId, mSelected,
+                        mSkipDuplicates).execute();
             }
         }
 
@@ -526,6 +602,21 @@ public class FileImportDialog extends ImportDialog
          * Task for saving entries in the background.
          */
         private static class SaveTask extends AsyncTask<Void, Integer, Void> {
+            /**
+             * The maximum number of entries to insert in one transaction
+             */
+            private static final int BATCH_SIZE = 50;
+
+            /**
+             * The maximum number of entries waiting for their images to be extracted
+             */
+            private static final int MAX_PENDING = BATCH_SIZE * 4;
+
+            /**
+             * The maximum number of threads extracting images
+             */
+            private static final int MAX_THREADS = 4;
+
             /**
              * The Context reference
              */
@@ -539,16 +630,31 @@ public class FileImportDialog extends ImportDialog
             private final DataSaverFragment mFragment;
 
             /**
-             * The list of entries
+             * The path to the selected file
              */
             @NonNull
-            private final ArrayList<EntryHolder> mEntries;
+            private final String mFilePath;
 
             /**
-             * The path to the Zip file containing images
+             * Whether to import images from the Zip file
              */
-            @Nullable
-            private final String mImageZip;
+            private final boolean mIncludeImages;
+
+            /**
+             * The category ID to assign to all entries, or 0 to use the category from the file
+             */
+            private final long mCatId;
+
+            /**
+             * Whether each of the preview entries is selected
+             */
+            @NonNull
+            private final boolean[] mSelected;
+
+            /**
+             * Whether to skip duplicate entries that are not part of the preview
+             */
+            private final boolean mSkipDuplicates;
 
             /**
              * The Zip file containing the files being imported
@@ -557,22 +663,47 @@ public class FileImportDialog extends ImportDialog
             private ZipFile mZipFile;
 
             /**
-             * Map of directories in the Zip file
+             * The number of entries that have been read but not had their images extracted
+             */
+            @NonNull
+            private final AtomicInteger mExtracting = new AtomicInteger();
+
+            /**
+             * The UUIDs of the entries from the file that have been queued for import
+             */
+            @NonNull
+            private final HashSet<String> mQueuedUuids = new HashSet<>();
+
+            /**
+             * The number of entries from the file that have been read
+             */
+            private int mRead;
+
+            /**
+             * The number of entries from the file that have been written or skipped
              */
-            private HashMap<String, HashMap<String, ZipEntry>> mZipDirs;
+            private int mSaved;
 
             /**
-             * @param context  The Context
-             * @param fragment The Fragment
-             * @param entries  The list of entries
-             * @param imageZip The path to the Zip file containing images
+             * @param context        The Context
+             * @param fragment       The Fragment
+             * @param filePath       The path to the selected file
+             * @param includeImages  Whether to import images from the Zip file
+             * @param catId          The category ID to assign to all entries, or 0
+             * @param selected       Whether each of the preview entries is selected
+             * @param skipDuplicates Whether to skip duplicate entries that are not part of the
+             *                       preview
              */
             SaveTask(@NonNull Context context, @NonNull DataSaverFragment fragment,
-                     @NonNull ArrayList<EntryHolder> entries, @Nullable String imageZip) {
+                     @NonNull String filePath, boolean includeImages, long catId,
+                     @Nullable boolean[] selected, boolean skipDuplicates) {
                 mContext = new WeakReference<>(context.getApplicationContext());
                 mFragment = fragment;
-                mEntries = entries;
-                mImageZip = imageZip;
+                mFilePath = filePath;
+                mIncludeImages = includeImages;
+                mCatId = catId;
+                mSelected = selected != null ? selected : new boolean[0];
+                mSkipDuplicates = skipDuplicates;
             }
 
             @Override
@@ -582,39 +713,62 @@ public class FileImportDialog extends ImportDialog
                     return null;
                 }
 
-                if(mImageZip != null) {
+                final CSVUtils.EntryReader reader;
+                try {
+                    final Reader source = openCsv(mFilePath);
+                    reader = source != null ? CSVUtils.EntryReader.open(context, source, true)
+                            : null;
+                } catch(IOException e) {
+                    Log.e(TAG, "Failed to open file", e);
+                    return null;
+                }
+                if(reader == null) {
+                    return null;
+                }
+
+                ExecutorService executor = null;
+                if(mIncludeImages) {
                     try {
-                        mZipFile = new ZipFile(mImageZip);
-                        mZipDirs = new HashMap<>();
-                        ZipEntry entry;
-                        String[] parts;
-                        for(Enumeration<? extends ZipEntry> e = mZipFile.entries(); e.hasMoreElements(); ) {
-                            entry = e.nextElement();
-                            parts = TextUtils.split(entry.getName(), "/");
-                            if(parts.length != 2) {
-                                continue;
-                            }
+                        mZipFile = new ZipFile(mFilePath);
+                        final int threads = Math.min(MAX_THREADS,
+                                Runtime.getRuntime().availableProcessors());
+                        executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+                    } catch(IOException e) {
+                        Log.w(TAG, "Failed to open Zip file", e);
+                    }
+                }
 
-                            if(!mZipDirs.containsKey(parts[0])) {
-                                mZipDirs.put(parts[0], new HashMap<String, ZipEntry>());
+                try {
+                    final UuidSet uuids = UuidSet.load(context.getContentResolver());
+                    final TitleResolver titles = new TitleResolver(context.getContentResolver());
+                    final ArrayDeque<PendingEntry> pending = new ArrayDeque<>();
+                    final ArrayList<EntryHolder> batch = new ArrayList<>();
+                    EntryHolder entry;
+                    while((entry = reader.next()) != null) {
+                        if(isSelected(mRead, entry, uuids)) {
+                            if(mCatId > 0) {
+                                entry.catId = mCatId;
                             }
+                            pending.add(new PendingEntry(entry, mRead + 1,
+                                    submitImages(executor, entry)));
+                        }
+                        mRead++;
 
-                            mZipDirs.get(parts[0]).put(parts[1], entry);
+                        if(pending.isEmpty() && batch.isEmpty()) {
+                            mSaved = mRead;
                         }
-                    } catch(IOException e) {
-                        Log.w(TAG, "Failed to open Zip file", e);
+                        saveEntries(context, pending, batch, uuids, titles, false);
+                        publishProgress(mSaved, mRead - mExtracting.get());
                     }
-                }
 
-                int i = 0;
-                for(EntryHolder entry : mEntries) {
-                    try {
-                        importImages(entry);
-                        EntryUtils.insertEntry(context, entry);
-                    } catch(SQLiteException e) {
-                        Log.e(TAG, "Failed to insert entry: " + entry.title, e);
+                    saveEntries(context, pending, batch, uuids, titles, true);
+                    mSaved = mRead;
+                    publishProgress(mSaved, mRead);
+                } finally {
+                    reader.close();
+                    if(executor != null) {
+                        executor.shutdownNow();
                     }
-                    publishProgress(++i);
                 }
 
                 if(mZipFile != null) {
@@ -627,6 +781,103 @@ public class FileImportDialog extends ImportDialog
                 return null;
             }
 
+            /**
+             * Queue the images for an entry to be extracted from the Zip file in the background.
+             *
+             * @param executor The ExecutorService extracting images, or null if there are none
+             * @param entry    The entry
+             * @return The Future for the extraction, or null if there is nothing to extract
+             */
+            @Nullable
+            private Future<?> submitImages(@Nullable ExecutorService executor,
+                                           @NonNull final EntryHolder entry) {
+                if(executor == null || entry.uuid == null || entry.getPhotos().isEmpty()) {
+                    return null;
+                }
+
+                mExtracting.incrementAndGet();
+                return executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            importImages(entry);
+                        } finally {
+                            mExtracting.decrementAndGet();
+                        }
+                    }
+                });
+            }
+
+            /**
+             * Move entries whose images have been extracted into the batch, in the order they
+             * were read, and insert the batch once it is full. Blocks on the oldest entry if too
+             * many entries are waiting.
+             *
+             * @param context The Context
+             * @param pending The entries waiting for their images to be extracted
+             * @param batch   The entries waiting to be inserted
+             * @param uuids   The UUIDs of the existing entries
+             * @param titles  The TitleResolver to use for the import
+             * @param finish  Whether to wait for and insert all remaining entries
+             */
+            private void saveEntries(@NonNull Context context,
+                                     @NonNull ArrayDeque<PendingEntry> pending,
+                                     @NonNull ArrayList<EntryHolder> batch,
+                                     @NonNull UuidSet uuids, @NonNull TitleResolver titles,
+                                     boolean finish) {
+                PendingEntry head;
+                while((head = pending.peekFirst()) != null) {
+                    if(!finish && pending.size() < MAX_PENDING && head.future != null
+                            && !head.future.isDone()) {
+                        break;
+                    }
+                    pending.removeFirst();
+
+                    if(head.future != null) {
+                        try {
+                            head.future.get();
+                        } catch(InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        } catch(ExecutionException e) {
+                            Log.w(TAG, "Failed to extract images for: " + head.entry.title, e);
+                        }
+                    }
+
+                    batch.add(head.entry);
+                    if(batch.size() >= BATCH_SIZE) {
+                        EntryUtils.insertEntries(context, batch, uuids, titles);
+                        batch.clear();
+                        mSaved = head.index;
+                        publishProgress(mSaved, mRead - mExtracting.get());
+                    }
+                }
+
+                if(finish && !batch.isEmpty()) {
+                    EntryUtils.insertEntries(context, batch, uuids, titles);
+                    batch.clear();
+                }
+            }
+
+            /**
+             * Check whether an entry should be imported.
+             *
+             * @param index The index of the entry in the file
+             * @param entry The entry
+             * @param uuids The UUIDs of the existing entries
+             * @return Whether the entry should be imported
+             */
+            private boolean isSelected(int index, @NonNull EntryHolder entry,
+                                       @NonNull UuidSet uuids) {
+                if(index < mSelected.length) {
+                    return mSelected[index];
+                }
+                if(!mSkipDuplicates || entry.uuid == null) {
+                    return true;
+                }
+                return !uuids.contains(entry.uuid) && mQueuedUuids.add(entry.uuid);
+            }
+
             /**
              * Import images from the Zip file.
              *
@@ -637,23 +888,22 @@ public class FileImportDialog extends ImportDialog
                     return;
                 }
 
-                final HashMap<String, ZipEntry> zipEntries = mZipDirs.get(entry.uuid);
-                if(zipEntries == null) {
-                    return;
-                }
-
                 InputStream inputStream = null;
                 for(PhotoHolder photoHolder : entry.getPhotos()) {
-                    String fileName = photoHolder.uri.getLastPathSegment();
-                    if(!zipEntries.containsKey(fileName)) {
+                    final String fileName = photoHolder.uri.getLastPathSegment();
+                    final ZipEntry zipEntry = mZipFile.getEntry(entry.uuid + "/" + fileName);
+                    if(zipEntry == null) {
                         continue;
                     }
 
                     try {
-                        inputStream = mZipFile.getInputStream(zipEntries.get(fileName));
-                        final File file = PhotoUtils.savePhotoFromStream(inputStream,
-                                fileName.substring(fileName.indexOf('_') + 1));
-                        photoHolder.uri = Uri.fromFile(file);
+                        inputStream = mZipFile.getInputStream(zipEntry);
+                        final PhotoUtils.SavedPhoto savedPhoto =
+                                PhotoUtils.savePhotoFromStream(inputStream,
+                                        fileName.substring(fileName.indexOf('_') + 1));
+                        photoHolder.uri = savedPhoto.uri;
+                        photoHolder.hash = savedPhoto.hash;
+                        photoHolder.rotation = savedPhoto.rotation;
                     } catch(IOException e) {
                         Log.w(TAG, "Failed to save image file", e);
                     } finally {
@@ -662,6 +912,7 @@ public class FileImportDialog extends ImportDialog
                                 inputStream.close();
                             } catch(IOException ignored) {
                             }
+                            inputStream = null;
                         }
                     }
                 }
@@ -674,6 +925,7 @@ public class FileImportDialog extends ImportDialog
                 final ProgressDialog dialog = (ProgressDialog)mFragment.getDialog();
                 if(dialog != null) {
                     dialog.setProgress(values[0]);
+                    dialog.setSecondaryProgress(values[1]);
                 }
             }
 
@@ -689,6 +941,39 @@ public class FileImportDialog extends ImportDialog
 
                 mFragment.dismiss();
             }
+
+            /**
+             * An entry waiting for its images to be extracted.
+             */
+            private static class PendingEntry {
+                /**
+                 * The entry
+                 */
+                @NonNull
+                final EntryHolder entry;
+
+                /**
+                 * The number of entries read from the file up to and including this one
+                 */
+                final int index;
+
+                /**
+                 * The Future for the image extraction, or null if there are no images
+                 */
+                @Nullable
+                final Future<?> future;
+
+                /**
+                 * @param entry  The entry
+                 * @param index  The number of entries read from the file up to this one
+                 * @param future The Future for the image extraction, or null
+                 */
+                PendingEntry(@NonNull EntryHolder entry, int index, @Nullable Future<?> future) {
+                    this.entry = entry;
+                    this.index = index;
+                    this.future = future;
+                }
+            }
         }
     }
 }
@@ -56,6 +56,7 @@ public abstract class ImportDialog extends DialogFragment {
     private FrameLayout mListContainer;
     private ListView mListView;
     private ProgressBar mProgressBar;
+    private TextView mMoreEntries;
     AppCompatCheckBox mIncludeImages;
 
     @NonNull
@@ -86,6 +87,8 @@ public abstract class ImportDialog extends DialogFragment {
 
         mProgressBar = root.findViewById(R.id.progress);
 
+        mMoreEntries = root.findViewById(R.id.more_entries);
+
         mIncludeImages = root.findViewById(R.id.include_images);
 
         return new AlertDialog.Builder(context)
@@ -119,8 +122,31 @@ public abstract class ImportDialog extends DialogFragment {
     final void invalidateButtons() {
         final AlertDialog dialog = (AlertDialog)getDialog();
         if(dialog != null) {
-            final boolean itemSelected = mListView.getCheckedItemCount() > 0;
-            dialog.getButton(DialogInterface.BUTTON_POSITIVE).setEnabled(itemSelected);
+            dialog.getButton(DialogInterface.BUTTON_POSITIVE).setEnabled(hasSelection());
+        }
+    }
+
+    /**
+     * Check whether there are any entries to import.
+     *
+     * @return Whether any entries are selected
+     */
+    boolean hasSelection() {
+        return mListView.getCheckedItemCount() > 0;
+    }
+
+    /**
+     * Show the number of entries that will be imported but are not shown in the list.
+     *
+     * @param count The number of entries not shown
+     */
+    void showNumHidden(int count) {
+        if(count > 0) {
+            mMoreEntries.setText(getResources().getQuantityString(R.plurals.more_entries, count,
+                    count));
+            mMoreEntries.setVisibility(View.VISIBLE);
+        } else {
+            mMoreEntries.setVisibility(View.GONE);
         }
     }
 
@@ -33,6 +33,7 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.BaseAdapter;
 import android.widget.GridView;
 import android.widget.ImageView;
@@ -53,11 +54,6 @@ import java.util.ArrayList;
  * @author Steve Guidetti
  */
 public class AddPhotosFragment extends AbsPhotosFragment {
-    /**
-     * Keys for the saved state
-     */
-    private static final String STATE_CACHE = "cache";
-
     /**
      * The Adapter backing the GridView
      */
@@ -67,7 +63,7 @@ public class AddPhotosFragment extends AbsPhotosFragment {
      * Memory cache for Bitmaps
      */
     @NonNull
-    private BitmapCache mCache = new BitmapCache();
+    private final BitmapCache mCache = BitmapCache.getInstance();
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -75,12 +71,6 @@ public class AddPhotosFragment extends AbsPhotosFragment {
         if(!isMediaReadable()) {
             return;
         }
-        if(savedInstanceState != null) {
-            final BitmapCache cache = savedInstanceState.getParcelable(STATE_CACHE);
-            if(cache != null) {
-                mCache = cache;
-            }
-        }
         mAdapter = new ImageAdapter();
     }
 
@@ -92,15 +82,40 @@ public class AddPhotosFragment extends AbsPhotosFragment {
             return super.onCreateView(inflater, container, savedInstanceState);
         }
 
-        final View root = inflater.inflate(R.layout.fragment_add_photos, container, false);
-        ((GridView)root).setAdapter(mAdapter);
-        return root;
+        final GridView gridView =
+                (GridView)inflater.inflate(R.layout.fragment_add_photos, container, false);
+        gridView.setAdapter(mAdapter);
+        gridView.setRecyclerListener(new AbsListView.RecyclerListener() {
+            @Override
+            public void onMovedToScrapHeap(View view) {
+                unbindImage(view);
+            }
+        });
+        return gridView;
     }
 
     @Override
-    public void onSaveInstanceState(@NonNull Bundle outState) {
-        super.onSaveInstanceState(outState);
-        outState.putParcelable(STATE_CACHE, mCache);
+    public void onDestroyView() {
+        final View root = getView();
+        if(root instanceof GridView) {
+            final GridView gridView = (GridView)root;
+            for(int i = 0; i < gridView.getChildCount(); i++) {
+                unbindImage(gridView.getChildAt(i));
+            }
+        }
+        super.onDestroyView();
+    }
+
+    /**
+     * Release the image shown by an item View so it can be reused once it leaves the cache.
+     *
+     * @param view The item View
+     */
+    private void unbindImage(@NonNull View view) {
+        final Object tag = view.getTag();
+        if(tag instanceof Holder) {
+            mCache.unbind(((Holder)tag).image);
+        }
     }
 
     @Override
@@ -290,7 +305,7 @@ public class AddPhotosFragment extends AbsPhotosFragment {
          */
         private void loadImage(ImageView view, Uri uri) {
             final Bitmap bitmap = mCache.get(uri);
-            view.setImageBitmap(bitmap);
+            mCache.bind(view, uri, bitmap);
             if(bitmap == null) {
                 new ImageLoader(view, mFrameSize, mFrameSize, uri, mCache).execute();
             }
@@ -23,11 +23,13 @@
 package com.ultramegasoft.flavordex2.fragment;
 
 import android.app.Activity;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.graphics.Paint;
 import android.net.Uri;
@@ -35,6 +37,7 @@ import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.RemoteException;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.FragmentManager;
@@ -45,6 +48,7 @@ import android.text.Editable;
 import android.text.InputFilter;
 import android.text.TextUtils;
 import android.text.TextWatcher;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -73,6 +77,8 @@ import java.util.ArrayList;
  */
 public class EditCatFragment extends LoadingProgressFragment
         implements LoaderManager.LoaderCallbacks<EditCatFragment.DataLoader.Holder> {
+    private static final String TAG = "EditCatFragment";
+
     /**
      * Keys for the Fragment arguments
      */
@@ -793,90 +799,125 @@ public class EditCatFragment extends LoadingProgressFragment
                 return null;
             }
 
-            final Uri catUri = updateCat();
-            if(catUri != null) {
-                updateExtras(catUri);
-                updateFlavors(catUri);
+            final ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+            final int catIndex = updateCat(ops);
+            updateExtras(ops, catIndex);
+            updateFlavors(ops, catIndex);
+
+            try {
+                mResolver.applyBatch(FlavordexApp.AUTHORITY, ops);
+            } catch(RemoteException | OperationApplicationException e) {
+                Log.e(TAG, "Failed to save category", e);
             }
 
             return null;
         }
 
         /**
-         * Insert or update the basic information about the category.
+         * Add the operation to insert or update the basic information about the category.
          *
-         * @return The base Uri for the category record
+         * @param ops The list of operations
+         * @return The index of the operation inserting the category, or -1 if updating
          */
-        @Nullable
-        private Uri updateCat() {
-            final Uri uri;
+        private int updateCat(@NonNull ArrayList<ContentProviderOperation> ops) {
             if(mCatId > 0) {
-                uri = ContentUris.withAppendedId(Tables.Cats.CONTENT_ID_URI_BASE, mCatId);
                 if(mCatInfo.size() > 0) {
-                    mResolver.update(uri, mCatInfo, null, null);
+                    final Uri uri =
+                            ContentUris.withAppendedId(Tables.Cats.CONTENT_ID_URI_BASE, mCatId);
+                    ops.add(ContentProviderOperation.newUpdate(uri).withValues(mCatInfo).build());
                 }
-            } else {
-                uri = mResolver.insert(Tables.Cats.CONTENT_URI, mCatInfo);
+                return -1;
             }
-            return uri;
+
+            ops.add(ContentProviderOperation.newInsert(Tables.Cats.CONTENT_URI)
+                    .withValues(mCatInfo).build());
+            return ops.size() - 1;
         }
 
         /**
-         * Insert, update, or delete the extra fields for the category.
+         * Add the operations to insert, update, or delete the extra fields for the category.
          *
-         * @param catUri The base Uri for the category
+         * @param ops      The list of operations
+         * @param catIndex The index of the operation inserting the category, or -1 if updating
          */
-        private void updateExtras(@NonNull Uri catUri) {
-            final Uri insertUri = Uri.withAppendedPath(catUri, "extras");
+        private void updateExtras(@NonNull ArrayList<ContentProviderOperation> ops,
+                                  int catIndex) {
             Uri uri;
-            final ContentValues values = new ContentValues();
             int pos = 0;
             for(Field field : mExtras) {
                 if(field.id > 0) {
                     uri = ContentUris.withAppendedId(Tables.Extras.CONTENT_ID_URI_BASE, field.id);
                     if(field.delete) {
-                        mResolver.delete(uri, null, null);
+                        ops.add(ContentProviderOperation.newDelete(uri).build());
                     } else {
-                        values.put(Tables.Extras.NAME, EntryUtils.filterName(field.name));
-                        values.put(Tables.Extras.POS, pos++);
-                        values.put(Tables.Extras.DELETED, false);
-                        mResolver.update(uri, values, null, null);
+                        ops.add(ContentProviderOperation.newUpdate(uri)
+                                .withValue(Tables.Extras.NAME, EntryUtils.filterName(field.name))
+                                .withValue(Tables.Extras.POS, pos++)
+                                .withValue(Tables.Extras.DELETED, false)
+                                .build());
                     }
                 } else if(!field.isEmpty()) {
-                    values.put(Tables.Extras.NAME, EntryUtils.filterName(field.name));
-                    values.put(Tables.Extras.POS, pos++);
-                    mResolver.insert(insertUri, values);
+                    ops.add(getInsertBuilder(Tables.Extras.CONTENT_URI, Tables.Extras.CAT,
+                            catIndex)
+                            .withValue(Tables.Extras.NAME, EntryUtils.filterName(field.name))
+                            .withValue(Tables.Extras.POS, pos++)
+                            .build());
                 }
             }
         }
 
         /**
-         * Insert, update, or delete the flavors for the category.
+         * Add the operations to insert, update, or delete the flavors for the category.
          *
-         * @param catUri The base Uri for the category
+         * @param ops      The list of operations
+         * @param catIndex The index of the operation inserting the category, or -1 if updating
          */
-        private void updateFlavors(@NonNull Uri catUri) {
-            final Uri insertUri = Uri.withAppendedPath(catUri, "flavor");
+        private void updateFlavors(@NonNull ArrayList<ContentProviderOperation> ops,
+                                   int catIndex) {
             Uri uri;
-            final ContentValues values = new ContentValues();
             int pos = 0;
             for(Field field : mFlavors) {
                 if(field.id > 0) {
                     uri = ContentUris.withAppendedId(Tables.Flavors.CONTENT_ID_URI_BASE, field.id);
                     if(field.delete) {
-                        mResolver.delete(uri, null, null);
+                        ops.add(ContentProviderOperation.newDelete(uri).build());
                     } else {
-                        values.put(Tables.Flavors.NAME, field.name);
-                        values.put(Tables.Flavors.POS, pos++);
-                        mResolver.update(uri, values, null, null);
+                        ops.add(ContentProviderOperation.newUpdate(uri)
+                                .withValue(Tables.Flavors.NAME, field.name)
+                                .withValue(Tables.Flavors.POS, pos++)
+                                .build());
                     }
                 } else if(!field.isEmpty()) {
-                    values.put(Tables.Flavors.NAME, field.name);
-                    values.put(Tables.Flavors.POS, pos++);
-                    mResolver.insert(insertUri, values);
+                    ops.add(getInsertBuilder(Tables.Flavors.CONTENT_URI, Tables.Flavors.CAT,
+                            catIndex)
+                            .withValue(Tables.Flavors.NAME, field.name)
+                            .withValue(Tables.Flavors.POS, pos++)
+                            .build());
                 }
             }
         }
+
+        /**
+         * Get a builder for an insert operation on a table referencing the category.
+         *
+         * @param uri      The Uri to insert into
+         * @param column   The name of the column referencing the category
+         * @param catIndex The index of the operation inserting the category, or -1 if updating
+         * @return The builder with the category reference set
+         */
+        @NonNull
+        private ContentProviderOperation.Builder getInsertBuilder(@NonNull Uri uri,
+                                                                  @NonNull String column,
+                                                                  int catIndex) {
+            final ContentProviderOperation.Builder builder =
+                    ContentProviderOperation.newInsert(uri);
+            if(catIndex < 0) {
+                builder.withValue(column, mCatId);
+            } else {
+                builder.withValueBackReference(column, catIndex);
+            }
+            return builder;
+        }
     }
 
     /**
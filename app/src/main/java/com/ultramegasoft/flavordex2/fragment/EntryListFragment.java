@@ -29,6 +29,8 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.MergeCursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
@@ -38,6 +40,7 @@ import android.support.annotation.Nullable;
 import android.support.v4.app.FragmentManager;
 import android.support.v4.app.ListFragment;
 import android.support.v4.app.LoaderManager;
+import android.support.v4.content.AsyncTaskLoader;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.ActionBar;
@@ -70,6 +73,9 @@ import com.ultramegasoft.flavordex2.util.EntryDeleter;
 import com.ultramegasoft.flavordex2.util.EntryUtils;
 import com.ultramegasoft.flavordex2.widget.EntryListAdapter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The main entry list Fragment. Shows a list of all the journal entries in a category.
  *
@@ -111,6 +117,11 @@ public class EntryListFragment extends ListFragment
     private static final int LOADER_ENTRIES = 0;
     private static final int LOADER_CAT = 1;
 
+    /**
+     * The number of rows from the end of the loaded entries at which to load the next page
+     */
+    private static final int PREFETCH_ROWS = 30;
+
     /**
      * The fields to query from the database
      */
@@ -266,9 +277,26 @@ public class EntryListFragment extends ListFragment
             setListAdapter(mAdapter);
         }
 
-        setExportMode(mExportMode, false);
+        getListView().setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                                 int totalItemCount) {
+                if(totalItemCount > 0
+                        && firstVisibleItem + visibleItemCount >= totalItemCount - PREFETCH_ROWS) {
+                    final EntriesLoader loader = getEntriesLoader();
+                    if(loader != null) {
+                        loader.loadMore();
+                    }
+                }
+            }
+        });
 
         getLoaderManager().initLoader(LOADER_ENTRIES, null, this);
+        setExportMode(mExportMode, false);
         if(mCatId > 0) {
             getLoaderManager().initLoader(LOADER_CAT, null, this);
         } else {
@@ -630,9 +658,27 @@ public class EntryListFragment extends ListFragment
         listView.setItemChecked(mAdapter.getItemIndex(mActivatedItem), !exportMode && mTwoPane);
         showExportToolbar(exportMode, animate);
 
+        if(exportMode) {
+            final EntriesLoader loader = getEntriesLoader();
+            if(loader != null) {
+                loader.loadAll();
+            }
+        }
+
         mExportMode = exportMode;
     }
 
+    /**
+     * Get the Loader for the list of entries.
+     *
+     * @return The EntriesLoader, or null if it has not been created
+     */
+    @Nullable
+    private EntriesLoader getEntriesLoader() {
+        final Loader<Cursor> loader = getLoaderManager().getLoader(LOADER_ENTRIES);
+        return loader instanceof EntriesLoader ? (EntriesLoader)loader : null;
+    }
+
     /**
      * Show or hide the export Toolbar.
      *
@@ -741,8 +787,12 @@ public class EntryListFragment extends ListFragment
                 } else {
                     uri = Tables.Entries.CONTENT_URI;
                 }
-                final String sort = mSortField + (mSortReversed ? " DESC" : " ASC");
-                return new CursorLoader(context, uri, LIST_PROJECTION, mWhere, mWhereArgs, sort);
+                final EntriesLoader loader = new EntriesLoader(context, uri, mWhere, mWhereArgs,
+                        mSortField, mSortReversed);
+                if(mExportMode) {
+                    loader.loadAll();
+                }
+                return loader;
             case LOADER_CAT:
                 return new CursorLoader(context,
                         ContentUris.withAppendedId(Tables.Cats.CONTENT_ID_URI_BASE, mCatId),
@@ -805,4 +855,388 @@ public class EntryListFragment extends ListFragment
                 break;
         }
     }
+
+    /**
+     * Loads the list of entries one page at a time. Each page is found using keyset pagination on
+     * the sort column and the entry ID, so the time to load the first rows does not depend on the
+     * size of the journal. The title, date and rating columns are indexed alone and after the
+     * category, so each page is read by seeking an index. Sorting by a column of a joined table,
+     * such as the maker name, is not covered by an index and would sort all the remaining rows.
+     */
+    private static class EntriesLoader extends AsyncTaskLoader<Cursor> {
+        /**
+         * The number of rows to load in each page
+         */
+        private static final int PAGE_SIZE = 100;
+
+        /**
+         * The ContentObserver to notify of changes to the data
+         */
+        @NonNull
+        private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+
+        /**
+         * The Uri to query
+         */
+        @NonNull
+        private final Uri mUri;
+
+        /**
+         * The where clause and its arguments
+         */
+        @Nullable
+        private final String mWhere;
+        @Nullable
+        private final String[] mWhereArgs;
+
+        /**
+         * The database column to sort by
+         */
+        @NonNull
+        private final String mSortField;
+
+        /**
+         * Whether to sort entries in reverse order
+         */
+        private final boolean mSortReversed;
+
+        /**
+         * The currently loaded rows
+         */
+        @Nullable
+        private PagedCursor mCursor;
+
+        /**
+         * Whether the data has changed and all the loaded rows need to be queried again
+         */
+        private boolean mReload;
+
+        /**
+         * Whether to load all the remaining rows rather than the next page
+         */
+        private boolean mLoadAll;
+
+        /**
+         * Whether a load is in progress
+         */
+        private boolean mLoading;
+
+        /**
+         * @param context      The Context
+         * @param uri          The Uri to query
+         * @param where        The where clause
+         * @param whereArgs    The values for the parameters of the where clause
+         * @param sortField    The database column to sort by
+         * @param sortReversed Whether to sort entries in reverse order
+         */
+        EntriesLoader(@NonNull Context context, @NonNull Uri uri, @Nullable String where,
+                      @Nullable String[] whereArgs, @NonNull String sortField,
+                      boolean sortReversed) {
+            super(context);
+            mUri = uri;
+            mWhere = where;
+            mWhereArgs = whereArgs;
+            mSortField = sortField;
+            mSortReversed = sortReversed;
+        }
+
+        /**
+         * Load the next page of rows if there are any left.
+         */
+        void loadMore() {
+            if(!mLoading && mCursor != null && !mCursor.mComplete) {
+                forceLoad();
+            }
+        }
+
+        /**
+         * Load all the remaining rows.
+         */
+        void loadAll() {
+            if(!mLoadAll) {
+                mLoadAll = true;
+                if(mCursor != null && !mCursor.mComplete) {
+                    forceLoad();
+                }
+            }
+        }
+
+        @Override
+        public Cursor loadInBackground() {
+            final PagedCursor previous = mCursor;
+            final ArrayList<Cursor> pages = new ArrayList<>();
+            final Cursor page;
+            final int limit;
+            final String id = Tables.Entries._ID;
+            final String order = mSortReversed ? " < ?" : " > ?";
+            boolean firstGroup = false;
+            if(previous == null || mReload) {
+                limit = mLoadAll ? 0 : Math.max(PAGE_SIZE, previous != null ? previous.mCount : 0);
+                page = query(limit, null, null);
+                if(page != null) {
+                    page.registerContentObserver(mObserver);
+                }
+            } else {
+                pages.addAll(previous.mPages);
+                limit = mLoadAll ? 0 : PAGE_SIZE;
+                final String lastId = String.valueOf(previous.mLastId);
+                firstGroup = (previous.mLastValue == null) != mSortReversed;
+                if(previous.mLastValue == null) {
+                    page = query(limit, mSortField + " IS NULL AND " + id + order,
+                            new String[] {lastId});
+                } else {
+                    final String lastValue = previous.mLastValue;
+                    page = query(limit, mSortField + (mSortReversed ? " <= ?" : " >= ?") + " AND ("
+                                    + mSortField + order + " OR " + id + order + ")",
+                            new String[] {lastValue, lastValue, lastId});
+                }
+            }
+
+            if(page == null) {
+                return previous;
+            }
+
+            pages.add(page);
+            Cursor lastPage = page;
+            int pageCount = page.getCount();
+            if(firstGroup && (limit == 0 || pageCount < limit)) {
+                final Cursor rest = query(limit == 0 ? 0 : limit - pageCount,
+                        mSortField + (mSortReversed ? " IS NULL" : " IS NOT NULL"), null);
+                if(rest != null) {
+                    pages.add(rest);
+                    pageCount += rest.getCount();
+                    if(rest.getCount() > 0) {
+                        lastPage = rest;
+                    }
+                }
+            }
+
+            final PagedCursor cursor =
+                    new PagedCursor(pages, limit == 0 || pageCount < limit, previous == null
+                            || mReload);
+            if(lastPage.moveToLast()) {
+                final int sortColumn = lastPage.getColumnIndex(mSortField);
+                if(lastPage.getType(sortColumn) == Cursor.FIELD_TYPE_FLOAT) {
+                    cursor.mLastValue = Double.toString(lastPage.getDouble(sortColumn));
+                } else {
+                    cursor.mLastValue = lastPage.getString(sortColumn);
+                }
+                cursor.mLastId = lastPage.getLong(lastPage.getColumnIndex(id));
+            } else if(previous != null && !cursor.mReloaded) {
+                cursor.mLastValue = previous.mLastValue;
+                cursor.mLastId = previous.mLastId;
+            }
+
+            return cursor;
+        }
+
+        /**
+         * Query a page of rows. The keyset condition is written as a range on the sort column so
+         * that it can be satisfied by seeking the index for the sort column. Since NULL values
+         * sort before all other values, the rows with and without a value are paged through
+         * separately.
+         *
+         * @param limit      The maximum number of rows to return, or 0 for no limit
+         * @param keyset     The condition selecting the rows after the last loaded row, or null
+         *                   to start from the beginning
+         * @param keysetArgs The values for the parameters of the keyset condition
+         * @return The Cursor, or null if the query failed
+         */
+        @Nullable
+        private Cursor query(int limit, @Nullable String keyset, @Nullable String[] keysetArgs) {
+            String where = mWhere;
+            String[] whereArgs = mWhereArgs;
+            if(keyset != null) {
+                if(where == null) {
+                    where = keyset;
+                    whereArgs = keysetArgs;
+                } else {
+                    where = "(" + where + ") AND " + keyset;
+                    if(keysetArgs != null) {
+                        final int count = whereArgs != null ? whereArgs.length : 0;
+                        final String[] args = new String[count + keysetArgs.length];
+                        if(whereArgs != null) {
+                            System.arraycopy(whereArgs, 0, args, 0, count);
+                        }
+                        System.arraycopy(keysetArgs, 0, args, count, keysetArgs.length);
+                        whereArgs = args;
+                    }
+                }
+            }
+
+            Uri uri = mUri;
+            if(limit > 0) {
+                uri = uri.buildUpon()
+                        .appendQueryParameter(Tables.PARAM_LIMIT, String.valueOf(limit)).build();
+            }
+
+            final String order = mSortReversed ? " DESC" : " ASC";
+            final String sort = mSortField + order + ", " + Tables.Entries._ID + order;
+            final Cursor cursor = getContext().getContentResolver()
+                    .query(uri, LIST_PROJECTION, where, whereArgs, sort);
+            if(cursor != null) {
+                cursor.getCount();
+            }
+            return cursor;
+        }
+
+        @Override
+        protected void onForceLoad() {
+            super.onForceLoad();
+            mLoading = true;
+        }
+
+        @Override
+        public void deliverResult(Cursor data) {
+            mLoading = false;
+            final PagedCursor cursor = (PagedCursor)data;
+            if(isReset()) {
+                closePages(cursor, null);
+                return;
+            }
+
+            final PagedCursor oldCursor = mCursor;
+            mCursor = cursor;
+            if(cursor != null && cursor.mReloaded) {
+                mReload = false;
+            }
+
+            if(isStarted()) {
+                super.deliverResult(cursor);
+            }
+
+            if(oldCursor != cursor) {
+                closePages(oldCursor, cursor);
+            }
+
+            if(mLoadAll && cursor != null && !cursor.mComplete) {
+                forceLoad();
+            }
+        }
+
+        @Override
+        public void onCanceled(Cursor data) {
+            mLoading = false;
+            if(data != mCursor) {
+                closePages((PagedCursor)data, mCursor);
+            }
+        }
+
+        @Override
+        public void onContentChanged() {
+            mReload = true;
+            super.onContentChanged();
+        }
+
+        @Override
+        protected void onStartLoading() {
+            if(mCursor != null) {
+                deliverResult(mCursor);
+            }
+            if(takeContentChanged() || mCursor == null) {
+                forceLoad();
+            }
+        }
+
+        @Override
+        protected void onStopLoading() {
+            cancelLoad();
+        }
+
+        @Override
+        protected void onReset() {
+            super.onReset();
+            onStopLoading();
+            closePages(mCursor, null);
+            mCursor = null;
+        }
+
+        /**
+         * Close the pages of a PagedCursor that are not used by another PagedCursor.
+         *
+         * @param cursor The PagedCursor to close
+         * @param keep   The PagedCursor whose pages should be kept open
+         */
+        private static void closePages(@Nullable PagedCursor cursor, @Nullable PagedCursor keep) {
+            if(cursor == null) {
+                return;
+            }
+            for(Cursor page : cursor.mPages) {
+                if(keep == null || !keep.mPages.contains(page)) {
+                    page.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cursor combining the pages of rows loaded by the EntriesLoader. The pages are owned by the
+     * EntriesLoader and shared between successive instances, so closing this Cursor does not
+     * close them.
+     */
+    private static class PagedCursor extends MergeCursor {
+        /**
+         * The pages of rows
+         */
+        @NonNull
+        final List<Cursor> mPages;
+
+        /**
+         * The total number of rows
+         */
+        final int mCount;
+
+        /**
+         * Whether all the rows have been loaded
+         */
+        final boolean mComplete;
+
+        /**
+         * Whether the rows were queried again from the beginning
+         */
+        final boolean mReloaded;
+
+        /**
+         * The value of the sort column and the ID of the last row
+         */
+        @Nullable
+        String mLastValue;
+        long mLastId;
+
+        /**
+         * @param pages    The pages of rows
+         * @param complete Whether all the rows have been loaded
+         * @param reloaded Whether the rows were queried again from the beginning
+         */
+        PagedCursor(@NonNull List<Cursor> pages, boolean complete, boolean reloaded) {
+            super(wrapPages(pages));
+            mPages = pages;
+            mComplete = complete;
+            mReloaded = reloaded;
+            int count = 0;
+            for(Cursor page : pages) {
+                count += page.getCount();
+            }
+            mCount = count;
+        }
+
+        /**
+         * Wrap the pages so they are not closed along with this Cursor.
+         *
+         * @param pages The pages of rows
+         * @return The wrapped pages
+         */
+        @NonNull
+        private static Cursor[] wrapPages(@NonNull List<Cursor> pages) {
+            final Cursor[] cursors = new Cursor[pages.size()];
+            for(int i = 0; i < cursors.length; i++) {
+                cursors[i] = new CursorWrapper(pages.get(i)) {
+                    @Override
+                    public void close() {
+                    }
+                };
+            }
+            return cursors;
+        }
+    }
 }
@@ -55,6 +55,7 @@ import com.ultramegasoft.flavordex2.beer.BeerSearchFormFragment;
 import com.ultramegasoft.flavordex2.coffee.CoffeeSearchFormFragment;
 import com.ultramegasoft.flavordex2.provider.Tables;
 import com.ultramegasoft.flavordex2.util.EntryFormHelper;
+import com.ultramegasoft.flavordex2.util.SearchUtils;
 import com.ultramegasoft.flavordex2.whiskey.WhiskeySearchFormFragment;
 import com.ultramegasoft.flavordex2.widget.CatListAdapter;
 import com.ultramegasoft.flavordex2.widget.DateInputWidget;
@@ -326,6 +327,12 @@ public class EntrySearchFragment extends Fragment implements LoaderManager.Loade
         @NonNull
         private final ArrayList<String> mWhereArgs = new ArrayList<>();
 
+        /**
+         * The full-text query for the text fields
+         */
+        @NonNull
+        private final StringBuilder mMatch = new StringBuilder();
+
         @NonNull
         @Override
         @SuppressWarnings("MethodDoesntCallSuperMethod")
@@ -501,11 +508,17 @@ public class EntrySearchFragment extends Fragment implements LoaderManager.Loade
             mFilters.clear();
             mWhere.setLength(0);
             mWhereArgs.clear();
+            mMatch.setLength(0);
 
             mFilters.put(Tables.Entries.CAT_ID, mCatId);
 
             parseFields();
 
+            if(mMatch.length() > 0) {
+                mWhere.insert(0, SearchUtils.MATCH_SELECTION + " AND ");
+                mWhereArgs.add(0, mMatch.toString());
+            }
+
             if(mWhere.length() > 5) {
                 mWhere.delete(mWhere.length() - 5, mWhere.length());
             }
@@ -521,12 +534,17 @@ public class EntrySearchFragment extends Fragment implements LoaderManager.Loade
          * Parse the form fields.
          */
         void parseFields() {
-            parseTextField(mFormHelper.mTxtTitle, Tables.Entries.TITLE);
-            parseTextField(mFormHelper.mTxtMaker, Tables.Entries.MAKER);
-            parseTextField(mFormHelper.mTxtOrigin, Tables.Entries.ORIGIN);
+            parseSearchField(mFormHelper.mTxtTitle, Tables.Entries.TITLE,
+                    Tables.EntriesSearch.TITLE);
+            parseSearchField(mFormHelper.mTxtMaker, Tables.Entries.MAKER,
+                    Tables.EntriesSearch.MAKER);
+            parseSearchField(mFormHelper.mTxtOrigin, Tables.Entries.ORIGIN,
+                    Tables.EntriesSearch.ORIGIN);
             parseTextField(mFormHelper.mTxtPrice, Tables.Entries.PRICE);
-            parseTextField(mFormHelper.mTxtLocation, Tables.Entries.LOCATION);
-            parseTextField(mFormHelper.mTxtNotes, Tables.Entries.NOTES);
+            parseSearchField(mFormHelper.mTxtLocation, Tables.Entries.LOCATION,
+                    Tables.EntriesSearch.LOCATION);
+            parseSearchField(mFormHelper.mTxtNotes, Tables.Entries.NOTES,
+                    Tables.EntriesSearch.NOTES);
 
             final Date minDate = mDateMin.getDate();
             final Date maxDate = mDateMax.getDate();
@@ -602,7 +620,24 @@ public class EntrySearchFragment extends Fragment implements LoaderManager.Loade
         }
 
         /**
-         * Parse an extra field.
+         * Parse a text field into terms of the full-text query.
+         *
+         * @param field        The text field containing the value
+         * @param fieldName    The name of the database column
+         * @param searchColumn The name of the full-text column
+         */
+        private void parseSearchField(@NonNull EditText field, @NonNull String fieldName,
+                                      @NonNull String searchColumn) {
+            if(!TextUtils.isEmpty(field.getText())) {
+                final String value = field.getText().toString();
+                mFilters.put(fieldName, value);
+                SearchUtils.appendMatchQuery(mMatch, searchColumn, value);
+            }
+        }
+
+        /**
+         * Parse an extra field. Text comparisons also add terms to the full-text query, so only
+         * entries found in the full-text table need to be checked.
          *
          * @param extra      The extra field
          * @param comparison The type of comparison to perform
@@ -611,6 +646,10 @@ public class EntrySearchFragment extends Fragment implements LoaderManager.Loade
                                        @NonNull String comparison) {
             if(!TextUtils.isEmpty(extra.value)) {
                 mFilters.put(EXTRA_PREFIX + extra.id, extra.value);
+                if(COMP_LIKE.equals(comparison)) {
+                    SearchUtils.appendMatchQuery(mMatch, Tables.EntriesSearch.EXTRAS,
+                            extra.value);
+                }
                 final String[] words = extra.value.split(" ");
                 mWhere.append("(SELECT 1 FROM ").append(Tables.EntriesExtras.TABLE_NAME)
                         .append(" WHERE extra = ? AND ");
@@ -24,6 +24,8 @@ package com.ultramegasoft.flavordex2.fragment;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
@@ -58,11 +60,21 @@ public class PhotoFragment extends Fragment implements LoaderManager.LoaderCallb
      */
     public static final String ARG_URI = "uri";
 
+    /**
+     * Argument for the rotation of the image in degrees, if it is known
+     */
+    public static final String ARG_ROTATION = "rotation";
+
     /**
      * The Uri to the image file
      */
     private Uri mUri;
 
+    /**
+     * The rotation of the image in degrees, or ROTATION_UNKNOWN
+     */
+    private int mRotation = PhotoUtils.ROTATION_UNKNOWN;
+
     /**
      * Views from the layout
      */
@@ -80,6 +92,7 @@ public class PhotoFragment extends Fragment implements LoaderManager.LoaderCallb
         if(mUri == null) {
             return null;
         }
+        mRotation = args.getInt(ARG_ROTATION, PhotoUtils.ROTATION_UNKNOWN);
 
         mRootView = inflater.inflate(R.layout.fragment_photo, container, false);
         mProgressBar = mRootView.findViewById(R.id.progress);
@@ -101,6 +114,18 @@ public class PhotoFragment extends Fragment implements LoaderManager.LoaderCallb
         return mRootView;
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if(mImageView != null) {
+            final Drawable drawable = mImageView.getDrawable();
+            mImageView.setImageDrawable(null);
+            if(drawable instanceof BitmapDrawable) {
+                PhotoUtils.getBitmapPool().put(((BitmapDrawable)drawable).getBitmap());
+            }
+        }
+    }
+
     /**
      * Load the image file.
      */
@@ -185,7 +210,8 @@ public class PhotoFragment extends Fragment implements LoaderManager.LoaderCallb
             return null;
         }
 
-        return new PhotoLoader(context, mUri, mImageView.getWidth(), mImageView.getHeight());
+        return new PhotoLoader(context, mUri, mImageView.getWidth(), mImageView.getHeight(),
+                mRotation);
     }
 
     @Override
@@ -224,21 +250,29 @@ public class PhotoFragment extends Fragment implements LoaderManager.LoaderCallb
         private final int mHeight;
 
         /**
-         * @param context The Context
-         * @param uri     The Uri to the image to load
-         * @param width   The container width
-         * @param height  The container height
+         * The rotation of the image in degrees, or ROTATION_UNKNOWN
+         */
+        private final int mRotation;
+
+        /**
+         * @param context  The Context
+         * @param uri      The Uri to the image to load
+         * @param width    The container width
+         * @param height   The container height
+         * @param rotation The rotation of the image in degrees, or ROTATION_UNKNOWN
          */
-        PhotoLoader(@NonNull Context context, @NonNull Uri uri, int width, int height) {
+        PhotoLoader(@NonNull Context context, @NonNull Uri uri, int width, int height,
+                    int rotation) {
             super(context);
             mUri = uri;
             mWidth = width;
             mHeight = height;
+            mRotation = rotation;
         }
 
         @Override
         public Bitmap loadInBackground() {
-            return PhotoUtils.loadBitmap(getContext(), mUri, mWidth, mHeight);
+            return PhotoUtils.loadBitmap(getContext(), mUri, mWidth, mHeight, mRotation);
         }
     }
 }
@@ -147,6 +147,10 @@ public class ViewEntryFragment extends Fragment implements LoaderManager.LoaderC
         tab = mTabHost.newTabSpec("photos_" + mEntryId).setIndicator(null, icon);
         mTabHost.addTab(tab, ViewPhotosFragment.class, tabArgs);
 
+        icon = ActivityCompat.getDrawable(context, R.drawable.ic_list);
+        tab = mTabHost.newTabSpec("similar_" + mEntryId).setIndicator(null, icon);
+        mTabHost.addTab(tab, ViewSimilarFragment.class, tabArgs);
+
         return mTabHost;
     }
 
@@ -350,7 +350,8 @@ public class ViewPhotosFragment extends AbsPhotosFragment
                 Tables.Photos._ID,
                 Tables.Photos.HASH,
                 Tables.Photos.PATH,
-                Tables.Photos.POS
+                Tables.Photos.POS,
+                Tables.Photos.ROTATION
         };
         final String where = Tables.Photos.PATH + " NOT NULL";
         final String order = Tables.Photos.POS + " ASC";
@@ -366,6 +367,8 @@ public class ViewPhotosFragment extends AbsPhotosFragment
         String path;
         int pos;
         Uri uri;
+        PhotoHolder photo;
+        final int rotationColumn = data.getColumnIndex(Tables.Photos.ROTATION);
         while(data.moveToNext()) {
             id = data.getLong(data.getColumnIndex(Tables.Photos._ID));
             hash = data.getString(data.getColumnIndex(Tables.Photos.HASH));
@@ -373,7 +376,11 @@ public class ViewPhotosFragment extends AbsPhotosFragment
             pos = data.getInt(data.getColumnIndex(Tables.Photos.POS));
             uri = PhotoUtils.parsePath(path);
             if(uri != null) {
-                photos.add(new PhotoHolder(id, hash, uri, pos));
+                photo = new PhotoHolder(id, hash, uri, pos);
+                if(!data.isNull(rotationColumn)) {
+                    photo.rotation = data.getInt(rotationColumn);
+                }
+                photos.add(photo);
             }
         }
 
@@ -405,6 +412,7 @@ public class ViewPhotosFragment extends AbsPhotosFragment
         public Fragment getItem(int position) {
             final Bundle args = new Bundle();
             args.putParcelable(PhotoFragment.ARG_URI, mData.get(position).uri);
+            args.putInt(PhotoFragment.ARG_ROTATION, mData.get(position).rotation);
             return instantiate(getContext(), PhotoFragment.class.getName(), args);
         }
 
@@ -460,21 +468,26 @@ public class ViewPhotosFragment extends AbsPhotosFragment
             }
 
             final ContentResolver cr = context.getContentResolver();
-            Uri uri = PhotoUtils.getFileUri(cr, mPhoto.uri);
-            if(uri == null) {
+            final PhotoUtils.SavedPhoto savedPhoto =
+                    PhotoUtils.savePhoto(cr, mPhoto.uri, mPhoto.hash);
+            if(savedPhoto == null) {
                 return false;
             }
-            mPhoto.uri = uri;
-
-            if(mPhoto.hash == null) {
-                mPhoto.hash = PhotoUtils.getMD5Hash(cr, mPhoto.uri);
-            }
+            mPhoto.uri = savedPhoto.uri;
+            mPhoto.hash = savedPhoto.hash;
+            mPhoto.rotation = savedPhoto.rotation;
 
             final ContentValues values = new ContentValues();
             values.put(Tables.Photos.HASH, mPhoto.hash);
             values.put(Tables.Photos.PATH, mPhoto.uri.getLastPathSegment());
             values.put(Tables.Photos.POS, mPhoto.pos);
+            if(mPhoto.rotation != PhotoUtils.ROTATION_UNKNOWN) {
+                values.put(Tables.Photos.ROTATION, mPhoto.rotation);
+            } else {
+                values.putNull(Tables.Photos.ROTATION);
+            }
 
+            Uri uri;
             if(mPhoto.id > 0) {
                 uri = ContentUris.withAppendedId(Tables.Photos.CONTENT_ID_URI_BASE, mPhoto.id);
                 if(cr.update(uri, values, null, null) < 1) {
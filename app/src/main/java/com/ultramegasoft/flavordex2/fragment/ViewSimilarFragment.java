@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.fragment;
+
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.FragmentActivity;
+import android.support.v4.app.ListFragment;
+import android.support.v4.app.LoaderManager;
+import android.support.v4.content.CursorLoader;
+import android.support.v4.content.Loader;
+import android.view.View;
+import android.widget.ListView;
+
+import com.ultramegasoft.flavordex2.EntryListActivity;
+import com.ultramegasoft.flavordex2.R;
+import com.ultramegasoft.flavordex2.ViewEntryActivity;
+import com.ultramegasoft.flavordex2.provider.Tables;
+import com.ultramegasoft.flavordex2.widget.EntryListAdapter;
+
+/**
+ * Fragment to display the entries with flavor profiles most similar to a journal entry.
+ *
+ * @author Steve Guidetti
+ */
+public class ViewSimilarFragment extends ListFragment
+        implements LoaderManager.LoaderCallbacks<Cursor> {
+    /**
+     * The number of similar entries to show
+     */
+    private static final int NUM_ENTRIES = 20;
+
+    /**
+     * The database ID for this entry
+     */
+    private long mEntryId;
+
+    /**
+     * The Adapter backing the list
+     */
+    private EntryListAdapter mAdapter;
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        final Bundle args = getArguments();
+        if(args != null) {
+            mEntryId = args.getLong(ViewEntryFragment.ARG_ENTRY_ID);
+        }
+    }
+
+    @Override
+    public void onActivityCreated(@Nullable Bundle savedInstanceState) {
+        super.onActivityCreated(savedInstanceState);
+
+        setEmptyText(getString(R.string.message_no_similar));
+
+        final Context context = getContext();
+        if(context != null) {
+            mAdapter = new EntryListAdapter(context);
+            setListShown(false);
+            setListAdapter(mAdapter);
+        }
+
+        getLoaderManager().initLoader(0, null, this);
+    }
+
+    @Override
+    public void onListItemClick(ListView listView, View view, int position, long id) {
+        super.onListItemClick(listView, view, position, id);
+
+        final FragmentActivity activity = getActivity();
+        if(activity == null) {
+            return;
+        }
+
+        final Cursor cursor = (Cursor)mAdapter.getItem(position);
+        final String catName = cursor.getString(cursor.getColumnIndex(Tables.Entries.CAT));
+        final long catId = cursor.getLong(cursor.getColumnIndex(Tables.Entries.CAT_ID));
+        if(activity instanceof EntryListActivity) {
+            ((EntryListActivity)activity).onItemSelected(id, catName, catId);
+        } else {
+            final Intent intent = new Intent(activity, ViewEntryActivity.class);
+            intent.putExtra(ViewEntryFragment.ARG_ENTRY_ID, id);
+            intent.putExtra(ViewEntryFragment.ARG_ENTRY_CAT, catName);
+            intent.putExtra(ViewEntryFragment.ARG_ENTRY_CAT_ID, catId);
+            startActivity(intent);
+        }
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @NonNull
+    @Override
+    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        final Context context = getContext();
+        if(context == null) {
+            return null;
+        }
+
+        final Uri uri = Uri.withAppendedPath(Tables.Entries.CONTENT_ID_URI_BASE,
+                mEntryId + "/similar").buildUpon()
+                .appendQueryParameter(Tables.PARAM_LIMIT, String.valueOf(NUM_ENTRIES)).build();
+        return new CursorLoader(context, uri, null, null, null, null);
+    }
+
+    @Override
+    public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor data) {
+        mAdapter.swapCursor(data);
+        setListShown(true);
+    }
+
+    @Override
+    public void onLoaderReset(@NonNull Loader<Cursor> loader) {
+        mAdapter.swapCursor(null);
+    }
+}
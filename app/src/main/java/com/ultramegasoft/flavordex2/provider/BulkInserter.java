@@ -0,0 +1,122 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2016 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.provider;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Helper for inserting many rows using compiled statements. A statement is compiled once for each
+ * combination of table and columns and reused for every row with the same columns.
+ *
+ * @author Steve Guidetti
+ */
+class BulkInserter {
+    /**
+     * The database to insert into
+     */
+    @NonNull
+    private final SQLiteDatabase mDb;
+
+    /**
+     * Map of SQL strings to compiled statements
+     */
+    @NonNull
+    private final HashMap<String, SQLiteStatement> mStatements = new HashMap<>();
+
+    /**
+     * @param db The database to insert into
+     */
+    BulkInserter(@NonNull SQLiteDatabase db) {
+        mDb = db;
+    }
+
+    /**
+     * Insert a row into a table.
+     *
+     * @param table  The name of the table
+     * @param values The values to insert
+     * @return The row ID of the new row, or -1 if the insert failed
+     */
+    long insert(@NonNull String table, @NonNull ContentValues values) {
+        final Set<String> keys = values.keySet();
+        final String[] columns = keys.toArray(new String[keys.size()]);
+        Arrays.sort(columns);
+
+        final String sql = getSql(table, columns);
+        SQLiteStatement statement = mStatements.get(sql);
+        if(statement == null) {
+            statement = mDb.compileStatement(sql);
+            mStatements.put(sql, statement);
+        } else {
+            statement.clearBindings();
+        }
+
+        for(int i = 0; i < columns.length; i++) {
+            DatabaseUtils.bindObjectToProgram(statement, i + 1, values.get(columns[i]));
+        }
+
+        return statement.executeInsert();
+    }
+
+    /**
+     * Release all the compiled statements.
+     */
+    void close() {
+        for(SQLiteStatement statement : mStatements.values()) {
+            statement.close();
+        }
+        mStatements.clear();
+    }
+
+    /**
+     * Build the insert statement for a table and list of columns.
+     *
+     * @param table   The name of the table
+     * @param columns The names of the columns
+     * @return The SQL insert statement
+     */
+    @NonNull
+    private static String getSql(@NonNull String table, @NonNull String[] columns) {
+        if(columns.length == 0) {
+            return "INSERT INTO " + table + " DEFAULT VALUES";
+        }
+
+        final StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        for(int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? "," : "").append(columns[i]);
+        }
+        sql.append(") VALUES (");
+        for(int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ",?" : "?");
+        }
+        return sql.append(")").toString();
+    }
+}
@@ -52,7 +52,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     /**
      * The current version of the schema, incremented by 1 for each iteration
      */
-    private static final int DATABASE_VERSION = 5;
+    private static final int DATABASE_VERSION = 6;
 
     /**
      * The Context
@@ -94,12 +94,32 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             case 4:
                 generateUuids(db);
                 execRawFile(db, R.raw.upgrade_v5);
+            case 5:
+                execRawFile(db, R.raw.upgrade_v6);
+                rebuildStats(db);
         }
 
         execRawFile(db, R.raw.triggers);
         execRawFile(db, R.raw.views);
     }
 
+    /**
+     * Rebuild the statistics tables from scratch. These are normally kept up to date by triggers,
+     * so this is only needed when the tables are first created or if they are suspected to be out
+     * of sync with the data.
+     *
+     * @param db The database
+     */
+    void rebuildStats(@NonNull SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            execRawFile(db, R.raw.stats);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     /**
      * Read and execute a SQL file from the raw resources.
      *
@@ -0,0 +1,501 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.provider;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LongSparseArray;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * In-memory index of the flavor profiles of entries for finding entries that taste like another.
+ * Each category has its own index containing a packed vector of flavor values for each entry,
+ * with one dimension for each flavor name used in the category. The index for a category is
+ * loaded the first time it is searched. Entries that change are recorded and reloaded before the
+ * next search.
+ *
+ * @author Steve Guidetti
+ */
+class FlavorIndex {
+    /**
+     * Metrics for comparing flavor profiles
+     */
+    static final int METRIC_COSINE = 0;
+    static final int METRIC_L2 = 1;
+
+    /**
+     * The number of changed entries to record before discarding the whole index instead
+     */
+    private static final int MAX_PENDING = 500;
+
+    /**
+     * The loaded indexes mapped by category ID
+     */
+    @NonNull
+    private final LongSparseArray<CatIndex> mCats = new LongSparseArray<>();
+
+    /**
+     * IDs of entries that have changed since the last search
+     */
+    @NonNull
+    private long[] mPending = new long[16];
+
+    /**
+     * The number of IDs in the pending list
+     */
+    private int mPendingCount;
+
+    /**
+     * Record that the flavors or category of an entry may have changed, or that the entry may
+     * have been deleted.
+     *
+     * @param entryId The database ID of the entry
+     */
+    synchronized void invalidateEntry(long entryId) {
+        if(mCats.size() == 0) {
+            return;
+        }
+        if(mPendingCount == MAX_PENDING) {
+            invalidate();
+            return;
+        }
+        if(mPendingCount == mPending.length) {
+            mPending = Arrays.copyOf(mPending, mPendingCount * 2);
+        }
+        mPending[mPendingCount++] = entryId;
+    }
+
+    /**
+     * Discard the whole index so it is loaded again when needed.
+     */
+    synchronized void invalidate() {
+        mCats.clear();
+        mPendingCount = 0;
+    }
+
+    /**
+     * Find the entries in the same category with the flavor profiles closest to an entry.
+     *
+     * @param db      The database
+     * @param entryId The database ID of the entry
+     * @param metric  One of the METRIC constants
+     * @param limit   The maximum number of entries to find
+     * @return The closest entries, ordered from most to least similar
+     */
+    @NonNull
+    synchronized Results findSimilar(@NonNull SQLiteDatabase db, long entryId, int metric,
+                                     int limit) {
+        applyPending(db);
+
+        final Results results = new Results(limit);
+        final long catId = getCat(db, entryId);
+        if(catId < 0 || limit < 1) {
+            return results;
+        }
+
+        CatIndex index = mCats.get(catId);
+        if(index == null) {
+            index = CatIndex.load(db, catId);
+            mCats.put(catId, index);
+        }
+
+        if(metric == METRIC_L2) {
+            index.searchL2(entryId, results);
+        } else {
+            index.searchCosine(entryId, results);
+        }
+        return results;
+    }
+
+    /**
+     * Reload the entries that have changed since the last search.
+     *
+     * @param db The database
+     */
+    private void applyPending(@NonNull SQLiteDatabase db) {
+        for(int i = 0; i < mPendingCount; i++) {
+            final long entryId = mPending[i];
+            for(int j = 0; j < mCats.size(); j++) {
+                mCats.valueAt(j).remove(entryId);
+            }
+
+            final long catId = getCat(db, entryId);
+            final CatIndex index = mCats.get(catId);
+            if(index != null && !index.reload(db, entryId)) {
+                mCats.remove(catId);
+            }
+        }
+        mPendingCount = 0;
+    }
+
+    /**
+     * Get the category of an entry.
+     *
+     * @param db      The database
+     * @param entryId The database ID of the entry
+     * @return The category ID, or -1 if the entry does not exist
+     */
+    private static long getCat(@NonNull SQLiteDatabase db, long entryId) {
+        final Cursor cursor = db.query(Tables.Entries.TABLE_NAME,
+                new String[] {Tables.Entries.CAT}, Tables.Entries._ID + " = " + entryId, null,
+                null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Get the key for a flavor name. Flavor names are compared without regard to case.
+     *
+     * @param name The flavor name
+     * @return The key
+     */
+    @NonNull
+    private static String getKey(@Nullable String name) {
+        return name != null ? name.toLowerCase(Locale.US) : "";
+    }
+
+    /**
+     * The closest entries found by a search, ordered from most to least similar.
+     */
+    static class Results {
+        /**
+         * The database IDs of the entries
+         */
+        @NonNull
+        final long[] ids;
+
+        /**
+         * The cosine similarity or L2 distance of each entry
+         */
+        @NonNull
+        final float[] scores;
+
+        /**
+         * The number of entries found
+         */
+        int count;
+
+        /**
+         * @param limit The maximum number of entries to keep
+         */
+        Results(int limit) {
+            ids = new long[Math.max(limit, 0)];
+            scores = new float[ids.length];
+        }
+
+        /**
+         * Add an entry if it is closer than the ones already found, dropping the farthest one if
+         * the list is full.
+         *
+         * @param id    The database ID of the entry
+         * @param score The score of the entry, where lower is closer
+         */
+        private void offer(long id, float score) {
+            if(count == ids.length) {
+                if(count == 0 || score >= scores[count - 1]) {
+                    return;
+                }
+                count--;
+            }
+
+            int i = count++;
+            for(; i > 0 && scores[i - 1] > score; i--) {
+                ids[i] = ids[i - 1];
+                scores[i] = scores[i - 1];
+            }
+            ids[i] = id;
+            scores[i] = score;
+        }
+    }
+
+    /**
+     * The flavor vectors of all the entries in a category.
+     */
+    private static class CatIndex {
+        /**
+         * Map of flavor name keys to their dimension
+         */
+        @NonNull
+        private final HashMap<String, Integer> mDims;
+
+        /**
+         * The number of dimensions
+         */
+        private final int mNumDims;
+
+        /**
+         * The database IDs of the entries
+         */
+        @NonNull
+        private long[] mIds;
+
+        /**
+         * The flavor vectors, packed in the same order as the IDs
+         */
+        @NonNull
+        private float[] mVectors;
+
+        /**
+         * The length of each vector
+         */
+        @NonNull
+        private float[] mNorms;
+
+        /**
+         * The number of entries in the index
+         */
+        private int mSize;
+
+        /**
+         * @param dims     Map of flavor name keys to their dimension
+         * @param capacity The initial number of entries to allocate space for
+         */
+        private CatIndex(@NonNull HashMap<String, Integer> dims, int capacity) {
+            mDims = dims;
+            mNumDims = Math.max(dims.size(), 1);
+            capacity = Math.max(capacity, 16);
+            mIds = new long[capacity];
+            mVectors = new float[capacity * mNumDims];
+            mNorms = new float[capacity];
+        }
+
+        /**
+         * Load the flavor vectors of all entries in a category.
+         *
+         * @param db    The database
+         * @param catId The category ID
+         * @return The index for the category
+         */
+        @NonNull
+        static CatIndex load(@NonNull SQLiteDatabase db, long catId) {
+            final Cursor cursor = db.rawQuery("SELECT a." + Tables.EntriesFlavors.ENTRY
+                    + ", a." + Tables.EntriesFlavors.FLAVOR + ", a." + Tables.EntriesFlavors.VALUE
+                    + " FROM " + Tables.EntriesFlavors.TABLE_NAME + " a JOIN "
+                    + Tables.Entries.TABLE_NAME + " b ON a." + Tables.EntriesFlavors.ENTRY
+                    + " = b." + Tables.Entries._ID + " WHERE b." + Tables.Entries.CAT + " = "
+                    + catId + " ORDER BY a." + Tables.EntriesFlavors.ENTRY, null);
+
+            final HashMap<String, Integer> dims = new HashMap<>();
+            final int numRows = cursor.getCount();
+            final long[] rowEntries = new long[numRows];
+            final int[] rowDims = new int[numRows];
+            final float[] rowValues = new float[numRows];
+            int numEntries = 0;
+            try {
+                String key;
+                Integer dim;
+                for(int i = 0; cursor.moveToNext(); i++) {
+                    rowEntries[i] = cursor.getLong(0);
+                    key = getKey(cursor.getString(1));
+                    dim = dims.get(key);
+                    if(dim == null) {
+                        dim = dims.size();
+                        dims.put(key, dim);
+                    }
+                    rowDims[i] = dim;
+                    rowValues[i] = cursor.getFloat(2);
+                    if(i == 0 || rowEntries[i] != rowEntries[i - 1]) {
+                        numEntries++;
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+
+            final CatIndex index = new CatIndex(dims, numEntries);
+            final float[] vector = new float[index.mNumDims];
+            for(int start = 0, end; start < numRows; start = end) {
+                Arrays.fill(vector, 0);
+                for(end = start; end < numRows && rowEntries[end] == rowEntries[start]; end++) {
+                    vector[rowDims[end]] = rowValues[end];
+                }
+                index.add(rowEntries[start], vector);
+            }
+
+            return index;
+        }
+
+        /**
+         * Load the flavor vector of one entry from the database and add it to the index.
+         *
+         * @param db      The database
+         * @param entryId The database ID of the entry
+         * @return False if the entry uses a flavor that is not in the index, in which case the
+         * index must be loaded again
+         */
+        boolean reload(@NonNull SQLiteDatabase db, long entryId) {
+            final Cursor cursor = db.query(Tables.EntriesFlavors.TABLE_NAME,
+                    new String[] {Tables.EntriesFlavors.FLAVOR, Tables.EntriesFlavors.VALUE},
+                    Tables.EntriesFlavors.ENTRY + " = " + entryId, null, null, null, null);
+            final float[] vector = new float[mNumDims];
+            try {
+                Integer dim;
+                while(cursor.moveToNext()) {
+                    dim = mDims.get(getKey(cursor.getString(0)));
+                    if(dim == null) {
+                        return false;
+                    }
+                    vector[dim] = cursor.getFloat(1);
+                }
+            } finally {
+                cursor.close();
+            }
+
+            add(entryId, vector);
+            return true;
+        }
+
+        /**
+         * Add an entry to the index. Entries with no flavor values are skipped since they are not
+         * similar to anything.
+         *
+         * @param entryId The database ID of the entry
+         * @param vector  The flavor vector
+         */
+        private void add(long entryId, @NonNull float[] vector) {
+            float norm = 0;
+            for(float value : vector) {
+                norm += value * value;
+            }
+            if(norm == 0) {
+                return;
+            }
+
+            if(mSize == mIds.length) {
+                final int capacity = mSize * 2;
+                mIds = Arrays.copyOf(mIds, capacity);
+                mVectors = Arrays.copyOf(mVectors, capacity * mNumDims);
+                mNorms = Arrays.copyOf(mNorms, capacity);
+            }
+
+            mIds[mSize] = entryId;
+            System.arraycopy(vector, 0, mVectors, mSize * mNumDims, mNumDims);
+            mNorms[mSize] = (float)Math.sqrt(norm);
+            mSize++;
+        }
+
+        /**
+         * Remove an entry from the index if it is present.
+         *
+         * @param entryId The database ID of the entry
+         */
+        void remove(long entryId) {
+            final int row = indexOf(entryId);
+            if(row < 0) {
+                return;
+            }
+
+            final int last = --mSize;
+            mIds[row] = mIds[last];
+            mNorms[row] = mNorms[last];
+            System.arraycopy(mVectors, last * mNumDims, mVectors, row * mNumDims, mNumDims);
+        }
+
+        /**
+         * Find the entries closest to an entry by cosine similarity.
+         *
+         * @param entryId The database ID of the entry
+         * @param results The Results to add the entries to
+         */
+        void searchCosine(long entryId, @NonNull Results results) {
+            final int row = indexOf(entryId);
+            if(row < 0) {
+                return;
+            }
+
+            final int dims = mNumDims;
+            final float[] vectors = mVectors;
+            final int query = row * dims;
+            final float queryNorm = mNorms[row];
+            for(int i = 0, offset = 0; i < mSize; i++, offset += dims) {
+                if(i == row) {
+                    continue;
+                }
+                float dot = 0;
+                for(int j = 0; j < dims; j++) {
+                    dot += vectors[offset + j] * vectors[query + j];
+                }
+                results.offer(mIds[i], -dot / (mNorms[i] * queryNorm));
+            }
+
+            for(int i = 0; i < results.count; i++) {
+                results.scores[i] = -results.scores[i];
+            }
+        }
+
+        /**
+         * Find the entries closest to an entry by Euclidean distance.
+         *
+         * @param entryId The database ID of the entry
+         * @param results The Results to add the entries to
+         */
+        void searchL2(long entryId, @NonNull Results results) {
+            final int row = indexOf(entryId);
+            if(row < 0) {
+                return;
+            }
+
+            final int dims = mNumDims;
+            final float[] vectors = mVectors;
+            final int query = row * dims;
+            for(int i = 0, offset = 0; i < mSize; i++, offset += dims) {
+                if(i == row) {
+                    continue;
+                }
+                float sum = 0;
+                for(int j = 0; j < dims; j++) {
+                    final float diff = vectors[offset + j] - vectors[query + j];
+                    sum += diff * diff;
+                }
+                results.offer(mIds[i], sum);
+            }
+
+            for(int i = 0; i < results.count; i++) {
+                results.scores[i] = (float)Math.sqrt(results.scores[i]);
+            }
+        }
+
+        /**
+         * Find the position of an entry in the index.
+         *
+         * @param entryId The database ID of the entry
+         * @return The position of the entry, or -1 if it is not in the index
+         */
+        private int indexOf(long entryId) {
+            for(int i = 0; i < mSize; i++) {
+                if(mIds[i] == entryId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
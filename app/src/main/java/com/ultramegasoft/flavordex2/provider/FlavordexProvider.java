@@ -24,16 +24,20 @@ package com.ultramegasoft.flavordex2.provider;
 
 import android.app.backup.BackupManager;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
@@ -41,7 +45,13 @@ import android.util.Log;
 
 import com.ultramegasoft.flavordex2.FlavordexApp;
 import com.ultramegasoft.flavordex2.util.EntryUtils;
+import com.ultramegasoft.flavordex2.util.SearchUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -83,6 +93,24 @@ public class FlavordexProvider extends ContentProvider {
     private static final int MAKERS_FILTER = 21;
     private static final int LOCATIONS = 22;
     private static final int LOCATIONS_ID = 23;
+    private static final int ENTRIES_EXTRAS_ALL = 24;
+    private static final int ENTRIES_FLAVOR_ALL = 25;
+    private static final int ENTRIES_SEARCH = 26;
+    private static final int ENTRIES_CAT_SEARCH = 27;
+    private static final int PHOTO_BLOBS = 28;
+    private static final int STATS = 29;
+    private static final int STATS_CATS = 30;
+    private static final int STATS_MAKERS = 31;
+    private static final int STATS_MONTHS = 32;
+    private static final int STATS_RATINGS = 33;
+    private static final int STATS_FLAVORS = 34;
+    private static final int ENTRIES_SIMILAR = 35;
+
+    /**
+     * The default and maximum number of similar entries to return
+     */
+    private static final int SIMILAR_LIMIT = 10;
+    private static final int SIMILAR_MAX_LIMIT = 100;
 
     /**
      * The UriMatcher to use
@@ -95,9 +123,12 @@ public class FlavordexProvider extends ContentProvider {
         sUriMatcher.addURI(AUTHORITY, "entries/filter/*", ENTRIES_FILTER);
         sUriMatcher.addURI(AUTHORITY, "entries/cat/#", ENTRIES_CAT);
         sUriMatcher.addURI(AUTHORITY, "entries/cat/#/filter/*", ENTRIES_CAT_FILTER);
+        sUriMatcher.addURI(AUTHORITY, "entries/search/*", ENTRIES_SEARCH);
+        sUriMatcher.addURI(AUTHORITY, "entries/cat/#/search/*", ENTRIES_CAT_SEARCH);
         sUriMatcher.addURI(AUTHORITY, "entries/#/extras", ENTRIES_EXTRAS);
         sUriMatcher.addURI(AUTHORITY, "entries/#/flavor", ENTRIES_FLAVOR);
         sUriMatcher.addURI(AUTHORITY, "entries/#/photos", ENTRIES_PHOTOS);
+        sUriMatcher.addURI(AUTHORITY, "entries/#/similar", ENTRIES_SIMILAR);
         sUriMatcher.addURI(AUTHORITY, "cats", CATS);
         sUriMatcher.addURI(AUTHORITY, "cats/#", CATS_ID);
         sUriMatcher.addURI(AUTHORITY, "cats/#/extras", CATS_EXTRAS);
@@ -108,11 +139,20 @@ public class FlavordexProvider extends ContentProvider {
         sUriMatcher.addURI(AUTHORITY, "flavors/#", FLAVORS_ID);
         sUriMatcher.addURI(AUTHORITY, "photos", PHOTOS);
         sUriMatcher.addURI(AUTHORITY, "photos/#", PHOTOS_ID);
+        sUriMatcher.addURI(AUTHORITY, "photo_blobs", PHOTO_BLOBS);
         sUriMatcher.addURI(AUTHORITY, "makers", MAKERS);
         sUriMatcher.addURI(AUTHORITY, "makers/#", MAKERS_ID);
         sUriMatcher.addURI(AUTHORITY, "makers/filter/*", MAKERS_FILTER);
         sUriMatcher.addURI(AUTHORITY, "locations", LOCATIONS);
         sUriMatcher.addURI(AUTHORITY, "locations/#", LOCATIONS_ID);
+        sUriMatcher.addURI(AUTHORITY, "entries_extras", ENTRIES_EXTRAS_ALL);
+        sUriMatcher.addURI(AUTHORITY, "entries_flavors", ENTRIES_FLAVOR_ALL);
+        sUriMatcher.addURI(AUTHORITY, "stats", STATS);
+        sUriMatcher.addURI(AUTHORITY, "stats/cats", STATS_CATS);
+        sUriMatcher.addURI(AUTHORITY, "stats/makers", STATS_MAKERS);
+        sUriMatcher.addURI(AUTHORITY, "stats/months", STATS_MONTHS);
+        sUriMatcher.addURI(AUTHORITY, "stats/ratings", STATS_RATINGS);
+        sUriMatcher.addURI(AUTHORITY, "stats/flavors", STATS_FLAVORS);
     }
 
     /**
@@ -130,6 +170,17 @@ public class FlavordexProvider extends ContentProvider {
      */
     private ContentResolver mResolver;
 
+    /**
+     * The index of entry flavor profiles for finding similar entries
+     */
+    private final FlavorIndex mFlavorIndex = new FlavorIndex();
+
+    /**
+     * Uris to notify when the current batch is committed, or null if no batch is in progress
+     */
+    @Nullable
+    private Set<Uri> mPendingNotifications;
+
     @Override
     public boolean onCreate() {
         final Context context = getContext();
@@ -151,6 +202,9 @@ public class FlavordexProvider extends ContentProvider {
             case ENTRIES_FILTER:
             case ENTRIES_CAT:
             case ENTRIES_CAT_FILTER:
+            case ENTRIES_SEARCH:
+            case ENTRIES_CAT_SEARCH:
+            case ENTRIES_SIMILAR:
                 return Tables.Entries.DATA_TYPE;
             case ENTRIES_ID:
                 return Tables.Entries.DATA_TYPE_ITEM;
@@ -160,12 +214,14 @@ public class FlavordexProvider extends ContentProvider {
                 return Tables.Cats.DATA_TYPE_ITEM;
             case EXTRAS:
             case ENTRIES_EXTRAS:
+            case ENTRIES_EXTRAS_ALL:
             case CATS_EXTRAS:
                 return Tables.Extras.DATA_TYPE;
             case EXTRAS_ID:
                 return Tables.Extras.DATA_TYPE_ITEM;
             case FLAVORS:
             case ENTRIES_FLAVOR:
+            case ENTRIES_FLAVOR_ALL:
             case CATS_FLAVOR:
                 return Tables.Flavors.DATA_TYPE;
             case FLAVORS_ID:
@@ -175,6 +231,8 @@ public class FlavordexProvider extends ContentProvider {
                 return Tables.Photos.DATA_TYPE;
             case PHOTOS_ID:
                 return Tables.Photos.DATA_TYPE_ITEM;
+            case PHOTO_BLOBS:
+                return Tables.PhotoBlobs.DATA_TYPE;
             case MAKERS:
             case MAKERS_FILTER:
                 return Tables.Makers.DATA_TYPE;
@@ -184,6 +242,15 @@ public class FlavordexProvider extends ContentProvider {
                 return Tables.Locations.DATA_TYPE;
             case LOCATIONS_ID:
                 return Tables.Locations.DATA_TYPE_ITEM;
+            case STATS:
+            case STATS_CATS:
+            case STATS_MAKERS:
+            case STATS_MONTHS:
+                return Tables.Stats.DATA_TYPE;
+            case STATS_RATINGS:
+                return Tables.StatsRatings.DATA_TYPE;
+            case STATS_FLAVORS:
+                return Tables.StatsFlavors.DATA_TYPE;
         }
 
         return null;
@@ -205,8 +272,8 @@ public class FlavordexProvider extends ContentProvider {
                 break;
             case ENTRIES_FILTER:
                 queryBuilder.setTables(Tables.Entries.VIEW_NAME);
-                queryBuilder.appendWhere(Tables.Entries.TITLE + " LIKE ");
-                queryBuilder.appendWhereEscapeString("%" + uri.getLastPathSegment() + "%");
+                appendMatch(queryBuilder, Tables.EntriesSearch.TITLE, uri.getLastPathSegment(),
+                        false);
                 notifyUri = Tables.Entries.CONTENT_URI;
                 break;
             case ENTRIES_CAT:
@@ -218,8 +285,36 @@ public class FlavordexProvider extends ContentProvider {
                 queryBuilder.setTables(Tables.Entries.VIEW_NAME);
                 queryBuilder.appendWhere(Tables.Entries.CAT_ID + " = "
                         + uri.getPathSegments().get(2));
-                queryBuilder.appendWhere(" AND " + Tables.Entries.TITLE + " LIKE ");
-                queryBuilder.appendWhereEscapeString("%" + uri.getLastPathSegment() + "%");
+                appendMatch(queryBuilder, Tables.EntriesSearch.TITLE, uri.getLastPathSegment(),
+                        true);
+                notifyUri = Tables.Entries.CONTENT_URI;
+                break;
+            case ENTRIES_SEARCH:
+                queryBuilder.setTables(Tables.Entries.VIEW_NAME);
+                appendMatch(queryBuilder, null, uri.getLastPathSegment(), false);
+                notifyUri = Tables.Entries.CONTENT_URI;
+                break;
+            case ENTRIES_CAT_SEARCH:
+                queryBuilder.setTables(Tables.Entries.VIEW_NAME);
+                queryBuilder.appendWhere(Tables.Entries.CAT_ID + " = "
+                        + uri.getPathSegments().get(2));
+                appendMatch(queryBuilder, null, uri.getLastPathSegment(), true);
+                notifyUri = Tables.Entries.CONTENT_URI;
+                break;
+            case ENTRIES_SIMILAR:
+                queryBuilder.setTables(Tables.Entries.VIEW_NAME);
+                final boolean l2 = Tables.Entries.METRIC_L2
+                        .equals(uri.getQueryParameter(Tables.PARAM_METRIC));
+                final String score = appendSimilar(queryBuilder, uri, l2);
+                if(projection == null) {
+                    projection = new String[] {"*", score};
+                } else {
+                    projection = Arrays.copyOf(projection, projection.length + 1);
+                    projection[projection.length - 1] = score;
+                }
+                if(sortOrder == null) {
+                    sortOrder = Tables.Entries.SCORE + (l2 ? " ASC" : " DESC");
+                }
                 notifyUri = Tables.Entries.CONTENT_URI;
                 break;
             case CATS:
@@ -262,6 +357,12 @@ public class FlavordexProvider extends ContentProvider {
                 queryBuilder.appendWhere(Tables.EntriesFlavors.ENTRY + " = "
                         + uri.getPathSegments().get(1));
                 break;
+            case ENTRIES_EXTRAS_ALL:
+                queryBuilder.setTables(Tables.EntriesExtras.VIEW_NAME);
+                break;
+            case ENTRIES_FLAVOR_ALL:
+                queryBuilder.setTables(Tables.EntriesFlavors.TABLE_NAME);
+                break;
             case PHOTOS:
                 queryBuilder.setTables(Tables.Photos.TABLE_NAME);
                 break;
@@ -274,6 +375,9 @@ public class FlavordexProvider extends ContentProvider {
                 queryBuilder.appendWhere(Tables.Photos.ENTRY + " = "
                         + uri.getPathSegments().get(1));
                 break;
+            case PHOTO_BLOBS:
+                queryBuilder.setTables(Tables.PhotoBlobs.TABLE_NAME);
+                break;
             case MAKERS:
                 queryBuilder.setTables(Tables.Makers.TABLE_NAME);
                 break;
@@ -293,12 +397,38 @@ public class FlavordexProvider extends ContentProvider {
                 queryBuilder.setTables(Tables.Locations.TABLE_NAME);
                 queryBuilder.appendWhere(Tables.Locations._ID + " = " + uri.getLastPathSegment());
                 break;
+            case STATS:
+                queryBuilder.setTables(Tables.Stats.TABLE_NAME);
+                break;
+            case STATS_CATS:
+                queryBuilder.setTables(Tables.Stats.TABLE_NAME);
+                queryBuilder.appendWhere(Tables.Stats.SCOPE + " = " + Tables.Stats.SCOPE_CAT);
+                break;
+            case STATS_MAKERS:
+                queryBuilder.setTables(Tables.Stats.TABLE_NAME);
+                queryBuilder.appendWhere(Tables.Stats.SCOPE + " = " + Tables.Stats.SCOPE_MAKER);
+                break;
+            case STATS_MONTHS:
+                queryBuilder.setTables(Tables.Stats.TABLE_NAME);
+                queryBuilder.appendWhere(Tables.Stats.SCOPE + " = " + Tables.Stats.SCOPE_MONTH);
+                break;
+            case STATS_RATINGS:
+                queryBuilder.setTables(Tables.StatsRatings.TABLE_NAME);
+                break;
+            case STATS_FLAVORS:
+                queryBuilder.setTables(Tables.StatsFlavors.TABLE_NAME);
+                break;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri.toString());
         }
 
+        String limit = uri.getQueryParameter(Tables.PARAM_LIMIT);
+        if(limit != null && (limit.isEmpty() || !TextUtils.isDigitsOnly(limit))) {
+            limit = null;
+        }
+
         final Cursor cursor = queryBuilder.query(mDbHelper.getReadableDatabase(), projection,
-                selection, selectionArgs, null, null, sortOrder);
+                selection, selectionArgs, null, null, sortOrder, limit);
         cursor.setNotificationUri(mResolver, notifyUri);
 
         return cursor;
@@ -307,89 +437,28 @@ public class FlavordexProvider extends ContentProvider {
     @Nullable
     @Override
     public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
-        String table;
         values = new ContentValues(values);
-
-        switch(sUriMatcher.match(uri)) {
-            case ENTRIES:
-                table = Tables.Entries.TABLE_NAME;
-                if(!EntryUtils.isValidUuid(values.getAsString(Tables.Entries.UUID))) {
-                    values.put(Tables.Entries.UUID, UUID.randomUUID().toString());
-                }
-                if(values.containsKey(Tables.Entries.MAKER)
-                        || values.containsKey(Tables.Entries.ORIGIN)) {
-                    processMaker(values);
-                }
-                break;
-            case CATS:
-                table = Tables.Cats.TABLE_NAME;
-                values.remove(Tables.Cats.PRESET);
-                break;
-            case EXTRAS:
-                table = Tables.Extras.TABLE_NAME;
-                values.remove(Tables.Extras.PRESET);
-                break;
-            case CATS_EXTRAS:
-                table = Tables.Extras.TABLE_NAME;
-                values.remove(Tables.Extras.PRESET);
-                values.put(Tables.Extras.CAT, uri.getPathSegments().get(1));
-                break;
-            case FLAVORS:
-                table = Tables.Flavors.TABLE_NAME;
-                break;
-            case CATS_FLAVOR:
-                table = Tables.Flavors.TABLE_NAME;
-                values.put(Tables.Flavors.CAT, uri.getPathSegments().get(1));
-                break;
-            case ENTRIES_EXTRAS:
-                table = Tables.EntriesExtras.TABLE_NAME;
-                values.put(Tables.EntriesExtras.ENTRY, uri.getPathSegments().get(1));
-                break;
-            case ENTRIES_FLAVOR:
-                table = Tables.EntriesFlavors.TABLE_NAME;
-                values.put(Tables.EntriesFlavors.ENTRY, uri.getPathSegments().get(1));
-                break;
-            case ENTRIES_PHOTOS:
-                table = Tables.Photos.TABLE_NAME;
-                values.put(Tables.Photos.ENTRY, uri.getPathSegments().get(1));
-                break;
-            case PHOTOS:
-                table = Tables.Photos.TABLE_NAME;
-                break;
-            case LOCATIONS:
-                table = Tables.Locations.TABLE_NAME;
-                break;
-            case ENTRIES_ID:
-            case CATS_ID:
-            case EXTRAS_ID:
-            case FLAVORS_ID:
-            case PHOTOS_ID:
-            case LOCATIONS_ID:
-                throw new IllegalArgumentException("Insert not permitted on: " + uri.toString());
-            case ENTRIES_FILTER:
-            case ENTRIES_CAT:
-            case ENTRIES_CAT_FILTER:
-            case MAKERS:
-            case MAKERS_ID:
-            case MAKERS_FILTER:
-                throw new IllegalArgumentException("URI is read-only: " + uri.toString());
-            default:
-                throw new IllegalArgumentException("Unknown URI: " + uri.toString());
-        }
+        final String table = prepareInsert(uri, values);
 
         synchronized(FlavordexProvider.class) {
             try {
                 final long id = mDbHelper.getWritableDatabase().insertOrThrow(table, null, values);
 
                 if(id > 0) {
-                    mBackupManager.dataChanged();
+                    dataChanged();
 
                     if(Tables.Entries.TABLE_NAME.equals(table)) {
-                        mResolver.notifyChange(Tables.Cats.CONTENT_URI, null);
+                        notifyChange(Tables.Cats.CONTENT_URI);
+                        notifyChange(Tables.Makers.CONTENT_URI);
+                    }
+                    notifyStatsChange(table);
+
+                    if(Tables.EntriesFlavors.TABLE_NAME.equals(table)) {
+                        invalidateFlavorIndex(uri, values);
                     }
 
                     final Uri rowUri = ContentUris.withAppendedId(uri, id);
-                    mResolver.notifyChange(rowUri, null);
+                    notifyChange(rowUri);
                     return rowUri;
                 }
             } catch(SQLException e) {
@@ -402,21 +471,117 @@ public class FlavordexProvider extends ContentProvider {
 
     @Override
     public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
-        final SQLiteDatabase db = mDbHelper.getWritableDatabase();
-        String table;
-        switch(sUriMatcher.match(uri)) {
+        final int match = sUriMatcher.match(uri);
+        switch(match) {
+            case ENTRIES:
+            case ENTRIES_EXTRAS:
             case ENTRIES_FLAVOR:
-                table = Tables.EntriesFlavors.TABLE_NAME;
-                final long entryId = Long.parseLong(uri.getPathSegments().get(1));
-                db.delete(table, Tables.EntriesFlavors.ENTRY + " = " + entryId, null);
-                for(ContentValues value : values) {
-                    value.put(Tables.EntriesFlavors.ENTRY, entryId);
-                    db.insert(table, null, value);
+            case ENTRIES_PHOTOS:
+            case CATS_EXTRAS:
+            case CATS_FLAVOR:
+                break;
+            default:
+                return super.bulkInsert(uri, values);
+        }
+
+        synchronized(FlavordexProvider.class) {
+            final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            int count = 0;
+            boolean deleted = false;
+            String table = null;
+            db.beginTransaction();
+            try {
+                if(match == ENTRIES_FLAVOR) {
+                    table = Tables.EntriesFlavors.TABLE_NAME;
+                    deleted = db.delete(table, Tables.EntriesFlavors.ENTRY + " = "
+                            + uri.getPathSegments().get(1), null) > 0;
+                }
+
+                final BulkInserter inserter = new BulkInserter(db);
+                try {
+                    for(ContentValues value : values) {
+                        value = new ContentValues(value);
+                        table = prepareInsert(uri, value);
+                        if(inserter.insert(table, value) > 0) {
+                            count++;
+                        }
+                    }
+                } finally {
+                    inserter.close();
                 }
-                mResolver.notifyChange(uri, null);
-                return values.length;
+
+                db.setTransactionSuccessful();
+            } catch(SQLException e) {
+                Log.e(TAG, "Failed to insert rows into: " + uri.toString(), e);
+                return 0;
+            } finally {
+                db.endTransaction();
+            }
+
+            if(count > 0 || deleted) {
+                dataChanged();
+
+                if(match == ENTRIES_FLAVOR) {
+                    invalidateFlavorIndex(uri, null);
+                }
+
+                if(Tables.Entries.TABLE_NAME.equals(table)) {
+                    notifyChange(Tables.Cats.CONTENT_URI);
+                    notifyChange(Tables.Makers.CONTENT_URI);
+                }
+                notifyStatsChange(table);
+
+                notifyChange(uri);
+            }
+
+            return count;
         }
-        return super.bulkInsert(uri, values);
+    }
+
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(
+            @NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        synchronized(FlavordexProvider.class) {
+            final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            mPendingNotifications = new LinkedHashSet<>();
+            boolean success = false;
+            db.beginTransaction();
+            try {
+                final ContentProviderResult[] results = super.applyBatch(operations);
+                db.setTransactionSuccessful();
+                success = true;
+                return results;
+            } finally {
+                db.endTransaction();
+
+                final Set<Uri> uris = mPendingNotifications;
+                mPendingNotifications = null;
+                if(success && !uris.isEmpty()) {
+                    mBackupManager.dataChanged();
+                    for(Uri uri : uris) {
+                        if(!hasAncestor(uris, uri)) {
+                            mResolver.notifyChange(uri, null);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        if(Tables.Stats.METHOD_REBUILD.equals(method)) {
+            synchronized(FlavordexProvider.class) {
+                mDbHelper.rebuildStats(mDbHelper.getWritableDatabase());
+                notifyChange(Tables.Stats.CONTENT_URI);
+            }
+            return null;
+        }
+
+        return super.call(method, arg, extras);
     }
 
     @Override
@@ -445,10 +610,12 @@ public class FlavordexProvider extends ContentProvider {
             case CATS:
                 table = Tables.Cats.TABLE_NAME;
                 values.remove(Tables.Cats.PRESET);
+                values.remove(Tables.Cats.NUM_ENTRIES);
                 break;
             case CATS_ID:
                 table = Tables.Cats.TABLE_NAME;
                 values.remove(Tables.Cats.PRESET);
+                values.remove(Tables.Cats.NUM_ENTRIES);
                 selection = appendWhere(selection,
                         Tables.Cats._ID + " = " + uri.getLastPathSegment());
                 break;
@@ -506,25 +673,57 @@ public class FlavordexProvider extends ContentProvider {
                 break;
             case LOCATIONS:
             case LOCATIONS_ID:
+            case ENTRIES_EXTRAS_ALL:
+            case ENTRIES_FLAVOR_ALL:
+            case PHOTO_BLOBS:
                 throw new IllegalArgumentException("Update not permitted on: " + uri.toString());
             case ENTRIES_FILTER:
             case ENTRIES_CAT:
             case ENTRIES_CAT_FILTER:
+            case ENTRIES_SEARCH:
+            case ENTRIES_CAT_SEARCH:
+            case ENTRIES_SIMILAR:
             case MAKERS:
             case MAKERS_ID:
             case MAKERS_FILTER:
+            case STATS:
+            case STATS_CATS:
+            case STATS_MAKERS:
+            case STATS_MONTHS:
+            case STATS_RATINGS:
+            case STATS_FLAVORS:
                 throw new IllegalArgumentException("URI is read-only: " + uri.toString());
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri.toString());
         }
 
         synchronized(FlavordexProvider.class) {
-            final int count = mDbHelper.getWritableDatabase().update(table, values, selection,
-                    selectionArgs);
+            final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            long[] movedEntries = null;
+            if(Tables.Entries.TABLE_NAME.equals(table)
+                    && values.containsKey(Tables.Entries.CAT)) {
+                movedEntries = findMovedEntries(db, values.getAsLong(Tables.Entries.CAT),
+                        selection, selectionArgs);
+            }
+
+            final int count = db.update(table, values, selection, selectionArgs);
 
             if(count > 0) {
-                mBackupManager.dataChanged();
-                mResolver.notifyChange(uri, null);
+                dataChanged();
+
+                if(Tables.Entries.TABLE_NAME.equals(table)) {
+                    notifyChange(Tables.Makers.CONTENT_URI);
+                }
+                notifyStatsChange(table);
+                if(movedEntries != null) {
+                    for(long entryId : movedEntries) {
+                        mFlavorIndex.invalidateEntry(entryId);
+                    }
+                } else {
+                    invalidateFlavorIndex(uri, values);
+                }
+
+                notifyChange(uri);
             }
 
             return count;
@@ -607,15 +806,30 @@ public class FlavordexProvider extends ContentProvider {
                 selection = appendWhere(selection,
                         Tables.Photos.ENTRY + " = " + uri.getPathSegments().get(1));
                 break;
+            case PHOTO_BLOBS:
+                table = Tables.PhotoBlobs.TABLE_NAME;
+                selection = appendWhere(selection, Tables.PhotoBlobs.REFS + " <= 0");
+                break;
             case LOCATIONS:
             case LOCATIONS_ID:
+            case ENTRIES_EXTRAS_ALL:
+            case ENTRIES_FLAVOR_ALL:
                 throw new IllegalArgumentException("Delete not permitted on: " + uri.toString());
             case ENTRIES_FILTER:
             case ENTRIES_CAT:
             case ENTRIES_CAT_FILTER:
+            case ENTRIES_SEARCH:
+            case ENTRIES_CAT_SEARCH:
+            case ENTRIES_SIMILAR:
             case MAKERS:
             case MAKERS_ID:
             case MAKERS_FILTER:
+            case STATS:
+            case STATS_CATS:
+            case STATS_MAKERS:
+            case STATS_MONTHS:
+            case STATS_RATINGS:
+            case STATS_FLAVORS:
                 throw new IllegalArgumentException("URI is read-only: " + uri.toString());
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri.toString());
@@ -626,19 +840,306 @@ public class FlavordexProvider extends ContentProvider {
                     mDbHelper.getWritableDatabase().delete(table, selection, selectionArgs);
 
             if(count > 0) {
-                mBackupManager.dataChanged();
+                dataChanged();
 
                 if(Tables.Entries.TABLE_NAME.equals(table)) {
-                    mResolver.notifyChange(Tables.Cats.CONTENT_URI, null);
+                    notifyChange(Tables.Cats.CONTENT_URI);
+                    notifyChange(Tables.Makers.CONTENT_URI);
                 }
+                notifyStatsChange(table);
+                invalidateFlavorIndex(uri, null);
 
-                mResolver.notifyChange(uri, null);
+                notifyChange(uri);
             }
 
             return count;
         }
     }
 
+    /**
+     * Get the table to insert into for a Uri, making any necessary changes to the values.
+     *
+     * @param uri    The Uri to insert into
+     * @param values The values to insert, which may be modified
+     * @return The name of the table
+     */
+    @NonNull
+    private String prepareInsert(@NonNull Uri uri, @NonNull ContentValues values) {
+        final String table;
+
+        switch(sUriMatcher.match(uri)) {
+            case ENTRIES:
+                table = Tables.Entries.TABLE_NAME;
+                if(!EntryUtils.isValidUuid(values.getAsString(Tables.Entries.UUID))) {
+                    values.put(Tables.Entries.UUID, UUID.randomUUID().toString());
+                }
+                if(values.containsKey(Tables.Entries.MAKER)
+                        || values.containsKey(Tables.Entries.ORIGIN)) {
+                    processMaker(values);
+                }
+                break;
+            case CATS:
+                table = Tables.Cats.TABLE_NAME;
+                values.remove(Tables.Cats.PRESET);
+                values.remove(Tables.Cats.NUM_ENTRIES);
+                break;
+            case EXTRAS:
+                table = Tables.Extras.TABLE_NAME;
+                values.remove(Tables.Extras.PRESET);
+                break;
+            case CATS_EXTRAS:
+                table = Tables.Extras.TABLE_NAME;
+                values.remove(Tables.Extras.PRESET);
+                values.put(Tables.Extras.CAT, uri.getPathSegments().get(1));
+                break;
+            case FLAVORS:
+                table = Tables.Flavors.TABLE_NAME;
+                break;
+            case CATS_FLAVOR:
+                table = Tables.Flavors.TABLE_NAME;
+                values.put(Tables.Flavors.CAT, uri.getPathSegments().get(1));
+                break;
+            case ENTRIES_EXTRAS:
+                table = Tables.EntriesExtras.TABLE_NAME;
+                values.put(Tables.EntriesExtras.ENTRY, uri.getPathSegments().get(1));
+                break;
+            case ENTRIES_FLAVOR:
+                table = Tables.EntriesFlavors.TABLE_NAME;
+                values.put(Tables.EntriesFlavors.ENTRY, uri.getPathSegments().get(1));
+                break;
+            case ENTRIES_EXTRAS_ALL:
+                table = Tables.EntriesExtras.TABLE_NAME;
+                break;
+            case ENTRIES_FLAVOR_ALL:
+                table = Tables.EntriesFlavors.TABLE_NAME;
+                break;
+            case ENTRIES_PHOTOS:
+                table = Tables.Photos.TABLE_NAME;
+                values.put(Tables.Photos.ENTRY, uri.getPathSegments().get(1));
+                break;
+            case PHOTOS:
+                table = Tables.Photos.TABLE_NAME;
+                break;
+            case LOCATIONS:
+                table = Tables.Locations.TABLE_NAME;
+                break;
+            case ENTRIES_ID:
+            case CATS_ID:
+            case EXTRAS_ID:
+            case FLAVORS_ID:
+            case PHOTOS_ID:
+            case LOCATIONS_ID:
+            case PHOTO_BLOBS:
+                throw new IllegalArgumentException("Insert not permitted on: " + uri.toString());
+            case ENTRIES_FILTER:
+            case ENTRIES_CAT:
+            case ENTRIES_CAT_FILTER:
+            case ENTRIES_SEARCH:
+            case ENTRIES_CAT_SEARCH:
+            case ENTRIES_SIMILAR:
+            case MAKERS:
+            case MAKERS_ID:
+            case MAKERS_FILTER:
+            case STATS:
+            case STATS_CATS:
+            case STATS_MAKERS:
+            case STATS_MONTHS:
+            case STATS_RATINGS:
+            case STATS_FLAVORS:
+                throw new IllegalArgumentException("URI is read-only: " + uri.toString());
+            default:
+                throw new IllegalArgumentException("Unknown URI: " + uri.toString());
+        }
+
+        return table;
+    }
+
+    /**
+     * Notify the BackupManager that the data has changed. This is deferred until the end of the
+     * batch if one is in progress.
+     */
+    private void dataChanged() {
+        if(mPendingNotifications == null) {
+            mBackupManager.dataChanged();
+        }
+    }
+
+    /**
+     * Notify observers of a change to a Uri. This is deferred until the end of the batch if one
+     * is in progress.
+     *
+     * @param uri The Uri that changed
+     */
+    private void notifyChange(@NonNull Uri uri) {
+        if(mPendingNotifications != null) {
+            mPendingNotifications.add(uri);
+        } else {
+            mResolver.notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * Restrict a query to the entries with the flavor profiles most similar to the entry
+     * referenced by a similar entries Uri.
+     *
+     * @param queryBuilder The SQLiteQueryBuilder
+     * @param uri          The similar entries Uri
+     * @param l2           Whether to compare by L2 distance rather than cosine similarity
+     * @return The expression for the score column
+     */
+    @NonNull
+    private String appendSimilar(@NonNull SQLiteQueryBuilder queryBuilder, @NonNull Uri uri,
+                                 boolean l2) {
+        int limit = SIMILAR_LIMIT;
+        final String limitParam = uri.getQueryParameter(Tables.PARAM_LIMIT);
+        if(limitParam != null && !limitParam.isEmpty() && TextUtils.isDigitsOnly(limitParam)
+                && limitParam.length() < 4) {
+            limit = Math.min(Integer.parseInt(limitParam), SIMILAR_MAX_LIMIT);
+        }
+
+        final long entryId = Long.parseLong(uri.getPathSegments().get(1));
+        final int metric = l2 ? FlavorIndex.METRIC_L2 : FlavorIndex.METRIC_COSINE;
+        final FlavorIndex.Results results;
+        synchronized(FlavordexProvider.class) {
+            results = mFlavorIndex.findSimilar(mDbHelper.getReadableDatabase(), entryId, metric,
+                    limit);
+        }
+
+        if(results.count == 0) {
+            queryBuilder.appendWhere("0");
+            return "NULL AS " + Tables.Entries.SCORE;
+        }
+
+        final StringBuilder ids = new StringBuilder();
+        final StringBuilder score = new StringBuilder("CASE ").append(Tables.Entries._ID);
+        for(int i = 0; i < results.count; i++) {
+            if(i > 0) {
+                ids.append(',');
+            }
+            ids.append(results.ids[i]);
+            score.append(" WHEN ").append(results.ids[i]).append(" THEN ")
+                    .append(results.scores[i]);
+        }
+        queryBuilder.appendWhere(Tables.Entries._ID + " IN (" + ids + ")");
+        return score.append(" END AS ").append(Tables.Entries.SCORE).toString();
+    }
+
+    /**
+     * Find the entries that an update is about to move to a different category.
+     *
+     * @param db            The database
+     * @param cat           The new category ID
+     * @param selection     The where clause of the update
+     * @param selectionArgs The values for the parameters of the where clause
+     * @return The database IDs of the entries whose category will change
+     */
+    @NonNull
+    private static long[] findMovedEntries(@NonNull SQLiteDatabase db, @Nullable Long cat,
+                                           @Nullable String selection,
+                                           @Nullable String[] selectionArgs) {
+        String[] args = selectionArgs;
+        if(cat == null) {
+            selection = appendWhere(selection, Tables.Entries.CAT + " NOT NULL");
+        } else {
+            selection = appendWhere(selection, Tables.Entries.CAT + " IS NOT ?");
+            final int count = selectionArgs != null ? selectionArgs.length : 0;
+            args = new String[count + 1];
+            args[0] = cat.toString();
+            if(selectionArgs != null) {
+                System.arraycopy(selectionArgs, 0, args, 1, count);
+            }
+        }
+
+        final Cursor cursor = db.query(Tables.Entries.TABLE_NAME,
+                new String[] {Tables.Entries._ID}, selection, args, null, null, null);
+        try {
+            final long[] ids = new long[cursor.getCount()];
+            for(int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Record the entries whose flavor profiles may have changed after a write. New entries have
+     * no flavors until their flavors are inserted, and entries moved to another category are
+     * found by the update itself, so writes to the entries table only matter here when rows are
+     * deleted.
+     *
+     * @param uri    The Uri that was written to
+     * @param values The values that were written, or null if rows were deleted or the values are
+     *               not relevant
+     */
+    private void invalidateFlavorIndex(@NonNull Uri uri, @Nullable ContentValues values) {
+        switch(sUriMatcher.match(uri)) {
+            case ENTRIES:
+                if(values == null) {
+                    mFlavorIndex.invalidate();
+                }
+                break;
+            case ENTRIES_ID:
+                if(values == null) {
+                    mFlavorIndex.invalidateEntry(ContentUris.parseId(uri));
+                }
+                break;
+            case ENTRIES_FLAVOR:
+                mFlavorIndex.invalidateEntry(Long.parseLong(uri.getPathSegments().get(1)));
+                break;
+            case ENTRIES_FLAVOR_ALL:
+                final Long entryId =
+                        values != null ? values.getAsLong(Tables.EntriesFlavors.ENTRY) : null;
+                if(entryId != null) {
+                    mFlavorIndex.invalidateEntry(entryId);
+                } else {
+                    mFlavorIndex.invalidate();
+                }
+                break;
+            case CATS:
+            case CATS_ID:
+                if(values == null) {
+                    mFlavorIndex.invalidate();
+                }
+                break;
+        }
+    }
+
+    /**
+     * Notify observers of the statistics if the table that changed is one they are computed from.
+     * Deleting a category also deletes its entries, so that is included as well.
+     *
+     * @param table The name of the table that changed
+     */
+    private void notifyStatsChange(@Nullable String table) {
+        if(Tables.Entries.TABLE_NAME.equals(table)
+                || Tables.EntriesFlavors.TABLE_NAME.equals(table)
+                || Tables.Cats.TABLE_NAME.equals(table)) {
+            notifyChange(Tables.Stats.CONTENT_URI);
+        }
+    }
+
+    /**
+     * Check whether a set of Uris contains an ancestor of a Uri. Notifying the ancestor also
+     * notifies observers of all its descendants, so the descendant can be skipped.
+     *
+     * @param uris The set of Uris
+     * @param uri  The Uri to check
+     * @return Whether the set contains an ancestor of the Uri
+     */
+    private static boolean hasAncestor(@NonNull Set<Uri> uris, @NonNull Uri uri) {
+        final List<String> segments = uri.getPathSegments();
+        final Uri.Builder builder = uri.buildUpon().path(null);
+        for(int i = 0; i < segments.size() - 1; i++) {
+            builder.appendPath(segments.get(i));
+            if(uris.contains(builder.build())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Find or create a maker based on data in values, replacing relevant values with the maker's
      * ID. Used while inserting or updating an entry.
@@ -684,6 +1185,31 @@ public class FlavordexProvider extends ContentProvider {
         values.remove(Tables.Entries.MAKER_ID);
     }
 
+    /**
+     * Restrict a query to the entries containing words starting with each word in the search
+     * text. Text with no searchable words matches no entries.
+     *
+     * @param queryBuilder The SQLiteQueryBuilder
+     * @param column       The full-text column to search, or null to search all columns
+     * @param text         The search text, or null or empty to match all entries
+     * @param and          Whether to AND the condition to an existing where clause
+     */
+    private static void appendMatch(@NonNull SQLiteQueryBuilder queryBuilder,
+                                    @Nullable String column, @Nullable String text,
+                                    boolean and) {
+        if(TextUtils.isEmpty(text)) {
+            return;
+        }
+        final String match = SearchUtils.getMatchQuery(column, text);
+        if(match.isEmpty()) {
+            queryBuilder.appendWhere((and ? " AND " : "") + "0");
+            return;
+        }
+        queryBuilder.appendWhere((and ? " AND " : "") + SearchUtils.MATCH_SELECTION_PREFIX);
+        queryBuilder.appendWhereEscapeString(match);
+        queryBuilder.appendWhere(")");
+    }
+
     /**
      * Appends a fragment to a where clause.
      *
@@ -45,6 +45,16 @@ public class Tables {
      */
     private static final String URI_BASE = "content://" + AUTHORITY + "/";
 
+    /**
+     * Query parameter for limiting the number of rows returned by a query
+     */
+    public static final String PARAM_LIMIT = "limit";
+
+    /**
+     * Query parameter for the metric used to compare flavor profiles when finding similar entries
+     */
+    public static final String PARAM_METRIC = "metric";
+
     /**
      * Data contract for the 'entries' table and view.
      *
@@ -73,6 +83,18 @@ public class Tables {
         public static final String RATING = "rating";
         public static final String NOTES = "notes";
 
+        /**
+         * Column added to similar entry results, containing the cosine similarity or L2 distance
+         * between the flavor profiles of the result and the original entry
+         */
+        public static final String SCORE = "score";
+
+        /**
+         * Values for the metric parameter of similar entry queries
+         */
+        public static final String METRIC_COSINE = "cosine";
+        public static final String METRIC_L2 = "l2";
+
         /**
          * Content data types
          */
@@ -88,11 +110,39 @@ public class Tables {
         public static final Uri CONTENT_ID_URI_BASE = Uri.parse(URI_BASE + TABLE_NAME + "/");
         public static final Uri CONTENT_CAT_URI_BASE =
                 Uri.parse(URI_BASE + TABLE_NAME + "/cat/");
+        public static final Uri CONTENT_SEARCH_URI_BASE =
+                Uri.parse(URI_BASE + TABLE_NAME + "/search/");
 
         private Entries() {
         }
     }
 
+    /**
+     * Data contract for the 'entries_search' full-text table.
+     *
+     * @author Steve Guidetti
+     */
+    public static class EntriesSearch {
+        /**
+         * Table names
+         */
+        public static final String TABLE_NAME = "entries_search";
+
+        /**
+         * Column names
+         */
+        public static final String DOCID = "docid";
+        public static final String TITLE = "title";
+        public static final String MAKER = "maker";
+        public static final String ORIGIN = "origin";
+        public static final String LOCATION = "location";
+        public static final String NOTES = "notes";
+        public static final String EXTRAS = "extras";
+
+        private EntriesSearch() {
+        }
+    }
+
     /**
      * Data contract for the 'entries_extras' table.
      *
@@ -112,6 +162,11 @@ public class Tables {
         public static final String EXTRA = "extra";
         public static final String VALUE = "value";
 
+        /**
+         * Content Uris
+         */
+        public static final Uri CONTENT_URI = Uri.parse(URI_BASE + TABLE_NAME);
+
         private EntriesExtras() {
         }
     }
@@ -135,6 +190,11 @@ public class Tables {
         public static final String VALUE = "value";
         public static final String POS = "pos";
 
+        /**
+         * Content Uris
+         */
+        public static final Uri CONTENT_URI = Uri.parse(URI_BASE + TABLE_NAME);
+
         private EntriesFlavors() {
         }
     }
@@ -170,6 +230,7 @@ public class Tables {
         /**
          * Content Uris
          */
+        public static final Uri CONTENT_URI = Uri.parse(URI_BASE + TABLE_NAME);
         public static final Uri CONTENT_ID_URI_BASE = Uri.parse(URI_BASE + TABLE_NAME + "/");
 
         private Extras() {
@@ -251,6 +312,7 @@ public class Tables {
         /**
          * Content Uris
          */
+        public static final Uri CONTENT_URI = Uri.parse(URI_BASE + TABLE_NAME);
         public static final Uri CONTENT_ID_URI_BASE = Uri.parse(URI_BASE + TABLE_NAME + "/");
 
         private Flavors() {
@@ -311,6 +373,7 @@ public class Tables {
         public static final String HASH = "hash";
         public static final String PATH = "path";
         public static final String POS = "pos";
+        public static final String ROTATION = "rotation";
 
         /**
          * Content data types
@@ -323,12 +386,46 @@ public class Tables {
         /**
          * Content Uris
          */
+        public static final Uri CONTENT_URI = Uri.parse(URI_BASE + TABLE_NAME);
         public static final Uri CONTENT_ID_URI_BASE = Uri.parse(URI_BASE + TABLE_NAME + "/");
 
         private Photos() {
         }
     }
 
+    /**
+     * Data contract for the 'photo_blobs' table, which counts the references to each photo file
+     * by its hash.
+     *
+     * @author Steve Guidetti
+     */
+    public static class PhotoBlobs {
+        /**
+         * Table names
+         */
+        public static final String TABLE_NAME = "photo_blobs";
+
+        /**
+         * Column names
+         */
+        public static final String HASH = "hash";
+        public static final String REFS = "refs";
+
+        /**
+         * Content data types
+         */
+        public static final String DATA_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/vnd." + AUTHORITY + ".photo_blob";
+
+        /**
+         * Content Uris
+         */
+        public static final Uri CONTENT_URI = Uri.parse(URI_BASE + TABLE_NAME);
+
+        private PhotoBlobs() {
+        }
+    }
+
     /**
      * Data contract for the 'locations' table.
      *
@@ -400,4 +497,123 @@ public class Tables {
         private Cats() {
         }
     }
+
+    /**
+     * Data contract for the 'stats' table.
+     *
+     * @author Steve Guidetti
+     */
+    public static class Stats {
+        /**
+         * Table names
+         */
+        public static final String TABLE_NAME = "stats";
+
+        /**
+         * Column names
+         */
+        public static final String SCOPE = "scope";
+        public static final String KEY = "key";
+        public static final String NUM_ENTRIES = "num_entries";
+        public static final String RATING_SUM = "rating_sum";
+
+        /**
+         * Scopes of aggregation. The key is the category ID, maker ID, or year and month in the
+         * form YYYYMM (UTC) respectively.
+         */
+        public static final int SCOPE_CAT = 0;
+        public static final int SCOPE_MAKER = 1;
+        public static final int SCOPE_MONTH = 2;
+
+        /**
+         * Content data types
+         */
+        public static final String DATA_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/vnd." + AUTHORITY + ".stat";
+
+        /**
+         * Content Uris
+         */
+        public static final Uri CONTENT_URI = Uri.parse(URI_BASE + TABLE_NAME);
+        public static final Uri CONTENT_CATS_URI = Uri.parse(URI_BASE + TABLE_NAME + "/cats");
+        public static final Uri CONTENT_MAKERS_URI = Uri.parse(URI_BASE + TABLE_NAME + "/makers");
+        public static final Uri CONTENT_MONTHS_URI = Uri.parse(URI_BASE + TABLE_NAME + "/months");
+
+        /**
+         * Provider method to rebuild all statistics from scratch
+         */
+        public static final String METHOD_REBUILD = "rebuild_stats";
+
+        private Stats() {
+        }
+    }
+
+    /**
+     * Data contract for the 'stats_ratings' table, the rating histogram for each row in the
+     * 'stats' table.
+     *
+     * @author Steve Guidetti
+     */
+    public static class StatsRatings {
+        /**
+         * Table names
+         */
+        public static final String TABLE_NAME = "stats_ratings";
+
+        /**
+         * Column names
+         */
+        public static final String SCOPE = "scope";
+        public static final String KEY = "key";
+        public static final String RATING = "rating";
+        public static final String NUM_ENTRIES = "num_entries";
+
+        /**
+         * Content data types
+         */
+        public static final String DATA_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/vnd." + AUTHORITY + ".stat_rating";
+
+        /**
+         * Content Uris
+         */
+        public static final Uri CONTENT_URI = Uri.parse(URI_BASE + "stats/ratings");
+
+        private StatsRatings() {
+        }
+    }
+
+    /**
+     * Data contract for the 'stats_flavors' table, the flavor totals for each category.
+     *
+     * @author Steve Guidetti
+     */
+    public static class StatsFlavors {
+        /**
+         * Table names
+         */
+        public static final String TABLE_NAME = "stats_flavors";
+
+        /**
+         * Column names
+         */
+        public static final String CAT = "cat";
+        public static final String FLAVOR = "flavor";
+        public static final String NUM_VALUES = "num_values";
+        public static final String VALUE_SUM = "value_sum";
+
+        /**
+         * Content data types
+         */
+        public static final String DATA_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/vnd." + AUTHORITY + ".stat_flavor";
+
+        /**
+         * Content Uris
+         */
+        public static final Uri CONTENT_URI = Uri.parse(URI_BASE + "stats/flavors");
+
+        private StatsFlavors() {
+        }
+    }
 }
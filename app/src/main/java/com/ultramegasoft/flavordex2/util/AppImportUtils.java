@@ -35,6 +35,7 @@ import android.net.Uri;
 import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
 
 import com.ultramegasoft.flavordex2.FlavordexApp;
 import com.ultramegasoft.flavordex2.R;
@@ -43,6 +44,7 @@ import com.ultramegasoft.flavordex2.widget.EntryHolder;
 import com.ultramegasoft.flavordex2.widget.PhotoHolder;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Helpers for importing journal entries from the original Flavordex apps.
@@ -50,6 +52,8 @@ import java.util.ArrayList;
  * @author Steve Guidetti
  */
 public class AppImportUtils {
+    private static final String TAG = "AppImportUtils";
+
     /**
      * Application IDs
      */
@@ -199,7 +203,19 @@ public class AppImportUtils {
      */
     @NonNull
     public static Uri getEntriesUri(int app) {
-        return Uri.parse("content://" + sPackageNames[app] + ".provider/entries");
+        return getContentUri(app, "entries");
+    }
+
+    /**
+     * Get a content Uri for the app's ContentProvider.
+     *
+     * @param app  The app
+     * @param path The path of the Uri
+     * @return The content Uri
+     */
+    @NonNull
+    private static Uri getContentUri(int app, @NonNull String path) {
+        return Uri.parse("content://" + sPackageNames[app] + ".provider/" + path);
     }
 
     /**
@@ -226,58 +242,25 @@ public class AppImportUtils {
     }
 
     /**
-     * Import an entry from a Flavordex app.
+     * Read an entry from an original Flavordex app.
      *
-     * @param context  The Context
-     * @param app      The source app
-     * @param sourceId The ID of the source entry
+     * @param app    The source app
+     * @param cursor The Cursor for the source entry row
      * @return The imported entry
      */
     @NonNull
-    public static EntryHolder importEntry(@NonNull Context context, int app, long sourceId) {
-        if(app == APP_FD2_LITE) {
-            return importFd2LiteEntry(context, sourceId);
-        } else {
-            return importLegacyEntry(context, app, sourceId);
-        }
-    }
-
-    /**
-     * Import an entry from an original Flavordex app.
-     *
-     * @param context  The Context
-     * @param app      The source app
-     * @param sourceId The ID of the source entry
-     * @return The imported entry
-     */
-    @NonNull
-    private static EntryHolder importLegacyEntry(@NonNull Context context, int app, long sourceId) {
+    private static EntryHolder readLegacyEntry(int app, @NonNull Cursor cursor) {
         final EntryHolder entry = new EntryHolder();
-        final ContentResolver cr = context.getContentResolver();
-        final Uri uri = ContentUris.withAppendedId(getEntriesUri(app), sourceId);
-        final Cursor cursor = cr.query(uri, null, null, null, null);
-        if(cursor != null) {
-            try {
-                if(cursor.moveToFirst()) {
-                    entry.title = cursor.getString(cursor.getColumnIndex(EntriesColumns.TITLE));
-                    entry.maker = cursor.getString(cursor.getColumnIndex(EntriesColumns.MAKER));
-                    entry.origin = cursor.getString(cursor.getColumnIndex(EntriesColumns.ORIGIN));
-                    entry.location =
-                            cursor.getString(cursor.getColumnIndex(EntriesColumns.LOCATION));
-                    entry.date = cursor.getLong(cursor.getColumnIndex(EntriesColumns.DATE));
-                    entry.price = cursor.getString(cursor.getColumnIndex(EntriesColumns.PRICE));
-                    entry.rating = cursor.getFloat(cursor.getColumnIndex(EntriesColumns.RATING));
-                    entry.notes = cursor.getString(cursor.getColumnIndex(EntriesColumns.NOTES));
-
-                    getExtras(sExtraColumns[app], cursor, entry);
-                }
-            } finally {
-                cursor.close();
-            }
-        }
+        entry.title = cursor.getString(cursor.getColumnIndex(EntriesColumns.TITLE));
+        entry.maker = cursor.getString(cursor.getColumnIndex(EntriesColumns.MAKER));
+        entry.origin = cursor.getString(cursor.getColumnIndex(EntriesColumns.ORIGIN));
+        entry.location = cursor.getString(cursor.getColumnIndex(EntriesColumns.LOCATION));
+        entry.date = cursor.getLong(cursor.getColumnIndex(EntriesColumns.DATE));
+        entry.price = cursor.getString(cursor.getColumnIndex(EntriesColumns.PRICE));
+        entry.rating = cursor.getFloat(cursor.getColumnIndex(EntriesColumns.RATING));
+        entry.notes = cursor.getString(cursor.getColumnIndex(EntriesColumns.NOTES));
 
-        getFlavors(context, app, uri, entry);
-        getPhotos(context, uri, entry);
+        getExtras(sExtraColumns[app], cursor, entry);
 
         switch(app) {
             case APP_BEER:
@@ -318,15 +301,13 @@ public class AppImportUtils {
     /**
      * Insert the flavors from the source entry into the new local entry.
      *
-     * @param context   The Context
-     * @param app       The app
+     * @param cr        The ContentResolver
+     * @param names     The list of flavor names for the app
      * @param sourceUri The entry Uri from the source app
      * @param entry     The new local entry
      */
-    private static void getFlavors(@NonNull Context context, int app, @NonNull Uri sourceUri,
-                                   @NonNull EntryHolder entry) {
-        final ContentResolver cr = context.getContentResolver();
-        final String[] names = getFlavorNames(context, app);
+    private static void getFlavors(@NonNull ContentResolver cr, @NonNull String[] names,
+                                   @NonNull Uri sourceUri, @NonNull EntryHolder entry) {
         final Cursor cursor = cr.query(Uri.withAppendedPath(sourceUri, "flavor"), null, null, null,
                 FlavorsColumns.FLAVOR + " ASC");
         if(cursor != null) {
@@ -351,13 +332,12 @@ public class AppImportUtils {
     /**
      * Insert the photos from the source entry into the new local entry.
      *
-     * @param context   The Context
+     * @param cr        The ContentResolver
      * @param sourceUri The entry Uri from the source app
      * @param entry     The new local entry
      */
-    private static void getPhotos(@NonNull Context context, @NonNull Uri sourceUri,
+    private static void getPhotos(@NonNull ContentResolver cr, @NonNull Uri sourceUri,
                                   @NonNull EntryHolder entry) {
-        final ContentResolver cr = context.getContentResolver();
         final Cursor cursor = cr.query(Uri.withAppendedPath(sourceUri, "photos"), null, null, null,
                 PhotosColumns._ID + " ASC");
         if(cursor != null) {
@@ -378,94 +358,110 @@ public class AppImportUtils {
     }
 
     /**
-     * Import an entry from Flavordex 2 Lite.
+     * Read an entry from Flavordex 2 Lite.
      *
-     * @param context  The Context
-     * @param sourceId The ID of the source entry
+     * @param cursor The Cursor for the source entry row
      * @return The imported entry
      */
     @NonNull
-    private static EntryHolder importFd2LiteEntry(@NonNull Context context, long sourceId) {
+    private static EntryHolder readFd2LiteEntry(@NonNull Cursor cursor) {
         final EntryHolder entry = new EntryHolder();
-        final ContentResolver cr = context.getContentResolver();
-        final Uri uri = ContentUris.withAppendedId(getEntriesUri(APP_FD2_LITE), sourceId);
-        final Cursor cursor = cr.query(uri, null, null, null, null);
-        if(cursor != null) {
-            try {
-                if(cursor.moveToFirst()) {
-                    if(cursor.getColumnIndex(Tables.Entries.UUID) > -1) {
-                        entry.uuid = cursor.getString(cursor.getColumnIndex(Tables.Entries.UUID));
-                    }
-                    entry.title = cursor.getString(cursor.getColumnIndex(Tables.Entries.TITLE));
-                    entry.catName = cursor.getString(cursor.getColumnIndex(Tables.Entries.CAT));
-                    entry.maker = cursor.getString(cursor.getColumnIndex(Tables.Entries.MAKER));
-                    entry.origin = cursor.getString(cursor.getColumnIndex(Tables.Entries.ORIGIN));
-                    entry.price = cursor.getString(cursor.getColumnIndex(Tables.Entries.PRICE));
-                    entry.location =
-                            cursor.getString(cursor.getColumnIndex(Tables.Entries.LOCATION));
-                    entry.date = cursor.getLong(cursor.getColumnIndex(Tables.Entries.DATE));
-                    entry.rating = cursor.getFloat(cursor.getColumnIndex(Tables.Entries.RATING));
-                    entry.notes = cursor.getString(cursor.getColumnIndex(Tables.Entries.NOTES));
-
-                    getFd2LiteExtras(context, uri, entry);
-                    getFd2LiteFlavors(context, uri, entry);
-                    getFd2LitePhotos(context, uri, entry);
-                }
-            } finally {
-                cursor.close();
-            }
+        if(cursor.getColumnIndex(Tables.Entries.UUID) > -1) {
+            entry.uuid = cursor.getString(cursor.getColumnIndex(Tables.Entries.UUID));
         }
-
+        entry.title = cursor.getString(cursor.getColumnIndex(Tables.Entries.TITLE));
+        entry.catName = cursor.getString(cursor.getColumnIndex(Tables.Entries.CAT));
+        entry.maker = cursor.getString(cursor.getColumnIndex(Tables.Entries.MAKER));
+        entry.origin = cursor.getString(cursor.getColumnIndex(Tables.Entries.ORIGIN));
+        entry.price = cursor.getString(cursor.getColumnIndex(Tables.Entries.PRICE));
+        entry.location = cursor.getString(cursor.getColumnIndex(Tables.Entries.LOCATION));
+        entry.date = cursor.getLong(cursor.getColumnIndex(Tables.Entries.DATE));
+        entry.rating = cursor.getFloat(cursor.getColumnIndex(Tables.Entries.RATING));
+        entry.notes = cursor.getString(cursor.getColumnIndex(Tables.Entries.NOTES));
         return entry;
     }
 
     /**
-     * Insert the extra fields from the Flavordex 2 Lite source entry into the new local entry.
+     * Insert the extra field from the current row of a Flavordex 2 Lite extras Cursor into the
+     * new local entry.
+     *
+     * @param cursor The Cursor for the source extras
+     * @param entry  The new local entry
+     */
+    private static void readFd2LiteExtra(@NonNull Cursor cursor, @NonNull EntryHolder entry) {
+        final String name = cursor.getString(cursor.getColumnIndex(Tables.Extras.NAME));
+        final String value = cursor.getString(cursor.getColumnIndex(Tables.EntriesExtras.VALUE));
+        entry.addExtra(0, name, true, value);
+    }
+
+    /**
+     * Insert the flavor from the current row of a Flavordex 2 Lite flavors Cursor into the new
+     * local entry.
+     *
+     * @param cursor The Cursor for the source flavors
+     * @param entry  The new local entry
+     */
+    private static void readFd2LiteFlavor(@NonNull Cursor cursor, @NonNull EntryHolder entry) {
+        final String name = cursor.getString(cursor.getColumnIndex(Tables.EntriesFlavors.FLAVOR));
+        final int value = cursor.getInt(cursor.getColumnIndex(Tables.EntriesFlavors.VALUE));
+        entry.addFlavor(name, value);
+    }
+
+    /**
+     * Insert the photo from the current row of a Flavordex 2 Lite photos Cursor into the new
+     * local entry.
+     *
+     * @param cursor The Cursor for the source photos
+     * @param entry  The new local entry
+     */
+    private static void readFd2LitePhoto(@NonNull Cursor cursor, @NonNull EntryHolder entry) {
+        final String path = cursor.getString(cursor.getColumnIndex(Tables.Photos.PATH));
+        final Uri uri = PhotoUtils.parsePath(path);
+        if(uri == null) {
+            return;
+        }
+        final String hash = cursor.getString(cursor.getColumnIndex(Tables.Photos.HASH));
+        final int pos = cursor.getInt(cursor.getColumnIndex(Tables.Photos.POS));
+        entry.getPhotos().add(new PhotoHolder(0, hash, uri, pos));
+    }
+
+    /**
+     * Insert the extras, flavors, and photos from a Flavordex 2 Lite source entry into the new
+     * local entry.
      *
-     * @param context   The Context
+     * @param cr        The ContentResolver
      * @param sourceUri The entry Uri from the source app
      * @param entry     The new local entry
      */
-    private static void getFd2LiteExtras(@NonNull Context context, @NonNull Uri sourceUri,
-                                         @NonNull EntryHolder entry) {
-        final ContentResolver cr = context.getContentResolver();
-        final Cursor cursor =
-                cr.query(Uri.withAppendedPath(sourceUri, "extras"), null, null, null, null);
+    private static void getFd2LiteChildren(@NonNull ContentResolver cr, @NonNull Uri sourceUri,
+                                           @NonNull EntryHolder entry) {
+        Cursor cursor = cr.query(Uri.withAppendedPath(sourceUri, "extras"), null, null, null, null);
         if(cursor != null) {
             try {
-                String name;
-                String value;
                 while(cursor.moveToNext()) {
-                    name = cursor.getString(cursor.getColumnIndex(Tables.Extras.NAME));
-                    value = cursor.getString(cursor.getColumnIndex(Tables.EntriesExtras.VALUE));
-                    entry.addExtra(0, name, true, value);
+                    readFd2LiteExtra(cursor, entry);
                 }
             } finally {
                 cursor.close();
             }
         }
-    }
 
-    /**
-     * Insert the flavors from the Flavordex 2 Lite source entry into the new local entry.
-     *
-     * @param context   The Context
-     * @param sourceUri The entry Uri from the source app
-     * @param entry     The new local entry
-     */
-    private static void getFd2LiteFlavors(@NonNull Context context, @NonNull Uri sourceUri,
-                                          @NonNull EntryHolder entry) {
-        final ContentResolver cr = context.getContentResolver();
-        final Cursor cursor =
-                cr.query(Uri.withAppendedPath(sourceUri, "flavor"), null, null, null, null);
+        cursor = cr.query(Uri.withAppendedPath(sourceUri, "flavor"), null, null, null, null);
         if(cursor != null) {
             try {
-                String name;
-                int value;
                 while(cursor.moveToNext()) {
-                    name = cursor.getString(cursor.getColumnIndex(Tables.EntriesFlavors.FLAVOR));
-                    value = cursor.getInt(cursor.getColumnIndex(Tables.EntriesFlavors.VALUE));
-                    entry.addFlavor(name, value);
+                    readFd2LiteFlavor(cursor, entry);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        cursor = cr.query(Uri.withAppendedPath(sourceUri, "photos"), null, null, null, null);
+        if(cursor != null) {
+            try {
+                while(cursor.moveToNext()) {
+                    readFd2LitePhoto(cursor, entry);
                 }
             } finally {
                 cursor.close();
@@ -474,37 +470,235 @@ public class AppImportUtils {
     }
 
     /**
-     * Insert the photos from the Flavordex 2 Lite source entry into the new local entry.
-     *
-     * @param context   The Context
-     * @param sourceUri The entry Uri from the source app
-     * @param entry     The new local entry
+     * Loads entries from a Flavordex app in chunks. The entry rows for each chunk are read with a
+     * single query sorted by ID. For Flavordex 2 Lite, the extras, flavors, and photos for the
+     * chunk are also read with one sorted query each and merged into the entries. The original
+     * apps only expose these per entry, so they are still queried for each entry.
      */
-    private static void getFd2LitePhotos(@NonNull Context context, @NonNull Uri sourceUri,
-                                         @NonNull EntryHolder entry) {
-        final ContentResolver cr = context.getContentResolver();
-        final Cursor cursor =
-                cr.query(Uri.withAppendedPath(sourceUri, "photos"), null, null, null, null);
-        if(cursor != null) {
+    public static class EntryLoader {
+        /**
+         * The maximum number of entries to load in each chunk
+         */
+        private static final int CHUNK_SIZE = 100;
+
+        /**
+         * The Context
+         */
+        @NonNull
+        private final Context mContext;
+
+        /**
+         * The source app
+         */
+        private final int mApp;
+
+        /**
+         * The sorted list of source entry IDs to load
+         */
+        @NonNull
+        private final long[] mSourceIds;
+
+        /**
+         * The index of the first source ID in the next chunk
+         */
+        private int mOffset;
+
+        /**
+         * The cached list of flavor names for the app
+         */
+        @Nullable
+        private String[] mFlavorNames;
+
+        /**
+         * Whether the source app supports querying the extras, flavors, and photos of many
+         * entries at once
+         */
+        private boolean mBulkQueries;
+
+        /**
+         * @param context   The Context
+         * @param app       The source app
+         * @param sourceIds The IDs of the source entries to load
+         */
+        public EntryLoader(@NonNull Context context, int app, @NonNull long[] sourceIds) {
+            mContext = context;
+            mApp = app;
+            mSourceIds = sourceIds.clone();
+            Arrays.sort(mSourceIds);
+            mBulkQueries = app == APP_FD2_LITE;
+        }
+
+        /**
+         * Get the number of source entries to load.
+         *
+         * @return The number of source entries
+         */
+        public int getCount() {
+            return mSourceIds.length;
+        }
+
+        /**
+         * Get the number of source entries that have been loaded so far.
+         *
+         * @return The number of source entries loaded
+         */
+        public int getPosition() {
+            return mOffset;
+        }
+
+        /**
+         * Load the next chunk of entries.
+         *
+         * @return The entries, or null if there are no more entries
+         */
+        @Nullable
+        public ArrayList<EntryHolder> next() {
+            if(mOffset >= mSourceIds.length) {
+                return null;
+            }
+
+            final int end = Math.min(mOffset + CHUNK_SIZE, mSourceIds.length);
+            final StringBuilder ids = new StringBuilder();
+            for(int i = mOffset; i < end; i++) {
+                if(i > mOffset) {
+                    ids.append(',');
+                }
+                ids.append(mSourceIds[i]);
+            }
+            mOffset = end;
+
+            final ArrayList<EntryHolder> entries = new ArrayList<>();
+            final ArrayList<Long> entryIds = new ArrayList<>();
+            final ContentResolver cr = mContext.getContentResolver();
+            final String where = BaseColumns._ID + " IN (" + ids + ")";
+            final Cursor cursor = cr.query(getEntriesUri(mApp), null, where, null,
+                    BaseColumns._ID + " ASC");
+            if(cursor == null) {
+                return entries;
+            }
             try {
-                String path;
-                Uri uri;
-                String hash;
-                int pos;
-                final ArrayList<PhotoHolder> photos = entry.getPhotos();
+                final int idColumn = cursor.getColumnIndex(BaseColumns._ID);
                 while(cursor.moveToNext()) {
-                    path = cursor.getString(cursor.getColumnIndex(Tables.Photos.PATH));
-                    uri = PhotoUtils.parsePath(path);
-                    if(uri == null) {
-                        continue;
-                    }
-                    hash = cursor.getString(cursor.getColumnIndex(Tables.Photos.HASH));
-                    pos = cursor.getInt(cursor.getColumnIndex(Tables.Photos.POS));
-                    photos.add(new PhotoHolder(0, hash, uri, pos));
+                    entryIds.add(cursor.getLong(idColumn));
+                    entries.add(mApp == APP_FD2_LITE ? readFd2LiteEntry(cursor)
+                            : readLegacyEntry(mApp, cursor));
                 }
             } finally {
                 cursor.close();
             }
+
+            if(mBulkQueries && !loadChildren(cr, ids, entries, entryIds)) {
+                mBulkQueries = false;
+            }
+            if(!mBulkQueries) {
+                for(int i = 0; i < entries.size(); i++) {
+                    final Uri uri = ContentUris.withAppendedId(getEntriesUri(mApp),
+                            entryIds.get(i));
+                    if(mApp == APP_FD2_LITE) {
+                        getFd2LiteChildren(cr, uri, entries.get(i));
+                    } else {
+                        getFlavors(cr, getFlavorNames(), uri, entries.get(i));
+                        getPhotos(cr, uri, entries.get(i));
+                    }
+                }
+            }
+
+            return entries;
+        }
+
+        /**
+         * Get the list of flavor names for the app, loading them the first time.
+         *
+         * @return The list of flavor names
+         */
+        @NonNull
+        private String[] getFlavorNames() {
+            if(mFlavorNames == null) {
+                mFlavorNames = AppImportUtils.getFlavorNames(mContext, mApp);
+            }
+            return mFlavorNames;
+        }
+
+        /**
+         * Load the extras, flavors, and photos for a chunk of Flavordex 2 Lite entries using one
+         * sorted query for each table.
+         *
+         * @param cr       The ContentResolver
+         * @param ids      The comma separated list of source entry IDs
+         * @param entries  The entries in the chunk, sorted by source ID
+         * @param entryIds The source IDs of the entries
+         * @return Whether the source app supports the queries
+         */
+        private boolean loadChildren(@NonNull ContentResolver cr, @NonNull CharSequence ids,
+                                     @NonNull ArrayList<EntryHolder> entries,
+                                     @NonNull ArrayList<Long> entryIds) {
+            final Cursor extras = query(cr, "entries_extras", Tables.EntriesExtras.ENTRY, ids,
+                    Tables.EntriesExtras._ID);
+            final Cursor flavors = query(cr, "entries_flavors", Tables.EntriesFlavors.ENTRY, ids,
+                    Tables.EntriesFlavors.POS);
+            final Cursor photos = query(cr, "photos", Tables.Photos.ENTRY, ids,
+                    Tables.Photos.POS);
+            try {
+                if(extras == null || flavors == null || photos == null) {
+                    return false;
+                }
+
+                final int extraEntry = extras.getColumnIndex(Tables.EntriesExtras.ENTRY);
+                final int flavorEntry = flavors.getColumnIndex(Tables.EntriesFlavors.ENTRY);
+                final int photoEntry = photos.getColumnIndex(Tables.Photos.ENTRY);
+                for(int i = 0; i < entries.size(); i++) {
+                    final EntryHolder entry = entries.get(i);
+                    final long id = entryIds.get(i);
+                    while(EntryStream.seek(extras, extraEntry, id)) {
+                        readFd2LiteExtra(extras, entry);
+                        extras.moveToNext();
+                    }
+                    while(EntryStream.seek(flavors, flavorEntry, id)) {
+                        readFd2LiteFlavor(flavors, entry);
+                        flavors.moveToNext();
+                    }
+                    while(EntryStream.seek(photos, photoEntry, id)) {
+                        readFd2LitePhoto(photos, entry);
+                        photos.moveToNext();
+                    }
+                }
+                return true;
+            } finally {
+                for(Cursor cursor : new Cursor[] {extras, flavors, photos}) {
+                    if(cursor != null) {
+                        cursor.close();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Query the rows of a source table belonging to a list of entries, sorted by entry ID.
+         *
+         * @param cr       The ContentResolver
+         * @param path     The path of the table in the source ContentProvider
+         * @param idColumn The name of the column containing the entry ID
+         * @param ids      The comma separated list of source entry IDs
+         * @param order    The column to sort by within each entry
+         * @return The Cursor positioned on the first row, or null if the query is not supported
+         */
+        @Nullable
+        private Cursor query(@NonNull ContentResolver cr, @NonNull String path,
+                             @NonNull String idColumn, @NonNull CharSequence ids,
+                             @NonNull String order) {
+            final String where = idColumn + " IN (" + ids + ")";
+            final String sort = idColumn + " ASC, " + order + " ASC";
+            try {
+                final Cursor cursor =
+                        cr.query(getContentUri(mApp, path), null, where, null, sort);
+                if(cursor != null) {
+                    cursor.moveToFirst();
+                }
+                return cursor;
+            } catch(IllegalArgumentException | SecurityException e) {
+                Log.w(TAG, "Bulk queries not supported by source app", e);
+                return null;
+            }
         }
     }
 
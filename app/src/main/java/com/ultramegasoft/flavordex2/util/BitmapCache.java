@@ -22,33 +22,37 @@
  */
 package com.ultramegasoft.flavordex2.util;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
 import android.graphics.Bitmap;
-import android.os.Bundle;
-import android.os.Parcel;
-import android.os.Parcelable;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.util.LruCache;
+import android.support.v4.app.ActivityManagerCompat;
+import android.support.v4.util.LruCache;
+import android.widget.ImageView;
 
-import java.util.Map;
+import java.util.IdentityHashMap;
 
 /**
- * Memory cache for Bitmaps.
+ * Process-wide memory cache for Bitmaps. The cache lives as long as the process, so Bitmaps
+ * survive configuration changes without being saved with the instance state.
+ * <p>
+ * Bitmaps shown through {@link #bind} are reference counted by the Views displaying them, and are
+ * returned to the BitmapPool once they are both out of the cache and no longer displayed. Other
+ * Bitmaps may still be on screen when they leave the cache, so they are left for the garbage
+ * collector.
  *
  * @author Steve Guidetti
  */
-public class BitmapCache implements Parcelable {
-    public static final Creator<BitmapCache> CREATOR = new Creator<BitmapCache>() {
-        @Override
-        public BitmapCache createFromParcel(Parcel in) {
-            return new BitmapCache(in);
-        }
-
-        @Override
-        public BitmapCache[] newArray(int size) {
-            return new BitmapCache[size];
-        }
-    };
+public class BitmapCache {
+    /**
+     * The shared instance
+     */
+    @Nullable
+    private static BitmapCache sInstance;
 
     /**
      * The memory cache for storing data
@@ -56,29 +60,61 @@ public class BitmapCache implements Parcelable {
     @NonNull
     private final LruCache<String, Bitmap> mCache;
 
-    public BitmapCache() {
-        final long maxMem = Runtime.getRuntime().maxMemory();
-        final int cacheSize = (int)maxMem / 8;
+    /**
+     * The references to the Bitmaps displayed through this cache, also used as the lock for them
+     */
+    @NonNull
+    private final IdentityHashMap<Bitmap, Ref> mRefs = new IdentityHashMap<>();
+
+    /**
+     * @param cacheSize The maximum number of bytes to store
+     */
+    private BitmapCache(int cacheSize) {
         mCache = new LruCache<String, Bitmap>(cacheSize) {
-            @SuppressWarnings("MethodDoesntCallSuperMethod")
             @Override
-            protected int sizeOf(String key, Bitmap value) {
+            protected int sizeOf(@NonNull String key, @NonNull Bitmap value) {
                 return value.getByteCount();
             }
+
+            @Override
+            protected void entryRemoved(boolean evicted, @NonNull String key,
+                                        @NonNull Bitmap oldValue, @Nullable Bitmap newValue) {
+                if(oldValue != newValue) {
+                    onRemoved(oldValue);
+                }
+            }
         };
     }
 
-    private BitmapCache(Parcel in) {
-        this();
-        final Bundle bundle = in.readBundle(BitmapCache.class.getClassLoader());
-        for(String key : bundle.keySet()) {
-            final Bitmap bitmap = bundle.getParcelable(key);
-            if(bitmap != null) {
-                put(key, bitmap);
-            }
+    /**
+     * Create the shared instance sized according to the memory class of the device. This should
+     * be called when the application is created.
+     *
+     * @param context The Context
+     */
+    public static synchronized void init(@NonNull Context context) {
+        if(sInstance == null) {
+            final ActivityManager am =
+                    (ActivityManager)context.getSystemService(Context.ACTIVITY_SERVICE);
+            int cacheSize = am.getMemoryClass() * 1024 * 1024;
+            cacheSize /= ActivityManagerCompat.isLowRamDevice(am) ? 16 : 8;
+            sInstance = new BitmapCache(cacheSize);
         }
     }
 
+    /**
+     * Get the shared instance.
+     *
+     * @return The BitmapCache
+     */
+    @NonNull
+    public static synchronized BitmapCache getInstance() {
+        if(sInstance == null) {
+            sInstance = new BitmapCache((int)(Runtime.getRuntime().maxMemory() / 8));
+        }
+        return sInstance;
+    }
+
     /**
      * Store a Bitmap in the cache.
      *
@@ -86,6 +122,12 @@ public class BitmapCache implements Parcelable {
      * @param bitmap The Bitmap to store
      */
     public void put(@NonNull Object key, @NonNull Bitmap bitmap) {
+        synchronized(mRefs) {
+            final Ref ref = mRefs.get(bitmap);
+            if(ref != null) {
+                ref.cached = true;
+            }
+        }
         mCache.put(key.toString(), bitmap);
     }
 
@@ -109,18 +151,140 @@ public class BitmapCache implements Parcelable {
         mCache.remove(key.toString());
     }
 
-    @SuppressWarnings("SameReturnValue")
-    @Override
-    public int describeContents() {
-        return 0;
+    /**
+     * Show a cached Bitmap in an ImageView, releasing the Bitmap it was showing before. The
+     * Bitmap is counted as in use by the ImageView until it is bound to another Bitmap or
+     * unbound.
+     *
+     * @param imageView The ImageView
+     * @param key       The key referencing the Bitmap in the cache
+     * @param bitmap    The Bitmap to show, or null to clear the ImageView
+     */
+    public void bind(@NonNull ImageView imageView, @NonNull Object key, @Nullable Bitmap bitmap) {
+        final Bitmap oldBitmap = getBitmap(imageView);
+        if(oldBitmap == bitmap) {
+            return;
+        }
+        if(bitmap != null) {
+            acquire(key.toString(), bitmap);
+        }
+        imageView.setImageBitmap(bitmap);
+        if(oldBitmap != null) {
+            release(oldBitmap);
+        }
     }
 
-    @Override
-    public void writeToParcel(Parcel dest, int flags) {
-        final Bundle bundle = new Bundle();
-        for(Map.Entry<String, Bitmap> entry : mCache.snapshot().entrySet()) {
-            bundle.putParcelable(entry.getKey(), entry.getValue());
+    /**
+     * Clear an ImageView and release the Bitmap it was showing.
+     *
+     * @param imageView The ImageView
+     */
+    public void unbind(@NonNull ImageView imageView) {
+        final Bitmap bitmap = getBitmap(imageView);
+        imageView.setImageDrawable(null);
+        if(bitmap != null) {
+            release(bitmap);
         }
-        dest.writeBundle(bundle);
+    }
+
+    /**
+     * Get the Bitmap shown by an ImageView.
+     *
+     * @param imageView The ImageView
+     * @return The Bitmap, or null if the ImageView is not showing a Bitmap
+     */
+    @Nullable
+    private static Bitmap getBitmap(@NonNull ImageView imageView) {
+        final Drawable drawable = imageView.getDrawable();
+        if(drawable instanceof BitmapDrawable) {
+            return ((BitmapDrawable)drawable).getBitmap();
+        }
+        return null;
+    }
+
+    /**
+     * Count a Bitmap as in use by a View.
+     *
+     * @param key    The key referencing the Bitmap in the cache
+     * @param bitmap The Bitmap
+     */
+    private void acquire(@NonNull String key, @NonNull Bitmap bitmap) {
+        synchronized(mRefs) {
+            Ref ref = mRefs.get(bitmap);
+            if(ref == null) {
+                ref = new Ref();
+                ref.cached = mCache.get(key) == bitmap;
+                mRefs.put(bitmap, ref);
+            }
+            ref.count++;
+        }
+    }
+
+    /**
+     * Stop counting a Bitmap as in use by a View, returning it to the BitmapPool if it is no
+     * longer in use or in the cache. Bitmaps that were not acquired are ignored.
+     *
+     * @param bitmap The Bitmap
+     */
+    private void release(@NonNull Bitmap bitmap) {
+        synchronized(mRefs) {
+            final Ref ref = mRefs.get(bitmap);
+            if(ref == null || --ref.count > 0 || ref.cached) {
+                return;
+            }
+            mRefs.remove(bitmap);
+        }
+        PhotoUtils.getBitmapPool().put(bitmap);
+    }
+
+    /**
+     * Called when a Bitmap leaves the cache. The Bitmap is returned to the BitmapPool if it has
+     * been displayed through this cache and no View is using it.
+     *
+     * @param bitmap The Bitmap
+     */
+    private void onRemoved(@NonNull Bitmap bitmap) {
+        synchronized(mRefs) {
+            final Ref ref = mRefs.get(bitmap);
+            if(ref == null) {
+                return;
+            }
+            if(ref.count > 0) {
+                ref.cached = false;
+                return;
+            }
+            mRefs.remove(bitmap);
+        }
+        PhotoUtils.getBitmapPool().put(bitmap);
+    }
+
+    /**
+     * Release memory according to the level provided by onTrimMemory.
+     *
+     * @param level The trim level
+     */
+    public synchronized void trimMemory(int level) {
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            mCache.evictAll();
+        } else if(level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * The references to a Bitmap displayed through the cache.
+     */
+    private static class Ref {
+        /**
+         * The number of Views showing the Bitmap
+         */
+        int count;
+
+        /**
+         * Whether the Bitmap is in the cache
+         */
+        boolean cached;
     }
 }
@@ -0,0 +1,356 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pool of unused Bitmaps that can be reused by the decoder or as drawing targets, avoiding an
+ * allocation for each decoded image. Bitmaps are grouped into buckets by their allocation size
+ * and any Bitmap at least as large as the request can be reconfigured to fit, which requires
+ * KitKat or later. On older versions the pool is always empty. Only Bitmaps that are no longer
+ * referenced by any View may be added.
+ *
+ * @author Steve Guidetti
+ */
+public class BitmapPool {
+    /**
+     * The largest multiple of the requested size to accept from the pool
+     */
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    /**
+     * Whether the platform supports reusing Bitmaps of different sizes
+     */
+    private static final boolean SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+
+    /**
+     * The maximum number of bytes to hold in the pool
+     */
+    private final long mMaxBytes;
+
+    /**
+     * The pooled Bitmaps, keyed by their allocation size
+     */
+    @NonNull
+    private final TreeMap<Integer, ArrayList<Bitmap>> mBuckets = new TreeMap<>();
+
+    /**
+     * The number of bytes currently held in the pool
+     */
+    private long mSize;
+
+    /**
+     * Counters for monitoring the pool
+     */
+    private int mHits;
+    private int mMisses;
+    private int mDecodes;
+    private long mAllocatedBytes;
+
+    /**
+     * @param maxBytes The maximum number of bytes to hold in the pool
+     */
+    public BitmapPool(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Get a Bitmap from the pool reconfigured to the requested dimensions. The contents of the
+     * Bitmap are undefined.
+     *
+     * @param width  The required width
+     * @param height The required height
+     * @param config The required configuration
+     * @return A Bitmap, or null if none in the pool are large enough
+     */
+    @Nullable
+    public synchronized Bitmap get(int width, int height, @NonNull Bitmap.Config config) {
+        final Bitmap bitmap = take(width, height, config);
+        if(bitmap != null) {
+            reconfigure(bitmap, width, height, config);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Get a Bitmap from the pool that is large enough to be used by the decoder as the target
+     * for an image of the given size. The decoder reconfigures the Bitmap itself.
+     *
+     * @param width  The width of the decoded image
+     * @param height The height of the decoded image
+     * @param config The configuration of the decoded image
+     * @return A Bitmap, or null if none in the pool are large enough
+     */
+    @Nullable
+    public synchronized Bitmap getForDecode(int width, int height,
+                                            @NonNull Bitmap.Config config) {
+        return take(width, height, config);
+    }
+
+    /**
+     * Return a Bitmap to the pool. The Bitmap must no longer be used by anything else. Bitmaps
+     * that cannot be reused are left for the garbage collector.
+     *
+     * @param bitmap The Bitmap
+     */
+    public synchronized void put(@NonNull Bitmap bitmap) {
+        if(!SUPPORTED || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+
+        final int size = getAllocationSize(bitmap);
+        if(size > mMaxBytes / 2) {
+            return;
+        }
+
+        ArrayList<Bitmap> bucket = mBuckets.get(size);
+        if(bucket == null) {
+            bucket = new ArrayList<>();
+            mBuckets.put(size, bucket);
+        }
+        for(Bitmap pooled : bucket) {
+            if(pooled == bitmap) {
+                return;
+            }
+        }
+        bucket.add(bitmap);
+        mSize += size;
+
+        while(mSize > mMaxBytes) {
+            final Map.Entry<Integer, ArrayList<Bitmap>> largest = mBuckets.lastEntry();
+            removeFromBucket(largest.getKey(), largest.getValue());
+        }
+    }
+
+    /**
+     * Release memory according to the level provided by onTrimMemory.
+     *
+     * @param level The trim level
+     */
+    public synchronized void trimMemory(int level) {
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mBuckets.clear();
+            mSize = 0;
+        }
+    }
+
+    /**
+     * Record the result of decoding an image.
+     *
+     * @param bitmap The decoded Bitmap
+     * @param reused The Bitmap taken from the pool for the decode, if any
+     */
+    public synchronized void recordDecode(@NonNull Bitmap bitmap, @Nullable Bitmap reused) {
+        mDecodes++;
+        if(bitmap != reused) {
+            mAllocatedBytes += getAllocationSize(bitmap);
+        }
+    }
+
+    /**
+     * Record the allocation of a new Bitmap outside of the decoder.
+     *
+     * @param bitmap The new Bitmap
+     */
+    public synchronized void recordAllocation(@NonNull Bitmap bitmap) {
+        mAllocatedBytes += getAllocationSize(bitmap);
+    }
+
+    /**
+     * Get a snapshot of the counters for monitoring the pool.
+     *
+     * @return The current statistics
+     */
+    @NonNull
+    public synchronized Stats getStats() {
+        return new Stats(mHits, mMisses, mDecodes, mAllocatedBytes, mSize);
+    }
+
+    /**
+     * Remove the smallest suitable Bitmap from the pool.
+     *
+     * @param width  The required width
+     * @param height The required height
+     * @param config The required configuration
+     * @return A Bitmap, or null if none in the pool are large enough
+     */
+    @Nullable
+    private Bitmap take(int width, int height, @NonNull Bitmap.Config config) {
+        if(!SUPPORTED) {
+            return null;
+        }
+
+        final long required = (long)width * height * getBytesPerPixel(config);
+        final Map.Entry<Integer, ArrayList<Bitmap>> entry = mBuckets.ceilingEntry((int)required);
+        if(entry == null || entry.getKey() > required * MAX_SIZE_MULTIPLE) {
+            mMisses++;
+            return null;
+        }
+
+        mHits++;
+        return removeFromBucket(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Remove the most recently added Bitmap from a bucket.
+     *
+     * @param size   The allocation size of the bucket
+     * @param bucket The bucket
+     * @return The Bitmap
+     */
+    @NonNull
+    private Bitmap removeFromBucket(int size, @NonNull ArrayList<Bitmap> bucket) {
+        final Bitmap bitmap = bucket.remove(bucket.size() - 1);
+        if(bucket.isEmpty()) {
+            mBuckets.remove(size);
+        }
+        mSize -= size;
+        return bitmap;
+    }
+
+    /**
+     * Change the dimensions and configuration of a Bitmap.
+     *
+     * @param bitmap The Bitmap
+     * @param width  The new width
+     * @param height The new height
+     * @param config The new configuration
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void reconfigure(@NonNull Bitmap bitmap, int width, int height,
+                                    @NonNull Bitmap.Config config) {
+        bitmap.reconfigure(width, height, config);
+    }
+
+    /**
+     * Get the number of bytes allocated for a Bitmap's pixels.
+     *
+     * @param bitmap The Bitmap
+     * @return The allocation size
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static int getAllocationSize(@NonNull Bitmap bitmap) {
+        if(SUPPORTED) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    /**
+     * Get the number of bytes used by each pixel of a configuration.
+     *
+     * @param config The Bitmap configuration
+     * @return The number of bytes per pixel
+     */
+    private static int getBytesPerPixel(@NonNull Bitmap.Config config) {
+        switch(config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * Snapshot of the counters for monitoring the pool.
+     */
+    public static class Stats {
+        /**
+         * The number of requests served from the pool
+         */
+        public final int hits;
+
+        /**
+         * The number of requests that found no suitable Bitmap in the pool
+         */
+        public final int misses;
+
+        /**
+         * The number of images decoded
+         */
+        public final int decodes;
+
+        /**
+         * The total number of bytes allocated for new Bitmaps
+         */
+        public final long allocatedBytes;
+
+        /**
+         * The number of bytes currently held in the pool
+         */
+        public final long pooledBytes;
+
+        /**
+         * @param hits           The number of requests served from the pool
+         * @param misses         The number of requests that found no suitable Bitmap
+         * @param decodes        The number of images decoded
+         * @param allocatedBytes The total number of bytes allocated for new Bitmaps
+         * @param pooledBytes    The number of bytes currently held in the pool
+         */
+        Stats(int hits, int misses, int decodes, long allocatedBytes, long pooledBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.decodes = decodes;
+            this.allocatedBytes = allocatedBytes;
+            this.pooledBytes = pooledBytes;
+        }
+
+        /**
+         * Get the fraction of requests that were served from the pool.
+         *
+         * @return The hit rate between 0 and 1
+         */
+        public float getHitRate() {
+            final int requests = hits + misses;
+            return requests > 0 ? (float)hits / requests : 0;
+        }
+
+        /**
+         * Get the average number of bytes newly allocated for each decoded image.
+         *
+         * @return The average number of bytes allocated per decode
+         */
+        public long getBytesPerDecode() {
+            return decodes > 0 ? allocatedBytes / decodes : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + " misses=" + misses + " decodes=" + decodes + " allocated="
+                    + allocatedBytes + " pooled=" + pooledBytes;
+        }
+    }
+}
@@ -24,7 +24,6 @@ package com.ultramegasoft.flavordex2.util;
 
 import android.content.ContentResolver;
 import android.content.Context;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -47,11 +46,12 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.File;
-import java.io.FileReader;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.Reader;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -61,6 +61,11 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Helpers for importing and exporting CSV files.
@@ -118,12 +123,31 @@ public class CSVUtils {
     );
 
     /**
-     * Formatter for dates in CSV files
+     * The maximum number of entries to hold in memory for previewing an import
      */
-    private static final SimpleDateFormat sDateFormatter =
-            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm'Z'", Locale.US) {
-                {
-                    setTimeZone(TimeZone.getTimeZone("UTC"));
+    public static final int PREVIEW_SIZE = 200;
+
+    /**
+     * The maximum number of threads used to decode rows in parallel
+     */
+    private static final int MAX_DECODE_THREADS = 4;
+
+    /**
+     * The number of rows per thread to read ahead when decoding in parallel
+     */
+    private static final int ROWS_PER_THREAD = 32;
+
+    /**
+     * Formatter for dates in CSV files, one per thread since SimpleDateFormat is not thread safe
+     */
+    private static final ThreadLocal<SimpleDateFormat> sDateFormatter =
+            new ThreadLocal<SimpleDateFormat>() {
+                @Override
+                protected SimpleDateFormat initialValue() {
+                    final SimpleDateFormat format =
+                            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm'Z'", Locale.US);
+                    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+                    return format;
                 }
             };
 
@@ -167,7 +191,7 @@ public class CSVUtils {
         fields.add(entry.origin);
         fields.add(entry.price);
         fields.add(entry.location);
-        fields.add(sDateFormatter.format(new Date(entry.date)));
+        fields.add(sDateFormatter.get().format(new Date(entry.date)));
         fields.add(String.valueOf(entry.rating));
         fields.add(entry.notes);
 
@@ -229,88 +253,119 @@ public class CSVUtils {
     }
 
     /**
-     * Load and parse a CSV file.
+     * Load and parse a CSV file. Only the first {@link #PREVIEW_SIZE} entries are kept in memory,
+     * while the rest of the file is only counted.
      *
      * @param context The Context
-     * @param file    The CSV File
+     * @param source  The Reader representing the CSV file
      * @return The data from the CSV file
      */
     @Nullable
-    public static CSVHolder importCSV(@NonNull Context context, @NonNull File file) {
-        CSVHolder data = null;
+    public static CSVHolder importCSV(@NonNull Context context, @NonNull Reader source) {
+        final EntryReader reader = EntryReader.open(context, source);
+        if(reader == null) {
+            return null;
+        }
+
         try {
-            final CSVReader reader = new CSVReader(new FileReader(file));
-            String[] line;
-            if((line = reader.readNext()) != null) {
-                data = new CSVHolder();
-                final List<String> fields = Arrays.asList(line);
-                if(!fields.contains(Tables.Entries.TITLE)) {
-                    return data;
+            final UuidSet uuids = UuidSet.load(context.getContentResolver());
+            final CSVHolder holder = new CSVHolder();
+            holder.hasCategory = reader.mHasCategory;
+
+            EntryHolder entry;
+            while(holder.entries.size() < PREVIEW_SIZE && (entry = reader.next()) != null) {
+                holder.addEntry(entry, uuids.contains(entry.uuid));
+            }
+
+            while(reader.skip()) {
+                holder.addHiddenEntry(uuids.contains(reader.getUuid()));
+            }
+
+            return holder;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reload the preview entries into a CSVHolder restored from a saved state.
+     *
+     * @param context The Context
+     * @param source  The Reader representing the CSV file
+     * @param holder  The CSVHolder restored from a saved state
+     * @return Whether the preview was loaded successfully
+     */
+    public static boolean loadPreview(@NonNull Context context, @NonNull Reader source,
+                                      @NonNull CSVHolder holder) {
+        final EntryReader reader = EntryReader.open(context, source);
+        if(reader == null) {
+            return false;
+        }
+
+        try {
+            final UuidSet uuids = UuidSet.load(context.getContentResolver());
+            holder.entries.clear();
+            holder.duplicates.clear();
+
+            EntryHolder entry;
+            while(holder.entries.size() < holder.mPreviewSize && (entry = reader.next()) != null) {
+                if(holder.catId > 0) {
+                    entry.catId = holder.catId;
                 }
-                data.hasCategory = fields.contains(Tables.Entries.CAT);
-                detectFormat(data, fields);
-
-                final HashMap<String, String> rowMap = new HashMap<>();
-                while((line = reader.readNext()) != null) {
-                    rowMap.clear();
-                    for(int i = 0; i < line.length; i++) {
-                        rowMap.put(fields.get(i), line[i]);
-                    }
-                    readCSVRow(context, data, rowMap);
+                holder.entries.add(entry);
+                if(uuids.contains(entry.uuid)) {
+                    holder.duplicates.add(entry);
                 }
             }
+
+            return holder.isPreviewLoaded();
+        } finally {
             reader.close();
-        } catch(IOException e) {
-            Log.e(TAG, "Failed to read from file", e);
         }
-
-        return data;
     }
 
     /**
      * Determine the format of the CSV file.
      *
-     * @param holder The CSVHolder
      * @param fields The list of field names
+     * @return The legacy format, or null if the file is not in a legacy format
      */
-    private static void detectFormat(@NonNull CSVHolder holder, @NonNull List<String> fields) {
+    @Nullable
+    private static String detectFormat(@NonNull List<String> fields) {
         if(fields.containsAll(LEGACY_FIELDS_COMMON)) {
             if(fields.containsAll(LEGACY_FIELDS_BEER)) {
-                holder.legacyFormat = FlavordexApp.CAT_BEER;
+                return FlavordexApp.CAT_BEER;
             } else if(fields.containsAll(LEGACY_FIELDS_COFFEE)) {
-                holder.legacyFormat = FlavordexApp.CAT_COFFEE;
+                return FlavordexApp.CAT_COFFEE;
             } else if(fields.containsAll(LEGACY_FIELDS_WHISKEY)) {
-                holder.legacyFormat = FlavordexApp.CAT_WHISKEY;
+                return FlavordexApp.CAT_WHISKEY;
             } else if(fields.containsAll(LEGACY_FIELDS_WINE)) {
-                holder.legacyFormat = FlavordexApp.CAT_WINE;
-            } else {
-                return;
+                return FlavordexApp.CAT_WINE;
             }
-            holder.hasCategory = true;
         }
+        return null;
     }
 
     /**
-     * Read a row from a CSV file into an EntryHolder object.
+     * Read a row from a CSV file into an EntryHolder object. This may be called from any thread.
      *
-     * @param context The Context
-     * @param holder  The CSVHolder
-     * @param rowMap  A map of column names to values
+     * @param context      The Context
+     * @param rowMap       A map of column names to values
+     * @param legacyFormat The legacy format, if detected
+     * @return The entry
      */
-    private static void readCSVRow(@NonNull Context context, @NonNull CSVHolder holder,
-                                   @NonNull HashMap<String, String> rowMap) {
+    @NonNull
+    private static EntryHolder readCSVRow(@NonNull Context context,
+                                          @NonNull HashMap<String, String> rowMap,
+                                          @Nullable String legacyFormat) {
         final EntryHolder entry = new EntryHolder();
 
         entry.title = rowMap.get(Tables.Entries.TITLE);
-        if(holder.legacyFormat == null) {
+        if(legacyFormat == null) {
             entry.uuid = rowMap.get(Tables.Entries.UUID);
             entry.catName = rowMap.get(Tables.Entries.CAT);
-            if(TextUtils.isEmpty(entry.title)
-                    || (holder.hasCategory && TextUtils.isEmpty(entry.catName))) {
-                return;
-            }
         } else {
-            entry.catName = holder.legacyFormat;
+            entry.catName = legacyFormat;
         }
         entry.maker = rowMap.get(Tables.Entries.MAKER);
         entry.origin = rowMap.get(Tables.Entries.ORIGIN);
@@ -320,7 +375,7 @@ public class CSVUtils {
         final String dateString = rowMap.get(Tables.Entries.DATE);
         if(dateString != null) {
             try {
-                entry.date = sDateFormatter.parse(dateString).getTime();
+                entry.date = sDateFormatter.get().parse(dateString).getTime();
             } catch(ParseException e) {
                 entry.date = System.currentTimeMillis();
             }
@@ -338,9 +393,9 @@ public class CSVUtils {
 
         entry.notes = rowMap.get(Tables.Entries.NOTES);
 
-        if(holder.legacyFormat != null) {
-            readLegacyExtras(entry, rowMap, holder.legacyFormat);
-            readLegacyFlavors(context, entry, rowMap, holder.legacyFormat);
+        if(legacyFormat != null) {
+            readLegacyExtras(entry, rowMap, legacyFormat);
+            readLegacyFlavors(context, entry, rowMap, legacyFormat);
             readLegacyPhotos(context, entry, rowMap);
         } else {
             readFlavors(entry, rowMap);
@@ -348,7 +403,7 @@ public class CSVUtils {
         }
         readExtras(entry, rowMap);
 
-        holder.addEntry(entry, isDuplicate(context, entry));
+        return entry;
     }
 
     /**
@@ -555,37 +610,350 @@ public class CSVUtils {
     }
 
     /**
-     * Is the item a duplicate? Checks the database for an entry with the same UUID.
-     *
-     * @param context The Context
-     * @param entry   The entry
-     * @return Whether the entry is a duplicate
+     * Reads entries from a CSV file one row at a time. Optionally, rows are read ahead and decoded
+     * by a pool of worker threads while the calling thread continues reading the file. Entries
+     * are always returned in the order they appear in the file.
      */
-    private static boolean isDuplicate(@NonNull Context context, @NonNull EntryHolder entry) {
-        if(entry.uuid == null) {
-            return false;
+    public static class EntryReader implements Closeable {
+        /**
+         * The Context
+         */
+        @NonNull
+        private final Context mContext;
+
+        /**
+         * The CSVReader to read rows from
+         */
+        @NonNull
+        private final CSVReader mReader;
+
+        /**
+         * The list of field names from the header row
+         */
+        @NonNull
+        private final List<String> mFields;
+
+        /**
+         * Map of column names to values for the current row
+         */
+        @NonNull
+        private final HashMap<String, String> mRowMap = new HashMap<>();
+
+        /**
+         * The indices of the title, category and UUID columns, or -1 if not present
+         */
+        private final int mTitleIndex;
+        private final int mCatIndex;
+        private final int mUuidIndex;
+
+        /**
+         * Whether the CSV file has a category column
+         */
+        private final boolean mHasCategory;
+
+        /**
+         * The legacy format if detected
+         */
+        @Nullable
+        private final String mLegacyFormat;
+
+        /**
+         * The ExecutorService decoding rows, or null to decode on the calling thread
+         */
+        @Nullable
+        private final ExecutorService mExecutor;
+
+        /**
+         * The maximum number of rows to read ahead
+         */
+        private final int mReadAhead;
+
+        /**
+         * The rows that have been read ahead, in the order they appear in the file
+         */
+        @NonNull
+        private final ArrayDeque<PendingRow> mPending = new ArrayDeque<>();
+
+        /**
+         * The UUID of the current entry
+         */
+        @Nullable
+        private String mUuid;
+
+        /**
+         * @param context The Context
+         * @param reader  The CSVReader to read rows from
+         * @param header  The header row
+         * @param threads The number of threads to decode rows, or 0 to use the calling thread
+         */
+        private EntryReader(@NonNull Context context, @NonNull CSVReader reader,
+                            @NonNull String[] header, int threads) {
+            mContext = context;
+            mReader = reader;
+            mFields = Arrays.asList(header);
+            mTitleIndex = mFields.indexOf(Tables.Entries.TITLE);
+            mCatIndex = mFields.indexOf(Tables.Entries.CAT);
+            mUuidIndex = mFields.indexOf(Tables.Entries.UUID);
+            mLegacyFormat = detectFormat(mFields);
+            mHasCategory = mLegacyFormat != null || mCatIndex != -1;
+            mExecutor = threads > 0 ? Executors.newFixedThreadPool(threads) : null;
+            mReadAhead = threads * ROWS_PER_THREAD;
         }
-        final ContentResolver cr = context.getContentResolver();
-        final String[] projection = new String[] {Tables.Entries._ID};
-        final String where = Tables.Entries.UUID + " = ?";
-        final String[] whereArgs = new String[] {entry.uuid};
-        final Cursor cursor =
-                cr.query(Tables.Entries.CONTENT_URI, projection, where, whereArgs, null);
-        if(cursor != null) {
+
+        /**
+         * Open a CSV file and read the header row.
+         *
+         * @param context The Context
+         * @param source  The Reader representing the CSV file
+         * @return The EntryReader, or null if the file is empty
+         */
+        @Nullable
+        public static EntryReader open(@NonNull Context context, @NonNull Reader source) {
+            return open(context, source, false);
+        }
+
+        /**
+         * Open a CSV file and read the header row.
+         *
+         * @param context  The Context
+         * @param source   The Reader representing the CSV file
+         * @param parallel Whether to decode rows on a pool of worker threads
+         * @return The EntryReader, or null if the file is empty
+         */
+        @Nullable
+        public static EntryReader open(@NonNull Context context, @NonNull Reader source,
+                                       boolean parallel) {
+            int threads = 0;
+            if(parallel) {
+                threads = Math.min(MAX_DECODE_THREADS,
+                        Runtime.getRuntime().availableProcessors() - 1);
+            }
+            return open(context, source, Math.max(threads, 0));
+        }
+
+        /**
+         * Open a CSV file and read the header row.
+         *
+         * @param context The Context
+         * @param source  The Reader representing the CSV file
+         * @param threads The number of threads to decode rows, or 0 to use the calling thread
+         * @return The EntryReader, or null if the file is empty
+         */
+        @Nullable
+        static EntryReader open(@NonNull Context context, @NonNull Reader source, int threads) {
+            final CSVReader reader = new CSVReader(source);
+            final String[] header = reader.readNext();
+            if(header == null) {
+                try {
+                    reader.close();
+                } catch(IOException ignored) {
+                }
+                return null;
+            }
+            return new EntryReader(context, reader, header, threads);
+        }
+
+        /**
+         * Read the next valid entry from the file.
+         *
+         * @return The entry, or null if the end of the file was reached
+         */
+        @Nullable
+        public EntryHolder next() {
+            if(mExecutor == null) {
+                if(!skip()) {
+                    return null;
+                }
+                return readCSVRow(mContext, readRowMap(mRowMap), mLegacyFormat);
+            }
+
+            while(mPending.size() < mReadAhead && readValidRow()) {
+                final HashMap<String, String> rowMap = readRowMap(new HashMap<String, String>());
+                final Future<EntryHolder> future = mExecutor.submit(new Callable<EntryHolder>() {
+                    @Override
+                    public EntryHolder call() {
+                        return readCSVRow(mContext, rowMap, mLegacyFormat);
+                    }
+                });
+                mPending.add(new PendingRow(future, readUuid()));
+            }
+
+            final PendingRow row = mPending.pollFirst();
+            if(row == null) {
+                return null;
+            }
+            mUuid = row.uuid;
+
             try {
-                if(cursor.moveToFirst()) {
-                    return true;
+                return row.entry.get();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch(ExecutionException e) {
+                if(e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException)e.getCause();
                 }
-            } finally {
-                cursor.close();
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        /**
+         * Skip over the next valid entry without parsing it.
+         *
+         * @return Whether an entry was found before the end of the file
+         */
+        public boolean skip() {
+            final PendingRow row = mPending.pollFirst();
+            if(row != null) {
+                row.entry.cancel(false);
+                mUuid = row.uuid;
+                return true;
+            }
+
+            if(!readValidRow()) {
+                return false;
+            }
+            mUuid = readUuid();
+            return true;
+        }
+
+        /**
+         * Get the UUID of the current entry.
+         *
+         * @return The UUID of the current entry
+         */
+        @Nullable
+        public String getUuid() {
+            return mUuid;
+        }
+
+        /**
+         * Advance the CSVReader to the next valid row.
+         *
+         * @return Whether a row was found before the end of the file
+         */
+        private boolean readValidRow() {
+            if(mTitleIndex == -1) {
+                return false;
+            }
+
+            try {
+                while(mReader.readRow()) {
+                    if(isValidRow()) {
+                        return true;
+                    }
+                }
+            } catch(IOException e) {
+                Log.e(TAG, "Failed to read from file", e);
+            }
+
+            return false;
+        }
+
+        /**
+         * Copy the fields of the current row into a map of column names to values.
+         *
+         * @param rowMap The map to fill
+         * @return The map
+         */
+        @NonNull
+        private HashMap<String, String> readRowMap(@NonNull HashMap<String, String> rowMap) {
+            rowMap.clear();
+            final int count = Math.min(mReader.getFieldCount(), mFields.size());
+            for(int i = 0; i < count; i++) {
+                rowMap.put(mFields.get(i), mReader.getString(i));
+            }
+            return rowMap;
+        }
+
+        /**
+         * Read the UUID from the current row.
+         *
+         * @return The UUID of the current row
+         */
+        @Nullable
+        private String readUuid() {
+            if(mLegacyFormat != null || !hasField(mUuidIndex)) {
+                return null;
+            }
+            return mReader.getString(mUuidIndex);
+        }
+
+        /**
+         * Check whether the current row contains a valid entry.
+         *
+         * @return Whether the row is valid
+         */
+        private boolean isValidRow() {
+            if(mLegacyFormat != null) {
+                return true;
             }
+            return hasValue(mTitleIndex) && (mCatIndex == -1 || hasValue(mCatIndex));
+        }
+
+        /**
+         * Check whether the current row contains a column.
+         *
+         * @param index The index of the column
+         * @return Whether the row has a value for the column
+         */
+        private boolean hasField(int index) {
+            return index != -1 && index < mReader.getFieldCount();
         }
 
-        return false;
+        /**
+         * Check whether the current row has a non-empty value for a column.
+         *
+         * @param index The index of the column
+         * @return Whether the value is not empty
+         */
+        private boolean hasValue(int index) {
+            return hasField(index) && mReader.getFieldLength(index) > 0;
+        }
+
+        @Override
+        public void close() {
+            if(mExecutor != null) {
+                mExecutor.shutdownNow();
+            }
+            mPending.clear();
+            try {
+                mReader.close();
+            } catch(IOException e) {
+                Log.w(TAG, "Failed to close file", e);
+            }
+        }
+
+        /**
+         * A row that has been read ahead and submitted for decoding.
+         */
+        private static class PendingRow {
+            /**
+             * The Future for the decoded entry
+             */
+            @NonNull
+            final Future<EntryHolder> entry;
+
+            /**
+             * The UUID of the entry
+             */
+            @Nullable
+            final String uuid;
+
+            /**
+             * @param entry The Future for the decoded entry
+             * @param uuid  The UUID of the entry
+             */
+            PendingRow(@NonNull Future<EntryHolder> entry, @Nullable String uuid) {
+                this.entry = entry;
+                this.uuid = uuid;
+            }
+        }
     }
 
     /**
-     * Holds data for a CSV file.
+     * Holds data for a CSV file. Only the first entries are held in memory for previewing, and
+     * only the counts are saved in the Parcel.
      */
     public static class CSVHolder implements Parcelable {
         public static final Creator<CSVHolder> CREATOR = new Creator<CSVHolder>() {
@@ -601,13 +969,13 @@ public class CSVUtils {
         };
 
         /**
-         * The list of entries
+         * The list of entries to preview
          */
         @NonNull
         public final ArrayList<EntryHolder> entries;
 
         /**
-         * List of entries that are possible duplicate
+         * List of entries to preview that are possible duplicate
          */
         @NonNull
         public final ArrayList<EntryHolder> duplicates;
@@ -618,10 +986,24 @@ public class CSVUtils {
         public boolean hasCategory;
 
         /**
-         * The legacy format if detected
+         * The category ID to assign to all entries, or 0 to use the category from the file
          */
-        @Nullable
-        String legacyFormat;
+        public long catId;
+
+        /**
+         * The total number of entries in the file
+         */
+        public int numEntries;
+
+        /**
+         * The total number of possible duplicates in the file
+         */
+        public int numDuplicates;
+
+        /**
+         * The number of entries in the preview
+         */
+        private int mPreviewSize;
 
         CSVHolder() {
             entries = new ArrayList<>();
@@ -629,23 +1011,66 @@ public class CSVUtils {
         }
 
         private CSVHolder(Parcel in) {
-            entries = in.createTypedArrayList(EntryHolder.CREATOR);
-            duplicates = in.createTypedArrayList(EntryHolder.CREATOR);
+            this();
             hasCategory = in.readInt() == 1;
-            legacyFormat = in.readString();
+            catId = in.readLong();
+            numEntries = in.readInt();
+            numDuplicates = in.readInt();
+            mPreviewSize = in.readInt();
         }
 
         /**
-         * Add an entry to the list.
+         * Add an entry to the preview list.
          *
          * @param entry     The entry
          * @param duplicate Whether this is a possible duplicate
          */
         void addEntry(@NonNull EntryHolder entry, boolean duplicate) {
             entries.add(entry);
+            mPreviewSize++;
             if(duplicate) {
                 duplicates.add(entry);
             }
+            addHiddenEntry(duplicate);
+        }
+
+        /**
+         * Count an entry that is not part of the preview.
+         *
+         * @param duplicate Whether this is a possible duplicate
+         */
+        void addHiddenEntry(boolean duplicate) {
+            numEntries++;
+            if(duplicate) {
+                numDuplicates++;
+            }
+        }
+
+        /**
+         * Get the number of entries in the preview.
+         *
+         * @return The number of entries in the preview
+         */
+        public int getPreviewSize() {
+            return mPreviewSize;
+        }
+
+        /**
+         * Get the number of entries that are not part of the preview.
+         *
+         * @return The number of entries that are not part of the preview
+         */
+        public int getNumHidden() {
+            return numEntries - mPreviewSize;
+        }
+
+        /**
+         * Are the preview entries loaded? This is false after restoring from a Parcel.
+         *
+         * @return Whether the preview entries are loaded
+         */
+        public boolean isPreviewLoaded() {
+            return entries.size() == mPreviewSize;
         }
 
         @SuppressWarnings("SameReturnValue")
@@ -656,10 +1081,11 @@ public class CSVUtils {
 
         @Override
         public void writeToParcel(Parcel dest, int flags) {
-            dest.writeTypedList(entries);
-            dest.writeTypedList(duplicates);
             dest.writeInt(hasCategory ? 1 : 0);
-            dest.writeString(legacyFormat);
+            dest.writeLong(catId);
+            dest.writeInt(numEntries);
+            dest.writeInt(numDuplicates);
+            dest.writeInt(mPreviewSize);
         }
     }
 }
@@ -22,17 +22,13 @@
  */
 package com.ultramegasoft.flavordex2.util;
 
+import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
-import android.os.Bundle;
-import android.os.Handler;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
-import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
-import android.support.v4.content.Loader;
 import android.text.Editable;
 import android.text.TextUtils;
 import android.text.TextWatcher;
@@ -40,7 +36,6 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.AutoCompleteTextView;
-import android.widget.CursorAdapter;
 import android.widget.EditText;
 import android.widget.FilterQueryProvider;
 import android.widget.SimpleCursorAdapter;
@@ -55,17 +50,18 @@ import com.ultramegasoft.flavordex2.widget.ExtraFieldHolder;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Helper containing common functionality for entry input forms.
  *
  * @author Steve Guidetti
  */
-public class EntryFormHelper implements LoaderManager.LoaderCallbacks<Cursor> {
+public class EntryFormHelper {
     /**
-     * Loader IDs
+     * The maximum number of maker suggestions to show
      */
-    private static final int LOADER_MAKERS = 100;
+    private static final int MAKER_SUGGESTIONS = 50;
 
     /**
      * The Fragment using the helper object.
@@ -99,9 +95,9 @@ public class EntryFormHelper implements LoaderManager.LoaderCallbacks<Cursor> {
     private final HashMap<ExtraFieldHolder, EditText> mExtraViews = new HashMap<>();
 
     /**
-     * Handler for posting to the main thread
+     * Incremented whenever the maker field changes, to cancel searches for old text
      */
-    private final Handler mHandler = new Handler();
+    private final AtomicInteger mMakerGeneration = new AtomicInteger();
 
     /**
      * @param fragment   The Fragment using this helper object
@@ -174,39 +170,63 @@ public class EntryFormHelper implements LoaderManager.LoaderCallbacks<Cursor> {
      * Set up the autocomplete for the maker field.
      */
     private void setupMakersAutoComplete() {
-        final SimpleCursorAdapter adapter = new SimpleCursorAdapter(mFragment.getContext(),
+        final Context context = mFragment.getContext();
+        final SimpleCursorAdapter adapter = new SimpleCursorAdapter(context,
                 R.layout.simple_dropdown_item_2line, null,
                 new String[] {Tables.Makers.NAME, Tables.Makers.LOCATION},
                 new int[] {android.R.id.text1, android.R.id.text2}, 0);
 
-        adapter.setFilterQueryProvider(new FilterQueryProvider() {
-            @Override
-            public Cursor runQuery(CharSequence constraint) {
-                final Uri uri;
-                if(TextUtils.isEmpty(constraint)) {
-                    uri = Tables.Makers.CONTENT_URI;
-                } else {
-                    uri = Uri.withAppendedPath(Tables.Makers.CONTENT_FILTER_URI_BASE,
-                            Uri.encode(constraint.toString()));
+        if(context != null) {
+            final MakerIndex makerIndex = MakerIndex.getInstance(context);
+            final ContentResolver cr = context.getContentResolver();
+
+            adapter.setFilterQueryProvider(new FilterQueryProvider() {
+                @Override
+                public Cursor runQuery(CharSequence constraint) {
+                    final int generation = mMakerGeneration.get();
+                    final Cursor cursor = makerIndex.query(constraint, MAKER_SUGGESTIONS,
+                            new MakerIndex.Canceller() {
+                                @Override
+                                public boolean isCanceled() {
+                                    return mMakerGeneration.get() != generation;
+                                }
+                            });
+                    if(cursor != null) {
+                        return cursor;
+                    }
+                    if(makerIndex.isReady()) {
+                        return adapter.getCursor();
+                    }
+
+                    final Uri uri;
+                    if(TextUtils.isEmpty(constraint)) {
+                        uri = Tables.Makers.CONTENT_URI;
+                    } else {
+                        uri = Uri.withAppendedPath(Tables.Makers.CONTENT_FILTER_URI_BASE,
+                                Uri.encode(constraint.toString()));
+                    }
+                    final String order = Tables.Makers.NAME + " ASC";
+                    return cr.query(uri, null, null, null, order);
                 }
+            });
+        }
 
-                final Bundle args = new Bundle();
-                args.putParcelable("uri", uri);
+        mTxtMaker.setAdapter(adapter);
+        mTxtMaker.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
 
-                mHandler.post(new Runnable() {
-                    @Override
-                    public void run() {
-                        mFragment.getLoaderManager()
-                                .restartLoader(LOADER_MAKERS, args, EntryFormHelper.this);
-                    }
-                });
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                mMakerGeneration.incrementAndGet();
+            }
 
-                return adapter.getCursor();
+            @Override
+            public void afterTextChanged(Editable s) {
             }
         });
 
-        mTxtMaker.setAdapter(adapter);
-
         // fill in maker and origin fields with a suggestion
         mTxtMaker.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
@@ -292,38 +312,4 @@ public class EntryFormHelper implements LoaderManager.LoaderCallbacks<Cursor> {
             }
         });
     }
-
-    @SuppressWarnings("ConstantConditions")
-    @NonNull
-    @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        switch(id) {
-            case LOADER_MAKERS:
-                final Context context = mFragment.getContext();
-                if(context != null) {
-                    final String order = Tables.Makers.NAME + " ASC";
-                    final Uri uri = args.getParcelable("uri");
-                    if(uri != null) {
-                        return new CursorLoader(context, uri, null, null, null, order);
-                    }
-                }
-        }
-        return null;
-    }
-
-    @Override
-    public void onLoadFinished(@NonNull Loader loader, Cursor data) {
-        switch(loader.getId()) {
-            case LOADER_MAKERS:
-                ((CursorAdapter)mTxtMaker.getAdapter()).swapCursor(data);
-        }
-    }
-
-    @Override
-    public void onLoaderReset(@NonNull Loader loader) {
-        switch(loader.getId()) {
-            case LOADER_MAKERS:
-                ((CursorAdapter)mTxtMaker.getAdapter()).swapCursor(null);
-        }
-    }
 }
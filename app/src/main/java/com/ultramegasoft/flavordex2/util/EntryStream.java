@@ -0,0 +1,289 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.ultramegasoft.flavordex2.provider.Tables;
+import com.ultramegasoft.flavordex2.widget.EntryHolder;
+import com.ultramegasoft.flavordex2.widget.PhotoHolder;
+
+import java.io.Closeable;
+import java.util.Arrays;
+
+/**
+ * Reads complete journal entries from the database in order of ID. Entries are loaded in chunks
+ * using one query each for the entries, extras, flavors, and photos, with every query sorted by
+ * entry ID so the rows can be merged as the entries are read.
+ *
+ * @author Steve Guidetti
+ */
+public class EntryStream implements Closeable {
+    /**
+     * The maximum number of entries to load with each set of queries
+     */
+    private static final int CHUNK_SIZE = 500;
+
+    /**
+     * The ContentResolver to use for loading entries
+     */
+    @NonNull
+    private final ContentResolver mResolver;
+
+    /**
+     * The sorted list of entry IDs to read
+     */
+    @NonNull
+    private final long[] mEntryIds;
+
+    /**
+     * The index of the first entry ID in the next chunk
+     */
+    private int mOffset;
+
+    /**
+     * The Cursors for the current chunk
+     */
+    @Nullable
+    private Cursor mEntries;
+    @Nullable
+    private Cursor mExtras;
+    @Nullable
+    private Cursor mFlavors;
+    @Nullable
+    private Cursor mPhotos;
+
+    /**
+     * @param cr       The ContentResolver to use for loading entries
+     * @param entryIds The IDs of the entries to read
+     */
+    public EntryStream(@NonNull ContentResolver cr, @NonNull long[] entryIds) {
+        mResolver = cr;
+        mEntryIds = entryIds.clone();
+        Arrays.sort(mEntryIds);
+    }
+
+    /**
+     * Read the next entry.
+     *
+     * @return The next entry, or null if there are no more entries
+     */
+    @Nullable
+    public EntryHolder next() {
+        while(mEntries == null || !mEntries.moveToNext()) {
+            closeCursors();
+            if(mOffset >= mEntryIds.length) {
+                return null;
+            }
+            loadChunk();
+        }
+
+        return readEntry(mEntries);
+    }
+
+    @Override
+    public void close() {
+        closeCursors();
+        mOffset = mEntryIds.length;
+    }
+
+    /**
+     * Run the queries for the next chunk of entry IDs.
+     */
+    private void loadChunk() {
+        final int end = Math.min(mOffset + CHUNK_SIZE, mEntryIds.length);
+        final StringBuilder ids = new StringBuilder();
+        for(int i = mOffset; i < end; i++) {
+            if(i > mOffset) {
+                ids.append(',');
+            }
+            ids.append(mEntryIds[i]);
+        }
+        mOffset = end;
+
+        mEntries = query(Tables.Entries.CONTENT_URI, Tables.Entries._ID, ids,
+                Tables.Entries._ID);
+        mExtras = query(Tables.EntriesExtras.CONTENT_URI, Tables.EntriesExtras.ENTRY, ids,
+                Tables.EntriesExtras._ID);
+        mFlavors = query(Tables.EntriesFlavors.CONTENT_URI, Tables.EntriesFlavors.ENTRY, ids,
+                Tables.EntriesFlavors.POS);
+        mPhotos = query(Tables.Photos.CONTENT_URI, Tables.Photos.ENTRY, ids, Tables.Photos.POS);
+    }
+
+    /**
+     * Query the rows belonging to a list of entries, sorted by entry ID.
+     *
+     * @param uri      The Uri to query
+     * @param idColumn The name of the column containing the entry ID
+     * @param ids      The comma separated list of entry IDs
+     * @param order    The column to sort by within each entry
+     * @return The Cursor positioned on the first row
+     */
+    @Nullable
+    private Cursor query(@NonNull Uri uri, @NonNull String idColumn, @NonNull CharSequence ids,
+                         @NonNull String order) {
+        final String where = idColumn + " IN (" + ids + ")";
+        final String sort = idColumn + " ASC, " + order + " ASC";
+        final Cursor cursor = mResolver.query(uri, null, where, null, sort);
+        if(cursor != null) {
+            cursor.moveToFirst();
+        }
+        return cursor;
+    }
+
+    /**
+     * Close the Cursors for the current chunk.
+     */
+    private void closeCursors() {
+        for(Cursor cursor : new Cursor[] {mEntries, mExtras, mFlavors, mPhotos}) {
+            if(cursor != null) {
+                cursor.close();
+            }
+        }
+        mEntries = mExtras = mFlavors = mPhotos = null;
+    }
+
+    /**
+     * Advance a Cursor sorted by entry ID to the rows belonging to an entry.
+     *
+     * @param cursor   The Cursor
+     * @param idColumn The index of the column containing the entry ID
+     * @param entryId  The entry ID
+     * @return Whether the Cursor is on a row belonging to the entry
+     */
+    static boolean seek(@Nullable Cursor cursor, int idColumn, long entryId) {
+        if(cursor == null) {
+            return false;
+        }
+
+        while(!cursor.isAfterLast()) {
+            final long rowEntryId = cursor.getLong(idColumn);
+            if(rowEntryId >= entryId) {
+                return rowEntryId == entryId;
+            }
+            cursor.moveToNext();
+        }
+
+        return false;
+    }
+
+    /**
+     * Read the entry at the current position of the entries Cursor, along with its extras,
+     * flavors, and photos.
+     *
+     * @param cursor The Cursor for the entry row
+     * @return The entry
+     */
+    @NonNull
+    private EntryHolder readEntry(@NonNull Cursor cursor) {
+        final EntryHolder entry = new EntryHolder();
+        entry.id = cursor.getLong(cursor.getColumnIndex(Tables.Entries._ID));
+        entry.uuid = cursor.getString(cursor.getColumnIndex(Tables.Entries.UUID));
+        entry.title = cursor.getString(cursor.getColumnIndex(Tables.Entries.TITLE));
+        entry.catName = cursor.getString(cursor.getColumnIndex(Tables.Entries.CAT));
+        entry.maker = cursor.getString(cursor.getColumnIndex(Tables.Entries.MAKER));
+        entry.origin = cursor.getString(cursor.getColumnIndex(Tables.Entries.ORIGIN));
+        entry.price = cursor.getString(cursor.getColumnIndex(Tables.Entries.PRICE));
+        entry.location = cursor.getString(cursor.getColumnIndex(Tables.Entries.LOCATION));
+        entry.date = cursor.getLong(cursor.getColumnIndex(Tables.Entries.DATE));
+        entry.rating = cursor.getFloat(cursor.getColumnIndex(Tables.Entries.RATING));
+        entry.notes = cursor.getString(cursor.getColumnIndex(Tables.Entries.NOTES));
+
+        readExtras(entry);
+        readFlavors(entry);
+        readPhotos(entry);
+
+        return entry;
+    }
+
+    /**
+     * Read the extra fields for an entry.
+     *
+     * @param entry The entry
+     */
+    private void readExtras(@NonNull EntryHolder entry) {
+        final Cursor cursor = mExtras;
+        if(cursor == null) {
+            return;
+        }
+
+        final int idColumn = cursor.getColumnIndex(Tables.EntriesExtras.ENTRY);
+        final int nameColumn = cursor.getColumnIndex(Tables.Extras.NAME);
+        final int valueColumn = cursor.getColumnIndex(Tables.EntriesExtras.VALUE);
+        final int presetColumn = cursor.getColumnIndex(Tables.Extras.PRESET);
+        while(seek(cursor, idColumn, entry.id)) {
+            entry.addExtra(0, cursor.getString(nameColumn), cursor.getInt(presetColumn) == 1,
+                    cursor.getString(valueColumn));
+            cursor.moveToNext();
+        }
+    }
+
+    /**
+     * Read the flavors for an entry.
+     *
+     * @param entry The entry
+     */
+    private void readFlavors(@NonNull EntryHolder entry) {
+        final Cursor cursor = mFlavors;
+        if(cursor == null) {
+            return;
+        }
+
+        final int idColumn = cursor.getColumnIndex(Tables.EntriesFlavors.ENTRY);
+        final int nameColumn = cursor.getColumnIndex(Tables.EntriesFlavors.FLAVOR);
+        final int valueColumn = cursor.getColumnIndex(Tables.EntriesFlavors.VALUE);
+        while(seek(cursor, idColumn, entry.id)) {
+            entry.addFlavor(cursor.getString(nameColumn), cursor.getInt(valueColumn));
+            cursor.moveToNext();
+        }
+    }
+
+    /**
+     * Read the photos for an entry. Photos with invalid paths are skipped.
+     *
+     * @param entry The entry
+     */
+    private void readPhotos(@NonNull EntryHolder entry) {
+        final Cursor cursor = mPhotos;
+        if(cursor == null) {
+            return;
+        }
+
+        final int idColumn = cursor.getColumnIndex(Tables.Photos.ENTRY);
+        final int hashColumn = cursor.getColumnIndex(Tables.Photos.HASH);
+        final int pathColumn = cursor.getColumnIndex(Tables.Photos.PATH);
+        final int posColumn = cursor.getColumnIndex(Tables.Photos.POS);
+        while(seek(cursor, idColumn, entry.id)) {
+            final Uri uri = PhotoUtils.parsePath(cursor.getString(pathColumn));
+            if(uri != null) {
+                entry.getPhotos().add(new PhotoHolder(0, cursor.getString(hashColumn), uri,
+                        cursor.getInt(posColumn)));
+            }
+            cursor.moveToNext();
+        }
+    }
+}
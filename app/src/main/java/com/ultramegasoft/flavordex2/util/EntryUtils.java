@@ -22,20 +22,24 @@
  */
 package com.ultramegasoft.flavordex2.util;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentUris;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteException;
 import android.net.Uri;
+import android.os.RemoteException;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import android.util.Log;
 import android.widget.Toast;
 
+import com.ultramegasoft.flavordex2.FlavordexApp;
 import com.ultramegasoft.flavordex2.R;
 import com.ultramegasoft.flavordex2.provider.Tables;
 import com.ultramegasoft.flavordex2.widget.EntryHolder;
@@ -44,6 +48,9 @@ import com.ultramegasoft.flavordex2.widget.PhotoHolder;
 import com.ultramegasoft.radarchart.RadarHolder;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -55,7 +62,7 @@ public class EntryUtils {
     private static final String TAG = "EntryUtils";
 
     /**
-     * Insert a new journal entry.
+     * Insert a new journal entry. All rows are written in a single batch.
      *
      * @param context The Context
      * @param entry   The entry
@@ -64,35 +71,204 @@ public class EntryUtils {
     @NonNull
     public static Uri insertEntry(@NonNull Context context, @NonNull EntryHolder entry)
             throws SQLiteException {
+        return insertEntry(context, entry, null, null);
+    }
+
+    /**
+     * Insert a new journal entry as part of a batch import. The UUID is checked against a set of
+     * known UUIDs instead of querying the database, and the title is resolved using titles
+     * cached from earlier entries. The UUID of the new entry is added to the set.
+     *
+     * @param context The Context
+     * @param entry   The entry
+     * @param uuids   The UUIDs of the existing entries, or null to query the database
+     * @param titles  The TitleResolver to use for the batch, or null to create a new one
+     * @return The Uri for the new entry
+     */
+    @NonNull
+    public static Uri insertEntry(@NonNull Context context, @NonNull EntryHolder entry,
+                                  @Nullable UuidSet uuids, @Nullable TitleResolver titles)
+            throws SQLiteException {
         final ContentResolver cr = context.getContentResolver();
-        final ContentValues values = new ContentValues();
-
-        final Uri catUri = getCatUri(cr, entry);
-        values.put(Tables.Entries.CAT, entry.catId);
-
-        checkUuid(cr, entry);
-        values.put(Tables.Entries.UUID, entry.uuid);
-        values.put(Tables.Entries.TITLE, getUniqueTitle(cr, entry.title));
-        values.put(Tables.Entries.MAKER, entry.maker);
-        values.put(Tables.Entries.ORIGIN, entry.origin);
-        values.put(Tables.Entries.PRICE, entry.price);
-        values.put(Tables.Entries.LOCATION, entry.location);
-        values.put(Tables.Entries.DATE, entry.date);
-        values.put(Tables.Entries.RATING, entry.rating);
-        values.put(Tables.Entries.NOTES, entry.notes);
-
-        final Uri entryUri = cr.insert(Tables.Entries.CONTENT_URI, values);
-        if(entryUri == null) {
-            throw new SQLiteException("Failed to insert new row into the entries table");
+        if(titles == null) {
+            titles = new TitleResolver(cr);
+        }
+        final ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        final ArrayList<PendingEntry> pending = new ArrayList<>();
+        pending.add(addEntryOps(cr, ops, entry, uuids, titles.resolve(entry.title)));
+        applyEntryOps(context, ops, pending);
+
+        if(uuids != null) {
+            uuids.add(entry.uuid);
         }
-        insertExtras(cr, catUri, entryUri, entry);
-        insertFlavors(cr, entryUri, entry);
-        insertPhotos(cr, entryUri, entry);
 
-        entry.id = ContentUris.parseId(entryUri);
-        PhotoUtils.deleteThumb(context, entry.id);
+        return ContentUris.withAppendedId(Tables.Entries.CONTENT_ID_URI_BASE, entry.id);
+    }
+
+    /**
+     * Insert a list of new journal entries, writing many entries in each transaction. Entries
+     * that create a new category or extra field end the current transaction so later entries can
+     * find the new rows. If a transaction fails, its entries are inserted one at a time so only
+     * the invalid entries are lost.
+     *
+     * @param context The Context
+     * @param entries The entries
+     * @param uuids   The UUIDs of the existing entries
+     * @param titles  The TitleResolver to use for the batch
+     * @return The number of entries inserted
+     */
+    public static int insertEntries(@NonNull Context context, @NonNull List<EntryHolder> entries,
+                                    @NonNull UuidSet uuids, @NonNull TitleResolver titles) {
+        final ContentResolver cr = context.getContentResolver();
+        final ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        final ArrayList<PendingEntry> pending = new ArrayList<>();
+        final HashSet<String> batchUuids = new HashSet<>();
+        int count = 0;
+        for(EntryHolder entry : entries) {
+            if(entry.uuid != null && !batchUuids.add(entry.uuid)) {
+                entry.uuid = null;
+            }
+
+            final int start = ops.size();
+            final PendingEntry pendingEntry;
+            try {
+                pendingEntry = addEntryOps(cr, ops, entry, uuids, titles.resolve(entry.title));
+            } catch(SQLiteException e) {
+                Log.e(TAG, "Failed to insert entry: " + entry.title, e);
+                ops.subList(start, ops.size()).clear();
+                continue;
+            }
+            pending.add(pendingEntry);
+
+            if(pendingEntry.addsFields) {
+                count += flushEntryOps(context, ops, pending, uuids);
+                batchUuids.clear();
+            }
+        }
+
+        if(!pending.isEmpty()) {
+            count += flushEntryOps(context, ops, pending, uuids);
+        }
+        return count;
+    }
+
+    /**
+     * Apply the pending operations for a batch of entries, falling back to inserting each entry
+     * individually if the batch fails.
+     *
+     * @param context The Context
+     * @param ops     The list of operations, which is cleared
+     * @param pending The entries in the batch, which is cleared
+     * @param uuids   The UUIDs of the existing entries, to which the new UUIDs are added
+     * @return The number of entries inserted
+     */
+    private static int flushEntryOps(@NonNull Context context,
+                                     @NonNull ArrayList<ContentProviderOperation> ops,
+                                     @NonNull ArrayList<PendingEntry> pending,
+                                     @NonNull UuidSet uuids) {
+        int count = 0;
+        try {
+            applyEntryOps(context, ops, pending);
+            for(PendingEntry pendingEntry : pending) {
+                uuids.add(pendingEntry.entry.uuid);
+            }
+            count = pending.size();
+        } catch(SQLiteException e) {
+            Log.w(TAG, "Failed to insert batch, retrying entries individually", e);
+            final ContentResolver cr = context.getContentResolver();
+            final ArrayList<ContentProviderOperation> entryOps = new ArrayList<>();
+            final ArrayList<PendingEntry> entryPending = new ArrayList<>();
+            for(PendingEntry pendingEntry : pending) {
+                entryOps.clear();
+                entryPending.clear();
+                try {
+                    entryPending.add(addEntryOps(cr, entryOps, pendingEntry.entry, null,
+                            pendingEntry.title));
+                    applyEntryOps(context, entryOps, entryPending);
+                    uuids.add(pendingEntry.entry.uuid);
+                    count++;
+                } catch(SQLiteException e2) {
+                    Log.e(TAG, "Failed to insert entry: " + pendingEntry.entry.title, e2);
+                }
+            }
+        }
+        ops.clear();
+        pending.clear();
+        return count;
+    }
+
+    /**
+     * Add the operations to insert a new journal entry.
+     *
+     * @param cr     The ContentResolver
+     * @param ops    The list of operations
+     * @param entry  The entry
+     * @param uuids  The UUIDs of the existing entries, or null to query the database
+     * @param title  The unique title for the entry
+     * @return The indices of the operations for the entry
+     */
+    @NonNull
+    private static PendingEntry addEntryOps(@NonNull ContentResolver cr,
+                                            @NonNull ArrayList<ContentProviderOperation> ops,
+                                            @NonNull EntryHolder entry, @Nullable UuidSet uuids,
+                                            @NonNull String title)
+            throws SQLiteException {
+        final int catIndex = addCatOps(cr, ops, entry);
+
+        checkUuid(cr, entry, uuids);
+        final ContentProviderOperation.Builder builder =
+                ContentProviderOperation.newInsert(Tables.Entries.CONTENT_URI)
+                        .withValue(Tables.Entries.UUID, entry.uuid)
+                        .withValue(Tables.Entries.TITLE, title)
+                        .withValue(Tables.Entries.MAKER, entry.maker)
+                        .withValue(Tables.Entries.ORIGIN, entry.origin)
+                        .withValue(Tables.Entries.PRICE, entry.price)
+                        .withValue(Tables.Entries.LOCATION, entry.location)
+                        .withValue(Tables.Entries.DATE, entry.date)
+                        .withValue(Tables.Entries.RATING, entry.rating)
+                        .withValue(Tables.Entries.NOTES, entry.notes);
+        if(catIndex < 0) {
+            builder.withValue(Tables.Entries.CAT, entry.catId);
+        } else {
+            builder.withValueBackReference(Tables.Entries.CAT, catIndex);
+        }
+        final int entryIndex = ops.size();
+        ops.add(builder.build());
+
+        final boolean addsExtras = addExtraOps(cr, ops, catIndex, entryIndex, entry);
+        addFlavorOps(ops, entryIndex, entry);
+        addPhotoOps(cr, ops, entryIndex, entry);
+
+        return new PendingEntry(entry, title, catIndex, entryIndex, catIndex >= 0 || addsExtras);
+    }
+
+    /**
+     * Apply the operations for a batch of entries in a single transaction and fill in the IDs
+     * of the new rows.
+     *
+     * @param context The Context
+     * @param ops     The list of operations
+     * @param pending The entries in the batch
+     */
+    private static void applyEntryOps(@NonNull Context context,
+                                      @NonNull ArrayList<ContentProviderOperation> ops,
+                                      @NonNull List<PendingEntry> pending)
+            throws SQLiteException {
+        final ContentProviderResult[] results;
+        try {
+            results = context.getContentResolver().applyBatch(FlavordexApp.AUTHORITY, ops);
+        } catch(RemoteException | OperationApplicationException e) {
+            throw new SQLiteException("Failed to insert new row into the entries table", e);
+        }
 
-        return entryUri;
+        for(PendingEntry pendingEntry : pending) {
+            final EntryHolder entry = pendingEntry.entry;
+            if(pendingEntry.catIndex >= 0) {
+                entry.catId = ContentUris.parseId(results[pendingEntry.catIndex].uri);
+            }
+            entry.id = ContentUris.parseId(results[pendingEntry.entryIndex].uri);
+            PhotoUtils.deleteThumb(context, entry.id);
+        }
     }
 
     /**
@@ -121,13 +297,22 @@ public class EntryUtils {
      *
      * @param cr    The ContentResolver
      * @param entry The entry
+     * @param uuids The UUIDs of the existing entries, or null to query the database
      */
-    private static void checkUuid(@NonNull ContentResolver cr, @NonNull EntryHolder entry) {
+    private static void checkUuid(@NonNull ContentResolver cr, @NonNull EntryHolder entry,
+                                  @Nullable UuidSet uuids) {
         if(!isValidUuid(entry.uuid)) {
             entry.uuid = null;
             return;
         }
 
+        if(uuids != null) {
+            if(uuids.contains(entry.uuid)) {
+                entry.uuid = null;
+            }
+            return;
+        }
+
         final String[] projection = new String[] {Tables.Entries._ID};
         final String where = Tables.Entries.UUID + " = ?";
         final String[] whereArgs = new String[] {entry.uuid};
@@ -145,55 +330,19 @@ public class EntryUtils {
     }
 
     /**
-     * Get a unique title in case the original title already exists.
-     *
-     * @param cr        The ContentResolver
-     * @param origTitle The original title
-     * @return The title with a number appended if the original title already exists
-     */
-    @NonNull
-    private static String getUniqueTitle(@NonNull ContentResolver cr, @NonNull String origTitle) {
-        final String[] projection = new String[] {Tables.Entries.TITLE};
-        final String where = Tables.Entries.TITLE + " LIKE ?";
-        final String[] whereArgs = new String[] {origTitle + "%"};
-        final Cursor cursor = cr.query(Tables.Entries.CONTENT_URI, projection, where, whereArgs,
-                null);
-        if(cursor != null) {
-            try {
-                if(cursor.getCount() == 0) {
-                    return origTitle;
-                }
-
-                final ArrayList<String> titles = new ArrayList<>();
-                while(cursor.moveToNext()) {
-                    titles.add(cursor.getString(cursor.getColumnIndex(Tables.Entries.TITLE)));
-                }
-
-                int i = 2;
-                String newTitle = origTitle;
-                while(titles.contains(newTitle)) {
-                    newTitle = origTitle + " (" + i++ + ")";
-                }
-                return newTitle;
-            } finally {
-                cursor.close();
-            }
-        }
-        return origTitle;
-    }
-
-    /**
-     * Find the Uri for a category, creating one if it doesn't exist.
+     * Find the ID of the category for a new entry, or add the operations to create one if it
+     * doesn't exist.
      *
      * @param cr    The ContentResolver
+     * @param ops   The list of operations
      * @param entry The entry
-     * @return The Uri for the category
+     * @return The index of the operation inserting the category, or -1 if it already exists
      */
-    @NonNull
-    private static Uri getCatUri(@NonNull ContentResolver cr, @NonNull EntryHolder entry)
-            throws SQLiteException {
+    private static int addCatOps(@NonNull ContentResolver cr,
+                                 @NonNull ArrayList<ContentProviderOperation> ops,
+                                 @NonNull EntryHolder entry) throws SQLiteException {
         if(entry.catId > 0) {
-            return ContentUris.withAppendedId(Tables.Cats.CONTENT_ID_URI_BASE, entry.catId);
+            return -1;
         } else if(TextUtils.isEmpty(entry.catName)) {
             throw new SQLiteException("Category ID or name is required");
         }
@@ -206,86 +355,112 @@ public class EntryUtils {
         if(cursor != null) {
             try {
                 if(cursor.moveToFirst()) {
-                    final long id = cursor.getLong(cursor.getColumnIndex(Tables.Cats._ID));
-                    entry.catId = id;
-                    return ContentUris.withAppendedId(Tables.Cats.CONTENT_ID_URI_BASE, id);
+                    entry.catId = cursor.getLong(cursor.getColumnIndex(Tables.Cats._ID));
+                    return -1;
                 }
             } finally {
                 cursor.close();
             }
         }
 
-        final ContentValues values = new ContentValues();
-        values.put(Tables.Cats.NAME, filterName(entry.catName));
-        final Uri catUri = cr.insert(uri, values);
-
-        if(catUri == null) {
-            throw new SQLiteException("Inserting new category failed");
-        }
+        final int catIndex = ops.size();
+        ops.add(ContentProviderOperation.newInsert(uri)
+                .withValue(Tables.Cats.NAME, filterName(entry.catName))
+                .build());
 
-        entry.catId = Long.valueOf(catUri.getLastPathSegment());
-        insertCatFlavors(cr, catUri, entry);
-
-        return catUri;
-    }
-
-    /**
-     * Insert the flavor list for the new category.
-     *
-     * @param cr     The ContentResolver
-     * @param catUri The Uri for the category
-     * @param entry  The entry
-     */
-    private static void insertCatFlavors(@NonNull ContentResolver cr, @NonNull Uri catUri,
-                                         @NonNull EntryHolder entry) {
         final ArrayList<RadarHolder> flavors = entry.getFlavors();
-        final Uri uri = Uri.withAppendedPath(catUri, "flavor");
-        final ContentValues values = new ContentValues();
-        values.put(Tables.Flavors.CAT, entry.catId);
         for(int i = 0; i < flavors.size(); i++) {
-            values.put(Tables.Flavors.NAME, filterName(flavors.get(i).name));
-            values.put(Tables.Flavors.POS, i);
-            cr.insert(uri, values);
+            ops.add(ContentProviderOperation.newInsert(Tables.Flavors.CONTENT_URI)
+                    .withValueBackReference(Tables.Flavors.CAT, catIndex)
+                    .withValue(Tables.Flavors.NAME, filterName(flavors.get(i).name))
+                    .withValue(Tables.Flavors.POS, i)
+                    .build());
         }
+
+        return catIndex;
     }
 
     /**
-     * Insert the extra fields for the new entry.
+     * Add the operations to insert the extra fields for the new entry, along with any extra
+     * fields missing from the category. Extra fields that cannot be looked up are logged and
+     * left out of the batch so they do not prevent the entry from being inserted.
      *
-     * @param cr       The ContentResolver
-     * @param catUri   The Uri for the category
-     * @param entryUri The Uri for the new entry
-     * @param entry    The entry
+     * @param cr         The ContentResolver
+     * @param ops        The list of operations
+     * @param catIndex   The index of the operation inserting the category, or -1 if it exists
+     * @param entryIndex The index of the operation inserting the entry
+     * @param entry      The entry
+     * @return Whether any extra fields were added to the category
      */
-    private static void insertExtras(@NonNull ContentResolver cr, @NonNull Uri catUri,
-                                     @NonNull Uri entryUri, @NonNull EntryHolder entry) {
-        final Uri uri = Uri.withAppendedPath(entryUri, "extras");
-        final ContentValues values = new ContentValues();
+    private static boolean addExtraOps(@NonNull ContentResolver cr,
+                                    @NonNull ArrayList<ContentProviderOperation> ops,
+                                    int catIndex, int entryIndex, @NonNull EntryHolder entry) {
+        final Uri catExtrasUri = catIndex < 0 ? Uri.withAppendedPath(
+                ContentUris.withAppendedId(Tables.Cats.CONTENT_ID_URI_BASE, entry.catId),
+                "extras") : null;
+        final HashMap<String, Integer> newExtras = new HashMap<>();
+        int nextPos = -1;
         for(ExtraFieldHolder extra : entry.getExtras()) {
             if(TextUtils.isEmpty(extra.value)) {
                 continue;
             }
+            if(TextUtils.isEmpty(extra.name)) {
+                Log.w(TAG, "Skipping extra field without a name for: " + entry.title);
+                continue;
+            }
+
+            final long extraId;
             try {
-                values.put(Tables.EntriesExtras.EXTRA, getExtraId(cr, catUri, extra.name));
-                values.put(Tables.EntriesExtras.VALUE, extra.value);
-                cr.insert(uri, values);
+                extraId = catExtrasUri != null ? getExtraId(cr, catExtrasUri, extra.name) : 0;
+                if(extraId <= 0 && !newExtras.containsKey(extra.name) && nextPos < 0) {
+                    nextPos = catExtrasUri != null ? getNextExtraPos(cr, catExtrasUri) : 0;
+                }
             } catch(SQLiteException e) {
-                Log.e(TAG, e.getMessage());
+                Log.e(TAG, "Skipping extra field: " + extra.name, e);
+                continue;
+            }
+
+            final ContentProviderOperation.Builder builder =
+                    ContentProviderOperation.newInsert(Tables.EntriesExtras.CONTENT_URI)
+                            .withValueBackReference(Tables.EntriesExtras.ENTRY, entryIndex)
+                            .withValue(Tables.EntriesExtras.VALUE, extra.value);
+            if(extraId > 0) {
+                builder.withValue(Tables.EntriesExtras.EXTRA, extraId);
+            } else if(newExtras.containsKey(extra.name)) {
+                builder.withValueBackReference(Tables.EntriesExtras.EXTRA,
+                        newExtras.get(extra.name));
+            } else {
+                final ContentProviderOperation.Builder extraBuilder =
+                        ContentProviderOperation.newInsert(Tables.Extras.CONTENT_URI)
+                                .withValue(Tables.Extras.NAME, extra.name)
+                                .withValue(Tables.Extras.POS, nextPos++);
+                if(catIndex < 0) {
+                    extraBuilder.withValue(Tables.Extras.CAT, entry.catId);
+                } else {
+                    extraBuilder.withValueBackReference(Tables.Extras.CAT, catIndex);
+                }
+
+                newExtras.put(extra.name, ops.size());
+                builder.withValueBackReference(Tables.EntriesExtras.EXTRA, ops.size());
+                ops.add(extraBuilder.build());
             }
+
+            ops.add(builder.build());
         }
+
+        return !newExtras.isEmpty();
     }
 
     /**
-     * Find the ID of an extra field, creating one if it doesn't exist.
+     * Find the ID of an existing extra field.
      *
-     * @param cr     The ContentResolver
-     * @param catUri The Uri for the category
-     * @param name   The name of the field
-     * @return The ID for the extra field
+     * @param cr   The ContentResolver
+     * @param uri  The Uri for the category's extras
+     * @param name The name of the field
+     * @return The ID for the extra field, or 0 if it doesn't exist
      */
-    private static long getExtraId(@NonNull ContentResolver cr, @NonNull Uri catUri,
+    private static long getExtraId(@NonNull ContentResolver cr, @NonNull Uri uri,
                                    @NonNull String name) {
-        final Uri uri = Uri.withAppendedPath(catUri, "extras");
         final String[] projection = new String[] {Tables.Extras._ID};
         final String where = Tables.Extras.NAME + " = ?";
         final String[] whereArgs = new String[] {name};
@@ -300,15 +475,7 @@ public class EntryUtils {
             }
         }
 
-        final ContentValues values = new ContentValues();
-        values.put(Tables.Extras.NAME, name);
-        values.put(Tables.Extras.POS, getNextExtraPos(cr, uri));
-        final Uri extraUri = cr.insert(uri, values);
-        if(extraUri == null) {
-            throw new SQLiteException("Inserting new extra field failed");
-        }
-
-        return Long.valueOf(extraUri.getLastPathSegment());
+        return 0;
     }
 
     /**
@@ -335,52 +502,59 @@ public class EntryUtils {
     }
 
     /**
-     * Insert the flavors for the new entry.
+     * Add the operations to insert the flavors for the new entry.
      *
-     * @param cr       The ContentResolver
-     * @param entryUri The Uri for the new entry
-     * @param entry    The entry
+     * @param ops        The list of operations
+     * @param entryIndex The index of the operation inserting the entry
+     * @param entry      The entry
      */
-    private static void insertFlavors(@NonNull ContentResolver cr, @NonNull Uri entryUri,
-                                      @NonNull EntryHolder entry) {
+    private static void addFlavorOps(@NonNull ArrayList<ContentProviderOperation> ops,
+                                     int entryIndex, @NonNull EntryHolder entry) {
         final ArrayList<RadarHolder> flavors = entry.getFlavors();
-        final Uri uri = Uri.withAppendedPath(entryUri, "flavor");
-        final ContentValues values = new ContentValues();
         RadarHolder flavor;
         for(int i = 0; i < flavors.size(); i++) {
             flavor = flavors.get(i);
-            values.put(Tables.EntriesFlavors.FLAVOR, filterName(flavor.name));
-            values.put(Tables.EntriesFlavors.VALUE, flavor.value);
-            values.put(Tables.EntriesFlavors.POS, i);
-            cr.insert(uri, values);
+            ops.add(ContentProviderOperation.newInsert(Tables.EntriesFlavors.CONTENT_URI)
+                    .withValueBackReference(Tables.EntriesFlavors.ENTRY, entryIndex)
+                    .withValue(Tables.EntriesFlavors.FLAVOR, filterName(flavor.name))
+                    .withValue(Tables.EntriesFlavors.VALUE, flavor.value)
+                    .withValue(Tables.EntriesFlavors.POS, i)
+                    .build());
         }
     }
 
     /**
-     * Insert the photos for the new entry.
+     * Add the operations to insert the photos for the new entry.
      *
-     * @param cr       The ContentResolver
-     * @param entryUri The Uri for the new entry
-     * @param entry    The entry
+     * @param cr         The ContentResolver
+     * @param ops        The list of operations
+     * @param entryIndex The index of the operation inserting the entry
+     * @param entry      The entry
      */
-    private static void insertPhotos(@NonNull ContentResolver cr, @NonNull Uri entryUri,
-                                     @NonNull EntryHolder entry) {
+    private static void addPhotoOps(@NonNull ContentResolver cr,
+                                    @NonNull ArrayList<ContentProviderOperation> ops,
+                                    int entryIndex, @NonNull EntryHolder entry) {
         final ArrayList<PhotoHolder> photos = entry.getPhotos();
-        final Uri uri = Uri.withAppendedPath(entryUri, "photos");
-        final ContentValues values = new ContentValues();
         PhotoHolder photo;
-        Uri photoUri;
+        PhotoUtils.SavedPhoto savedPhoto;
         for(int i = 0; i < photos.size(); i++) {
             photo = photos.get(i);
-            photoUri = PhotoUtils.getFileUri(cr, photo.uri);
-            if(photoUri != null) {
-                photo.uri = photoUri;
-                photo.hash = PhotoUtils.getMD5Hash(cr, photoUri);
+            savedPhoto = PhotoUtils.savePhoto(cr, photo.uri, photo.hash);
+            if(savedPhoto != null) {
+                photo.uri = savedPhoto.uri;
+                photo.hash = savedPhoto.hash;
+                if(savedPhoto.rotation != PhotoUtils.ROTATION_UNKNOWN) {
+                    photo.rotation = savedPhoto.rotation;
+                }
             }
-            values.put(Tables.Photos.HASH, photo.hash);
-            values.put(Tables.Photos.PATH, photo.uri.getLastPathSegment());
-            values.put(Tables.Photos.POS, i);
-            cr.insert(uri, values);
+            ops.add(ContentProviderOperation.newInsert(Tables.Photos.CONTENT_URI)
+                    .withValueBackReference(Tables.Photos.ENTRY, entryIndex)
+                    .withValue(Tables.Photos.HASH, photo.hash)
+                    .withValue(Tables.Photos.PATH, photo.uri.getLastPathSegment())
+                    .withValue(Tables.Photos.POS, i)
+                    .withValue(Tables.Photos.ROTATION,
+                            photo.rotation != PhotoUtils.ROTATION_UNKNOWN ? photo.rotation : null)
+                    .build());
         }
     }
 
@@ -414,6 +588,7 @@ public class EntryUtils {
         final Uri uri = ContentUris.withAppendedId(Tables.Entries.CONTENT_ID_URI_BASE, id);
         cr.delete(uri, null, null);
         PhotoUtils.deleteThumb(context, id);
+        PhotoUtils.collectGarbage(context);
     }
 
     /**
@@ -443,6 +618,7 @@ public class EntryUtils {
                 cursor.close();
             }
         }
+        PhotoUtils.collectGarbage(context);
     }
 
     /**
@@ -507,4 +683,52 @@ public class EntryUtils {
     private static String getShareSubject(@NonNull Context context, @NonNull String title) {
         return context.getString(R.string.share_subject, title);
     }
+
+    /**
+     * The indices of the operations inserting an entry that has not been written yet.
+     */
+    private static class PendingEntry {
+        /**
+         * The entry
+         */
+        @NonNull
+        final EntryHolder entry;
+
+        /**
+         * The unique title assigned to the entry
+         */
+        @NonNull
+        final String title;
+
+        /**
+         * The index of the operation inserting the category, or -1 if it exists
+         */
+        final int catIndex;
+
+        /**
+         * The index of the operation inserting the entry
+         */
+        final int entryIndex;
+
+        /**
+         * Whether the entry adds a category or extra fields
+         */
+        final boolean addsFields;
+
+        /**
+         * @param entry      The entry
+         * @param title      The unique title assigned to the entry
+         * @param catIndex   The index of the operation inserting the category, or -1
+         * @param entryIndex The index of the operation inserting the entry
+         * @param addsFields Whether the entry adds a category or extra fields
+         */
+        PendingEntry(@NonNull EntryHolder entry, @NonNull String title, int catIndex,
+                     int entryIndex, boolean addsFields) {
+            this.entry = entry;
+            this.title = title;
+            this.catIndex = catIndex;
+            this.entryIndex = entryIndex;
+            this.addsFields = addsFields;
+        }
+    }
 }
@@ -0,0 +1,368 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.ultramegasoft.flavordex2.provider.Tables;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Process-wide in-memory index of makers for autocompletion. The index is a list of makers
+ * sorted by their normalized names, built on a background thread and rebuilt whenever the makers
+ * table changes. Prefix matches are found by binary search and are returned before names that
+ * only contain the query.
+ *
+ * @author Steve Guidetti
+ */
+public class MakerIndex {
+    /**
+     * The columns of the Cursors returned by queries
+     */
+    private static final String[] COLUMNS = new String[] {
+            Tables.Makers._ID,
+            Tables.Makers.NAME,
+            Tables.Makers.LOCATION
+    };
+
+    /**
+     * The shared instance
+     */
+    @Nullable
+    private static MakerIndex sInstance;
+
+    /**
+     * The ContentResolver to load makers from
+     */
+    @NonNull
+    private final ContentResolver mResolver;
+
+    /**
+     * The thread building the index
+     */
+    @NonNull
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Whether a rebuild is waiting to run
+     */
+    @NonNull
+    private final AtomicBoolean mRebuildPending = new AtomicBoolean();
+
+    /**
+     * The current index, or null if it has not been built yet
+     */
+    @Nullable
+    private volatile Snapshot mSnapshot;
+
+    /**
+     * @param context The Context
+     */
+    private MakerIndex(@NonNull Context context) {
+        mResolver = context.getContentResolver();
+        mResolver.registerContentObserver(Tables.Makers.CONTENT_URI, true,
+                new ContentObserver(new Handler(Looper.getMainLooper())) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        rebuild();
+                    }
+                });
+        rebuild();
+    }
+
+    /**
+     * Get the shared instance, starting to build the index the first time.
+     *
+     * @param context The Context
+     * @return The MakerIndex
+     */
+    @NonNull
+    public static synchronized MakerIndex getInstance(@NonNull Context context) {
+        if(sInstance == null) {
+            sInstance = new MakerIndex(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Check whether the index has been built.
+     *
+     * @return Whether the index is ready to be queried
+     */
+    public boolean isReady() {
+        return mSnapshot != null;
+    }
+
+    /**
+     * Find the makers matching a query. Makers whose names start with the query are returned
+     * first, followed by makers whose names contain the query, each sorted by name.
+     *
+     * @param constraint The text to search for
+     * @param limit      The maximum number of makers to return
+     * @param canceller  Checked periodically to stop a search that is no longer needed
+     * @return A Cursor containing the matching makers, or null if the index is not ready or the
+     * search was canceled
+     */
+    @Nullable
+    public Cursor query(@Nullable CharSequence constraint, int limit,
+                        @Nullable Canceller canceller) {
+        final Snapshot snapshot = mSnapshot;
+        if(snapshot == null) {
+            return null;
+        }
+
+        final String query = constraint != null ? normalize(constraint.toString()) : "";
+        final MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        final int size = snapshot.keys.length;
+
+        final int start = lowerBound(snapshot.keys, query);
+        int end = start;
+        while(end < size && cursor.getCount() < limit && snapshot.keys[end].startsWith(query)) {
+            snapshot.addRow(cursor, end++);
+        }
+
+        if(query.length() > 0) {
+            for(int i = 0; i < size && cursor.getCount() < limit; i++) {
+                if(i == start && end > start) {
+                    i = end - 1;
+                    continue;
+                }
+                if((i & 0xff) == 0 && canceller != null && canceller.isCanceled()) {
+                    cursor.close();
+                    return null;
+                }
+                if(snapshot.keys[i].contains(query)) {
+                    snapshot.addRow(cursor, i);
+                }
+            }
+        }
+
+        return cursor;
+    }
+
+    /**
+     * Schedule the index to be rebuilt from the database. Requests made while a rebuild is
+     * already waiting are combined.
+     */
+    private void rebuild() {
+        if(!mRebuildPending.compareAndSet(false, true)) {
+            return;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mRebuildPending.set(false);
+                final Snapshot snapshot = load();
+                if(snapshot != null) {
+                    mSnapshot = snapshot;
+                }
+            }
+        });
+    }
+
+    /**
+     * Load all the makers from the database and build a new index.
+     *
+     * @return The new index, or null if the makers could not be loaded
+     */
+    @Nullable
+    private Snapshot load() {
+        final Cursor cursor = mResolver.query(Tables.Makers.CONTENT_URI, COLUMNS, null, null,
+                null);
+        if(cursor == null) {
+            return null;
+        }
+
+        final ArrayList<Maker> makers = new ArrayList<>(cursor.getCount());
+        try {
+            final int nameIndex = cursor.getColumnIndex(Tables.Makers.NAME);
+            final int locationIndex = cursor.getColumnIndex(Tables.Makers.LOCATION);
+            String name;
+            while(cursor.moveToNext()) {
+                name = cursor.getString(nameIndex);
+                if(name != null) {
+                    makers.add(new Maker(cursor.getLong(0), name, cursor.getString(locationIndex)));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        Collections.sort(makers, new Comparator<Maker>() {
+            @Override
+            public int compare(Maker lhs, Maker rhs) {
+                final int result = lhs.key.compareTo(rhs.key);
+                return result != 0 ? result : lhs.name.compareTo(rhs.name);
+            }
+        });
+
+        return new Snapshot(makers);
+    }
+
+    /**
+     * Normalize a name for searching.
+     *
+     * @param name The name
+     * @return The normalized name
+     */
+    @NonNull
+    private static String normalize(@NonNull String name) {
+        return name.trim().toLowerCase(Locale.getDefault());
+    }
+
+    /**
+     * Find the index of the first key that is not less than a value.
+     *
+     * @param keys  The sorted keys
+     * @param value The value
+     * @return The index of the first key greater than or equal to the value
+     */
+    private static int lowerBound(@NonNull String[] keys, @NonNull String value) {
+        final int index = Arrays.binarySearch(keys, value);
+        if(index < 0) {
+            return -index - 1;
+        }
+
+        int first = index;
+        while(first > 0 && keys[first - 1].equals(value)) {
+            first--;
+        }
+        return first;
+    }
+
+    /**
+     * Interface for checking whether a search is no longer needed.
+     */
+    public interface Canceller {
+        /**
+         * @return Whether the search should be stopped
+         */
+        boolean isCanceled();
+    }
+
+    /**
+     * A maker loaded from the database.
+     */
+    private static class Maker {
+        /**
+         * The database ID
+         */
+        final long id;
+
+        /**
+         * The name of the maker
+         */
+        @NonNull
+        final String name;
+
+        /**
+         * The location of the maker
+         */
+        @Nullable
+        final String location;
+
+        /**
+         * The normalized name
+         */
+        @NonNull
+        final String key;
+
+        /**
+         * @param id       The database ID
+         * @param name     The name of the maker
+         * @param location The location of the maker
+         */
+        Maker(long id, @NonNull String name, @Nullable String location) {
+            this.id = id;
+            this.name = name;
+            this.location = location;
+            this.key = normalize(name);
+        }
+    }
+
+    /**
+     * An immutable copy of the index.
+     */
+    private static class Snapshot {
+        /**
+         * The sorted normalized names
+         */
+        @NonNull
+        final String[] keys;
+
+        /**
+         * The data for each maker, in the same order as the keys
+         */
+        @NonNull
+        final long[] ids;
+        @NonNull
+        final String[] names;
+        @NonNull
+        final String[] locations;
+
+        /**
+         * @param makers The makers, sorted by normalized name
+         */
+        Snapshot(@NonNull ArrayList<Maker> makers) {
+            final int size = makers.size();
+            keys = new String[size];
+            ids = new long[size];
+            names = new String[size];
+            locations = new String[size];
+            for(int i = 0; i < size; i++) {
+                final Maker maker = makers.get(i);
+                keys[i] = maker.key;
+                ids[i] = maker.id;
+                names[i] = maker.name;
+                locations[i] = maker.location;
+            }
+        }
+
+        /**
+         * Add a maker to a Cursor.
+         *
+         * @param cursor The Cursor
+         * @param index  The index of the maker
+         */
+        void addRow(@NonNull MatrixCursor cursor, int index) {
+            cursor.addRow(new Object[] {ids[index], names[index], locations[index]});
+        }
+    }
+}
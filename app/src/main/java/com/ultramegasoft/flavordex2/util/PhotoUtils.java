@@ -33,7 +33,10 @@ import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.BitmapFactory.Options;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
@@ -49,6 +52,7 @@ import android.util.Log;
 import com.ultramegasoft.flavordex2.BuildConfig;
 import com.ultramegasoft.flavordex2.provider.Tables;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileInputStream;
@@ -62,8 +66,11 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Utilities for capturing and manipulating images.
@@ -89,9 +96,34 @@ public class PhotoUtils {
     private static final String JPEG_FILE_SUFFIX = ".jpg";
 
     /**
-     * The prefix for cached thumbnails
+     * The maximum number of bytes to use for the persistent thumbnail cache
      */
-    private static final String THUMB_FILE_PREFIX = "thumb_";
+    private static final long THUMB_STORE_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * The size of the buffer used to read photo files
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Pattern matching the names of photo files stored under their hash
+     */
+    private static final Pattern BLOB_NAME = Pattern.compile("^([0-9a-f]{32})\\.\\w+$");
+
+    /**
+     * Pattern matching file extensions that may be used for stored photos
+     */
+    private static final Pattern BLOB_EXTENSION = Pattern.compile("^\\.\\w+$");
+
+    /**
+     * The time in milliseconds before an unreferenced stored photo may be deleted
+     */
+    private static final long BLOB_GRACE_PERIOD = 60 * 60 * 1000;
+
+    /**
+     * The rotation value for photos whose EXIF data was not read
+     */
+    public static final int ROTATION_UNKNOWN = -1;
 
     /**
      * The width and height of thumbnail Bitmaps
@@ -99,9 +131,26 @@ public class PhotoUtils {
     private static final int THUMB_SIZE = 40;
 
     /**
-     * The shared memory cache for thumbnails
+     * The buffer used to read photo files on each thread
      */
-    private static final BitmapCache sThumbCache = new BitmapCache();
+    private static final ThreadLocal<byte[]> sBuffer = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    /**
+     * The shared pool of reusable Bitmaps
+     */
+    private static final BitmapPool sBitmapPool =
+            new BitmapPool(Runtime.getRuntime().maxMemory() / 16);
+
+    /**
+     * The persistent cache for thumbnails
+     */
+    @Nullable
+    private static ThumbStore sThumbStore;
 
     /**
      * Get an Intent to capture a photo.
@@ -162,7 +211,32 @@ public class PhotoUtils {
      */
     @NonNull
     public static BitmapCache getThumbCache() {
-        return sThumbCache;
+        return BitmapCache.getInstance();
+    }
+
+    /**
+     * Get the pool of reusable Bitmaps.
+     *
+     * @return The Bitmap pool
+     */
+    @NonNull
+    public static BitmapPool getBitmapPool() {
+        return sBitmapPool;
+    }
+
+    /**
+     * Get the persistent cache for storing thumbnails.
+     *
+     * @param context The Context
+     * @return The thumbnail store
+     */
+    @NonNull
+    private static synchronized ThumbStore getThumbStore(@NonNull Context context) {
+        if(sThumbStore == null) {
+            sThumbStore = new ThumbStore(context.getApplicationContext().getCacheDir(),
+                    THUMB_STORE_SIZE);
+        }
+        return sThumbStore;
     }
 
     /**
@@ -192,16 +266,34 @@ public class PhotoUtils {
     }
 
     /**
-     * Rotate an image according to its EXIF data.
+     * Set up the options for decoding an image into a Bitmap taken from the pool. The options
+     * must contain the original dimensions and the sample size.
+     *
+     * @param options Options object containing the original dimensions
+     * @return The Bitmap from the pool, or null if none was available
+     */
+    @Nullable
+    private static Bitmap prepareReuse(@NonNull Options options) {
+        final int sampleSize = Math.max(1, options.inSampleSize);
+        final int width = (options.outWidth + sampleSize - 1) / sampleSize;
+        final int height = (options.outHeight + sampleSize - 1) / sampleSize;
+        final Bitmap.Config config = options.inPreferredConfig != null
+                ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+
+        options.inMutable = true;
+        options.inBitmap = width > 0 && height > 0
+                ? sBitmapPool.getForDecode(width, height, config) : null;
+        return options.inBitmap;
+    }
+
+    /**
+     * Read the rotation of an image from its EXIF data or the MediaStore.
      *
      * @param context The Context
      * @param uri     The Uri to the image file
-     * @param bitmap  The Bitmap to rotate
-     * @return The rotated Bitmap
+     * @return The rotation in degrees
      */
-    @NonNull
-    private static Bitmap rotatePhoto(@NonNull Context context, @NonNull Uri uri,
-                                      @NonNull Bitmap bitmap) {
+    private static int getRotation(@NonNull Context context, @NonNull Uri uri) {
         uri = getImageUri(context, uri);
         int rotation = 0;
 
@@ -236,11 +328,38 @@ public class PhotoUtils {
             }
         }
 
+        return rotation;
+    }
+
+    /**
+     * Rotate an image.
+     *
+     * @param bitmap   The Bitmap to rotate
+     * @param rotation The rotation in degrees
+     * @return The rotated Bitmap
+     */
+    @NonNull
+    private static Bitmap rotatePhoto(@NonNull Bitmap bitmap, int rotation) {
         if(rotation != 0) {
             final Matrix matrix = new Matrix();
             matrix.postRotate(rotation);
-            return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix,
-                    true);
+            final RectF bounds = new RectF(0, 0, bitmap.getWidth(), bitmap.getHeight());
+            matrix.mapRect(bounds);
+            matrix.postTranslate(-bounds.left, -bounds.top);
+
+            final int width = Math.round(bounds.width());
+            final int height = Math.round(bounds.height());
+            final Bitmap.Config config =
+                    bitmap.getConfig() != null ? bitmap.getConfig() : Bitmap.Config.ARGB_8888;
+            Bitmap rotated = sBitmapPool.get(width, height, config);
+            if(rotated == null) {
+                rotated = Bitmap.createBitmap(width, height, config);
+                sBitmapPool.recordAllocation(rotated);
+            }
+
+            new Canvas(rotated).drawBitmap(bitmap, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+            sBitmapPool.put(bitmap);
+            return rotated;
         }
 
         return bitmap;
@@ -280,6 +399,23 @@ public class PhotoUtils {
     @Nullable
     public static Bitmap loadBitmap(@NonNull Context context, @NonNull Uri uri, int reqWidth,
                                     int reqHeight) {
+        return loadBitmap(context, uri, reqWidth, reqHeight, ROTATION_UNKNOWN);
+    }
+
+    /**
+     * Load a Bitmap from an image file.
+     *
+     * @param context   The Context
+     * @param uri       The Uri to the image file
+     * @param reqWidth  The requested width of the decoded Bitmap
+     * @param reqHeight The requested height of the decoded Bitmap
+     * @param rotation  The rotation of the image in degrees if it was recorded when the photo
+     *                  was saved, or ROTATION_UNKNOWN to read it from the image
+     * @return A Bitmap
+     */
+    @Nullable
+    public static Bitmap loadBitmap(@NonNull Context context, @NonNull Uri uri, int reqWidth,
+                                    int reqHeight, int rotation) {
         final ContentResolver cr = context.getContentResolver();
         try {
             final ParcelFileDescriptor parcelFileDescriptor = cr.openFileDescriptor(uri, "r");
@@ -295,11 +431,28 @@ public class PhotoUtils {
 
                 opts.inSampleSize = calculateInSampleSize(opts, reqWidth, reqHeight);
                 opts.inJustDecodeBounds = false;
+                final Bitmap reused = prepareReuse(opts);
+
+                Bitmap bitmap;
+                try {
+                    bitmap = BitmapFactory.decodeFileDescriptor(fileDescriptor, null, opts);
+                } catch(IllegalArgumentException e) {
+                    opts.inBitmap = null;
+                    bitmap = BitmapFactory.decodeFileDescriptor(fileDescriptor, null, opts);
+                }
+                if(bitmap == null) {
+                    return null;
+                }
+                sBitmapPool.recordDecode(bitmap, reused);
+                if(reused != null && reused != bitmap) {
+                    sBitmapPool.put(reused);
+                }
 
-                final Bitmap bitmap =
-                        BitmapFactory.decodeFileDescriptor(fileDescriptor, null, opts);
                 if("image/jpeg".equals(opts.outMimeType)) {
-                    return rotatePhoto(context, uri, bitmap);
+                    if(rotation == ROTATION_UNKNOWN) {
+                        rotation = getRotation(context, uri);
+                    }
+                    return rotatePhoto(bitmap, rotation);
                 }
                 return bitmap;
             } catch(OutOfMemoryError e) {
@@ -332,14 +485,16 @@ public class PhotoUtils {
         final ContentResolver cr = context.getContentResolver();
         final Uri uri = Uri.withAppendedPath(Tables.Entries.CONTENT_ID_URI_BASE, id + "/photos");
         final String where = Tables.Photos.PATH + " NOT NULL";
-        final Cursor cursor = cr.query(uri, new String[] {Tables.Photos.PATH}, where, null,
-                Tables.Photos.POS + " ASC");
+        final String[] projection = new String[] {Tables.Photos.PATH, Tables.Photos.ROTATION};
+        final Cursor cursor =
+                cr.query(uri, projection, where, null, Tables.Photos.POS + " ASC");
         if(cursor != null) {
             try {
                 if(cursor.moveToFirst()) {
-                    generateThumb(context, parsePath(cursor.getString(0)), id);
+                    final int rotation = cursor.isNull(1) ? ROTATION_UNKNOWN : cursor.getInt(1);
+                    generateThumb(context, parsePath(cursor.getString(0)), rotation, id);
                 } else {
-                    generateThumb(context, null, id);
+                    generateThumb(context, null, ROTATION_UNKNOWN, id);
                 }
             } finally {
                 cursor.close();
@@ -350,30 +505,29 @@ public class PhotoUtils {
     /**
      * Load a Bitmap as a thumbnail and save it to the persistent cache.
      *
-     * @param context The Context
-     * @param uri     The Uri to the original image
-     * @param id      The ID of the entry the image belongs to
+     * @param context  The Context
+     * @param uri      The Uri to the original image
+     * @param rotation The rotation of the image in degrees, or ROTATION_UNKNOWN
+     * @param id       The ID of the entry the image belongs to
      */
-    private static void generateThumb(@NonNull Context context, @Nullable Uri uri, long id) {
-        try {
-            if(uri != null) {
-                final Bitmap inputBitmap = loadBitmap(context, uri, THUMB_SIZE, THUMB_SIZE);
+    private static void generateThumb(@NonNull Context context, @Nullable Uri uri, int rotation,
+                                      long id) {
+        byte[] data = null;
+        if(uri != null) {
+            final Bitmap inputBitmap =
+                    loadBitmap(context, uri, THUMB_SIZE, THUMB_SIZE, rotation);
 
-                if(inputBitmap != null) {
-                    final FileOutputStream os = new FileOutputStream(getThumbFile(context, id));
-                    inputBitmap.compress(Bitmap.CompressFormat.JPEG, 90, os);
-                    os.close();
+            if(inputBitmap != null) {
+                final ByteArrayOutputStream os = new ByteArrayOutputStream();
+                inputBitmap.compress(Bitmap.CompressFormat.JPEG, 90, os);
+                data = os.toByteArray();
 
-                    sThumbCache.remove(id);
-                    inputBitmap.recycle();
-                }
+                getThumbCache().remove(id);
+                sBitmapPool.put(inputBitmap);
             }
-
-            //noinspection ResultOfMethodCallIgnored
-            getThumbFile(context, id).createNewFile();
-        } catch(IOException e) {
-            Log.e(TAG, "Error writing thumbnail bitmap", e);
         }
+
+        getThumbStore(context).put(id, data);
     }
 
     /**
@@ -385,9 +539,9 @@ public class PhotoUtils {
      */
     @Nullable
     public static Bitmap getThumb(@NonNull Context context, long id) {
-        final File file = getThumbFile(context, id);
+        final ThumbStore store = getThumbStore(context);
 
-        if(!file.exists()) {
+        if(!store.contains(id)) {
             if(Environment.MEDIA_MOUNTED.equals(Environment.getExternalStorageState()) &&
                     PermissionUtils.hasExternalStoragePerm(context)) {
                 generateThumb(context, id);
@@ -396,12 +550,32 @@ public class PhotoUtils {
             }
         }
 
-        if(file.length() == 0) {
+        final byte[] data = store.get(id);
+        if(data == null) {
             return null;
         }
 
         try {
-            return BitmapFactory.decodeFile(file.getPath(), null);
+            final Options opts = new BitmapFactory.Options();
+            opts.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+            opts.inJustDecodeBounds = false;
+            final Bitmap reused = prepareReuse(opts);
+
+            Bitmap bitmap;
+            try {
+                bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+            } catch(IllegalArgumentException e) {
+                opts.inBitmap = null;
+                bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+            }
+            if(bitmap != null) {
+                sBitmapPool.recordDecode(bitmap, reused);
+            }
+            if(reused != null && reused != bitmap) {
+                sBitmapPool.put(reused);
+            }
+            return bitmap;
         } catch(OutOfMemoryError e) {
             Log.e(TAG, "Out of memory", e);
         }
@@ -415,30 +589,14 @@ public class PhotoUtils {
      * @param id      The entry ID
      */
     public static void deleteThumb(@NonNull Context context, long id) {
-        final File file = getThumbFile(context, id);
-        if(file.exists()) {
-            sThumbCache.remove(id);
-            //noinspection ResultOfMethodCallIgnored
-            file.delete();
+        if(getThumbStore(context).remove(id)) {
+            getThumbCache().remove(id);
             final ContentResolver cr = context.getContentResolver();
             final Uri uri = ContentUris.withAppendedId(Tables.Entries.CONTENT_ID_URI_BASE, id);
             cr.notifyChange(uri, null);
         }
     }
 
-    /**
-     * Get a Bitmap file for an entry.
-     *
-     * @param context The Context
-     * @param id      The entry ID
-     * @return A reference to the image file
-     */
-    @NonNull
-    private static File getThumbFile(@NonNull Context context, long id) {
-        final String fileName = THUMB_FILE_PREFIX + id + JPEG_FILE_SUFFIX;
-        return new File(context.getCacheDir(), fileName);
-    }
-
     /**
      * Get the output file for a new captured image.
      *
@@ -476,58 +634,47 @@ public class PhotoUtils {
     }
 
     /**
-     * Get the file Uri for the given Uri.
+     * Save a photo to the external storage, reusing the existing file if one with the same name
+     * is already there. New copies are stored under the hash of their contents, so a photo that
+     * has already been stored is not written again.
      *
-     * @param cr  The ContentResolver
-     * @param uri The original Uri
-     * @return The file Uri
+     * @param cr   The ContentResolver
+     * @param uri  The original Uri
+     * @param hash The MD5 hash the app calculated from the photo, if already known. This is
+     *             trusted without reading the photo, so it must never come from imported data.
+     * @return The saved photo
      */
     @Nullable
-    public static Uri getFileUri(@NonNull ContentResolver cr, @NonNull Uri uri) {
+    public static SavedPhoto savePhoto(@NonNull ContentResolver cr, @NonNull Uri uri,
+                                       @Nullable String hash) {
         final String name = getName(cr, uri);
-        if(name != null) {
-            final File file;
-            try {
-                file = new File(getMediaStorageDir(), name);
+        try {
+            final File directory = getMediaStorageDir();
+            if(name != null) {
+                final File file = new File(directory, name);
                 if(file.exists()) {
-                    return Uri.fromFile(file);
+                    if(hash != null && "file".equals(uri.getScheme())
+                            && file.equals(new File(uri.getPath()))) {
+                        return new SavedPhoto(Uri.fromFile(file), hash, ROTATION_UNKNOWN);
+                    }
+                    return readPhoto(file);
                 }
-                return savePhotoFromUri(cr, uri, file);
-            } catch(IOException e) {
-                Log.w(TAG, "Unable to check for existing file", e);
             }
-        }
-        return savePhotoFromUri(cr, uri, null);
-    }
 
-    /**
-     * Save a photo from a content Uri to the external storage.
-     *
-     * @param cr   The ContentResolver
-     * @param uri  The content Uri
-     * @param file The File to write to or null to create one
-     * @return The file Uri for the new file
-     */
-    @Nullable
-    private static Uri savePhotoFromUri(@NonNull ContentResolver cr, @NonNull Uri uri,
-                                        @Nullable File file) {
-        try {
-            if(file == null) {
-                file = getOutputMediaFile();
+            final String extension = getExtension(name);
+            if(hash != null) {
+                final File blob = getBlobFile(directory, hash, extension);
+                if(touchBlob(blob)) {
+                    return new SavedPhoto(Uri.fromFile(blob), hash, ROTATION_UNKNOWN);
+                }
             }
+
             final InputStream inputStream = cr.openInputStream(uri);
             if(inputStream != null) {
-                final OutputStream outputStream = new FileOutputStream(file);
                 try {
-                    final byte[] buffer = new byte[8192];
-                    int read;
-                    while((read = inputStream.read(buffer)) > 0) {
-                        outputStream.write(buffer, 0, read);
-                    }
-                    return Uri.fromFile(file);
+                    return storeBlob(inputStream, directory, extension);
                 } finally {
                     inputStream.close();
-                    outputStream.close();
                 }
             }
         } catch(FileNotFoundException e) {
@@ -539,42 +686,346 @@ public class PhotoUtils {
     }
 
     /**
-     * Save a photo from a stream, checking for duplicates.
+     * Save a photo from a stream, reusing the stored copy if one with the same contents exists.
+     * The stream is always hashed as it is read, so a stream from an untrusted source can never
+     * be stored under the hash of a different photo.
      *
      * @param inputStream The source stream
-     * @param fileName    The output file name
-     * @return The saved file
+     * @param fileName    The original file name
+     * @return The saved photo
      */
     @NonNull
-    public static File savePhotoFromStream(@NonNull InputStream inputStream,
-                                           @NonNull String fileName) throws IOException {
-        final File tempFile = File.createTempFile("import_", fileName);
-        FileUtils.dumpStream(inputStream, tempFile);
-
-        final File directory = getMediaStorageDir();
-        final String name = fileName.substring(0, fileName.lastIndexOf('.'));
-        final String extension = fileName.substring(fileName.lastIndexOf('.'));
-        File outputFile = new File(directory, fileName);
-        if(outputFile.exists()) {
-            int i = 2;
-            final String sourceHash = getMD5Hash(tempFile);
-            if(sourceHash != null) {
-                while(outputFile.exists()) {
-                    final String targetHash = getMD5Hash(outputFile);
-                    if(targetHash != null && sourceHash.equals(targetHash)) {
-                        break;
-                    }
+    public static SavedPhoto savePhotoFromStream(@NonNull InputStream inputStream,
+                                                 @NonNull String fileName) throws IOException {
+        return storeBlob(inputStream, getMediaStorageDir(), getExtension(fileName));
+    }
+
+    /**
+     * Write a photo to the directory under the hash of its contents, unless a file with the same
+     * contents already exists.
+     *
+     * @param inputStream The source stream
+     * @param directory   The directory to store the photo in
+     * @param extension   The file extension
+     * @return The saved photo
+     */
+    @NonNull
+    private static SavedPhoto storeBlob(@NonNull InputStream inputStream, @NonNull File directory,
+                                        @NonNull String extension) throws IOException {
+        final File tempFile = File.createTempFile(".import_", null, directory);
+        try {
+            final SavedPhoto temp;
+            final OutputStream outputStream = new FileOutputStream(tempFile);
+            try {
+                temp = readPhoto(inputStream, outputStream, tempFile);
+            } finally {
+                outputStream.close();
+            }
 
-                    outputFile = new File(directory, name + " (" + i++ + ")" + extension);
+            final File blob = getBlobFile(directory, temp.hash, extension);
+            if(!touchBlob(blob) && !tempFile.renameTo(blob)) {
+                try {
+                    FileUtils.dumpStream(new FileInputStream(tempFile), blob);
+                } catch(IOException e) {
+                    //noinspection ResultOfMethodCallIgnored
+                    blob.delete();
+                    throw e;
                 }
             }
+
+            return new SavedPhoto(Uri.fromFile(blob), temp.hash, temp.rotation);
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
         }
+    }
 
-        FileUtils.dumpStream(new FileInputStream(tempFile), outputFile);
+    /**
+     * Get the file for a photo stored under its hash.
+     *
+     * @param directory The directory containing the photo
+     * @param hash      The MD5 hash of the photo
+     * @param extension The file extension
+     * @return The photo file
+     */
+    @NonNull
+    private static File getBlobFile(@NonNull File directory, @NonNull String hash,
+                                    @NonNull String extension) {
+        return new File(directory, hash + extension);
+    }
+
+    /**
+     * Mark a stored photo as recently used so it is not collected before it is referenced.
+     *
+     * @param blob The photo file
+     * @return Whether the file exists
+     */
+    private static boolean touchBlob(@NonNull File blob) {
+        if(!blob.exists()) {
+            return false;
+        }
         //noinspection ResultOfMethodCallIgnored
-        tempFile.delete();
+        blob.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Get the extension from a file name.
+     *
+     * @param fileName The file name
+     * @return The extension including the dot, or the JPEG extension if there is none
+     */
+    @NonNull
+    private static String getExtension(@Nullable String fileName) {
+        if(fileName != null) {
+            final int dot = fileName.lastIndexOf('.');
+            if(dot >= 0 && BLOB_EXTENSION.matcher(fileName.substring(dot)).matches()) {
+                return fileName.substring(dot).toLowerCase(Locale.US);
+            }
+        }
+        return JPEG_FILE_SUFFIX;
+    }
+
+    /**
+     * Delete the photos stored under their hash that are no longer referenced by any entry. Files
+     * modified within the grace period are kept, since they may be waiting to be referenced.
+     *
+     * @param context The Context
+     */
+    public static void collectGarbage(@NonNull Context context) {
+        if(!PermissionUtils.hasExternalStoragePerm(context)) {
+            return;
+        }
+
+        final File[] files;
+        try {
+            files = getMediaStorageDir().listFiles();
+        } catch(IOException e) {
+            Log.w(TAG, "Unable to access the media storage", e);
+            return;
+        }
+
+        final ContentResolver cr = context.getContentResolver();
+        final HashSet<String> referenced = new HashSet<>();
+        final String[] projection = new String[] {Tables.PhotoBlobs.HASH};
+        final Cursor cursor = cr.query(Tables.PhotoBlobs.CONTENT_URI, projection,
+                Tables.PhotoBlobs.REFS + " > 0", null, null);
+        if(cursor == null) {
+            return;
+        }
+        try {
+            while(cursor.moveToNext()) {
+                referenced.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if(files != null) {
+            final long cutoff = System.currentTimeMillis() - BLOB_GRACE_PERIOD;
+            for(File file : files) {
+                final Matcher matcher = BLOB_NAME.matcher(file.getName());
+                if(!matcher.matches() || referenced.contains(matcher.group(1))
+                        || file.lastModified() > cutoff || isHashReferenced(cr, matcher.group(1))) {
+                    continue;
+                }
+                if(!file.delete()) {
+                    Log.w(TAG, "Failed to delete unreferenced photo: " + file.getName());
+                }
+            }
+        }
+
+        cr.delete(Tables.PhotoBlobs.CONTENT_URI, null, null);
+    }
+
+    /**
+     * Check whether any photo in the database has a given hash.
+     *
+     * @param cr   The ContentResolver
+     * @param hash The MD5 hash
+     * @return Whether the hash is referenced
+     */
+    private static boolean isHashReferenced(@NonNull ContentResolver cr, @NonNull String hash) {
+        final Uri uri = Tables.Photos.CONTENT_URI.buildUpon()
+                .appendQueryParameter(Tables.PARAM_LIMIT, "1").build();
+        final String[] projection = new String[] {Tables.Photos._ID};
+        final String where = Tables.Photos.HASH + " = ?";
+        final String[] whereArgs = new String[] {hash};
+        final Cursor cursor = cr.query(uri, projection, where, whereArgs, null);
+        if(cursor == null) {
+            return true;
+        }
+        try {
+            return cursor.getCount() > 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Read a photo file to find its hash and EXIF orientation.
+     *
+     * @param file The photo file
+     * @return The photo
+     */
+    @NonNull
+    private static SavedPhoto readPhoto(@NonNull File file) throws IOException {
+        final InputStream inputStream = new FileInputStream(file);
+        try {
+            return readPhoto(inputStream, null, file);
+        } finally {
+            inputStream.close();
+        }
+    }
 
-        return outputFile;
+    /**
+     * Stream a photo, optionally copying it, while calculating its MD5 hash and reading its EXIF
+     * orientation in the same pass. The first block of the file is read in full so the EXIF data
+     * can be found in the read buffer without a separate copy.
+     *
+     * @param inputStream  The source stream
+     * @param outputStream The stream to copy the photo to, or null to only read it
+     * @param file         The file the photo is saved in
+     * @return The photo
+     */
+    @NonNull
+    private static SavedPhoto readPhoto(@NonNull InputStream inputStream,
+                                        @Nullable OutputStream outputStream,
+                                        @NonNull File file) throws IOException {
+        final MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("MD5");
+        } catch(NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        final byte[] buffer = sBuffer.get();
+        int length = 0;
+        int read;
+        while(length < buffer.length
+                && (read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+        }
+        final int rotation = getExifRotation(buffer, length);
+
+        read = length;
+        while(read != -1) {
+            messageDigest.update(buffer, 0, read);
+            if(outputStream != null) {
+                outputStream.write(buffer, 0, read);
+            }
+            read = inputStream.read(buffer);
+        }
+
+        return new SavedPhoto(Uri.fromFile(file), toHexString(messageDigest), rotation);
+    }
+
+    /**
+     * Find the rotation specified by the EXIF orientation tag in the beginning of a JPEG file.
+     *
+     * @param data   The beginning of the file
+     * @param length The number of bytes of data
+     * @return The rotation in degrees, or 0 if there is none
+     */
+    private static int getExifRotation(@NonNull byte[] data, int length) {
+        if(length < 4 || (data[0] & 0xff) != 0xff || (data[1] & 0xff) != 0xd8) {
+            return 0;
+        }
+
+        int pos = 2;
+        while(pos + 4 <= length) {
+            if((data[pos] & 0xff) != 0xff) {
+                return 0;
+            }
+            final int marker = data[pos + 1] & 0xff;
+            if(marker == 0xff) {
+                pos++;
+                continue;
+            }
+            if(marker == 0xd9 || marker == 0xda) {
+                return 0;
+            }
+            final int segmentLength = readShort(data, pos + 2, false);
+            final int start = pos + 4;
+            final int end = Math.min(length, pos + 2 + segmentLength);
+            if(marker == 0xe1 && start + 6 <= end && data[start] == 'E' && data[start + 1] == 'x'
+                    && data[start + 2] == 'i' && data[start + 3] == 'f') {
+                return getTiffRotation(data, start + 6, end);
+            }
+            pos += 2 + segmentLength;
+        }
+        return 0;
+    }
+
+    /**
+     * Find the rotation specified by the orientation tag in the first IFD of TIFF data.
+     *
+     * @param data  The data
+     * @param start The offset of the TIFF header
+     * @param end   The end of the TIFF data
+     * @return The rotation in degrees, or 0 if there is none
+     */
+    private static int getTiffRotation(@NonNull byte[] data, int start, int end) {
+        if(start + 8 > end) {
+            return 0;
+        }
+        final boolean littleEndian = data[start] == 'I' && data[start + 1] == 'I';
+        if(!littleEndian && !(data[start] == 'M' && data[start + 1] == 'M')) {
+            return 0;
+        }
+
+        final int ifd = start + readInt(data, start + 4, littleEndian);
+        if(ifd < start || ifd + 2 > end) {
+            return 0;
+        }
+        final int count = readShort(data, ifd, littleEndian);
+        for(int i = 0; i < count; i++) {
+            final int tag = ifd + 2 + i * 12;
+            if(tag + 12 > end) {
+                break;
+            }
+            if(readShort(data, tag, littleEndian) == 0x0112) {
+                switch(readShort(data, tag + 8, littleEndian)) {
+                    case ExifInterface.ORIENTATION_ROTATE_90:
+                        return 90;
+                    case ExifInterface.ORIENTATION_ROTATE_180:
+                        return 180;
+                    case ExifInterface.ORIENTATION_ROTATE_270:
+                        return 270;
+                    default:
+                        return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Read an unsigned 16 bit integer.
+     *
+     * @param data         The data
+     * @param offset       The offset of the value
+     * @param littleEndian Whether the value is little endian
+     * @return The value
+     */
+    private static int readShort(@NonNull byte[] data, int offset, boolean littleEndian) {
+        final int a = data[offset] & 0xff;
+        final int b = data[offset + 1] & 0xff;
+        return littleEndian ? (b << 8) | a : (a << 8) | b;
+    }
+
+    /**
+     * Read a 32 bit integer.
+     *
+     * @param data         The data
+     * @param offset       The offset of the value
+     * @param littleEndian Whether the value is little endian
+     * @return The value
+     */
+    private static int readInt(@NonNull byte[] data, int offset, boolean littleEndian) {
+        final int high = readShort(data, offset, littleEndian);
+        final int low = readShort(data, offset + 2, littleEndian);
+        return littleEndian ? (low << 16) | high : (high << 16) | low;
     }
 
     /**
@@ -640,13 +1091,12 @@ public class PhotoUtils {
     private static String getMD5Hash(@NonNull InputStream inputStream) {
         try {
             final MessageDigest messageDigest = MessageDigest.getInstance("MD5");
-            final byte[] buffer = new byte[8192];
+            final byte[] buffer = sBuffer.get();
             int read;
             while((read = inputStream.read(buffer)) > 0) {
                 messageDigest.update(buffer, 0, read);
             }
-            final BigInteger digest = new BigInteger(1, messageDigest.digest());
-            return String.format("%32s", digest.toString(16)).replace(" ", "0");
+            return toHexString(messageDigest);
         } catch(NoSuchAlgorithmException | IOException e) {
             Log.e(TAG, "Failed to generate MD5 hash", e);
         }
@@ -654,6 +1104,18 @@ public class PhotoUtils {
         return null;
     }
 
+    /**
+     * Get the result of a MessageDigest as a hex string.
+     *
+     * @param messageDigest The MessageDigest
+     * @return The digest as a hex string
+     */
+    @NonNull
+    private static String toHexString(@NonNull MessageDigest messageDigest) {
+        final BigInteger digest = new BigInteger(1, messageDigest.digest());
+        return String.format("%32s", digest.toString(16)).replace(" ", "0");
+    }
+
     /**
      * Get the MD5 hash of a file as a 32 character hex string.
      *
@@ -724,4 +1186,37 @@ public class PhotoUtils {
         }
         return uri.toString();
     }
+
+    /**
+     * A photo saved to the external storage along with its hash and EXIF orientation.
+     */
+    public static class SavedPhoto {
+        /**
+         * The Uri to the saved file
+         */
+        @NonNull
+        public final Uri uri;
+
+        /**
+         * The MD5 hash of the file
+         */
+        @NonNull
+        public final String hash;
+
+        /**
+         * The rotation specified by the EXIF data in degrees, or ROTATION_UNKNOWN
+         */
+        public final int rotation;
+
+        /**
+         * @param uri      The Uri to the saved file
+         * @param hash     The MD5 hash of the file
+         * @param rotation The rotation specified by the EXIF data in degrees
+         */
+        SavedPhoto(@NonNull Uri uri, @NonNull String hash, int rotation) {
+            this.uri = uri;
+            this.hash = hash;
+            this.rotation = rotation;
+        }
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.ultramegasoft.flavordex2.provider.Tables;
+
+/**
+ * Helpers for searching entries using the full-text search table.
+ *
+ * @author Steve Guidetti
+ */
+public class SearchUtils {
+    /**
+     * Selection restricting entries to those matching a full-text query, without the query
+     * argument and the closing parenthesis
+     */
+    public static final String MATCH_SELECTION_PREFIX = Tables.Entries._ID + " IN (SELECT "
+            + Tables.EntriesSearch.DOCID + " FROM " + Tables.EntriesSearch.TABLE_NAME + " WHERE "
+            + Tables.EntriesSearch.TABLE_NAME + " MATCH ";
+
+    /**
+     * Selection restricting entries to those matching a full-text query given as an argument
+     */
+    public static final String MATCH_SELECTION = MATCH_SELECTION_PREFIX + "?)";
+
+    /**
+     * Build a full-text query matching entries containing words starting with each word in the
+     * search text. Characters with special meaning to the query parser are removed.
+     *
+     * @param column The full-text column to search, or null to search all columns
+     * @param text   The search text
+     * @return The full-text query, or an empty string if the text contains no words
+     */
+    @NonNull
+    public static String getMatchQuery(@Nullable String column, @Nullable String text) {
+        final StringBuilder query = new StringBuilder();
+        appendMatchQuery(query, column, text);
+        return query.toString();
+    }
+
+    /**
+     * Append the terms for the words in the search text to a full-text query.
+     *
+     * @param query  The full-text query to append to
+     * @param column The full-text column to search, or null to search all columns
+     * @param text   The search text
+     */
+    public static void appendMatchQuery(@NonNull StringBuilder query, @Nullable String column,
+                                        @Nullable String text) {
+        if(text == null) {
+            return;
+        }
+
+        int start = -1;
+        for(int i = 0; i <= text.length(); i++) {
+            final boolean isWordChar = i < text.length() && isWordChar(text.charAt(i));
+            if(isWordChar && start == -1) {
+                start = i;
+            } else if(!isWordChar && start != -1) {
+                if(query.length() > 0) {
+                    query.append(' ');
+                }
+                if(column != null) {
+                    query.append(column).append(':');
+                }
+                for(int j = start; j < i; j++) {
+                    final char c = text.charAt(j);
+                    query.append(c >= 'A' && c <= 'Z' ? (char)(c + ('a' - 'A')) : c);
+                }
+                query.append('*');
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * Check whether a character is part of a word. This matches the default tokenizer, which
+     * treats all non-ASCII characters as part of a word.
+     *
+     * @param c The character
+     * @return Whether the character is part of a word
+     */
+    private static boolean isWordChar(char c) {
+        return c > 0x7f || Character.isLetterOrDigit(c);
+    }
+}
@@ -0,0 +1,536 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Persistent cache for thumbnails packed into a single file. Thumbnail data is appended to a data
+ * file, and the location of each thumbnail is recorded in an append-only index file that is
+ * replayed when the store is opened. Entries without a photo are recorded in the index as
+ * tombstones. The least recently used thumbnails are evicted once the store exceeds its byte
+ * budget, and the files are compacted when most of the data file is no longer referenced. A data
+ * file without an index is discarded, so the index is always deleted before the data file is
+ * replaced. Thumbnails may be read concurrently, while writes, compaction, and closing the files
+ * wait for all reads to finish.
+ *
+ * @author Steve Guidetti
+ */
+public class ThumbStore {
+    private static final String TAG = "ThumbStore";
+
+    /**
+     * The file names for the data and index files
+     */
+    private static final String DATA_FILE = "thumbs.dat";
+    private static final String INDEX_FILE = "thumbs.idx";
+
+    /**
+     * The suffix for files being written during compaction
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * The size of each record in the index file: the ID, offset, and length
+     */
+    private static final int RECORD_SIZE = 20;
+
+    /**
+     * Record lengths with special meanings
+     */
+    private static final int LENGTH_TOMBSTONE = 0;
+    private static final int LENGTH_REMOVED = -1;
+
+    /**
+     * The minimum number of unreferenced bytes in the data file before it is compacted
+     */
+    private static final long MIN_COMPACT_BYTES = 256 * 1024;
+
+    /**
+     * The directory containing the files
+     */
+    @NonNull
+    private final File mDir;
+
+    /**
+     * The maximum number of bytes of thumbnail data to store
+     */
+    private final long mMaxBytes;
+
+    /**
+     * Map of IDs to the locations of their thumbnails, in order of least to most recently used.
+     * Readers also lock this map, since each lookup updates the access order.
+     */
+    @NonNull
+    private final LinkedHashMap<Long, Record> mRecords = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Lock held for reading while thumbnails are read from the data file, and for writing while
+     * the files are written, compacted, or closed
+     */
+    @NonNull
+    private final ReentrantReadWriteLock mLock = new ReentrantReadWriteLock();
+
+    /**
+     * The open data and index files
+     */
+    @Nullable
+    private FileChannel mData;
+    @Nullable
+    private FileChannel mIndex;
+
+    /**
+     * The length of the data file
+     */
+    private long mDataSize;
+
+    /**
+     * The number of bytes used by the stored records
+     */
+    private long mLiveBytes;
+
+    /**
+     * @param dir      The directory to store the files in
+     * @param maxBytes The maximum number of bytes of thumbnail data to store
+     */
+    public ThumbStore(@NonNull File dir, long maxBytes) {
+        mDir = dir;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Check whether the store has a record for an ID, either a thumbnail or a tombstone.
+     *
+     * @param id The entry ID
+     * @return Whether the ID has a record
+     */
+    public boolean contains(long id) {
+        if(!ensureOpen()) {
+            return false;
+        }
+
+        mLock.readLock().lock();
+        try {
+            synchronized(mRecords) {
+                return mRecords.containsKey(id);
+            }
+        } finally {
+            mLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read the thumbnail for an ID. Only the lookup is done under the monitor, so reads of
+     * different thumbnails can run at the same time.
+     *
+     * @param id The entry ID
+     * @return The thumbnail data, or null if there is no thumbnail
+     */
+    @Nullable
+    public byte[] get(long id) {
+        if(!ensureOpen()) {
+            return null;
+        }
+
+        final FileChannel channel;
+        mLock.readLock().lock();
+        try {
+            final long offset;
+            final int length;
+            synchronized(mRecords) {
+                final Record record = mRecords.get(id);
+                if(mData == null || record == null || record.length == LENGTH_TOMBSTONE) {
+                    return null;
+                }
+                channel = mData;
+                offset = record.offset;
+                length = record.length;
+            }
+
+            try {
+                final byte[] data = new byte[length];
+                final ByteBuffer buffer = ByteBuffer.wrap(data);
+                long position = offset;
+                while(buffer.hasRemaining()) {
+                    final int read = channel.read(buffer, position);
+                    if(read < 0) {
+                        throw new IOException("Unexpected end of thumbnail data");
+                    }
+                    position += read;
+                }
+                return data;
+            } catch(IOException | RuntimeException e) {
+                Log.e(TAG, "Failed to read thumbnail", e);
+            }
+        } finally {
+            mLock.readLock().unlock();
+        }
+
+        mLock.writeLock().lock();
+        try {
+            if(mData == channel) {
+                reset();
+            }
+        } finally {
+            mLock.writeLock().unlock();
+        }
+        return null;
+    }
+
+    /**
+     * Store the thumbnail for an ID.
+     *
+     * @param id   The entry ID
+     * @param data The thumbnail data, or null to record that the entry has no thumbnail
+     */
+    public void put(long id, @Nullable byte[] data) {
+        mLock.writeLock().lock();
+        try {
+            if(!open()) {
+                return;
+            }
+
+            final long offset = mDataSize;
+            final int length = data != null ? data.length : LENGTH_TOMBSTONE;
+            if(length > 0) {
+                final ByteBuffer buffer = ByteBuffer.wrap(data);
+                long position = offset;
+                while(buffer.hasRemaining()) {
+                    position += mData.write(buffer, position);
+                }
+                mDataSize += length;
+            }
+            writeRecord(id, offset, length);
+            putRecord(id, new Record(offset, length));
+            trim();
+        } catch(IOException e) {
+            Log.e(TAG, "Failed to write thumbnail", e);
+            reset();
+        } finally {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the record for an ID.
+     *
+     * @param id The entry ID
+     * @return Whether the ID had a record
+     */
+    public boolean remove(long id) {
+        mLock.writeLock().lock();
+        try {
+            if(!open() || !mRecords.containsKey(id)) {
+                return false;
+            }
+
+            try {
+                writeRecord(id, 0, LENGTH_REMOVED);
+                removeRecord(id);
+            } catch(IOException e) {
+                Log.e(TAG, "Failed to remove thumbnail", e);
+                reset();
+            }
+            return true;
+        } finally {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Open the store if it is not already open. The read lock must not be held by the caller.
+     *
+     * @return Whether the store is open
+     */
+    private boolean ensureOpen() {
+        mLock.readLock().lock();
+        try {
+            if(mData != null) {
+                return true;
+            }
+        } finally {
+            mLock.readLock().unlock();
+        }
+
+        mLock.writeLock().lock();
+        try {
+            return open();
+        } finally {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Open the files and load the index if they are not already open.
+     *
+     * @return Whether the store is open
+     */
+    private boolean open() {
+        if(mData != null) {
+            return true;
+        }
+
+        try {
+            final File indexFile = new File(mDir, INDEX_FILE);
+            if(!indexFile.exists()) {
+                deleteLegacyFiles();
+                //noinspection ResultOfMethodCallIgnored
+                new File(mDir, DATA_FILE).delete();
+            }
+            mData = new RandomAccessFile(new File(mDir, DATA_FILE), "rw").getChannel();
+            mIndex = new RandomAccessFile(indexFile, "rw").getChannel();
+            mDataSize = mData.size();
+            loadIndex();
+            return true;
+        } catch(IOException e) {
+            Log.e(TAG, "Failed to open thumbnail store", e);
+            close();
+        }
+        return false;
+    }
+
+    /**
+     * Replay the index file to rebuild the map of records. Records pointing outside the data
+     * file, such as those written before a crash, are ignored.
+     */
+    private void loadIndex() throws IOException {
+        mRecords.clear();
+        mLiveBytes = 0;
+
+        final long size = mIndex.size();
+        final ByteBuffer buffer = ByteBuffer.allocate((int)(size - size % RECORD_SIZE));
+        while(buffer.hasRemaining()) {
+            if(mIndex.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+
+        while(buffer.remaining() >= RECORD_SIZE) {
+            final long id = buffer.getLong();
+            final long offset = buffer.getLong();
+            final int length = buffer.getInt();
+            if(length == LENGTH_REMOVED) {
+                removeRecord(id);
+            } else if(offset >= 0 && length >= 0 && offset + length <= mDataSize) {
+                putRecord(id, new Record(offset, length));
+            }
+        }
+
+        mIndex.position(buffer.limit());
+        trim();
+    }
+
+    /**
+     * Append a record to the index file.
+     *
+     * @param id     The entry ID
+     * @param offset The offset of the thumbnail in the data file
+     * @param length The length of the thumbnail
+     */
+    private void writeRecord(long id, long offset, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        buffer.putLong(id).putLong(offset).putInt(length).flip();
+        while(buffer.hasRemaining()) {
+            mIndex.write(buffer);
+        }
+    }
+
+    /**
+     * Add a record to the map, replacing any existing record for the ID.
+     *
+     * @param id     The entry ID
+     * @param record The record
+     */
+    private void putRecord(long id, @NonNull Record record) {
+        removeRecord(id);
+        mRecords.put(id, record);
+        mLiveBytes += record.getSize();
+    }
+
+    /**
+     * Remove a record from the map.
+     *
+     * @param id The entry ID
+     */
+    private void removeRecord(long id) {
+        final Record record = mRecords.remove(id);
+        if(record != null) {
+            mLiveBytes -= record.getSize();
+        }
+    }
+
+    /**
+     * Evict the least recently used records until the store is within its budget, then compact
+     * the files if enough of the data file is unreferenced. Evictions are recorded in the index
+     * so the records stay evicted when the store is opened again.
+     */
+    private void trim() throws IOException {
+        final Iterator<Map.Entry<Long, Record>> iterator = mRecords.entrySet().iterator();
+        while(mLiveBytes > mMaxBytes && iterator.hasNext()) {
+            final Map.Entry<Long, Record> entry = iterator.next();
+            writeRecord(entry.getKey(), 0, LENGTH_REMOVED);
+            mLiveBytes -= entry.getValue().getSize();
+            iterator.remove();
+        }
+
+        final long deadBytes = mDataSize + mIndex.size() - mLiveBytes;
+        if(deadBytes > MIN_COMPACT_BYTES && deadBytes > mLiveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the data and index files with only the current records.
+     */
+    private void compact() throws IOException {
+        final File dataTemp = new File(mDir, DATA_FILE + TEMP_SUFFIX);
+        final File indexTemp = new File(mDir, INDEX_FILE + TEMP_SUFFIX);
+        final FileChannel data = new RandomAccessFile(dataTemp, "rw").getChannel();
+        final FileChannel index = new RandomAccessFile(indexTemp, "rw").getChannel();
+        try {
+            data.truncate(0);
+            index.truncate(0);
+            final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            long offset = 0;
+            for(Map.Entry<Long, Record> entry : mRecords.entrySet()) {
+                final Record value = entry.getValue();
+                if(value.length > 0) {
+                    mData.transferTo(value.offset, value.length, data);
+                }
+                value.offset = offset;
+                offset += value.length;
+
+                record.clear();
+                record.putLong(entry.getKey()).putLong(value.offset).putInt(value.length).flip();
+                while(record.hasRemaining()) {
+                    index.write(record);
+                }
+            }
+        } finally {
+            data.close();
+            index.close();
+        }
+
+        close();
+        final File indexFile = new File(mDir, INDEX_FILE);
+        if(!indexFile.delete() || !dataTemp.renameTo(new File(mDir, DATA_FILE))
+                || !indexTemp.renameTo(indexFile)) {
+            throw new IOException("Failed to replace thumbnail store files");
+        }
+        open();
+    }
+
+    /**
+     * Delete the files and start over with an empty store.
+     */
+    private void reset() {
+        close();
+        //noinspection ResultOfMethodCallIgnored
+        new File(mDir, DATA_FILE).delete();
+        //noinspection ResultOfMethodCallIgnored
+        new File(mDir, INDEX_FILE).delete();
+        mRecords.clear();
+        mLiveBytes = 0;
+    }
+
+    /**
+     * Close the open files.
+     */
+    private void close() {
+        try {
+            if(mData != null) {
+                mData.close();
+            }
+            if(mIndex != null) {
+                mIndex.close();
+            }
+        } catch(IOException e) {
+            Log.e(TAG, "Failed to close thumbnail store", e);
+        }
+        mData = null;
+        mIndex = null;
+    }
+
+    /**
+     * Delete the individual thumbnail files used by previous versions.
+     */
+    private void deleteLegacyFiles() {
+        final File[] files = mDir.listFiles();
+        if(files == null) {
+            return;
+        }
+        for(File file : files) {
+            final String name = file.getName();
+            if(name.startsWith("thumb_") && name.endsWith(".jpg")) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * The location of a thumbnail in the data file.
+     */
+    private static class Record {
+        /**
+         * The offset of the thumbnail in the data file
+         */
+        long offset;
+
+        /**
+         * The length of the thumbnail, or 0 for a tombstone
+         */
+        final int length;
+
+        /**
+         * @param offset The offset of the thumbnail in the data file
+         * @param length The length of the thumbnail
+         */
+        Record(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Get the number of bytes this record counts against the budget.
+         *
+         * @return The size of the thumbnail plus its index record
+         */
+        long getSize() {
+            return length + RECORD_SIZE;
+        }
+    }
+}
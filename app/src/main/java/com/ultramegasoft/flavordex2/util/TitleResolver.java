@@ -0,0 +1,189 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.ultramegasoft.flavordex2.provider.Tables;
+
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Resolves unique titles for new entries by appending a number to titles that already exist.
+ * The titles matching each base title are loaded with a single indexed range query and cached,
+ * so titles assigned earlier in the same batch are taken into account.
+ *
+ * @author Steve Guidetti
+ */
+public class TitleResolver {
+    /**
+     * The ContentResolver
+     */
+    @NonNull
+    private final ContentResolver mResolver;
+
+    /**
+     * Map of base titles to the titles that are taken
+     */
+    @NonNull
+    private final HashMap<String, TakenTitles> mCache = new HashMap<>();
+
+    /**
+     * @param cr The ContentResolver
+     */
+    public TitleResolver(@NonNull ContentResolver cr) {
+        mResolver = cr;
+    }
+
+    /**
+     * Get a unique title in case the original title already exists, and reserve it.
+     *
+     * @param origTitle The original title
+     * @return The title with a number appended if the original title already exists
+     */
+    @NonNull
+    public String resolve(@NonNull String origTitle) {
+        TakenTitles taken = mCache.get(origTitle);
+        if(taken == null) {
+            taken = load(origTitle);
+            mCache.put(origTitle, taken);
+        }
+
+        final String title;
+        if(!taken.base) {
+            taken.base = true;
+            title = origTitle;
+        } else {
+            while(taken.numbers.contains(taken.next)) {
+                taken.next++;
+            }
+            taken.numbers.add(taken.next);
+            title = origTitle + " (" + taken.next++ + ")";
+        }
+
+        reserveNumbered(title);
+        return title;
+    }
+
+    /**
+     * Load the titles matching a base title from the database.
+     *
+     * @param origTitle The base title
+     * @return The titles that are taken
+     */
+    @NonNull
+    private TakenTitles load(@NonNull String origTitle) {
+        final TakenTitles taken = new TakenTitles();
+
+        final String[] projection = new String[] {Tables.Entries.TITLE};
+        final String where = Tables.Entries.TITLE + " = ? OR (" + Tables.Entries.TITLE
+                + " >= ? AND " + Tables.Entries.TITLE + " < ?)";
+        final String[] whereArgs = new String[] {origTitle, origTitle + " (", origTitle + " )"};
+        final Cursor cursor = mResolver.query(Tables.Entries.CONTENT_URI, projection, where,
+                whereArgs, null);
+        if(cursor != null) {
+            try {
+                String title;
+                int number;
+                while(cursor.moveToNext()) {
+                    title = cursor.getString(0);
+                    if(origTitle.equals(title)) {
+                        taken.base = true;
+                    } else if((number = getNumber(origTitle, title)) > 0) {
+                        taken.numbers.add(number);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        return taken;
+    }
+
+    /**
+     * Record a title in the form "Base (N)" as taken for its base title, if that base title has
+     * already been loaded.
+     *
+     * @param title The title
+     */
+    private void reserveNumbered(@NonNull String title) {
+        final int index = title.lastIndexOf(" (");
+        if(index < 0) {
+            return;
+        }
+
+        final String origTitle = title.substring(0, index);
+        final TakenTitles taken = mCache.get(origTitle);
+        if(taken != null) {
+            final int number = getNumber(origTitle, title);
+            if(number > 0) {
+                taken.numbers.add(number);
+            }
+        }
+    }
+
+    /**
+     * Get the number appended to a base title.
+     *
+     * @param origTitle The base title
+     * @param title     The title to parse
+     * @return The number, or 0 if the title is not in the form "Base (N)"
+     */
+    private static int getNumber(@NonNull String origTitle, @Nullable String title) {
+        if(title == null || !title.startsWith(origTitle + " (") || !title.endsWith(")")) {
+            return 0;
+        }
+
+        try {
+            return Integer.parseInt(title.substring(origTitle.length() + 2, title.length() - 1));
+        } catch(NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * The titles that are taken for a base title.
+     */
+    private static class TakenTitles {
+        /**
+         * Whether the base title itself is taken
+         */
+        boolean base;
+
+        /**
+         * The numbers that are taken
+         */
+        @NonNull
+        final HashSet<Integer> numbers = new HashSet<>();
+
+        /**
+         * The lowest number that might be available
+         */
+        int next = 2;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.ultramegasoft.flavordex2.provider.Tables;
+
+import java.util.HashSet;
+import java.util.UUID;
+
+/**
+ * Set of entry UUIDs used for detecting duplicate entries in bulk. UUIDs in the standard format
+ * are stored as pairs of longs in an open addressing table, so checking thousands of entries
+ * only requires a single query.
+ *
+ * @author Steve Guidetti
+ */
+public class UuidSet {
+    /**
+     * The most and least significant bits of each UUID, stored in adjacent slots
+     */
+    @NonNull
+    private long[] mBits;
+
+    /**
+     * Whether each slot in the table is in use
+     */
+    @NonNull
+    private boolean[] mUsed;
+
+    /**
+     * The number of UUIDs in the table
+     */
+    private int mSize;
+
+    /**
+     * UUIDs that are not in the standard format, which are matched as plain strings
+     */
+    @NonNull
+    private final HashSet<String> mOther = new HashSet<>();
+
+    /**
+     * @param capacity The initial number of UUIDs to make room for
+     */
+    public UuidSet(int capacity) {
+        int slots = 16;
+        while(slots < capacity * 2) {
+            slots <<= 1;
+        }
+        mBits = new long[slots * 2];
+        mUsed = new boolean[slots];
+    }
+
+    /**
+     * Load the UUIDs of all the entries in the database.
+     *
+     * @param cr The ContentResolver
+     * @return The set of existing UUIDs
+     */
+    @NonNull
+    public static UuidSet load(@NonNull ContentResolver cr) {
+        final String[] projection = new String[] {Tables.Entries.UUID};
+        final Cursor cursor = cr.query(Tables.Entries.CONTENT_URI, projection, null, null, null);
+        if(cursor == null) {
+            return new UuidSet(0);
+        }
+
+        try {
+            final UuidSet uuids = new UuidSet(cursor.getCount());
+            while(cursor.moveToNext()) {
+                uuids.add(cursor.getString(0));
+            }
+            return uuids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Add a UUID to the set.
+     *
+     * @param uuid The UUID
+     */
+    public void add(@Nullable String uuid) {
+        if(uuid == null) {
+            return;
+        }
+
+        final UUID parsed = parse(uuid);
+        if(parsed == null) {
+            mOther.add(uuid);
+            return;
+        }
+
+        if((mSize + 1) * 2 > mUsed.length) {
+            grow();
+        }
+        if(put(parsed.getMostSignificantBits(), parsed.getLeastSignificantBits())) {
+            mSize++;
+        }
+    }
+
+    /**
+     * Check whether the set contains a UUID.
+     *
+     * @param uuid The UUID
+     * @return Whether the UUID is in the set
+     */
+    public boolean contains(@Nullable String uuid) {
+        if(uuid == null) {
+            return false;
+        }
+
+        final UUID parsed = parse(uuid);
+        if(parsed == null) {
+            return mOther.contains(uuid);
+        }
+
+        final long msb = parsed.getMostSignificantBits();
+        final long lsb = parsed.getLeastSignificantBits();
+        final int mask = mUsed.length - 1;
+        for(int i = hash(msb, lsb) & mask; mUsed[i]; i = (i + 1) & mask) {
+            if(mBits[i * 2] == msb && mBits[i * 2 + 1] == lsb) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the number of UUIDs in the set.
+     *
+     * @return The number of UUIDs
+     */
+    public int size() {
+        return mSize + mOther.size();
+    }
+
+    /**
+     * Parse a UUID in the standard format.
+     *
+     * @param uuid The UUID string
+     * @return The UUID, or null if the string is not in the standard format
+     */
+    @Nullable
+    private static UUID parse(@NonNull String uuid) {
+        if(uuid.length() != 36) {
+            return null;
+        }
+
+        try {
+            final UUID parsed = UUID.fromString(uuid);
+            return parsed.toString().equals(uuid) ? parsed : null;
+        } catch(IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the hash code of a UUID.
+     *
+     * @param msb The most significant bits
+     * @param lsb The least significant bits
+     * @return The hash code
+     */
+    private static int hash(long msb, long lsb) {
+        final long bits = msb ^ lsb;
+        final int hash = (int)(bits ^ (bits >>> 32));
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Put a UUID into the table.
+     *
+     * @param msb The most significant bits
+     * @param lsb The least significant bits
+     * @return Whether the UUID was added
+     */
+    private boolean put(long msb, long lsb) {
+        final int mask = mUsed.length - 1;
+        int i = hash(msb, lsb) & mask;
+        for(; mUsed[i]; i = (i + 1) & mask) {
+            if(mBits[i * 2] == msb && mBits[i * 2 + 1] == lsb) {
+                return false;
+            }
+        }
+
+        mUsed[i] = true;
+        mBits[i * 2] = msb;
+        mBits[i * 2 + 1] = lsb;
+        return true;
+    }
+
+    /**
+     * Double the size of the table.
+     */
+    private void grow() {
+        final long[] bits = mBits;
+        final boolean[] used = mUsed;
+        mBits = new long[bits.length * 2];
+        mUsed = new boolean[used.length * 2];
+        for(int i = 0; i < used.length; i++) {
+            if(used[i]) {
+                put(bits[i * 2], bits[i * 2 + 1]);
+            }
+        }
+    }
+}
@@ -27,28 +27,83 @@ import android.support.annotation.Nullable;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.PushbackReader;
 import java.io.Reader;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
- * Simple reader for CSV files.
+ * Simple reader for CSV files. Rows are tokenized from an internal buffer into a single reusable
+ * character array, so fields can be accessed as views without creating any new objects.
  *
  * @author Steve Guidetti
  */
 public class CSVReader implements Closeable {
+    /**
+     * The size of the read buffer
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Value returned by {@link #read()} and {@link #peek()} at the end of the file
+     */
+    private static final int EOF = -1;
+
     /**
      * The Reader representing the CSV file
      */
     @NonNull
-    private final PushbackReader mReader;
+    private final Reader mReader;
+
+    /**
+     * The buffer of characters read from the file
+     */
+    @NonNull
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+
+    /**
+     * The position of the next character in the buffer
+     */
+    private int mPos;
+
+    /**
+     * The number of valid characters in the buffer
+     */
+    private int mLimit;
+
+    /**
+     * The characters of all the fields in the current row
+     */
+    @NonNull
+    private char[] mRow = new char[256];
+
+    /**
+     * The number of characters in the current row
+     */
+    private int mRowLength;
+
+    /**
+     * The start and end offsets of each field in the current row
+     */
+    @NonNull
+    private int[] mFieldStarts = new int[16];
+    @NonNull
+    private int[] mFieldEnds = new int[16];
+
+    /**
+     * The number of fields in the current row
+     */
+    private int mFieldCount;
+
+    /**
+     * The reusable views of the fields in the current row
+     */
+    @NonNull
+    private FieldView[] mViews = new FieldView[0];
 
     /**
      * @param reader The Reader representing the CSV file
      */
     public CSVReader(@NonNull Reader reader) {
-        mReader = new PushbackReader(reader);
+        mReader = reader;
     }
 
     /**
@@ -58,74 +113,253 @@ public class CSVReader implements Closeable {
      */
     @Nullable
     public String[] readNext() {
-        final List<String> fields = new ArrayList<>();
-
-        StringBuilder field = new StringBuilder();
-        boolean useQuotes = false;
-        boolean inValue = false;
-        char character;
         try {
-            while(true) {
-                character = (char)mReader.read();
-                if(character == '\uffff') {
-                    break;
-                }
+            if(!readRow()) {
+                return null;
+            }
+        } catch(IOException e) {
+            return null;
+        }
 
-                if(!inValue) {
-                    if(character == '\r' || character == '\n') {
-                        do {
-                            character = (char)mReader.read();
-                        } while(character == '\r' || character == '\n');
-                        mReader.unread(character);
-                        break;
-                    }
+        final String[] fields = new String[mFieldCount];
+        for(int i = 0; i < mFieldCount; i++) {
+            fields[i] = getString(i);
+        }
+        return fields;
+    }
 
-                    inValue = true;
+    /**
+     * Read the next row into the internal buffer. The fields of the row are available through
+     * {@link #getField(int)} and {@link #getString(int)} until the next call to this method.
+     *
+     * @return Whether a row was read
+     */
+    public boolean readRow() throws IOException {
+        mRowLength = 0;
+        mFieldCount = 0;
 
-                    if(character == '"') {
-                        useQuotes = true;
-                        continue;
-                    } else {
-                        useQuotes = false;
-                    }
-                }
+        int character;
+        do {
+            character = read();
+        } while(character == '\r' || character == '\n');
 
-                if(character == '"') {
-                    character = (char)mReader.read();
+        while(character != EOF) {
+            final int start = mRowLength;
+            if(character == '"') {
+                while((character = read()) != EOF) {
                     if(character == '"') {
-                        field.append(character);
-                        continue;
-                    } else {
-                        mReader.unread(character);
-                        character = '"';
+                        if(peek() != '"') {
+                            break;
+                        }
+                        character = read();
                     }
+                    append((char)character);
                 }
+                character = read();
+            }
 
-                if((!useQuotes && (character == ',' || character == '\r' || character == '\n'))
-                        || (useQuotes && character == '"')) {
-                    inValue = false;
-                    fields.add(field.toString());
-                    field = new StringBuilder();
-                    if(useQuotes) {
-                        character = (char)mReader.read();
-                        if(character != ',') {
-                            mReader.unread(character);
-                        }
-                    }
-                    continue;
+            while(character != EOF && character != ',' && character != '\r'
+                    && character != '\n') {
+                append((char)character);
+                character = read();
+            }
+
+            addField(start, mRowLength);
+
+            if(character == ',') {
+                character = read();
+                if(character == EOF || character == '\r' || character == '\n') {
+                    addField(mRowLength, mRowLength);
+                }
+            }
+            if(character == '\r' || character == '\n') {
+                if(character == '\r' && peek() == '\n') {
+                    read();
                 }
+                break;
+            }
+        }
+
+        return mFieldCount > 0;
+    }
+
+    /**
+     * Get the number of fields in the current row.
+     *
+     * @return The number of fields
+     */
+    public int getFieldCount() {
+        return mFieldCount;
+    }
 
-                field.append(character);
+    /**
+     * Get a view of a field in the current row. The returned object is reused and is only valid
+     * until the next row is read.
+     *
+     * @param index The index of the field
+     * @return A view of the field
+     */
+    @NonNull
+    public CharSequence getField(int index) {
+        checkIndex(index);
+        if(mViews.length < mFieldCount) {
+            final int oldLength = mViews.length;
+            mViews = Arrays.copyOf(mViews, mFieldStarts.length);
+            for(int i = oldLength; i < mViews.length; i++) {
+                mViews[i] = new FieldView(i);
             }
-        } catch(IOException e) {
-            return null;
         }
+        return mViews[index];
+    }
+
+    /**
+     * Get a copy of a field in the current row.
+     *
+     * @param index The index of the field
+     * @return The value of the field
+     */
+    @NonNull
+    public String getString(int index) {
+        checkIndex(index);
+        return new String(mRow, mFieldStarts[index], mFieldEnds[index] - mFieldStarts[index]);
+    }
+
+    /**
+     * Get the length of a field in the current row.
+     *
+     * @param index The index of the field
+     * @return The number of characters in the field
+     */
+    public int getFieldLength(int index) {
+        checkIndex(index);
+        return mFieldEnds[index] - mFieldStarts[index];
+    }
+
+    /**
+     * Read the next character from the file.
+     *
+     * @return The character, or {@link #EOF} at the end of the file
+     */
+    private int read() throws IOException {
+        if(mPos >= mLimit && !fill()) {
+            return EOF;
+        }
+        return mBuffer[mPos++];
+    }
+
+    /**
+     * Get the next character from the file without consuming it.
+     *
+     * @return The character, or {@link #EOF} at the end of the file
+     */
+    private int peek() throws IOException {
+        if(mPos >= mLimit && !fill()) {
+            return EOF;
+        }
+        return mBuffer[mPos];
+    }
+
+    /**
+     * Refill the buffer from the Reader.
+     *
+     * @return Whether any characters were read
+     */
+    private boolean fill() throws IOException {
+        int count;
+        do {
+            count = mReader.read(mBuffer, 0, BUFFER_SIZE);
+        } while(count == 0);
+
+        mPos = 0;
+        mLimit = Math.max(count, 0);
+        return count > 0;
+    }
+
+    /**
+     * Append a character to the current row.
+     *
+     * @param character The character
+     */
+    private void append(char character) {
+        if(mRowLength == mRow.length) {
+            mRow = Arrays.copyOf(mRow, mRow.length * 2);
+        }
+        mRow[mRowLength++] = character;
+    }
 
-        return fields.isEmpty() ? null : fields.toArray(new String[fields.size()]);
+    /**
+     * Add a field to the current row.
+     *
+     * @param start The offset of the first character of the field
+     * @param end   The offset after the last character of the field
+     */
+    private void addField(int start, int end) {
+        if(mFieldCount == mFieldStarts.length) {
+            mFieldStarts = Arrays.copyOf(mFieldStarts, mFieldCount * 2);
+            mFieldEnds = Arrays.copyOf(mFieldEnds, mFieldCount * 2);
+        }
+        mFieldStarts[mFieldCount] = start;
+        mFieldEnds[mFieldCount] = end;
+        mFieldCount++;
+    }
+
+    /**
+     * Make sure a field index is valid for the current row.
+     *
+     * @param index The index of the field
+     */
+    private void checkIndex(int index) {
+        if(index < 0 || index >= mFieldCount) {
+            throw new IndexOutOfBoundsException("Field " + index + " of " + mFieldCount);
+        }
     }
 
     @Override
     public void close() throws IOException {
         mReader.close();
     }
+
+    /**
+     * View of a field in the current row.
+     */
+    private class FieldView implements CharSequence {
+        /**
+         * The index of the field
+         */
+        private final int mIndex;
+
+        /**
+         * @param index The index of the field
+         */
+        FieldView(int index) {
+            mIndex = index;
+        }
+
+        @Override
+        public int length() {
+            return mFieldEnds[mIndex] - mFieldStarts[mIndex];
+        }
+
+        @Override
+        public char charAt(int index) {
+            if(index < 0 || index >= length()) {
+                throw new IndexOutOfBoundsException();
+            }
+            return mRow[mFieldStarts[mIndex] + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if(start < 0 || end > length() || start > end) {
+                throw new IndexOutOfBoundsException();
+            }
+            return new String(mRow, mFieldStarts[mIndex] + start, end - start);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return getString(mIndex);
+        }
+    }
 }
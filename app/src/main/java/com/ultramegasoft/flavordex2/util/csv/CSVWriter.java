@@ -24,66 +24,225 @@ package com.ultramegasoft.flavordex2.util.csv;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 /**
- * Simple writer for CSV files.
+ * Simple writer for CSV files. Rows are encoded directly into an internal buffer which is written
+ * to the underlying Writer when it fills up. Buffered data is only guaranteed to reach the Writer
+ * after a call to {@link #flush()} or {@link #close()}, and any error that occurred while writing
+ * rows is thrown from those methods.
  *
  * @author Steve Guidetti
  */
-public class CSVWriter implements Closeable {
+public class CSVWriter implements Closeable, Flushable {
     private static final String TAG = "CSVWriter";
 
+    /**
+     * The default size of the buffer in characters
+     */
+    private static final int BUFFER_SIZE = 8192;
+
     /**
      * The Writer representing the CSV file
      */
     @NonNull
     private final Writer mWriter;
 
+    /**
+     * The buffer holding encoded data that has not been written
+     */
+    @NonNull
+    private final char[] mBuffer;
+
+    /**
+     * The number of characters in the buffer
+     */
+    private int mCount;
+
+    /**
+     * The first error that occurred while writing rows
+     */
+    @Nullable
+    private IOException mError;
+
+    /**
+     * Whether the writer has been closed
+     */
+    private boolean mClosed;
+
     /**
      * @param writer The Writer representing the CSV file
      */
     public CSVWriter(@NonNull Writer writer) {
+        this(writer, BUFFER_SIZE);
+    }
+
+    /**
+     * @param writer     The Writer representing the CSV file
+     * @param bufferSize The size of the buffer in characters
+     */
+    public CSVWriter(@NonNull Writer writer, int bufferSize) {
         mWriter = writer;
+        mBuffer = new char[Math.max(bufferSize, 16)];
+    }
+
+    /**
+     * Create a CSVWriter for a file, encoded as UTF-8.
+     *
+     * @param file The file to write
+     * @param gzip Whether to compress the file with gzip
+     * @return The CSVWriter
+     */
+    @NonNull
+    public static CSVWriter open(@NonNull File file, boolean gzip) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out = gzip ? new GZIPOutputStream(out, BUFFER_SIZE)
+                    : new BufferedOutputStream(out, BUFFER_SIZE);
+        } catch(IOException e) {
+            out.close();
+            throw e;
+        }
+        return new CSVWriter(new OutputStreamWriter(out, "UTF-8"));
     }
 
     /**
-     * Write a row to the CSV file.
+     * Write a row to the CSV file. Errors are logged and thrown from the next call to
+     * {@link #flush()} or {@link #close()}.
      *
      * @param values The data to write
      */
     public void writeNext(@NonNull String[] values) {
-        final List<String> fields = new ArrayList<>();
-        for(Object field : values) {
-            fields.add(prepareValue(field));
+        if(mError != null || mClosed) {
+            return;
         }
+
         try {
-            mWriter.write(TextUtils.join(",", fields) + "\r\n");
+            for(int i = 0; i < values.length; i++) {
+                if(i > 0) {
+                    append(',');
+                }
+                appendValue(values[i]);
+            }
+            append('\r');
+            append('\n');
         } catch(IOException e) {
             Log.e(TAG, "Error writing to CSV file.", e);
+            mError = e;
         }
     }
 
     /**
-     * Quote and escape a value to be placed in a field.
+     * Quote and escape a value and add it to the buffer.
      *
      * @param value The value to quote and escape
-     * @return The value as a quoted and escaped string
      */
-    @NonNull
-    private static String prepareValue(@Nullable Object value) {
-        return '"' + (value != null ? value.toString().replace("\"", "\"\"") : "") + '"';
+    private void appendValue(@Nullable String value) throws IOException {
+        append('"');
+        if(value != null) {
+            final int length = value.length();
+            int start = 0;
+            int quote;
+            while((quote = value.indexOf('"', start)) != -1) {
+                append(value, start, quote + 1);
+                append('"');
+                start = quote + 1;
+            }
+            append(value, start, length);
+        }
+        append('"');
     }
 
+    /**
+     * Add a character to the buffer.
+     *
+     * @param c The character
+     */
+    private void append(char c) throws IOException {
+        if(mCount == mBuffer.length) {
+            flushBuffer();
+        }
+        mBuffer[mCount++] = c;
+    }
+
+    /**
+     * Add part of a String to the buffer.
+     *
+     * @param value The String
+     * @param start The index of the first character
+     * @param end   The index after the last character
+     */
+    private void append(@NonNull String value, int start, int end) throws IOException {
+        while(start < end) {
+            if(mCount == mBuffer.length) {
+                flushBuffer();
+            }
+            final int length = Math.min(end - start, mBuffer.length - mCount);
+            value.getChars(start, start + length, mBuffer, mCount);
+            mCount += length;
+            start += length;
+        }
+    }
+
+    /**
+     * Write the contents of the buffer to the underlying Writer.
+     */
+    private void flushBuffer() throws IOException {
+        if(mCount > 0) {
+            mWriter.write(mBuffer, 0, mCount);
+            mCount = 0;
+        }
+    }
+
+    /**
+     * Write all buffered rows to the underlying Writer and flush it.
+     *
+     * @throws IOException If an error occurred while writing any row
+     */
+    @Override
+    public void flush() throws IOException {
+        if(mError != null) {
+            throw mError;
+        }
+        if(mClosed) {
+            return;
+        }
+        flushBuffer();
+        mWriter.flush();
+    }
+
+    /**
+     * Write all buffered rows and close the underlying Writer. Calling this more than once has
+     * no effect.
+     *
+     * @throws IOException If an error occurred while writing any row
+     */
     @Override
     public void close() throws IOException {
-        mWriter.close();
+        if(mClosed) {
+            return;
+        }
+        mClosed = true;
+        try {
+            if(mError == null) {
+                flushBuffer();
+            }
+        } finally {
+            mWriter.close();
+        }
+        if(mError != null) {
+            throw mError;
+        }
     }
 }
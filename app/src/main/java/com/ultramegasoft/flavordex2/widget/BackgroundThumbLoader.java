@@ -33,11 +33,17 @@ import android.widget.ImageView;
 import com.ultramegasoft.flavordex2.util.PhotoUtils;
 
 import java.lang.ref.WeakReference;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Loads thumbnails in a background thread.
+ * Loads thumbnails in a background thread. Requests are processed newest first so the rows
+ * currently on screen load before those that have scrolled past, requests for the same key share
+ * a single task, and queued requests are cancelled when their ImageView is bound to another key.
  *
  * @author Steve Guidetti
  */
@@ -45,7 +51,7 @@ abstract class BackgroundThumbLoader<K> {
     /**
      * Maximum number of concurrent threads
      */
-    private final int NUM_THREADS = 5;
+    private static final int NUM_THREADS = 5;
 
     /**
      * Handler for communicating with the main thread
@@ -53,26 +59,138 @@ abstract class BackgroundThumbLoader<K> {
     private final Handler mHandler = new Handler();
 
     /**
-     * Thread pool to handle loading thumbnails
+     * Thread pool to handle loading thumbnails, taking the most recently queued task first
      */
-    private final ExecutorService mPool = Executors.newFixedThreadPool(NUM_THREADS);
+    private final ThreadPoolExecutor mPool = new ThreadPoolExecutor(NUM_THREADS, NUM_THREADS, 0L,
+            TimeUnit.MILLISECONDS, new LifoQueue());
 
     /**
-     * Start loading an image into aa ImageView.
+     * Map of keys to the tasks that are queued or running, only accessed from the main thread
+     */
+    private final HashMap<Object, LoadTask> mTasks = new HashMap<>();
+
+    /**
+     * Counters for monitoring the loader
+     */
+    private final AtomicInteger mHits = new AtomicInteger();
+    private final AtomicInteger mMisses = new AtomicInteger();
+    private final AtomicInteger mShared = new AtomicInteger();
+    private final AtomicInteger mCancelled = new AtomicInteger();
+    private final AtomicInteger mDecoded = new AtomicInteger();
+
+    /**
+     * Start loading an image into aa ImageView. This must be called from the main thread.
      *
      * @param imageView The ImageView to hold the image
      * @param key       The key to reference the image in the cache
      */
     public void load(@NonNull ImageView imageView, @NonNull K key) {
+        final Object oldKey = getPendingKey(imageView);
+        if(key.equals(oldKey) && mTasks.containsKey(key)) {
+            return;
+        }
+        if(oldKey != null) {
+            detach(imageView, oldKey);
+        }
+
         final Bitmap bitmap = PhotoUtils.getThumbCache().get(key);
         if(bitmap != null) {
+            mHits.incrementAndGet();
             imageView.setImageBitmap(bitmap);
+            return;
+        }
+
+        mMisses.incrementAndGet();
+        final Thumb thumb = new Thumb(key, imageView);
+        LoadTask task = mTasks.get(key);
+        if(task != null) {
+            mShared.incrementAndGet();
+            task.mThumbs.add(thumb);
+            if(mPool.remove(task)) {
+                mPool.execute(task);
+            }
         } else {
-            final Runnable task = new LoadTask(new Thumb(key, imageView));
+            task = new LoadTask(thumb);
+            mTasks.put(key, task);
             mPool.execute(task);
         }
     }
 
+    /**
+     * Cancel the pending request for an ImageView, if any. This must be called from the main
+     * thread.
+     *
+     * @param imageView The ImageView
+     */
+    public void cancel(@NonNull ImageView imageView) {
+        final Object key = getPendingKey(imageView);
+        if(key != null) {
+            detach(imageView, key);
+            imageView.setImageDrawable(null);
+        }
+    }
+
+    /**
+     * Get the number of requests that were served from the cache.
+     *
+     * @return The number of cache hits
+     */
+    public int getHitCount() {
+        return mHits.get();
+    }
+
+    /**
+     * Get the number of requests that were not found in the cache.
+     *
+     * @return The number of cache misses
+     */
+    public int getMissCount() {
+        return mMisses.get();
+    }
+
+    /**
+     * Get the number of requests that joined a task already in progress for the same key.
+     *
+     * @return The number of shared requests
+     */
+    public int getSharedCount() {
+        return mShared.get();
+    }
+
+    /**
+     * Get the number of tasks that were removed from the queue before they ran.
+     *
+     * @return The number of cancelled tasks
+     */
+    public int getCancelledCount() {
+        return mCancelled.get();
+    }
+
+    /**
+     * Get the number of Bitmaps that were loaded from the source.
+     *
+     * @return The number of decoded Bitmaps
+     */
+    public int getDecodedCount() {
+        return mDecoded.get();
+    }
+
+    /**
+     * Get the number of tasks waiting to run.
+     *
+     * @return The current depth of the queue
+     */
+    public int getQueueDepth() {
+        return mPool.getQueue().size();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHitCount() + " misses=" + getMissCount() + " shared="
+                + getSharedCount() + " cancelled=" + getCancelledCount() + " decoded="
+                + getDecodedCount() + " queued=" + getQueueDepth();
+    }
+
     /**
      * Load a Bitmap from the source.
      *
@@ -83,15 +201,67 @@ abstract class BackgroundThumbLoader<K> {
     protected abstract Bitmap getBitmap(@NonNull Thumb thumb);
 
     /**
-     * Set the Bitmap of an ImageView on the UI thread.
+     * Get the key of the thumbnail an ImageView is waiting for.
      *
      * @param imageView The ImageView
-     * @param bitmap    The Bitmap
+     * @return The key, or null if the ImageView is not waiting for a thumbnail
      */
-    private void setBitmap(@NonNull final ImageView imageView, @Nullable final Bitmap bitmap) {
+    @Nullable
+    private static Object getPendingKey(@NonNull ImageView imageView) {
+        final Drawable drawable = imageView.getDrawable();
+        if(drawable instanceof ThumbDrawable) {
+            return ((ThumbDrawable)drawable).key;
+        }
+        return null;
+    }
+
+    /**
+     * Remove an ImageView from the task loading a key, removing the task from the queue if no
+     * other ImageViews are waiting for it.
+     *
+     * @param imageView The ImageView
+     * @param key       The key the ImageView was waiting for
+     */
+    private void detach(@NonNull ImageView imageView, @NonNull Object key) {
+        final LoadTask task = mTasks.get(key);
+        if(task == null) {
+            return;
+        }
+
+        for(int i = task.mThumbs.size() - 1; i >= 0; i--) {
+            final ImageView view = task.mThumbs.get(i).get();
+            if(view == null || view == imageView) {
+                task.mThumbs.remove(i);
+            }
+        }
+
+        if(task.mThumbs.isEmpty() && mPool.remove(task)) {
+            mTasks.remove(key);
+            mCancelled.incrementAndGet();
+        }
+    }
+
+    /**
+     * Deliver a loaded Bitmap to the ImageViews still waiting for it on the UI thread.
+     *
+     * @param task   The task that loaded the Bitmap
+     * @param bitmap The Bitmap
+     */
+    private void deliver(@NonNull final LoadTask task, @Nullable final Bitmap bitmap) {
         mHandler.post(new Runnable() {
             public void run() {
-                imageView.setImageBitmap(bitmap);
+                final Object key = task.mThumb.key;
+                if(mTasks.get(key) == task) {
+                    mTasks.remove(key);
+                }
+                if(bitmap != null) {
+                    for(Thumb thumb : task.mThumbs) {
+                        final ImageView imageView = thumb.get();
+                        if(imageView != null && key.equals(getPendingKey(imageView))) {
+                            imageView.setImageBitmap(bitmap);
+                        }
+                    }
+                }
             }
         });
     }
@@ -101,31 +271,45 @@ abstract class BackgroundThumbLoader<K> {
      */
     private class LoadTask implements Runnable {
         /**
-         * The Thumb object to load
+         * The Thumb object used to load the Bitmap
          */
         @NonNull
-        private final Thumb mThumb;
+        final Thumb mThumb;
+
+        /**
+         * The Thumbs waiting for the Bitmap, only accessed from the main thread
+         */
+        @NonNull
+        final ArrayList<Thumb> mThumbs = new ArrayList<>();
 
         /**
          * @param thumb The thumbnail
          */
         LoadTask(@NonNull Thumb thumb) {
             mThumb = thumb;
+            mThumbs.add(thumb);
         }
 
         public void run() {
-            final ImageView imageView = mThumb.get();
-            if(imageView != null) {
-                final Drawable drawable = imageView.getDrawable();
-                if(drawable instanceof ThumbDrawable
-                        && ((ThumbDrawable)drawable).key == mThumb.key) {
-                    final Bitmap bitmap = getBitmap(mThumb);
-                    if(bitmap != null) {
-                        PhotoUtils.getThumbCache().put(mThumb.key, bitmap);
-                        setBitmap(imageView, bitmap);
-                    }
+            Bitmap bitmap = PhotoUtils.getThumbCache().get(mThumb.key);
+            if(bitmap == null) {
+                bitmap = getBitmap(mThumb);
+                if(bitmap != null) {
+                    mDecoded.incrementAndGet();
+                    PhotoUtils.getThumbCache().put(mThumb.key, bitmap);
                 }
             }
+            deliver(this, bitmap);
+        }
+    }
+
+    /**
+     * Queue that hands out the most recently added task first.
+     */
+    private static class LifoQueue extends LinkedBlockingDeque<Runnable> {
+        @Override
+        public boolean offer(@NonNull Runnable runnable) {
+            return offerFirst(runnable);
         }
     }
 
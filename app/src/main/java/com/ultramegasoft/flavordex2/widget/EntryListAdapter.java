@@ -75,10 +75,15 @@ public class EntryListAdapter extends CursorAdapter {
     private final SimpleDateFormat mDateFormat;
 
     /**
-     * Map of item IDs to their position index in the list
+     * Map of item IDs to their position index in the list, built as items are looked up
      */
     private final LongSparseArray<Integer> mItemPositions = new LongSparseArray<>();
 
+    /**
+     * The number of rows from the Cursor that have been added to the map of positions
+     */
+    private int mIndexedCount;
+
     /**
      * Whether multiple choice mode is enabled
      */
@@ -88,19 +93,14 @@ public class EntryListAdapter extends CursorAdapter {
      * @param context The Context
      */
     public EntryListAdapter(@NonNull Context context) {
-        super(context, null, true);
+        super(context, null, 0);
         mDateFormat = new SimpleDateFormat(context.getString(R.string.date_format), Locale.US);
     }
 
     @Override
     public Cursor swapCursor(Cursor newCursor) {
         mItemPositions.clear();
-        if(newCursor != null) {
-            while(newCursor.moveToNext()) {
-                mItemPositions.put(newCursor.getLong(newCursor.getColumnIndex(Tables.Entries._ID)),
-                        newCursor.getPosition());
-            }
-        }
+        mIndexedCount = 0;
         return super.swapCursor(newCursor);
     }
 
@@ -184,18 +184,35 @@ public class EntryListAdapter extends CursorAdapter {
     }
 
     /**
-     * Get the position of an item based on ID.
+     * Get the position of an item based on ID. Rows are only scanned as far as needed to find
+     * the item.
      *
      * @param id The database ID of the item
      * @return The index of the item
      */
     public int getItemIndex(long id) {
         final Integer index = mItemPositions.get(id);
-        if(index == null) {
-            return ListView.INVALID_POSITION;
-        } else {
+        if(index != null) {
             return index;
         }
+
+        final Cursor cursor = getCursor();
+        if(cursor == null || id < 0) {
+            return ListView.INVALID_POSITION;
+        }
+
+        final int idColumn = cursor.getColumnIndex(Tables.Entries._ID);
+        final int count = cursor.getCount();
+        long itemId;
+        while(mIndexedCount < count && cursor.moveToPosition(mIndexedCount)) {
+            itemId = cursor.getLong(idColumn);
+            mItemPositions.put(itemId, mIndexedCount++);
+            if(itemId == id) {
+                return mIndexedCount - 1;
+            }
+        }
+
+        return ListView.INVALID_POSITION;
     }
 
     /**
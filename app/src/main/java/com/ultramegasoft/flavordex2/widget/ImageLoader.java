@@ -114,7 +114,11 @@ public class ImageLoader extends AsyncTask<Void, Void, Bitmap> {
         if(result != null) {
             final ImageView imageView = mImageViewReference.get();
             if(imageView != null) {
-                imageView.setImageBitmap(result);
+                if(mCache != null) {
+                    mCache.bind(imageView, mUri, result);
+                } else {
+                    imageView.setImageBitmap(result);
+                }
             }
         }
     }
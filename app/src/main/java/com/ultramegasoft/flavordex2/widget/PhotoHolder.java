@@ -28,6 +28,8 @@ import android.os.Parcelable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import com.ultramegasoft.flavordex2.util.PhotoUtils;
+
 /**
  * Holder to contain information about a photo.
  *
@@ -67,6 +69,12 @@ public class PhotoHolder implements Parcelable {
      */
     public int pos;
 
+    /**
+     * The rotation of the photo in degrees from its EXIF data, or ROTATION_UNKNOWN if it has not
+     * been read
+     */
+    public int rotation = PhotoUtils.ROTATION_UNKNOWN;
+
     /**
      * @param id   The database ID for this photo
      * @param hash The MD5 hash of the photo
@@ -83,6 +91,7 @@ public class PhotoHolder implements Parcelable {
     private PhotoHolder(Parcel in) {
         this(in.readLong(), in.readString(),
                 (Uri)in.readParcelable(PhotoHolder.class.getClassLoader()), in.readInt());
+        rotation = in.readInt();
     }
 
     @Override
@@ -96,5 +105,6 @@ public class PhotoHolder implements Parcelable {
         dest.writeString(hash);
         dest.writeParcelable(uri, 0);
         dest.writeInt(pos);
+        dest.writeInt(rotation);
     }
 }
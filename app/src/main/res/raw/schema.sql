@@ -1,7 +1,8 @@
 CREATE TABLE cats (
   _id INTEGER PRIMARY KEY,
   name  TEXT COLLATE NOCASE,
-  preset INTEGER DEFAULT 0
+  preset INTEGER DEFAULT 0,
+  num_entries INTEGER DEFAULT 0
 );
 --
 CREATE TABLE entries (
@@ -71,5 +72,75 @@ CREATE TABLE photos (
   hash TEXT,
   path TEXT,
   pos INTEGER DEFAULT 0,
+  rotation INTEGER,
   UNIQUE(entry, hash) ON CONFLICT REPLACE
 );
+--
+CREATE TABLE photo_blobs (
+  hash TEXT PRIMARY KEY,
+  refs INTEGER DEFAULT 0
+);
+--
+CREATE TABLE stats (
+  scope INTEGER,
+  key INTEGER,
+  num_entries INTEGER DEFAULT 0,
+  rating_sum REAL DEFAULT 0,
+  PRIMARY KEY(scope, key)
+);
+--
+CREATE TABLE stats_ratings (
+  scope INTEGER,
+  key INTEGER,
+  rating REAL,
+  num_entries INTEGER DEFAULT 0,
+  PRIMARY KEY(scope, key, rating)
+);
+--
+CREATE TABLE stats_flavors (
+  cat INTEGER,
+  flavor TEXT COLLATE NOCASE,
+  num_values INTEGER DEFAULT 0,
+  value_sum INTEGER DEFAULT 0,
+  PRIMARY KEY(cat, flavor)
+);
+--
+CREATE VIEW stats_delta AS SELECT
+NULL AS scope,
+NULL AS key,
+NULL AS num_entries,
+NULL AS rating
+WHERE 0;
+--
+CREATE VIEW stats_flavors_delta AS SELECT
+NULL AS cat,
+NULL AS flavor,
+NULL AS num_values,
+NULL AS value
+WHERE 0;
+--
+CREATE VIRTUAL TABLE entries_search USING fts4(title, maker, origin, location, notes, extras);
+--
+CREATE INDEX idx_entries_cat_title ON entries (cat, title);
+--
+CREATE INDEX idx_entries_cat_date ON entries (cat, date);
+--
+CREATE INDEX idx_entries_cat_rating ON entries (cat, rating);
+--
+CREATE INDEX idx_entries_title ON entries (title);
+--
+CREATE INDEX idx_entries_maker ON entries (maker);
+--
+CREATE INDEX idx_entries_date ON entries (date);
+--
+CREATE INDEX idx_entries_rating ON entries (rating);
+--
+CREATE INDEX idx_entries_flavors_entry ON entries_flavors (entry);
+--
+CREATE INDEX idx_photos_hash ON photos (hash);
+--
+CREATE INDEX idx_entries_extras_extra ON entries_extras (extra);
+--
+CREATE INDEX idx_extras_cat ON extras (cat);
+--
+CREATE INDEX idx_flavors_cat ON flavors (cat);
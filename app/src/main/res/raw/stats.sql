@@ -0,0 +1,25 @@
+DELETE FROM stats;
+--
+DELETE FROM stats_ratings;
+--
+DELETE FROM stats_flavors;
+--
+INSERT INTO stats (scope, key, num_entries, rating_sum)
+ SELECT 0, cat, COUNT(), TOTAL(rating) FROM entries GROUP BY cat
+ UNION ALL SELECT 1, IFNULL(maker, 0), COUNT(), TOTAL(rating) FROM entries
+ GROUP BY IFNULL(maker, 0)
+ UNION ALL SELECT 2, month, COUNT(), TOTAL(rating) FROM (SELECT rating,
+ IFNULL(CAST(strftime('%Y%m', date / 1000, 'unixepoch') AS INTEGER), 0) AS month
+ FROM entries) GROUP BY month;
+--
+INSERT INTO stats_ratings (scope, key, rating, num_entries)
+ SELECT 0, cat, IFNULL(rating, 0), COUNT() FROM entries GROUP BY cat, IFNULL(rating, 0)
+ UNION ALL SELECT 1, IFNULL(maker, 0), IFNULL(rating, 0), COUNT() FROM entries
+ GROUP BY IFNULL(maker, 0), IFNULL(rating, 0)
+ UNION ALL SELECT 2, month, rating, COUNT() FROM (SELECT IFNULL(rating, 0) AS rating,
+ IFNULL(CAST(strftime('%Y%m', date / 1000, 'unixepoch') AS INTEGER), 0) AS month
+ FROM entries) GROUP BY month, rating;
+--
+INSERT INTO stats_flavors (cat, flavor, num_values, value_sum)
+ SELECT b.cat, a.flavor, COUNT(), SUM(IFNULL(a.value, 0)) FROM entries_flavors a
+ JOIN entries b ON a.entry = b._id WHERE a.flavor NOT NULL GROUP BY b.cat, a.flavor;
@@ -1,16 +1,16 @@
-INSERT INTO cats VALUES (5, 'Sample', 0);
+INSERT INTO cats VALUES (5, 'Sample', 0, 0);
 --
-INSERT INTO photos VALUES (1, 1, NULL, '20121114_161713.jpg', 0);
+INSERT INTO photos VALUES (1, 1, NULL, '20121114_161713.jpg', 0, NULL);
 --
-INSERT INTO photos VALUES (2, 2, NULL, 'photo.JPG', 0);
+INSERT INTO photos VALUES (2, 2, NULL, 'photo.JPG', 0, NULL);
 --
-INSERT INTO photos VALUES (3, 3, NULL, 'winephoto.JPG', 0);
+INSERT INTO photos VALUES (3, 3, NULL, 'winephoto.JPG', 0, NULL);
 --
-INSERT INTO photos VALUES (4, 4, NULL, 'IMG_1897.JPG', 0);
+INSERT INTO photos VALUES (4, 4, NULL, 'IMG_1897.JPG', 0, NULL);
 --
-INSERT INTO photos VALUES (5, 4, NULL, 'IMG_1896.JPG', 1);
+INSERT INTO photos VALUES (5, 4, NULL, 'IMG_1896.JPG', 1, NULL);
 --
-INSERT INTO photos VALUES (6, 5, NULL, 'logo.png', 0);
+INSERT INTO photos VALUES (6, 5, NULL, 'logo.png', 0, NULL);
 --
 INSERT INTO makers VALUES (1, 'Jefferson''s', 'Canada');
 --
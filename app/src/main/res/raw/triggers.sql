@@ -1,16 +1,115 @@
+CREATE TRIGGER IF NOT EXISTS insert_entry AFTER INSERT ON entries
+BEGIN
+    UPDATE cats SET num_entries = num_entries + 1 WHERE _id = NEW.cat;
+    INSERT INTO entries_search (docid, title, maker, origin, location, notes)
+     VALUES (NEW._id, NEW.title, (SELECT name FROM makers WHERE _id = NEW.maker),
+     (SELECT location FROM makers WHERE _id = NEW.maker), NEW.location, NEW.notes);
+    INSERT INTO stats_delta (scope, key, num_entries, rating)
+     SELECT 0, NEW.cat, 1, IFNULL(NEW.rating, 0)
+     UNION ALL SELECT 1, IFNULL(NEW.maker, 0), 1, IFNULL(NEW.rating, 0)
+     UNION ALL SELECT 2,
+     IFNULL(CAST(strftime('%Y%m', NEW.date / 1000, 'unixepoch') AS INTEGER), 0),
+     1, IFNULL(NEW.rating, 0);
+END;
+--
 CREATE TRIGGER IF NOT EXISTS delete_entry AFTER DELETE ON entries
 BEGIN
+    UPDATE cats SET num_entries = num_entries - 1 WHERE _id = OLD.cat;
+    INSERT INTO stats_delta (scope, key, num_entries, rating)
+     SELECT 0, OLD.cat, -1, IFNULL(OLD.rating, 0)
+     UNION ALL SELECT 1, IFNULL(OLD.maker, 0), -1, IFNULL(OLD.rating, 0)
+     UNION ALL SELECT 2,
+     IFNULL(CAST(strftime('%Y%m', OLD.date / 1000, 'unixepoch') AS INTEGER), 0),
+     -1, IFNULL(OLD.rating, 0);
+    INSERT INTO stats_flavors_delta (cat, flavor, num_values, value)
+     SELECT OLD.cat, flavor, -1, value FROM entries_flavors
+     WHERE entry = OLD._id AND flavor NOT NULL;
     DELETE FROM entries_flavors WHERE entry = OLD._id;
     DELETE FROM entries_extras WHERE entry = OLD._id;
     DELETE FROM photos WHERE entry = OLD._id;
     DELETE FROM makers WHERE _id = OLD.maker
      AND NOT EXISTS (SELECT 1 FROM entries WHERE maker = OLD.maker);
+    DELETE FROM entries_search WHERE docid = OLD._id;
 END;
 --
 CREATE TRIGGER IF NOT EXISTS update_entry AFTER UPDATE OF maker ON entries
 BEGIN
     DELETE FROM makers WHERE _id = OLD.maker
      AND NOT EXISTS (SELECT 1 FROM entries WHERE maker = OLD.maker);
+    UPDATE entries_search SET
+     maker = (SELECT name FROM makers WHERE _id = NEW.maker),
+     origin = (SELECT location FROM makers WHERE _id = NEW.maker)
+     WHERE docid = NEW._id;
+END;
+--
+CREATE TRIGGER IF NOT EXISTS update_entry_search AFTER UPDATE OF title, location, notes ON entries
+BEGIN
+    UPDATE entries_search SET title = NEW.title, location = NEW.location, notes = NEW.notes
+     WHERE docid = NEW._id;
+END;
+--
+CREATE TRIGGER IF NOT EXISTS replace_photo BEFORE INSERT ON photos
+ WHEN NEW.hash NOT NULL
+BEGIN
+    UPDATE photo_blobs SET refs = refs - 1 WHERE hash = NEW.hash
+     AND EXISTS (SELECT 1 FROM photos WHERE entry = NEW.entry AND hash = NEW.hash);
+END;
+--
+CREATE TRIGGER IF NOT EXISTS insert_photo AFTER INSERT ON photos
+ WHEN NEW.hash NOT NULL
+BEGIN
+    INSERT OR IGNORE INTO photo_blobs (hash) VALUES (NEW.hash);
+    UPDATE photo_blobs SET refs = refs + 1 WHERE hash = NEW.hash;
+END;
+--
+CREATE TRIGGER IF NOT EXISTS update_photo_hash AFTER UPDATE OF hash ON photos
+ WHEN NEW.hash IS NOT OLD.hash
+BEGIN
+    UPDATE photo_blobs SET refs = refs - 1 WHERE hash = OLD.hash;
+    INSERT OR IGNORE INTO photo_blobs (hash) SELECT NEW.hash WHERE NEW.hash NOT NULL;
+    UPDATE photo_blobs SET refs = refs + 1 WHERE hash = NEW.hash;
+END;
+--
+CREATE TRIGGER IF NOT EXISTS delete_photo AFTER DELETE ON photos
+ WHEN OLD.hash NOT NULL
+BEGIN
+    UPDATE photo_blobs SET refs = refs - 1 WHERE hash = OLD.hash;
+END;
+--
+CREATE TRIGGER IF NOT EXISTS update_maker AFTER UPDATE OF name, location ON makers
+BEGIN
+    UPDATE entries_search SET maker = NEW.name, origin = NEW.location
+     WHERE docid IN (SELECT _id FROM entries WHERE maker = NEW._id);
+END;
+--
+CREATE TRIGGER IF NOT EXISTS update_entry_cat AFTER UPDATE OF cat ON entries
+ WHEN NEW.cat IS NOT OLD.cat
+BEGIN
+    UPDATE cats SET num_entries = num_entries - 1 WHERE _id = OLD.cat;
+    UPDATE cats SET num_entries = num_entries + 1 WHERE _id = NEW.cat;
+    INSERT INTO stats_flavors_delta (cat, flavor, num_values, value)
+     SELECT OLD.cat, flavor, -1, value FROM entries_flavors
+     WHERE entry = NEW._id AND flavor NOT NULL
+     UNION ALL SELECT NEW.cat, flavor, 1, value FROM entries_flavors
+     WHERE entry = NEW._id AND flavor NOT NULL;
+END;
+--
+CREATE TRIGGER IF NOT EXISTS update_entry_stats AFTER UPDATE OF cat, maker, date, rating ON entries
+ WHEN NEW.cat IS NOT OLD.cat OR NEW.maker IS NOT OLD.maker OR NEW.date IS NOT OLD.date
+ OR NEW.rating IS NOT OLD.rating
+BEGIN
+    INSERT INTO stats_delta (scope, key, num_entries, rating)
+     SELECT 0, OLD.cat, -1, IFNULL(OLD.rating, 0)
+     UNION ALL SELECT 1, IFNULL(OLD.maker, 0), -1, IFNULL(OLD.rating, 0)
+     UNION ALL SELECT 2,
+     IFNULL(CAST(strftime('%Y%m', OLD.date / 1000, 'unixepoch') AS INTEGER), 0),
+     -1, IFNULL(OLD.rating, 0);
+    INSERT INTO stats_delta (scope, key, num_entries, rating)
+     SELECT 0, NEW.cat, 1, IFNULL(NEW.rating, 0)
+     UNION ALL SELECT 1, IFNULL(NEW.maker, 0), 1, IFNULL(NEW.rating, 0)
+     UNION ALL SELECT 2,
+     IFNULL(CAST(strftime('%Y%m', NEW.date / 1000, 'unixepoch') AS INTEGER), 0),
+     1, IFNULL(NEW.rating, 0);
 END;
 --
 CREATE TRIGGER IF NOT EXISTS delete_cat AFTER DELETE ON cats
@@ -20,10 +119,27 @@ BEGIN
     DELETE FROM flavors WHERE cat = OLD._id;
 END;
 --
+CREATE TRIGGER IF NOT EXISTS insert_entry_extra AFTER INSERT ON entries_extras
+BEGIN
+    UPDATE entries_search
+     SET extras = (SELECT group_concat(value, ' ') FROM entries_extras WHERE entry = NEW.entry)
+     WHERE docid = NEW.entry;
+END;
+--
+CREATE TRIGGER IF NOT EXISTS update_entry_extra_value AFTER UPDATE OF value ON entries_extras
+BEGIN
+    UPDATE entries_search
+     SET extras = (SELECT group_concat(value, ' ') FROM entries_extras WHERE entry = NEW.entry)
+     WHERE docid = NEW.entry;
+END;
+--
 CREATE TRIGGER IF NOT EXISTS delete_entry_extra AFTER DELETE ON entries_extras
 BEGIN
     DELETE FROM extras WHERE deleted = 1
      AND NOT EXISTS (SELECT 1 FROM entries_extras WHERE extra = extras._id);
+    UPDATE entries_search
+     SET extras = (SELECT group_concat(value, ' ') FROM entries_extras WHERE entry = OLD.entry)
+     WHERE docid = OLD.entry;
 END;
 --
 CREATE TRIGGER IF NOT EXISTS update_entry_extra AFTER UPDATE OF extra ON entries_extras
@@ -37,3 +153,53 @@ BEGIN
     UPDATE extras SET deleted = 1 WHERE _id = OLD._id;
     SELECT RAISE(IGNORE) WHERE EXISTS (SELECT 1 FROM entries_extras WHERE extra = OLD._id);
 END;
+--
+CREATE TRIGGER IF NOT EXISTS insert_entry_flavor AFTER INSERT ON entries_flavors
+ WHEN NEW.flavor NOT NULL
+BEGIN
+    INSERT INTO stats_flavors_delta (cat, flavor, num_values, value)
+     SELECT cat, NEW.flavor, 1, NEW.value FROM entries WHERE _id = NEW.entry;
+END;
+--
+CREATE TRIGGER IF NOT EXISTS update_entry_flavor AFTER UPDATE OF entry, flavor, value
+ ON entries_flavors
+ WHEN OLD.flavor NOT NULL OR NEW.flavor NOT NULL
+BEGIN
+    INSERT INTO stats_flavors_delta (cat, flavor, num_values, value)
+     SELECT cat, OLD.flavor, -1, OLD.value FROM entries
+     WHERE _id = OLD.entry AND OLD.flavor NOT NULL;
+    INSERT INTO stats_flavors_delta (cat, flavor, num_values, value)
+     SELECT cat, NEW.flavor, 1, NEW.value FROM entries
+     WHERE _id = NEW.entry AND NEW.flavor NOT NULL;
+END;
+--
+CREATE TRIGGER IF NOT EXISTS delete_entry_flavor AFTER DELETE ON entries_flavors
+ WHEN OLD.flavor NOT NULL
+BEGIN
+    INSERT INTO stats_flavors_delta (cat, flavor, num_values, value)
+     SELECT cat, OLD.flavor, -1, OLD.value FROM entries WHERE _id = OLD.entry;
+END;
+--
+CREATE TRIGGER IF NOT EXISTS apply_stats_delta INSTEAD OF INSERT ON stats_delta
+BEGIN
+    INSERT OR IGNORE INTO stats (scope, key) VALUES (NEW.scope, NEW.key);
+    UPDATE stats SET num_entries = num_entries + NEW.num_entries,
+     rating_sum = rating_sum + NEW.num_entries * NEW.rating
+     WHERE scope = NEW.scope AND key = NEW.key;
+    DELETE FROM stats WHERE scope = NEW.scope AND key = NEW.key AND num_entries <= 0;
+    INSERT OR IGNORE INTO stats_ratings (scope, key, rating)
+     VALUES (NEW.scope, NEW.key, NEW.rating);
+    UPDATE stats_ratings SET num_entries = num_entries + NEW.num_entries
+     WHERE scope = NEW.scope AND key = NEW.key AND rating = NEW.rating;
+    DELETE FROM stats_ratings WHERE scope = NEW.scope AND key = NEW.key AND rating = NEW.rating
+     AND num_entries <= 0;
+END;
+--
+CREATE TRIGGER IF NOT EXISTS apply_stats_flavors_delta INSTEAD OF INSERT ON stats_flavors_delta
+BEGIN
+    INSERT OR IGNORE INTO stats_flavors (cat, flavor) VALUES (NEW.cat, NEW.flavor);
+    UPDATE stats_flavors SET num_values = num_values + NEW.num_values,
+     value_sum = value_sum + NEW.num_values * IFNULL(NEW.value, 0)
+     WHERE cat = NEW.cat AND flavor = NEW.flavor;
+    DELETE FROM stats_flavors WHERE cat = NEW.cat AND flavor = NEW.flavor AND num_values <= 0;
+END;
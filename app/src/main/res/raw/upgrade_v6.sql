@@ -0,0 +1,94 @@
+BEGIN TRANSACTION;
+--
+DROP VIEW IF EXISTS view_cat;
+--
+DROP TRIGGER IF EXISTS delete_entry;
+--
+DROP TRIGGER IF EXISTS update_entry;
+--
+DROP TRIGGER IF EXISTS delete_entry_extra;
+--
+ALTER TABLE cats ADD COLUMN num_entries INTEGER DEFAULT 0;
+--
+ALTER TABLE photos ADD COLUMN rotation INTEGER;
+--
+UPDATE cats SET num_entries = (SELECT COUNT() FROM entries WHERE cat = cats._id);
+--
+CREATE VIRTUAL TABLE entries_search USING fts4(title, maker, origin, location, notes, extras);
+--
+INSERT INTO entries_search (docid, title, maker, origin, location, notes, extras)
+ SELECT a._id, a.title, b.name, b.location, a.location, a.notes,
+ (SELECT group_concat(value, ' ') FROM entries_extras WHERE entry = a._id)
+ FROM entries a LEFT JOIN makers b ON a.maker = b._id;
+--
+CREATE TABLE photo_blobs (
+  hash TEXT PRIMARY KEY,
+  refs INTEGER DEFAULT 0
+);
+--
+INSERT INTO photo_blobs (hash, refs)
+ SELECT hash, COUNT() FROM photos WHERE hash NOT NULL GROUP BY hash;
+--
+CREATE TABLE stats (
+  scope INTEGER,
+  key INTEGER,
+  num_entries INTEGER DEFAULT 0,
+  rating_sum REAL DEFAULT 0,
+  PRIMARY KEY(scope, key)
+);
+--
+CREATE TABLE stats_ratings (
+  scope INTEGER,
+  key INTEGER,
+  rating REAL,
+  num_entries INTEGER DEFAULT 0,
+  PRIMARY KEY(scope, key, rating)
+);
+--
+CREATE TABLE stats_flavors (
+  cat INTEGER,
+  flavor TEXT COLLATE NOCASE,
+  num_values INTEGER DEFAULT 0,
+  value_sum INTEGER DEFAULT 0,
+  PRIMARY KEY(cat, flavor)
+);
+--
+CREATE VIEW stats_delta AS SELECT
+NULL AS scope,
+NULL AS key,
+NULL AS num_entries,
+NULL AS rating
+WHERE 0;
+--
+CREATE VIEW stats_flavors_delta AS SELECT
+NULL AS cat,
+NULL AS flavor,
+NULL AS num_values,
+NULL AS value
+WHERE 0;
+--
+CREATE INDEX IF NOT EXISTS idx_entries_cat_title ON entries (cat, title);
+--
+CREATE INDEX IF NOT EXISTS idx_entries_cat_date ON entries (cat, date);
+--
+CREATE INDEX IF NOT EXISTS idx_entries_cat_rating ON entries (cat, rating);
+--
+CREATE INDEX IF NOT EXISTS idx_entries_title ON entries (title);
+--
+CREATE INDEX IF NOT EXISTS idx_entries_maker ON entries (maker);
+--
+CREATE INDEX IF NOT EXISTS idx_entries_date ON entries (date);
+--
+CREATE INDEX IF NOT EXISTS idx_entries_rating ON entries (rating);
+--
+CREATE INDEX IF NOT EXISTS idx_entries_flavors_entry ON entries_flavors (entry);
+--
+CREATE INDEX IF NOT EXISTS idx_photos_hash ON photos (hash);
+--
+CREATE INDEX IF NOT EXISTS idx_entries_extras_extra ON entries_extras (extra);
+--
+CREATE INDEX IF NOT EXISTS idx_extras_cat ON extras (cat);
+--
+CREATE INDEX IF NOT EXISTS idx_flavors_cat ON flavors (cat);
+--
+END TRANSACTION;
@@ -27,6 +27,5 @@ FROM entries_extras a LEFT JOIN extras b
 WHERE a.extra = b._id;
 --
 CREATE VIEW IF NOT EXISTS view_cat AS SELECT
-*,
-(SELECT COUNT() FROM entries WHERE cat = cats._id) AS num_entries
+*
 FROM cats;
@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * Helpers for the JVM benchmarks. Benchmarks are skipped unless the build is run with
+ * <code>-Pbenchmark</code>, and report their results on the standard output.
+ *
+ * @author Steve Guidetti
+ */
+public class BenchmarkUtils {
+    /**
+     * The system property that enables the benchmarks
+     */
+    private static final String PROPERTY = "flavordex.benchmark";
+
+    /**
+     * The number of untimed iterations to run before measuring
+     */
+    private static final int WARMUP_ITERATIONS = 2;
+
+    /**
+     * The number of timed iterations
+     */
+    private static final int ITERATIONS = 5;
+
+    /**
+     * A unit of work to be measured.
+     */
+    public interface Task {
+        /**
+         * Run the work once.
+         *
+         * @return The number of rows processed
+         */
+        long run() throws Exception;
+    }
+
+    /**
+     * Skip the calling test unless benchmarks are enabled.
+     */
+    public static void assumeEnabled() {
+        Assume.assumeTrue("Benchmarks are disabled, run with -Pbenchmark",
+                Boolean.getBoolean(PROPERTY));
+    }
+
+    /**
+     * Run a task several times and report its average throughput and the allocations made on
+     * the calling thread.
+     *
+     * @param name The name to report the results under
+     * @param task The task to measure
+     */
+    public static void measure(@NonNull String name, @NonNull Task task) throws Exception {
+        for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+            task.run();
+        }
+
+        long rows = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for(int i = 0; i < ITERATIONS; i++) {
+            final long startBytes = getAllocatedBytes();
+            final long start = System.nanoTime();
+            rows += task.run();
+            nanos += System.nanoTime() - start;
+            bytes += getAllocatedBytes() - startBytes;
+        }
+
+        final double rowsPerSecond = rows * 1e9 / nanos;
+        if(getAllocatedBytes() >= 0) {
+            System.out.println(String.format(Locale.US, "%s: %,.0f rows/s, %,.1f bytes/row",
+                    name, rowsPerSecond, (double)bytes / rows));
+        } else {
+            System.out.println(String.format(Locale.US, "%s: %,.0f rows/s", name, rowsPerSecond));
+        }
+    }
+
+    /**
+     * Get the number of bytes allocated by the current thread so far.
+     *
+     * @return The number of bytes, or a negative number if the JVM does not support it
+     */
+    private static long getAllocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean)bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
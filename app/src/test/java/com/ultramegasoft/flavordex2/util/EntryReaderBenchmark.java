@@ -0,0 +1,118 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.ultramegasoft.flavordex2.util.csv.SampleExport;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Benchmark comparing the serial and parallel decoders of {@link CSVUtils.EntryReader} on a
+ * generated export of about 20 MB. Allocations are only counted on the reading thread, so the
+ * parallel results leave out the work done by the decoders.
+ *
+ * @author Steve Guidetti
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class EntryReaderBenchmark {
+    /**
+     * The size of the generated export in characters
+     */
+    private static final long FILE_SIZE = 20L * 1024 * 1024;
+
+    /**
+     * The generated export file
+     */
+    private static File sFile;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        BenchmarkUtils.assumeEnabled();
+        sFile = File.createTempFile("export", ".csv");
+        SampleExport.write(sFile, FILE_SIZE);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if(sFile != null) {
+            sFile.delete();
+        }
+    }
+
+    @Test
+    public void serial() throws Exception {
+        measure("EntryReader, serial", 0);
+    }
+
+    @Test
+    public void parallel() throws Exception {
+        for(int threads = 1; threads <= 4; threads *= 2) {
+            measure("EntryReader, " + threads + " threads on "
+                    + Runtime.getRuntime().availableProcessors() + " processors", threads);
+        }
+    }
+
+    /**
+     * Measure reading all the entries from the generated file.
+     *
+     * @param name    The name to report the results under
+     * @param threads The number of threads to decode rows, or 0 to use the calling thread
+     */
+    private static void measure(@NonNull String name, final int threads) throws Exception {
+        final Context context = RuntimeEnvironment.application;
+        BenchmarkUtils.measure(name, new BenchmarkUtils.Task() {
+            @Override
+            public long run() throws IOException {
+                final CSVUtils.EntryReader reader = CSVUtils.EntryReader.open(context,
+                        new InputStreamReader(new FileInputStream(sFile), "UTF-8"), threads);
+                assertNotNull(reader);
+                try {
+                    long rows = 0;
+                    while(reader.next() != null) {
+                        rows++;
+                    }
+                    return rows;
+                } finally {
+                    reader.close();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.ultramegasoft.flavordex2.util.csv.CSVWriter;
+import com.ultramegasoft.flavordex2.util.csv.SampleExport;
+import com.ultramegasoft.flavordex2.widget.EntryHolder;
+import com.ultramegasoft.flavordex2.widget.ExtraFieldHolder;
+import com.ultramegasoft.flavordex2.widget.PhotoHolder;
+import com.ultramegasoft.radarchart.RadarHolder;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link CSVUtils.EntryReader}, comparing the parallel decoder with the serial one.
+ *
+ * @author Steve Guidetti
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class EntryReaderTest {
+    /**
+     * The number of rows in the generated file
+     */
+    private static final int ROWS = 2000;
+
+    /**
+     * Every row with an index divisible by this has no title and should be skipped
+     */
+    private static final int INVALID_INTERVAL = 97;
+
+    /**
+     * The thread counts to compare with the serial decoder
+     */
+    private static final int[] THREADS = new int[] {1, 2, 4};
+
+    /**
+     * The Context
+     */
+    private Context mContext;
+
+    /**
+     * The generated CSV file
+     */
+    private String mCsv;
+
+    @Before
+    public void setUp() throws IOException {
+        mContext = RuntimeEnvironment.application;
+
+        final StringWriter out = new StringWriter();
+        final CSVWriter writer = new CSVWriter(out);
+        writer.writeNext(SampleExport.HEADER);
+        String[] row;
+        for(int i = 0; i < ROWS; i++) {
+            row = SampleExport.getRow(i);
+            if(i % INVALID_INTERVAL == 0) {
+                row[1] = "";
+            }
+            writer.writeNext(row);
+        }
+        writer.close();
+        mCsv = out.toString();
+    }
+
+    @Test
+    public void serialReadsRowsInOrder() {
+        final List<EntryHolder> entries = readAll(0);
+        int index = 0;
+        for(EntryHolder entry : entries) {
+            if(index % INVALID_INTERVAL == 0) {
+                index++;
+            }
+            final String[] row = SampleExport.getRow(index++);
+            assertEquals(row[0], entry.uuid);
+            assertEquals(row[1], entry.title);
+            assertEquals(row[9], entry.notes);
+        }
+        assertEquals(ROWS, index);
+    }
+
+    @Test
+    public void parallelMatchesSerial() {
+        final List<EntryHolder> expected = readAll(0);
+        for(int threads : THREADS) {
+            final List<EntryHolder> actual = readAll(threads);
+            assertEquals(threads + " threads", expected.size(), actual.size());
+            for(int i = 0; i < expected.size(); i++) {
+                assertEntryEquals(threads + " threads, entry " + i, expected.get(i),
+                        actual.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void parallelSkipMatchesSerial() {
+        for(int threads : THREADS) {
+            final CSVUtils.EntryReader serial = open(0);
+            final CSVUtils.EntryReader parallel = open(threads);
+            try {
+                for(int i = 0; ; i++) {
+                    if(i % 3 == 0) {
+                        assertEquals(serial.skip(), parallel.skip());
+                    } else {
+                        final EntryHolder entry = serial.next();
+                        final EntryHolder other = parallel.next();
+                        if(entry == null) {
+                            assertNull(other);
+                            break;
+                        }
+                        assertNotNull(other);
+                        assertEntryEquals(threads + " threads, entry " + i, entry, other);
+                    }
+                    assertEquals(serial.getUuid(), parallel.getUuid());
+                }
+            } finally {
+                serial.close();
+                parallel.close();
+            }
+        }
+    }
+
+    /**
+     * Open the generated file.
+     *
+     * @param threads The number of threads to decode rows, or 0 to use the calling thread
+     * @return The EntryReader
+     */
+    @NonNull
+    private CSVUtils.EntryReader open(int threads) {
+        final CSVUtils.EntryReader reader =
+                CSVUtils.EntryReader.open(mContext, new StringReader(mCsv), threads);
+        assertNotNull(reader);
+        return reader;
+    }
+
+    /**
+     * Read all the entries from the generated file.
+     *
+     * @param threads The number of threads to decode rows, or 0 to use the calling thread
+     * @return The list of entries
+     */
+    @NonNull
+    private List<EntryHolder> readAll(int threads) {
+        final CSVUtils.EntryReader reader = open(threads);
+        try {
+            final List<EntryHolder> entries = new ArrayList<>();
+            EntryHolder entry;
+            while((entry = reader.next()) != null) {
+                assertEquals(entry.uuid, reader.getUuid());
+                entries.add(entry);
+            }
+            return entries;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Check that two entries hold the same data.
+     *
+     * @param message  The message to show on failure
+     * @param expected The expected entry
+     * @param actual   The actual entry
+     */
+    private static void assertEntryEquals(@NonNull String message, @NonNull EntryHolder expected,
+                                          @NonNull EntryHolder actual) {
+        assertEquals(message, expected.uuid, actual.uuid);
+        assertEquals(message, expected.title, actual.title);
+        assertEquals(message, expected.catName, actual.catName);
+        assertEquals(message, expected.maker, actual.maker);
+        assertEquals(message, expected.origin, actual.origin);
+        assertEquals(message, expected.price, actual.price);
+        assertEquals(message, expected.location, actual.location);
+        assertEquals(message, expected.date, actual.date);
+        assertEquals(message, expected.rating, actual.rating, 0);
+        assertEquals(message, expected.notes, actual.notes);
+
+        final List<ExtraFieldHolder> extras = expected.getExtras();
+        assertEquals(message, extras.size(), actual.getExtras().size());
+        for(int i = 0; i < extras.size(); i++) {
+            assertEquals(message, extras.get(i).name, actual.getExtras().get(i).name);
+            assertEquals(message, extras.get(i).value, actual.getExtras().get(i).value);
+        }
+
+        final List<RadarHolder> flavors = expected.getFlavors();
+        assertEquals(message, flavors.size(), actual.getFlavors().size());
+        for(int i = 0; i < flavors.size(); i++) {
+            assertEquals(message, flavors.get(i).name, actual.getFlavors().get(i).name);
+            assertEquals(message, flavors.get(i).value, actual.getFlavors().get(i).value);
+        }
+
+        final List<PhotoHolder> photos = expected.getPhotos();
+        assertEquals(message, photos.size(), actual.getPhotos().size());
+        for(int i = 0; i < photos.size(); i++) {
+            assertEquals(message, photos.get(i).uri, actual.getPhotos().get(i).uri);
+        }
+    }
+}
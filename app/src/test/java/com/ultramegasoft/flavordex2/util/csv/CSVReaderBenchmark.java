@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util.csv;
+
+import android.support.annotation.NonNull;
+
+import com.ultramegasoft.flavordex2.util.BenchmarkUtils;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Benchmark comparing {@link CSVReader} against the original implementation on a generated
+ * export of about 50 MB.
+ *
+ * @author Steve Guidetti
+ */
+public class CSVReaderBenchmark {
+    /**
+     * The size of the generated export in characters
+     */
+    private static final long FILE_SIZE = 50L * 1024 * 1024;
+
+    /**
+     * The generated export file
+     */
+    private static File sFile;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        BenchmarkUtils.assumeEnabled();
+        sFile = File.createTempFile("export", ".csv");
+        SampleExport.write(sFile, FILE_SIZE);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if(sFile != null) {
+            sFile.delete();
+        }
+    }
+
+    @Test
+    public void legacyReadNext() throws Exception {
+        BenchmarkUtils.measure("LegacyCSVReader.readNext", new BenchmarkUtils.Task() {
+            @Override
+            public long run() throws IOException {
+                final LegacyCSVReader reader = new LegacyCSVReader(open());
+                try {
+                    long rows = 0;
+                    while(reader.readNext() != null) {
+                        rows++;
+                    }
+                    return rows;
+                } finally {
+                    reader.close();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void readNext() throws Exception {
+        BenchmarkUtils.measure("CSVReader.readNext", new BenchmarkUtils.Task() {
+            @Override
+            public long run() throws IOException {
+                final CSVReader reader = new CSVReader(open());
+                try {
+                    long rows = 0;
+                    while(reader.readNext() != null) {
+                        rows++;
+                    }
+                    return rows;
+                } finally {
+                    reader.close();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void readRow() throws Exception {
+        BenchmarkUtils.measure("CSVReader.readRow", new BenchmarkUtils.Task() {
+            @Override
+            public long run() throws IOException {
+                final CSVReader reader = new CSVReader(open());
+                try {
+                    long rows = 0;
+                    long length = 0;
+                    while(reader.readRow()) {
+                        for(int i = 0; i < reader.getFieldCount(); i++) {
+                            length += reader.getField(i).length();
+                        }
+                        rows++;
+                    }
+                    return length > 0 ? rows : 0;
+                } finally {
+                    reader.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Open the generated export the same way the importer opens a file.
+     *
+     * @return A Reader for the file
+     */
+    @NonNull
+    private static Reader open() throws IOException {
+        return new InputStreamReader(new FileInputStream(sFile), "UTF-8");
+    }
+}
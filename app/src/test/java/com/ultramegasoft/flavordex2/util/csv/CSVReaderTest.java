@@ -0,0 +1,256 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util.csv;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CSVReader}.
+ *
+ * @author Steve Guidetti
+ */
+public class CSVReaderTest {
+    @Test
+    public void readsUnquotedFields() {
+        assertRows("a,b,c\n", row("a", "b", "c"));
+    }
+
+    @Test
+    public void readsQuotedFields() {
+        assertRows("\"a\",\"b,c\",\"\"\n", row("a", "b,c", ""));
+    }
+
+    @Test
+    public void readsEscapedQuotes() {
+        assertRows("\"say \"\"hi\"\"\",\"\"\"\"\n", row("say \"hi\"", "\""));
+    }
+
+    @Test
+    public void readsCrlfLineEndings() {
+        assertRows("a,b\r\nc,d\r\n", row("a", "b"), row("c", "d"));
+    }
+
+    @Test
+    public void readsBareCrAndLfLineEndings() {
+        assertRows("a,b\rc,d\ne,f", row("a", "b"), row("c", "d"), row("e", "f"));
+    }
+
+    @Test
+    public void skipsBlankLines() {
+        assertRows("\r\n\r\na\r\n\n\nb\r\n\r\n", row("a"), row("b"));
+    }
+
+    @Test
+    public void readsEmbeddedNewlines() {
+        assertRows("\"line 1\r\nline 2\",\"x\ny\"\r\nz\r\n",
+                row("line 1\r\nline 2", "x\ny"), row("z"));
+    }
+
+    @Test
+    public void readsEmptyFields() {
+        assertRows(",a,,\r\n\"\",\"\"\r\n", row("", "a", "", ""), row("", ""));
+    }
+
+    @Test
+    public void readsLastRowWithoutNewline() {
+        assertRows("a,b\r\n\"c\",\"d\"", row("a", "b"), row("c", "d"));
+        assertRows("a,", row("a", ""));
+    }
+
+    @Test
+    public void readsEmptyFile() {
+        assertRows("");
+        assertRows("\r\n");
+    }
+
+    @Test
+    public void readsFieldsLongerThanBuffer() {
+        final String longValue = repeat("abc, \"def\"\r\n", 5000);
+        final String escaped = longValue.replace("\"", "\"\"");
+        final String plain = repeat("x", 20000);
+        assertRows("\"" + escaped + "\"," + plain + "\r\nend\r\n",
+                row(longValue, plain), row("end"));
+    }
+
+    @Test
+    public void readsSplitReads() {
+        final StringBuilder csv = new StringBuilder();
+        final List<String[]> expected = new ArrayList<>();
+        String[] fields;
+        for(int i = 0; i < 500; i++) {
+            fields = SampleExport.getRow(i);
+            expected.add(fields);
+            for(int j = 0; j < fields.length; j++) {
+                if(j > 0) {
+                    csv.append(',');
+                }
+                csv.append('"').append(fields[j].replace("\"", "\"\"")).append('"');
+            }
+            csv.append("\r\n");
+        }
+
+        final String[][] rows = expected.toArray(new String[expected.size()][]);
+        for(int chunk : new int[] {1, 2, 3, 7, 8191, 8192, 8193}) {
+            assertRows(new ChunkedReader(new StringReader(csv.toString()), chunk),
+                    "chunk " + chunk, rows);
+        }
+    }
+
+    @Test
+    public void readRowExposesFields() throws IOException {
+        final CSVReader reader = new CSVReader(new StringReader("\"ab\"\"c\",,d\r\nef\r\n"));
+
+        assertTrue(reader.readRow());
+        assertEquals(3, reader.getFieldCount());
+        assertEquals(4, reader.getFieldLength(0));
+        assertEquals(0, reader.getFieldLength(1));
+
+        final CharSequence field = reader.getField(0);
+        assertEquals(4, field.length());
+        assertEquals('"', field.charAt(2));
+        assertEquals("b\"", field.subSequence(1, 3).toString());
+        assertEquals("ab\"c", field.toString());
+        assertEquals("d", reader.getString(2));
+
+        assertTrue(reader.readRow());
+        assertEquals(1, reader.getFieldCount());
+        assertEquals("ef", field.toString());
+
+        assertFalse(reader.readRow());
+        assertEquals(0, reader.getFieldCount());
+        assertNull(reader.readNext());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getFieldRejectsInvalidIndex() throws IOException {
+        final CSVReader reader = new CSVReader(new StringReader("a,b\r\n"));
+        reader.readRow();
+        reader.getField(2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void fieldViewRejectsInvalidIndex() throws IOException {
+        final CSVReader reader = new CSVReader(new StringReader("a,b\r\n"));
+        reader.readRow();
+        reader.getField(0).charAt(1);
+    }
+
+    /**
+     * Build an expected row.
+     *
+     * @param fields The values of the fields
+     * @return The row
+     */
+    @NonNull
+    private static String[] row(@NonNull String... fields) {
+        return fields;
+    }
+
+    /**
+     * Check that a CSV string is parsed into the expected rows.
+     *
+     * @param csv      The CSV data
+     * @param expected The expected rows
+     */
+    private static void assertRows(@NonNull String csv, @NonNull String[]... expected) {
+        assertRows(new StringReader(csv), csv, expected);
+    }
+
+    /**
+     * Check that a Reader is parsed into the expected rows.
+     *
+     * @param source   The Reader representing the CSV data
+     * @param message  The message to show on failure
+     * @param expected The expected rows
+     */
+    private static void assertRows(@NonNull Reader source, @NonNull String message,
+                                   @NonNull String[]... expected) {
+        final CSVReader reader = new CSVReader(source);
+        final List<String[]> rows = new ArrayList<>();
+        String[] row;
+        while((row = reader.readNext()) != null) {
+            rows.add(row);
+        }
+
+        assertEquals(message, expected.length, rows.size());
+        for(int i = 0; i < expected.length; i++) {
+            assertArrayEquals(message + " row " + i, expected[i], rows.get(i));
+        }
+    }
+
+    /**
+     * Repeat a string.
+     *
+     * @param value The string to repeat
+     * @param count The number of times to repeat it
+     * @return The repeated string
+     */
+    @NonNull
+    private static String repeat(@NonNull String value, int count) {
+        final StringBuilder builder = new StringBuilder(value.length() * count);
+        for(int i = 0; i < count; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Reader that returns at most a fixed number of characters from each read, to split the data
+     * at every possible position.
+     */
+    private static class ChunkedReader extends FilterReader {
+        /**
+         * The maximum number of characters to return from each read
+         */
+        private final int mChunkSize;
+
+        /**
+         * @param in        The Reader to read from
+         * @param chunkSize The maximum number of characters to return from each read
+         */
+        ChunkedReader(@NonNull Reader in, int chunkSize) {
+            super(in);
+            mChunkSize = chunkSize;
+        }
+
+        @Override
+        public int read(@NonNull char[] cbuf, int off, int len) throws IOException {
+            return super.read(cbuf, off, Math.min(len, mChunkSize));
+        }
+    }
+}
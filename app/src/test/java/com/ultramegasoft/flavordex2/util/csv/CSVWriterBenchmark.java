@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util.csv;
+
+import com.ultramegasoft.flavordex2.util.BenchmarkUtils;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Benchmark comparing {@link CSVWriter} against the original implementation by writing a large
+ * synthetic export to a file.
+ *
+ * @author Steve Guidetti
+ */
+public class CSVWriterBenchmark {
+    /**
+     * The number of rows to write
+     */
+    private static final int ROWS = 100000;
+
+    /**
+     * The rows to write, generated ahead of time so only the writing is measured
+     */
+    private static String[][] sRows;
+
+    /**
+     * The file to write to
+     */
+    private static File sFile;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        BenchmarkUtils.assumeEnabled();
+        sRows = new String[ROWS][];
+        for(int i = 0; i < ROWS; i++) {
+            sRows[i] = SampleExport.getRow(i);
+        }
+        sFile = File.createTempFile("export", ".csv");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        sRows = null;
+        if(sFile != null) {
+            sFile.delete();
+        }
+    }
+
+    @Test
+    public void legacyWriter() throws Exception {
+        BenchmarkUtils.measure("LegacyCSVWriter, FileWriter", new BenchmarkUtils.Task() {
+            @Override
+            public long run() throws IOException {
+                final LegacyCSVWriter writer = new LegacyCSVWriter(new FileWriter(sFile));
+                try {
+                    writer.writeNext(SampleExport.HEADER);
+                    for(String[] row : sRows) {
+                        writer.writeNext(row);
+                    }
+                } finally {
+                    writer.close();
+                }
+                return sRows.length;
+            }
+        });
+    }
+
+    @Test
+    public void writer() throws Exception {
+        measure("CSVWriter", false);
+    }
+
+    @Test
+    public void gzipWriter() throws Exception {
+        measure("CSVWriter, gzip", true);
+    }
+
+    /**
+     * Measure writing the rows with a CSVWriter opened on the file.
+     *
+     * @param name The name to report the results under
+     * @param gzip Whether to compress the file
+     */
+    private static void measure(String name, final boolean gzip) throws Exception {
+        BenchmarkUtils.measure(name, new BenchmarkUtils.Task() {
+            @Override
+            public long run() throws IOException {
+                final CSVWriter writer = CSVWriter.open(sFile, gzip);
+                try {
+                    writer.writeNext(SampleExport.HEADER);
+                    for(String[] row : sRows) {
+                        writer.writeNext(row);
+                    }
+                } finally {
+                    writer.close();
+                }
+                return sRows.length;
+            }
+        });
+    }
+}
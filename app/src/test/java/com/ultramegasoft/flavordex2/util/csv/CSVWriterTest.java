@@ -0,0 +1,304 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util.csv;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link CSVWriter}.
+ *
+ * @author Steve Guidetti
+ */
+public class CSVWriterTest {
+    @Test
+    public void quotesEveryField() throws IOException {
+        assertEquals("\"a\",\"b c\",\"1\"\r\n", write(new String[] {"a", "b c", "1"}));
+    }
+
+    @Test
+    public void escapesQuotes() throws IOException {
+        assertEquals("\"say \"\"hi\"\"\",\"\"\"\"\"\",\"\"\"x\"\r\n",
+                write(new String[] {"say \"hi\"", "\"\"", "\"x"}));
+    }
+
+    @Test
+    public void keepsSeparatorsInsideQuotes() throws IOException {
+        assertEquals("\"a,b\",\"line 1\r\nline 2\"\r\n",
+                write(new String[] {"a,b", "line 1\r\nline 2"}));
+    }
+
+    @Test
+    public void writesNullAsEmptyField() throws IOException {
+        assertEquals("\"\",\"a\",\"\"\r\n", write(new String[] {null, "a", ""}));
+    }
+
+    @Test
+    public void writesValuesLongerThanBuffer() throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < 200; i++) {
+            builder.append("ab\"cd");
+        }
+        final String value = builder.toString();
+
+        final StringWriter out = new StringWriter();
+        final CSVWriter writer = new CSVWriter(out, 16);
+        writer.writeNext(new String[] {value, value});
+        writer.close();
+
+        final String quoted = '"' + value.replace("\"", "\"\"") + '"';
+        assertEquals(quoted + ',' + quoted + "\r\n", out.toString());
+    }
+
+    @Test
+    public void holdsRowsUntilFlush() throws IOException {
+        final StringWriter out = new StringWriter();
+        final CSVWriter writer = new CSVWriter(out);
+        writer.writeNext(new String[] {"a"});
+        assertEquals("", out.toString());
+
+        writer.flush();
+        assertEquals("\"a\"\r\n", out.toString());
+
+        writer.writeNext(new String[] {"b"});
+        writer.close();
+        assertEquals("\"a\"\r\n\"b\"\r\n", out.toString());
+    }
+
+    @Test
+    public void writesWhenBufferFills() {
+        final StringWriter out = new StringWriter();
+        final CSVWriter writer = new CSVWriter(out, 16);
+        writer.writeNext(new String[] {"0123456789", "0123456789"});
+        assertTrue(out.toString().startsWith("\"0123456789\","));
+    }
+
+    @Test
+    public void closeClosesWriterOnce() throws IOException {
+        final TrackingWriter out = new TrackingWriter(false);
+        final CSVWriter writer = new CSVWriter(out);
+        writer.writeNext(new String[] {"a"});
+        writer.close();
+        writer.close();
+        writer.flush();
+        writer.writeNext(new String[] {"b"});
+
+        assertEquals(1, out.closeCount);
+        assertEquals("\"a\"\r\n", out.toString());
+    }
+
+    @Test
+    public void reportsWriteErrorsOnFlushAndClose() {
+        final TrackingWriter out = new TrackingWriter(true);
+        final CSVWriter writer = new CSVWriter(out, 16);
+        writer.writeNext(new String[] {"0123456789", "0123456789"});
+        writer.writeNext(new String[] {"0123456789", "0123456789"});
+        assertEquals(1, out.writeCount);
+
+        try {
+            writer.flush();
+            fail("flush should throw the write error");
+        } catch(IOException e) {
+            assertSame(out.error, e);
+        }
+
+        try {
+            writer.close();
+            fail("close should throw the write error");
+        } catch(IOException e) {
+            assertSame(out.error, e);
+        }
+        assertEquals(1, out.closeCount);
+    }
+
+    @Test
+    public void roundTripsThroughReader() throws IOException {
+        final StringWriter out = new StringWriter();
+        final CSVWriter writer = new CSVWriter(out);
+        for(int i = 0; i < 500; i++) {
+            writer.writeNext(SampleExport.getRow(i));
+        }
+        writer.close();
+
+        final CSVReader reader = new CSVReader(new StringReader(out.toString()));
+        for(int i = 0; i < 500; i++) {
+            assertArrayEquals(SampleExport.getRow(i), reader.readNext());
+        }
+        assertNull(reader.readNext());
+    }
+
+    @Test
+    public void openWritesUtf8() throws IOException {
+        final File file = File.createTempFile("export", ".csv");
+        try {
+            final CSVWriter writer = CSVWriter.open(file, false);
+            writer.writeNext(new String[] {"café", "★"});
+            writer.close();
+
+            assertEquals("\"café\",\"★\"\r\n", read(new FileInputStream(file)));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void openWritesGzip() throws IOException {
+        final File file = File.createTempFile("export", ".csv.gz");
+        try {
+            final CSVWriter writer = CSVWriter.open(file, true);
+            final StringWriter expected = new StringWriter();
+            final CSVWriter expectedWriter = new CSVWriter(expected);
+            for(int i = 0; i < 500; i++) {
+                writer.writeNext(SampleExport.getRow(i));
+                expectedWriter.writeNext(SampleExport.getRow(i));
+            }
+            writer.close();
+            expectedWriter.close();
+
+            final InputStream in = new FileInputStream(file);
+            final int magic = in.read() | (in.read() << 8);
+            in.close();
+            assertEquals(GZIPInputStream.GZIP_MAGIC, magic);
+
+            assertEquals(expected.toString(),
+                    read(new GZIPInputStream(new FileInputStream(file))));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    /**
+     * Write a single row to a String.
+     *
+     * @param values The row to write
+     * @return The encoded row
+     */
+    @NonNull
+    private static String write(@NonNull String[] values) throws IOException {
+        final StringWriter out = new StringWriter();
+        final CSVWriter writer = new CSVWriter(out);
+        writer.writeNext(values);
+        writer.close();
+        return out.toString();
+    }
+
+    /**
+     * Read an entire UTF-8 stream into a String and close it.
+     *
+     * @param in The InputStream
+     * @return The contents of the stream
+     */
+    @NonNull
+    private static String read(@NonNull InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toString("UTF-8");
+    }
+
+    /**
+     * Writer that records calls and can be set to fail every write.
+     */
+    private static class TrackingWriter extends Writer {
+        /**
+         * The error thrown from every write if the Writer is set to fail
+         */
+        final IOException error = new IOException("Disk full");
+
+        /**
+         * Whether every write should fail
+         */
+        private final boolean mFail;
+
+        /**
+         * The data written so far
+         */
+        private final StringBuilder mData = new StringBuilder();
+
+        /**
+         * The number of calls to write
+         */
+        int writeCount;
+
+        /**
+         * The number of calls to close
+         */
+        int closeCount;
+
+        /**
+         * @param fail Whether every write should fail
+         */
+        TrackingWriter(boolean fail) {
+            mFail = fail;
+        }
+
+        @Override
+        public void write(@NonNull char[] cbuf, int off, int len) throws IOException {
+            writeCount++;
+            if(mFail) {
+                throw error;
+            }
+            mData.append(cbuf, off, len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            closeCount++;
+        }
+
+        @Override
+        public String toString() {
+            return mData.toString();
+        }
+    }
+}
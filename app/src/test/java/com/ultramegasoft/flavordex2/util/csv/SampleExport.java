@@ -0,0 +1,174 @@
+/*
+ * The MIT License (MIT)
+ * Copyright © 2018 Steve Guidetti
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the “Software”), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ultramegasoft.flavordex2.util.csv;
+
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generator for synthetic export files in the format written by the app, used by the tests and
+ * benchmarks. The same index always produces the same row.
+ *
+ * @author Steve Guidetti
+ */
+public class SampleExport {
+    /**
+     * The header row of an export file
+     */
+    public static final String[] HEADER = new String[] {
+            "uuid",
+            "title",
+            "cat",
+            "maker",
+            "origin",
+            "price",
+            "location",
+            "date",
+            "rating",
+            "notes",
+            "extras",
+            "flavors",
+            "photos"
+    };
+
+    /**
+     * The preset categories to spread the rows over
+     */
+    private static final String[] CATS = new String[] {"_beer", "_wine", "_whiskey", "_coffee"};
+
+    /**
+     * Words to build the text fields from
+     */
+    private static final String[] WORDS = new String[] {
+            "oak", "citrus", "smoky", "bright", "dark", "roasted", "malty", "crisp", "dry",
+            "sweet", "hoppy", "earthy", "floral", "spicy", "vanilla", "caramel", "bitter"
+    };
+
+    /**
+     * Generate a row.
+     *
+     * @param index The index of the row
+     * @return The fields of the row
+     */
+    @NonNull
+    public static String[] getRow(int index) {
+        final Random random = new Random(index);
+        final String cat = CATS[index % CATS.length];
+
+        final StringBuilder notes = new StringBuilder();
+        final int sentences = 1 + random.nextInt(4);
+        for(int i = 0; i < sentences; i++) {
+            notes.append(getWords(random, 4 + random.nextInt(12)));
+            switch(random.nextInt(4)) {
+                case 0:
+                    notes.append(", \"").append(getWords(random, 2)).append("\". ");
+                    break;
+                case 1:
+                    notes.append(".\r\n");
+                    break;
+                default:
+                    notes.append(". ");
+            }
+        }
+
+        final StringBuilder flavors = new StringBuilder("{");
+        for(int i = 0; i < 8; i++) {
+            if(i > 0) {
+                flavors.append(',');
+            }
+            flavors.append("\"").append(WORDS[i]).append("\":").append(random.nextInt(6));
+        }
+        flavors.append('}');
+
+        return new String[] {
+                new UUID(index, cat.hashCode()).toString(),
+                "Sample " + cat.substring(1) + " " + index,
+                cat,
+                "Maker " + (index % 997),
+                "Origin " + (index % 53),
+                String.format(Locale.US, "$%d.%02d", 5 + random.nextInt(60), random.nextInt(100)),
+                random.nextInt(3) == 0 ? "" : "Location " + (index % 211),
+                String.format(Locale.US, "20%02d-%02d-%02dT%02d:%02dZ", 10 + random.nextInt(9),
+                        1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24),
+                        random.nextInt(60)),
+                String.valueOf(random.nextInt(11) / 2f),
+                notes.toString(),
+                "{\"_style\":\"" + getWords(random, 2) + "\",\"_serving\":\"1\"}",
+                flavors.toString(),
+                random.nextInt(4) == 0
+                        ? "[\"\\/storage\\/emulated\\/0\\/Pictures\\/IMG_" + index + ".jpg\"]"
+                        : "[]"
+        };
+    }
+
+    /**
+     * Write an export file of at least the given size.
+     *
+     * @param file     The file to write
+     * @param minBytes The minimum number of characters to write
+     * @return The number of rows written, not including the header
+     */
+    public static int write(@NonNull File file, long minBytes) throws IOException {
+        final CSVWriter writer = CSVWriter.open(file, false);
+        try {
+            writer.writeNext(HEADER);
+            long length = 0;
+            int rows = 0;
+            String[] row;
+            while(length < minBytes) {
+                row = getRow(rows++);
+                writer.writeNext(row);
+                for(String field : row) {
+                    length += field.length() + 3;
+                }
+            }
+            return rows;
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Build a string of random words.
+     *
+     * @param random The source of randomness
+     * @param count  The number of words
+     * @return The words separated by spaces
+     */
+    @NonNull
+    private static String getWords(@NonNull Random random, int count) {
+        final StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < count; i++) {
+            if(i > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.toString();
+    }
+}